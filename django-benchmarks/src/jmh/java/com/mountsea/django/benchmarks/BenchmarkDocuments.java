@@ -0,0 +1,246 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.bson.projection.DocumentList;
+import com.mountsea.django.bson.projection.DocumentMap;
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.core.CollectibleDocument;
+
+/**
+ * 基准测试使用的文档结构，模拟一个有多层嵌套子文档和容器的玩家文档。
+ * <p>
+ * 不使用lombok，避免jmh源码集依赖注解处理器的配置。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public class BenchmarkDocuments {
+
+    /**
+     * 创建并填充一个玩家文档
+     *
+     * @param width 每个容器中的元素个数
+     */
+    public static PlayerDocument newPlayer(int id, int width) {
+        PlayerDocument player = DocumentNode.create(PlayerDocument.class);
+        player.setId(id);
+        player.setName("player-" + id);
+        player.setLevel(id % 100);
+        player.setExp(id * 1000L);
+
+        BagDocument bag = DocumentNode.create(BagDocument.class);
+        bag.setCapacity(width);
+        DocumentMap<Integer, SlotDocument> slots = new DocumentMap<>();
+        for (int i = 0; i < width; i++) {
+            SlotDocument slot = DocumentNode.create(SlotDocument.class);
+            slot.setItemId(i);
+            slot.setCount(i + 1);
+            DocumentList<Integer> enchants = new DocumentList<>();
+            for (int j = 0; j < 4; j++) {
+                enchants.add(j);
+            }
+            slot.setEnchants(enchants);
+            slots.put(i, slot);
+        }
+        bag.setSlots(slots);
+        player.setBag(bag);
+
+        DocumentMap<Integer, ItemDocument> items = new DocumentMap<>();
+        for (int i = 0; i < width; i++) {
+            ItemDocument item = DocumentNode.create(ItemDocument.class);
+            item.setItemId(i);
+            item.setName("item-" + i);
+            item.setExpireTime(1_600_000_000_000L + i);
+            items.put(i, item);
+        }
+        player.setItems(items);
+
+        DocumentList<String> tags = new DocumentList<>();
+        for (int i = 0; i < width; i++) {
+            tags.add("tag-" + i);
+        }
+        player.setTags(tags);
+        return player;
+    }
+
+    public static class PlayerDocument extends CollectibleDocument {
+        private Integer id;
+
+        private String name;
+
+        private int level;
+
+        private long exp;
+
+        private BagDocument bag;
+
+        private DocumentMap<Integer, ItemDocument> items;
+
+        private DocumentList<String> tags;
+
+        @Override
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public long getExp() {
+            return exp;
+        }
+
+        public void setExp(long exp) {
+            this.exp = exp;
+        }
+
+        public BagDocument getBag() {
+            return bag;
+        }
+
+        public void setBag(BagDocument bag) {
+            this.bag = bag;
+        }
+
+        public DocumentMap<Integer, ItemDocument> getItems() {
+            return items;
+        }
+
+        public void setItems(DocumentMap<Integer, ItemDocument> items) {
+            this.items = items;
+        }
+
+        public DocumentList<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(DocumentList<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    public static class BagDocument extends DocumentNode {
+        private int capacity;
+
+        private DocumentMap<Integer, SlotDocument> slots;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public DocumentMap<Integer, SlotDocument> getSlots() {
+            return slots;
+        }
+
+        public void setSlots(DocumentMap<Integer, SlotDocument> slots) {
+            this.slots = slots;
+        }
+    }
+
+    public static class SlotDocument extends DocumentNode {
+        private int itemId;
+
+        private int count;
+
+        private DocumentList<Integer> enchants;
+
+        public int getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(int itemId) {
+            this.itemId = itemId;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public DocumentList<Integer> getEnchants() {
+            return enchants;
+        }
+
+        public void setEnchants(DocumentList<Integer> enchants) {
+            this.enchants = enchants;
+        }
+    }
+
+    public static class ItemDocument extends DocumentNode {
+        private int itemId;
+
+        private String name;
+
+        private long expireTime;
+
+        public int getItemId() {
+            return itemId;
+        }
+
+        public void setItemId(int itemId) {
+            this.itemId = itemId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public long getExpireTime() {
+            return expireTime;
+        }
+
+        public void setExpireTime(long expireTime) {
+            this.expireTime = expireTime;
+        }
+    }
+}
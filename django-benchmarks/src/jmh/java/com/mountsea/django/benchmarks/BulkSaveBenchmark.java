@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.benchmarks.BenchmarkDocuments.PlayerDocument;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
+import com.mountsea.django.core.*;
+import com.mountsea.django.core.model.BulkSaveResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用 {@link StandInMongoClient} 测量 {@link DatabaseDao#bulkSaveByKey} 在入库之前的开销，包括获取更新记录、
+ * 生成写操作和驱动对写操作的编码。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkSaveBenchmark {
+
+    @Param({"1", "100"})
+    public int batch;
+
+    private DatabaseDao dao;
+
+    private List<PlayerDocument> players;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        DaoConfig daoConfig = DaoConfig.builder().database("django_benchmarks").build();
+        DaoFactoryConfig factoryConfig = DaoFactoryConfig.builder(DatabaseDaoFactory.GLOBAL_DAO_FACTORY_NAME)
+                .mongoDataSource(new SimpleMongoDataSource(StandInMongoClient.create()))
+                .defaultDaoConfig(daoConfig.toBuilder()).build();
+        dao = new DjangoDaoFactory(factoryConfig).createDao();
+        players = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            players.add(BenchmarkDocuments.newPlayer(i, 16));
+        }
+        //第一次保存整个文档，并开启更新记录
+        dao.bulkSaveByKey(players);
+    }
+
+    /**
+     * 修改每个文档的少量字段后保存，只保存更新记录
+     */
+    @Benchmark
+    public BulkSaveResult saveUpdateRecord() {
+        int n = ++counter;
+        for (PlayerDocument player : players) {
+            player.setExp(n);
+            player.getBag().getSlots().get(n & 15).setCount(n);
+            player.getTags().add("t");
+            if (player.getTags().size() > 64) {
+                player.getTags().clear();
+            }
+        }
+        return dao.bulkSaveByKey(players);
+    }
+
+    /**
+     * 关闭更新记录后保存，每次保存整个文档
+     */
+    @Benchmark
+    public BulkSaveResult saveWholeDocument() {
+        for (PlayerDocument player : players) {
+            DocumentNodeHelper.disableUpdateRecord(player);
+        }
+        return dao.bulkSaveByKey(players);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.benchmarks.BenchmarkDocuments.PlayerDocument;
+import com.mountsea.django.bson.BsonUtils;
+import com.mountsea.django.core.AutoEnableUCCodecRegistry;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深层文档的编码和解码。使用DAO默认的 {@link AutoEnableUCCodecRegistry}，解码的文档会开启更新记录。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecBenchmark {
+
+    @Param({"16", "128"})
+    public int width;
+
+    private final CodecRegistry codecRegistry = AutoEnableUCCodecRegistry.DEFAULT_INSTANCE;
+
+    private Codec<PlayerDocument> codec;
+
+    private PlayerDocument player;
+
+    private BsonDocument bsonDocument;
+
+    private RawBsonDocument rawBsonDocument;
+
+    @Setup
+    public void setup() {
+        codec = codecRegistry.get(PlayerDocument.class);
+        player = BenchmarkDocuments.newPlayer(1, width);
+        bsonDocument = BsonUtils.toBsonDocument(player, codecRegistry);
+        rawBsonDocument = new RawBsonDocument(player, codec);
+    }
+
+    @Benchmark
+    public BsonDocument encodeToBsonDocument() {
+        return BsonUtils.toBsonDocument(player, codecRegistry);
+    }
+
+    @Benchmark
+    public RawBsonDocument encodeToBytes() {
+        return new RawBsonDocument(player, codec);
+    }
+
+    @Benchmark
+    public PlayerDocument decodeFromBsonDocument() {
+        return BsonUtils.fromBsonDocument(bsonDocument, PlayerDocument.class, codecRegistry);
+    }
+
+    @Benchmark
+    public PlayerDocument decodeFromBytes() {
+        return codec.decode(rawBsonDocument.asBsonReader(), DecoderContext.builder().build());
+    }
+}
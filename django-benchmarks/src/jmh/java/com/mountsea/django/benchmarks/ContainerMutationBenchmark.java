@@ -0,0 +1,174 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.bson.projection.containerlisten.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listenable容器单个元素修改的开销，使用空的listener，只测量容器包装本身。
+ * <p>
+ * 配合 -prof gc 运行，gc.alloc.rate.norm 应该只有底层容器本身的分配(HashMap/TreeMap的节点)，
+ * 覆盖已有key的put和list.set应该为0。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ContainerMutationBenchmark {
+
+    private static final int SIZE = 64;
+
+    private final Integer[] values = new Integer[SIZE];
+
+    private ListenableMap<Integer, Integer> map;
+
+    private ListenableList<Integer> list;
+
+    private ListenableSet<Integer> hashSet;
+
+    private ListenableNavigableSet<Integer> treeSet;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        map = new ListenableMap<>(new HashMap<>(), new NoopMapListener<>(), false);
+        list = new ListenableList<>(new ArrayList<>(), new NoopCollectionListener<>(), false);
+        hashSet = new ListenableSet<>(new HashSet2<>(), new NoopCollectionListener<>(), false);
+        treeSet = new ListenableNavigableSet<>(new TreeSet2<>(), new NoopCollectionListener<>(), false);
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = 1000 + i;
+            map.put(values[i], values[i]);
+            list.add(values[i]);
+        }
+    }
+
+    private Integer next() {
+        return values[counter++ & (SIZE - 1)];
+    }
+
+    /**
+     * 覆盖已有的key
+     */
+    @Benchmark
+    public Object mapPut() {
+        Integer v = next();
+        return map.put(v, v);
+    }
+
+    @Benchmark
+    public Object mapRemovePut() {
+        Integer v = next();
+        map.remove(v);
+        return map.put(v, v);
+    }
+
+    @Benchmark
+    public Object listSet() {
+        return list.set(counter++ & (SIZE - 1), next());
+    }
+
+    @Benchmark
+    public Object listAddRemoveTail() {
+        list.add(next());
+        return list.remove(SIZE);
+    }
+
+    @Benchmark
+    public boolean hashSetAddRemove() {
+        Integer v = next();
+        hashSet.add(v);
+        return hashSet.remove(v);
+    }
+
+    @Benchmark
+    public boolean treeSetAddRemove() {
+        Integer v = next();
+        treeSet.add(v);
+        return treeSet.remove(v);
+    }
+
+    static class NoopCollectionListener<E> implements ListListener<E>, SetListener<E> {
+        @Override
+        public CollectionListener.IncomingElementTransformer<E> getIncomingElementTransformer() {
+            return null;
+        }
+
+        @Override
+        public void afterAdd(Collection<E> collection, E value, boolean isTail) {
+        }
+
+        @Override
+        public void afterAddAll(Collection<E> collection, Collection<? extends E> values, boolean isTail) {
+        }
+
+        @Override
+        public void afterRemove(Collection<E> collection, Object value) {
+        }
+
+        @Override
+        public void afterRemoveAll(Collection<E> collection, Collection<?> values) {
+        }
+
+        @Override
+        public void afterClear(Collection<E> container, List<E> removed) {
+        }
+
+        @Override
+        public void afterSet(List<E> list, int index, E e, E previous) {
+        }
+
+        @Override
+        public void afterStructChange(List<E> list) {
+        }
+    }
+
+    static class NoopMapListener<K, V> implements MapListener<K, V> {
+        @Override
+        public MapListener.IncomingMapValueTransformer<K, V> getIncomingMapValueTransformer() {
+            return null;
+        }
+
+        @Override
+        public void afterPut(Map<K, V> map, K k, V v, V previous) {
+        }
+
+        @Override
+        public void afterRemove(Map<K, V> map, Object k, Object removed) {
+        }
+
+        @Override
+        public void beforeClear(Map<K, V> map) {
+        }
+    }
+}
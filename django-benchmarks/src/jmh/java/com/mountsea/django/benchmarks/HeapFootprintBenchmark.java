@@ -0,0 +1,99 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.benchmarks.BenchmarkDocuments.PlayerDocument;
+import com.mountsea.django.bson.BsonUtils;
+import com.mountsea.django.core.AutoEnableUCCodecRegistry;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解码后常驻内存的文档每个节点占用的堆内存。
+ * <p>
+ * 每次调用解码 {@link #PLAYERS} 个玩家文档并保持引用，比较调用前后GC之后的已用堆内存，
+ * 除以节点(子文档和容器)总数，结果是 {@link Footprint#bytesPerNode}。包含节点中字段值的内存，用于比较修改前后的差异。
+ * 使用SerialGC，GC之后的已用堆内存比较稳定。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+UseSerialGC", "-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class HeapFootprintBenchmark {
+
+    private static final int PLAYERS = 200;
+
+    @Param({"16", "128"})
+    public int width;
+
+    private final CodecRegistry codecRegistry = AutoEnableUCCodecRegistry.DEFAULT_INSTANCE;
+
+    private BsonDocument bsonDocument;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerNode;
+    }
+
+    @Setup
+    public void setup() {
+        bsonDocument = BsonUtils.toBsonDocument(BenchmarkDocuments.newPlayer(1, width), codecRegistry);
+    }
+
+    @Benchmark
+    public PlayerDocument[] decodeRetained(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        PlayerDocument[] players = new PlayerDocument[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = BsonUtils.fromBsonDocument(bsonDocument, PlayerDocument.class, codecRegistry);
+        }
+        long after = usedHeapAfterGc();
+        footprint.bytesPerNode = (after - before) / ((long) PLAYERS * nodesPerPlayer(width));
+        return players;
+    }
+
+    /**
+     * 玩家、背包、格子Map、每个格子和它的附魔list、物品Map、每个物品、标签list
+     */
+    private static int nodesPerPlayer(int width) {
+        return 5 + 3 * width;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
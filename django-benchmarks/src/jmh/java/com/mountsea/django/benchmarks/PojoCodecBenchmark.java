@@ -0,0 +1,187 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.bson.CommonCodecRegistry;
+import com.mountsea.django.bson.projection.pojo.Convention;
+import com.mountsea.django.bson.projection.pojo.Conventions;
+import com.mountsea.django.bson.projection.pojo.DocumentPojoCodecProvider;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通用的PojoCodec和 {@link DocumentPojoCodecProvider.Builder#compileCodecs} 编排的codec的编码、解码对比。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PojoCodecBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private Codec<ProfilePojo> codec;
+
+    private ProfilePojo pojo;
+
+    private RawBsonDocument rawBsonDocument;
+
+    private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+    @Setup
+    public void setup() {
+        List<Convention> conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS);
+        conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION);
+        DocumentPojoCodecProvider provider = DocumentPojoCodecProvider.builder().conventions(conventions)
+                .compileCodecs(compiled).register(ProfilePojo.class).build();
+        codec = provider.get(ProfilePojo.class, new CommonCodecRegistry());
+        pojo = new ProfilePojo();
+        pojo.setName("profile");
+        pojo.setTitle("title");
+        pojo.setGuild("guild");
+        pojo.setLevel(30);
+        pojo.setVip(3);
+        pojo.setExp(123456789L);
+        pojo.setGold(987654321L);
+        pojo.setRate(0.75);
+        pojo.setOnline(true);
+        pojo.setBanned(false);
+        rawBsonDocument = new RawBsonDocument(pojo, codec);
+    }
+
+    @Benchmark
+    public RawBsonDocument encode() {
+        return new RawBsonDocument(pojo, codec);
+    }
+
+    @Benchmark
+    public ProfilePojo decode() {
+        return codec.decode(rawBsonDocument.asBsonReader(), decoderContext);
+    }
+
+    public static class ProfilePojo {
+        private String name;
+        private String title;
+        private String guild;
+        private int level;
+        private int vip;
+        private long exp;
+        private long gold;
+        private double rate;
+        private boolean online;
+        private boolean banned;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        public String getGuild() {
+            return guild;
+        }
+
+        public void setGuild(String guild) {
+            this.guild = guild;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public int getVip() {
+            return vip;
+        }
+
+        public void setVip(int vip) {
+            this.vip = vip;
+        }
+
+        public long getExp() {
+            return exp;
+        }
+
+        public void setExp(long exp) {
+            this.exp = exp;
+        }
+
+        public long getGold() {
+            return gold;
+        }
+
+        public void setGold(long gold) {
+            this.gold = gold;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public boolean isOnline() {
+            return online;
+        }
+
+        public void setOnline(boolean online) {
+            this.online = online;
+        }
+
+        public boolean isBanned() {
+            return banned;
+        }
+
+        public void setBanned(boolean banned) {
+            this.banned = banned;
+        }
+    }
+}
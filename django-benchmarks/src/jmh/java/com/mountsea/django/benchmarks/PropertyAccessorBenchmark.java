@@ -0,0 +1,154 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.bson.CommonCodecRegistry;
+import com.mountsea.django.bson.projection.pojo.ClassModel;
+import com.mountsea.django.bson.projection.pojo.Convention;
+import com.mountsea.django.bson.projection.pojo.Conventions;
+import com.mountsea.django.bson.projection.pojo.DocumentPojoCodecProvider;
+import com.mountsea.django.bson.projection.pojo.PropertyAccessor;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 反射的PropertyAccessor和 {@link Conventions#GENERATED_ACCESSOR_CONVENTION} 生成的PropertyAccessor的对比。
+ * 使用普通pojo，避免setter代理的开销掩盖属性访问本身的开销。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PropertyAccessorBenchmark {
+
+    @Param({"reflective", "generated"})
+    public String accessor;
+
+    private PropertyAccessor<Object> levelAccessor;
+
+    private PropertyAccessor<Object> nameAccessor;
+
+    private Codec<StatsPojo> codec;
+
+    private StatsPojo pojo;
+
+    private int counter;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        List<Convention> conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS);
+        if ("generated".equals(accessor)) {
+            conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION);
+        }
+        ClassModel<StatsPojo> classModel = ClassModel.builder(StatsPojo.class).conventions(conventions).build();
+        levelAccessor = (PropertyAccessor<Object>) classModel.getPropertyModel("level").getPropertyAccessor();
+        nameAccessor = (PropertyAccessor<Object>) classModel.getPropertyModel("name").getPropertyAccessor();
+        DocumentPojoCodecProvider provider = DocumentPojoCodecProvider.builder().conventions(conventions)
+                .register(StatsPojo.class).build();
+        codec = provider.get(StatsPojo.class, new CommonCodecRegistry());
+        pojo = new StatsPojo();
+        pojo.setName("stats");
+    }
+
+    @Benchmark
+    public Object getInt() {
+        return levelAccessor.get(pojo);
+    }
+
+    @Benchmark
+    public Object getString() {
+        return nameAccessor.get(pojo);
+    }
+
+    @Benchmark
+    public StatsPojo setInt() {
+        levelAccessor.set(pojo, ++counter & 0xff);
+        return pojo;
+    }
+
+    @Benchmark
+    public RawBsonDocument encode() {
+        pojo.setLevel(++counter);
+        return new RawBsonDocument(pojo, codec);
+    }
+
+    public static class StatsPojo {
+        private int level;
+        private long exp;
+        private double rate;
+        private boolean online;
+        private String name;
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+
+        public long getExp() {
+            return exp;
+        }
+
+        public void setExp(long exp) {
+            this.exp = exp;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public boolean isOnline() {
+            return online;
+        }
+
+        public void setOnline(boolean online) {
+            this.online = online;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
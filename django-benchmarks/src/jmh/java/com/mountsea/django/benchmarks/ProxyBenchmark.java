@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mountsea.django.benchmarks.BenchmarkDocuments.ItemDocument;
+import com.mountsea.django.benchmarks.BenchmarkDocuments.PlayerDocument;
+import com.mountsea.django.benchmarks.BenchmarkDocuments.SlotDocument;
+import com.mountsea.django.bson.projection.ByteBuddyProxiedDocumentCreatorProvider;
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
+import com.mountsea.django.bson.projection.pojo.GlobalModels;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代理对象的创建和setter拦截的开销。DocumentNode不能直接new，所以没有普通对象作为对照。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProxyBenchmark {
+
+    /**
+     * 代理类的生成方式，每个参数在单独的fork中运行，所以可以在setup中设置
+     */
+    @Param({"cglib", "bytebuddy"})
+    public String generator;
+
+    private ItemDocument proxiedItem;
+
+    private SlotDocument recordingSlot;
+
+    private int counter;
+
+    @Setup
+    public void setup() {
+        if ("bytebuddy".equals(generator)) {
+            GlobalModels.setProxiedDocumentCreatorProvider(new ByteBuddyProxiedDocumentCreatorProvider());
+        }
+        proxiedItem = DocumentNode.create(ItemDocument.class);
+        PlayerDocument player = BenchmarkDocuments.newPlayer(1, 16);
+        DocumentNodeHelper.enableUpdateRecord(player);
+        recordingSlot = player.getBag().getSlots().get(0);
+    }
+
+    @Benchmark
+    public ItemDocument createProxy() {
+        return DocumentNode.create(ItemDocument.class);
+    }
+
+    /**
+     * 代理对象未开启更新记录时的setter
+     */
+    @Benchmark
+    public ItemDocument setterProxy() {
+        proxiedItem.setItemId(++counter);
+        return proxiedItem;
+    }
+
+    /**
+     * 开启更新记录的文档中，深层子文档的setter。同一路径的记录会合并，所以记录数量不会增长。
+     */
+    @Benchmark
+    public SlotDocument setterRecording() {
+        recordingSlot.setCount(++counter);
+        return recordingSlot;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.io.BasicOutputBuffer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 进程内的 {@link MongoClient} 替身，用于在没有mongodb服务的情况下测量DAO层的开销。
+ * <p>
+ * bulkWrite 和驱动一样用集合的 {@link CodecRegistry} 把每个写操作的filter、update或文档编码为BSON字节，
+ * 然后直接返回全部匹配成功的结果，不保存任何数据。基准测试没有用到的方法抛出 {@link UnsupportedOperationException}。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public final class StandInMongoClient {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder()
+            .isEncodingCollectibleDocument(true).build();
+
+    private StandInMongoClient() {
+    }
+
+    public static MongoClient create() {
+        return newProxy(MongoClient.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getDatabase":
+                    return newDatabase((String) args[0], MongoClientSettings.getDefaultCodecRegistry());
+                case "close":
+                    return null;
+                default:
+                    return handleObjectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static MongoDatabase newDatabase(String name, CodecRegistry codecRegistry) {
+        return newProxy(MongoDatabase.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "getCodecRegistry":
+                    return codecRegistry;
+                case "withCodecRegistry":
+                    return newDatabase(name, (CodecRegistry) args[0]);
+                case "getCollection":
+                    Class<?> documentClass = args.length > 1 ? (Class<?>) args[1] : Document.class;
+                    return newCollection(new MongoNamespace(name, (String) args[0]), documentClass, codecRegistry);
+                default:
+                    return handleObjectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static MongoCollection<?> newCollection(MongoNamespace namespace, Class<?> documentClass,
+                                                    CodecRegistry codecRegistry) {
+        return newProxy(MongoCollection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getNamespace":
+                    return namespace;
+                case "getDocumentClass":
+                    return documentClass;
+                case "getCodecRegistry":
+                    return codecRegistry;
+                case "withCodecRegistry":
+                    return newCollection(namespace, documentClass, (CodecRegistry) args[0]);
+                case "withDocumentClass":
+                    return newCollection(namespace, (Class<?>) args[0], codecRegistry);
+                case "bulkWrite":
+                    for (Object arg : args) {
+                        if (arg instanceof List) {
+                            return bulkWrite((List<?>) arg, documentClass, codecRegistry);
+                        }
+                    }
+                    throw new IllegalArgumentException();
+                default:
+                    return handleObjectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static BulkWriteResult bulkWrite(List<?> requests, Class<?> documentClass, CodecRegistry codecRegistry) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        int inserted = 0;
+        int matched = 0;
+        int deleted = 0;
+        for (Object request : requests) {
+            if (request instanceof UpdateOneModel) {
+                UpdateOneModel<?> model = (UpdateOneModel<?>) request;
+                encode(buffer, model.getFilter(), documentClass, codecRegistry);
+                encode(buffer, model.getUpdate(), documentClass, codecRegistry);
+                matched++;
+            } else if (request instanceof ReplaceOneModel) {
+                ReplaceOneModel<?> model = (ReplaceOneModel<?>) request;
+                encode(buffer, model.getFilter(), documentClass, codecRegistry);
+                encodeDocument(buffer, model.getReplacement(), codecRegistry);
+                matched++;
+            } else if (request instanceof InsertOneModel) {
+                encodeDocument(buffer, ((InsertOneModel<?>) request).getDocument(), codecRegistry);
+                inserted++;
+            } else if (request instanceof DeleteOneModel) {
+                encode(buffer, ((DeleteOneModel<?>) request).getFilter(), documentClass, codecRegistry);
+                deleted++;
+            } else {
+                throw new UnsupportedOperationException(String.valueOf(request));
+            }
+        }
+        buffer.close();
+        return BulkWriteResult.acknowledged(inserted, matched, deleted, matched, Collections.emptyList());
+    }
+
+    private static void encode(BasicOutputBuffer buffer, Bson bson, Class<?> documentClass, CodecRegistry codecRegistry) {
+        encodeDocument(buffer, bson.toBsonDocument(documentClass, codecRegistry), codecRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void encodeDocument(BasicOutputBuffer buffer, Object document, CodecRegistry codecRegistry) {
+        Codec<Object> codec = (Codec<Object>) codecRegistry.get(document.getClass());
+        codec.encode(new BsonBinaryWriter(buffer), document, ENCODER_CONTEXT);
+    }
+
+    private static Object handleObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "StandIn" + proxy.getClass().getInterfaces()[0].getSimpleName();
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StandInMongoClient.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.benchmarks;
+
+import com.mongodb.client.model.Updates;
+import com.mountsea.django.bson.BsonUtils;
+import com.mountsea.django.bson.projection.MongoUpdateCollectorImpl;
+import com.mountsea.django.bson.projection.UpdatePath;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 更新记录的收集、合并和编码。
+ * <p>
+ * encodeCollected 和 encodeCombined 比较同一组更新直接编码为BSON，以及按每条记录生成Bson再用
+ * {@link Updates#combine} 合并后转换BsonDocument的开销。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UpdateCollectorBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int records;
+
+    private final CodecRegistry codecRegistry = BsonUtils.getCommonCodecRegistry();
+
+    private UpdatePath[] slotPaths;
+
+    private UpdatePath[] tagPaths;
+
+    private UpdatePath bagPath;
+
+    private MongoUpdateCollectorImpl filledCollector;
+
+    private List<Bson> perRecordUpdates;
+
+    @Setup
+    public void setup() {
+        UpdatePath slots = UpdatePath.parse("bag.slots");
+        bagPath = slots.getParent();
+        slotPaths = new UpdatePath[records];
+        tagPaths = new UpdatePath[records];
+        for (int i = 0; i < records; i++) {
+            slotPaths[i] = slots.child(String.valueOf(i)).child("count");
+            tagPaths[i] = UpdatePath.parse("tags" + i);
+        }
+
+        filledCollector = new MongoUpdateCollectorImpl();
+        perRecordUpdates = new ArrayList<>(records * 2);
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < records; i++) {
+            filledCollector.setField(slotPaths[i], i, null);
+            filledCollector.pushArrayValueBatch(tagPaths[i], list, Arrays.asList(i, i + 1));
+            perRecordUpdates.add(Updates.set(slotPaths[i].toString(), i));
+            perRecordUpdates.add(Updates.pushEach(tagPaths[i].toString(), Arrays.asList(i, i + 1)));
+        }
+    }
+
+    /**
+     * 记录不同路径的更新，再重复记录一遍使同路径的记录合并
+     */
+    @Benchmark
+    public MongoUpdateCollectorImpl collectAndMerge() {
+        MongoUpdateCollectorImpl collector = new MongoUpdateCollectorImpl();
+        List<Object> list = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < records; i++) {
+                collector.setField(slotPaths[i], i, null);
+                collector.pushArrayValue(tagPaths[i], list, i);
+            }
+        }
+        return collector;
+    }
+
+    /**
+     * 先记录大量子路径的更新，再用父路径的$set覆盖
+     */
+    @Benchmark
+    public MongoUpdateCollectorImpl collectAndCover() {
+        MongoUpdateCollectorImpl collector = new MongoUpdateCollectorImpl();
+        for (int i = 0; i < records; i++) {
+            collector.setField(slotPaths[i], i, null);
+        }
+        collector.setField(bagPath, null, null);
+        return collector;
+    }
+
+    @Benchmark
+    public BsonDocument encodeCollected() {
+        return filledCollector.getUpdate().toBsonDocument(BsonDocument.class, codecRegistry);
+    }
+
+    @Benchmark
+    public BsonDocument encodeCombined() {
+        return BsonUtils.toBsonDocument(Updates.combine(perRecordUpdates), codecRegistry);
+    }
+}
@@ -28,6 +28,7 @@ import com.mongodb.DBRefCodecProvider;
 import com.mongodb.DocumentToDBRefTransformer;
 import com.mongodb.client.gridfs.codecs.GridFSFileCodecProvider;
 import com.mongodb.client.model.geojson.codecs.GeoJsonCodecProvider;
+import com.mountsea.django.bson.projection.PrimitiveContainerCodecProvider;
 import com.mountsea.django.bson.projection.dtbson.DtBsonValueCodecProvider;
 import com.mountsea.django.bson.projection.pojo.Convention;
 import com.mountsea.django.bson.projection.pojo.Conventions;
@@ -56,6 +57,7 @@ public class CommonCodecRegistry implements CodecRegistry {
             fromProviders(asList(new ValueCodecProvider(),
                     new BsonValueCodecProvider(),
                     new DtBsonValueCodecProvider(),
+                    new PrimitiveContainerCodecProvider(),
                     new DBRefCodecProvider(),
                     new DBObjectCodecProvider(),
                     new EnhancedDocumentCodecProvider(new DocumentToDBRefTransformer()),
@@ -86,7 +88,8 @@ public class CommonCodecRegistry implements CodecRegistry {
 
         public PojoCodecProvider() {
             List<Convention> conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS);
-            pojoCodecProvider = DocumentPojoCodecProvider.builder().automatic(true)
+            conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION);
+            pojoCodecProvider = DocumentPojoCodecProvider.builder().automatic(true).compileCodecs(true)
                     .conventions(conventions).build();
         }
 
@@ -0,0 +1,166 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import com.mountsea.django.bson.projection.pojo.GlobalModels;
+import com.mountsea.django.bson.util.InternalUtils;
+import com.mountsea.django.bson.util.LambdaUtils;
+import com.mountsea.django.bson.util.ThrowingSupplier;
+import lombok.extern.slf4j.Slf4j;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.NamingStrategy;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.scaffold.subclass.ConstructorStrategy;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.implementation.bind.annotation.Argument;
+import net.bytebuddy.implementation.bind.annotation.RuntimeType;
+import net.bytebuddy.implementation.bind.annotation.SuperCall;
+import net.bytebuddy.implementation.bind.annotation.This;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.bytebuddy.matcher.ElementMatchers.is;
+
+/**
+ * 使用ByteBuddy生成文档代理类，代替默认的CGLib代理。
+ * <p>
+ * 生成的子类中，每个需要记录更新的setter直接调用该setter的记录逻辑，不经过统一的MethodInterceptor查找，
+ * 调用原始setter时不需要Object[]参数和MethodProxy。基础类型字段的setter在没有记录更新时参数不装箱。
+ * <p>
+ * 使用时需要引入 net.bytebuddy:byte-buddy 依赖，并在创建任何文档对象之前调用
+ * {@link GlobalModels#setProxiedDocumentCreatorProvider}，或者设置系统属性 {@value GlobalModels#PROXY_GENERATOR_PROPERTY}=bytebuddy。
+ * 可以在启动时调用 {@link GlobalModels#pregenerateProxies} 提前生成所有文档类的代理类。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j
+public class ByteBuddyProxiedDocumentCreatorProvider implements ProxiedDocumentCreatorProvider {
+
+    private static final String CLASS_NAME_SUFFIX = "DjangoDocumentProxy";
+
+    private final Map<Class<?>, ProxiedDocumentCreator<?>> map = new ConcurrentHashMap<>();
+
+    private final ByteBuddy byteBuddy = new ByteBuddy().with(new NamingStrategy.SuffixingRandom(CLASS_NAME_SUFFIX));
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends DocumentNode> ProxiedDocumentCreator<T> get(Class<T> aClass) {
+        ProxiedDocumentCreator<?> creator = map.get(aClass);
+        if (creator != null) {
+            return (ProxiedDocumentCreator<T>) creator;
+        }
+        return (ProxiedDocumentCreator<T>) InternalUtils.mapComputeIfAbsent(map, aClass, this::createProxy);
+    }
+
+    private ProxiedDocumentCreator<?> createProxy(Class<?> aClass) {
+        DynamicType.Builder<?> builder = byteBuddy
+                .subclass(aClass, ConstructorStrategy.Default.IMITATE_SUPER_CLASS_OPENING)
+                .implement(GeneratedDocumentProxy.class);
+        for (DocumentSetterRecorder recorder : DefaultProxiedDocumentCreatorProvider.createSetterRecorders(aClass)) {
+            Object interceptor = recorder.isPrimitive() ? new PrimitiveSetterInterceptor(recorder) :
+                    new SetterInterceptor(recorder);
+            builder = builder.method(is(recorder.getSetter())).intercept(MethodDelegation.to(interceptor));
+        }
+        Class<?> proxyClass = builder.make()
+                .load(aClass.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
+                .getLoaded();
+        return new ProxyClassCreator(proxyClass);
+    }
+
+    private static class ProxyClassCreator implements ProxiedDocumentCreator<DocumentNode> {
+        private final Class<?> proxyClass;
+
+        private final ThrowingSupplier<Object, Exception> defaultCreator;
+
+        @SuppressWarnings("unchecked")
+        ProxyClassCreator(Class<?> proxyClass) {
+            this.proxyClass = proxyClass;
+            boolean hasDefaultConstructor = false;
+            try {
+                proxyClass.getConstructor();
+                hasDefaultConstructor = true;
+            } catch (NoSuchMethodException e) {
+            }
+            this.defaultCreator = hasDefaultConstructor ?
+                    (ThrowingSupplier<Object, Exception>) LambdaUtils.getDefaultConstructorInvoker(proxyClass) : null;
+        }
+
+        @Override
+        public DocumentNode create() {
+            if (defaultCreator == null) {
+                throw new IllegalStateException("no default construct");
+            }
+            try {
+                return (DocumentNode) defaultCreator.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("create obj fail", e);
+            }
+        }
+
+        @Override
+        public DocumentNode create(Class<?>[] paramTypes, Object[] args) {
+            try {
+                return (DocumentNode) proxyClass.getConstructor(paramTypes).newInstance(args);
+            } catch (Exception e) {
+                throw new IllegalStateException("create obj fail", e);
+            }
+        }
+    }
+
+    /**
+     * 引用类型字段的setter
+     */
+    public static class SetterInterceptor {
+        private final DocumentSetterRecorder recorder;
+
+        SetterInterceptor(DocumentSetterRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        @RuntimeType
+        public Object intercept(@This DocumentNode self, @Argument(0) Object arg, @SuperCall Callable<?> superCall) throws Throwable {
+            return recorder.setAndRecord(self, arg, superCall::call);
+        }
+    }
+
+    /**
+     * 基础类型字段的setter，原始setter的参数由ByteBuddy的SuperCall直接保存，不装箱
+     */
+    public static class PrimitiveSetterInterceptor {
+        private final DocumentSetterRecorder recorder;
+
+        PrimitiveSetterInterceptor(DocumentSetterRecorder recorder) {
+            this.recorder = recorder;
+        }
+
+        @RuntimeType
+        public Object intercept(@This DocumentNode self, @SuperCall Callable<?> superCall) throws Throwable {
+            return recorder.setPrimitiveAndRecord(self, superCall::call);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import com.mountsea.django.bson.projection.MongoUpdateCollectorImpl.Op;
+import org.bson.*;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.List;
+
+/**
+ * {@link MongoUpdateCollectorImpl} 生成的更新Bson。
+ * <p>
+ * 不为每条记录创建单独的Bson再用Updates.combine合并，而是在编码时按操作符分组，直接把所有记录写入 {@link BsonWriter}。
+ * {@link #toBsonDocument}返回 {@link RawBsonDocument}，驱动编码时直接复制字节。
+ * <p>
+ * 生成的格式和 {@link com.mongodb.client.model.Updates} 一致：单个元素的数组操作生成 $push/$pull/$addToSet，
+ * 多个元素的生成 $push.$each/$pullAll/$addToSet.$each。$pop的操作数是-1或1。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public final class CollectedUpdateBson implements Bson {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    private static final String[] OPERATORS = {"$set", "$unset", "$push", "$pull", "$pullAll", "$addToSet", "$pop"};
+
+    private static final int SET = 0, UNSET = 1, PUSH = 2, PULL = 3, PULL_ALL = 4, ADD_TO_SET = 5, POP = 6;
+
+    private final int[] operators;
+
+    private final String[] paths;
+
+    /**
+     * 赋值操作时是赋值的对象，数组操作时是元素列表
+     */
+    private final Object[] values;
+
+    private int size;
+
+    CollectedUpdateBson(int capacity) {
+        operators = new int[capacity];
+        paths = new String[capacity];
+        values = new Object[capacity];
+    }
+
+    void add(Op op, UpdatePath path, Object fieldValue, List<Object> elementValues) {
+        int operator;
+        switch (op) {
+            case $set:
+                operator = SET;
+                break;
+            case $unset:
+                operator = UNSET;
+                break;
+            case $push:
+                operator = PUSH;
+                break;
+            case $pull:
+                operator = elementValues.size() == 1 ? PULL : PULL_ALL;
+                break;
+            case $addToSet:
+                operator = ADD_TO_SET;
+                break;
+            case $pop:
+                operator = POP;
+                break;
+            default:
+                throw new IllegalArgumentException(op.toString());
+        }
+        operators[size] = operator;
+        paths[size] = path.toString();
+        values[size] = op.isAssign() ? fieldValue : elementValues;
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public <TDocument> BsonDocument toBsonDocument(Class<TDocument> tDocumentClass, CodecRegistry codecRegistry) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            encode(writer, codecRegistry);
+        }
+        return new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition());
+    }
+
+    /**
+     * 把更新内容作为一个完整的文档写入writer
+     */
+    public void encode(BsonWriter writer, CodecRegistry codecRegistry) {
+        writer.writeStartDocument();
+        // 操作符按首次出现的顺序输出，和Updates.combine一致
+        int written = 0;
+        for (int i = 0; i < size; i++) {
+            int operator = operators[i];
+            if ((written & (1 << operator)) != 0) {
+                continue;
+            }
+            written |= 1 << operator;
+            writer.writeStartDocument(OPERATORS[operator]);
+            for (int j = i; j < size; j++) {
+                if (operators[j] == operator) {
+                    writer.writeName(paths[j]);
+                    writeOperand(writer, operator, values[j], codecRegistry);
+                }
+            }
+            writer.writeEndDocument();
+        }
+        writer.writeEndDocument();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeOperand(BsonWriter writer, int operator, Object value, CodecRegistry codecRegistry) {
+        switch (operator) {
+            case SET:
+                encodeValue(writer, value, codecRegistry);
+                break;
+            case UNSET:
+                writer.writeString("");
+                break;
+            case POP:
+                writer.writeInt32((Integer) ((List<Object>) value).get(0));
+                break;
+            case PULL_ALL:
+                writeArray(writer, (List<Object>) value, codecRegistry);
+                break;
+            default:
+                List<Object> elementValues = (List<Object>) value;
+                if (elementValues.size() == 1) {
+                    encodeValue(writer, elementValues.get(0), codecRegistry);
+                } else {
+                    writer.writeStartDocument();
+                    writer.writeName("$each");
+                    writeArray(writer, elementValues, codecRegistry);
+                    writer.writeEndDocument();
+                }
+        }
+    }
+
+    private void writeArray(BsonWriter writer, List<Object> elementValues, CodecRegistry codecRegistry) {
+        writer.writeStartArray();
+        for (Object elementValue : elementValues) {
+            encodeValue(writer, elementValue, codecRegistry);
+        }
+        writer.writeEndArray();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void encodeValue(BsonWriter writer, Object value, CodecRegistry codecRegistry) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof Bson) {
+            codecRegistry.get(BsonDocument.class).encode(writer,
+                    ((Bson) value).toBsonDocument(BsonDocument.class, codecRegistry), ENCODER_CONTEXT);
+        } else {
+            ((Encoder) codecRegistry.get(value.getClass())).encode(writer, value, ENCODER_CONTEXT);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CollectedUpdateBson{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(OPERATORS[operators[i]]).append(' ').append(paths[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -25,6 +25,7 @@ package com.mountsea.django.bson.projection;
 
 import lombok.Getter;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.Set;
@@ -35,7 +36,7 @@ import java.util.Set;
  * @author guch
  * @since 3.0.0
  */
-public class CollectibleDocumentUpdateCollector extends SyncMongoUpdateCollector {
+public class CollectibleDocumentUpdateCollector extends StripedMongoUpdateCollector {
 
     /**
      * 只有字段本身占用空间，Set对象应该是一个类共用一个
@@ -44,26 +45,26 @@ public class CollectibleDocumentUpdateCollector extends SyncMongoUpdateCollector
     private final Set<String> keyFieldNames;
 
     public CollectibleDocumentUpdateCollector(Set<String> keyFieldNames) {
+        this(null, keyFieldNames, 1);
+    }
+
+    /**
+     * @param lock        文档的锁，为null时使用此对象
+     * @param stripeCount 分段数，为1时不分段，参考 {@link StripedMongoUpdateCollector}
+     */
+    public CollectibleDocumentUpdateCollector(@Nullable Object lock, Set<String> keyFieldNames, int stripeCount) {
+        super(lock, stripeCount);
         this.keyFieldNames = keyFieldNames;
     }
 
     @Override
-    protected void recordUpdate(Op op, String path, Object fieldValue, Object previousValue,
+    protected void recordUpdate(Op op, UpdatePath path, Object fieldValue, Object previousValue,
                                 boolean collectionBatchOp, Object collectionOpValue, Collection<?> collectionBatchOpValues) {
-        String field = getTopField(path);
+        String field = path.getTopSegment();
         if (!keyFieldNames.contains(field) || (op.isAssign() && Objects.equals(fieldValue, previousValue))) {
             super.recordUpdate(op, path, fieldValue, previousValue, collectionBatchOp, collectionOpValue, collectionBatchOpValues);
         } else {
             disableUpdateCollect();
         }
     }
-
-    private String getTopField(String path) {
-        int index = path.indexOf('.');
-        if (index < 0) {
-            return path;
-        } else {
-            return path.substring(0, index);
-        }
-    }
 }
@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * key为int，value为double的Map，key和value都不装箱，参考 {@link PrimitiveKeyDocumentMap}。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@NotThreadSafe
+public class DocumentIntDoubleMap extends PrimitiveKeyDocumentMap {
+
+    public DocumentIntDoubleMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize 预计的entry数量，在此数量内不需要扩容
+     */
+    public DocumentIntDoubleMap(int expectedSize) {
+        super(PrimitiveKind.INT, PrimitiveKind.DOUBLE, expectedSize);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DocumentIntDoubleMap deepCloneSelf() {
+        DocumentIntDoubleMap map = new DocumentIntDoubleMap();
+        map.copyFrom(this);
+        return map;
+    }
+
+    @Override
+    DocumentIntDoubleMap copyOnWriteClone() {
+        DocumentIntDoubleMap map = new DocumentIntDoubleMap();
+        map.shareFrom(this);
+        return map;
+    }
+
+    /**
+     * @return key对应的值，不存在时返回0
+     */
+    public double get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    public double getOrDefault(int key, double defaultValue) {
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : Double.longBitsToDouble(valueAt(slot));
+    }
+
+    public boolean containsKey(int key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * @return 以前的值，不存在时返回0
+     */
+    public double put(int key, double value) {
+        return Double.longBitsToDouble(putValue(key, Double.doubleToRawLongBits(value)));
+    }
+
+    /**
+     * 在key对应的值上加上increment，key不存在时当做0
+     *
+     * @return 相加后的值
+     */
+    public double addTo(int key, double increment) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            putValue(key, Double.doubleToRawLongBits(increment));
+            return increment;
+        }
+        double value = Double.longBitsToDouble(valueAt(slot)) + increment;
+        setValueAt(slot, Double.doubleToRawLongBits(value));
+        return value;
+    }
+
+    /**
+     * @return 被移除的值，不存在时返回0
+     */
+    public double remove(int key) {
+        return Double.longBitsToDouble(removeKey(key));
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            action.accept((int) keyAt(slot), Double.longBitsToDouble(valueAt(slot)));
+        }
+    }
+
+    public int[] keys() {
+        int[] keys = new int[size()];
+        int i = 0;
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            keys[i++] = (int) keyAt(slot);
+        }
+        return keys;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, double value);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * key为long，value为int的Map，key和value都不装箱，参考 {@link PrimitiveKeyDocumentMap}。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@NotThreadSafe
+public class DocumentLongIntMap extends PrimitiveKeyDocumentMap {
+
+    public DocumentLongIntMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize 预计的entry数量，在此数量内不需要扩容
+     */
+    public DocumentLongIntMap(int expectedSize) {
+        super(PrimitiveKind.LONG, PrimitiveKind.INT, expectedSize);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DocumentLongIntMap deepCloneSelf() {
+        DocumentLongIntMap map = new DocumentLongIntMap();
+        map.copyFrom(this);
+        return map;
+    }
+
+    @Override
+    DocumentLongIntMap copyOnWriteClone() {
+        DocumentLongIntMap map = new DocumentLongIntMap();
+        map.shareFrom(this);
+        return map;
+    }
+
+    /**
+     * @return key对应的值，不存在时返回0
+     */
+    public int get(long key) {
+        return getOrDefault(key, 0);
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : (int) valueAt(slot);
+    }
+
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * @return 以前的值，不存在时返回0
+     */
+    public int put(long key, int value) {
+        return (int) putValue(key, value);
+    }
+
+    /**
+     * 在key对应的值上加上increment，key不存在时当做0
+     *
+     * @return 相加后的值
+     */
+    public int addTo(long key, int increment) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            putValue(key, increment);
+            return increment;
+        }
+        int value = (int) valueAt(slot) + increment;
+        setValueAt(slot, value);
+        return value;
+    }
+
+    /**
+     * @return 被移除的值，不存在时返回0
+     */
+    public int remove(long key) {
+        return (int) removeKey(key);
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            action.accept(keyAt(slot), (int) valueAt(slot));
+        }
+    }
+
+    public long[] keys() {
+        long[] keys = new long[size()];
+        int i = 0;
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            keys[i++] = keyAt(slot);
+        }
+        return keys;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * 使用long[]存储元素的list，元素不装箱，编解码时直接读写BSON数值。
+ * 适合用来保存大量的数值数组，比 {@code DocumentList<Long>} 节省内存，也没有装箱和监听器的开销。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@NotThreadSafe
+public class DocumentLongList extends PrimitiveDocumentList {
+
+    private static final long[] EMPTY_ELEMENTS = {};
+
+    private long[] elements;
+
+    public DocumentLongList() {
+        super(PrimitiveKind.LONG);
+        this.elements = EMPTY_ELEMENTS;
+    }
+
+    public DocumentLongList(int initialCapacity) {
+        super(PrimitiveKind.LONG);
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        }
+        this.elements = initialCapacity == 0 ? EMPTY_ELEMENTS : new long[initialCapacity];
+    }
+
+    public static DocumentLongList of(long... values) {
+        DocumentLongList list = new DocumentLongList(values.length);
+        System.arraycopy(values, 0, list.elements, 0, values.length);
+        list.size = values.length;
+        return list;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DocumentLongList deepCloneSelf() {
+        DocumentLongList list = new DocumentLongList(size);
+        System.arraycopy(elements, 0, list.elements, 0, size);
+        list.size = size;
+        return list;
+    }
+
+    @Override
+    DocumentLongList copyOnWriteClone() {
+        DocumentLongList list = new DocumentLongList();
+        list.elements = elements;
+        list.size = size;
+        list.shared = true;
+        shared = true;
+        return list;
+    }
+
+    public long get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * @return 以前的值
+     */
+    public long set(int index, long value) {
+        checkIndex(index);
+        ensureExclusive();
+        long previous = elements[index];
+        elements[index] = value;
+        recordSet(index, value, previous);
+        return previous;
+    }
+
+    public void add(long value) {
+        ensureCapacity(size + 1);
+        ensureExclusive();
+        elements[size++] = value;
+        recordAdd(size - 1, value);
+    }
+
+    public void add(int index, long value) {
+        checkPositionIndex(index);
+        ensureCapacity(size + 1);
+        ensureExclusive();
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+        recordAdd(index, value);
+    }
+
+    public void addAll(long... values) {
+        ensureCapacity(size + values.length);
+        ensureExclusive();
+        System.arraycopy(values, 0, elements, size, values.length);
+        size += values.length;
+        recordAppendAll(values.length);
+    }
+
+    /**
+     * @return 被移除的元素
+     */
+    public long removeAt(int index) {
+        checkIndex(index);
+        ensureExclusive();
+        long removed = elements[index];
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(elements, index + 1, elements, index, moved);
+        }
+        size--;
+        recordRemoveAt(index, removed);
+        return removed;
+    }
+
+    /**
+     * 移除第一个等于value的元素
+     *
+     * @return 是否有元素被移除
+     */
+    public boolean removeValue(long value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        size = 0;
+        recordStructChange();
+    }
+
+    public int indexOf(long value) {
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(long value) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(elements[i]);
+        }
+    }
+
+    public LongStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            int newCapacity = Math.max(Math.max(minCapacity, elements.length + (elements.length >> 1)), 10);
+            elements = Arrays.copyOf(elements, newCapacity);
+            shared = false;
+        }
+    }
+
+    private void ensureExclusive() {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+    }
+
+    @Override
+    long elementAt(int index) {
+        return elements[index];
+    }
+
+    @Override
+    void appendElement(long value) {
+        ensureCapacity(size + 1);
+        ensureExclusive();
+        elements[size++] = value;
+    }
+}
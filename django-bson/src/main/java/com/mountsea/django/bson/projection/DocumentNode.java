@@ -26,6 +26,7 @@ package com.mountsea.django.bson.projection;
 import com.mountsea.django.bson.BsonUtils;
 import com.mountsea.django.bson.projection.dtbson.DtBsonArray;
 import com.mountsea.django.bson.projection.dtbson.DtBsonDocument;
+import com.mountsea.django.bson.projection.dtbson.DtBsonValue;
 import com.mountsea.django.bson.projection.pojo.DocumentNodeFiller;
 import com.mountsea.django.bson.projection.pojo.GlobalModels;
 import lombok.extern.slf4j.Slf4j;
@@ -34,9 +35,11 @@ import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.conversions.Bson;
 
 import javax.annotation.Nullable;
-import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
@@ -81,6 +84,7 @@ public abstract class DocumentNode {
 
     protected DocumentNode() {
         if (!(this instanceof net.sf.cglib.proxy.Factory ||
+                this instanceof GeneratedDocumentProxy ||
                 this instanceof ContainerDocumentNode ||
                 this instanceof NotProxy)) {
             throw new IllegalCreateDocumentException("Please create " + this.getClass() + " through DocumentNode.create method");
@@ -102,7 +106,7 @@ public abstract class DocumentNode {
     public static <T extends DocumentNode> T create(Class<T> documentClass, boolean fillNullNodeByEmpty) {
         T document = GlobalModels.getProxiedDocumentCreator(documentClass).create();
         if (fillNullNodeByEmpty) {
-            document.fillNullNodeByEmpty();
+            GlobalModels.fillNewDocumentNode(document);
         }
         return document;
     }
@@ -123,7 +127,7 @@ public abstract class DocumentNode {
                                                     boolean fillNullNodeByEmpty) {
         T document = GlobalModels.getProxiedDocumentCreator(documentClass).create(paramTypes, args);
         if (fillNullNodeByEmpty) {
-            document.fillNullNodeByEmpty();
+            GlobalModels.fillNewDocumentNode(document);
         }
         return document;
     }
@@ -133,11 +137,81 @@ public abstract class DocumentNode {
      */
     @SuppressWarnings("unchecked")
     public <T extends DocumentNode> T deepCloneSelf() {
+        return (T) cloneNode(false);
+    }
+
+    /**
+     * 复制自身
+     *
+     * @param copyOnWrite 是否以写时复制的方式复制。为true时原生类型容器 (如 {@link DocumentIntList}/{@link DocumentIntIntMap})
+     *                    的数组由复制前后的两个对象共享，直到其中一个被修改时才复制数组，适合生成只读的快照。
+     *                    原生类型容器不是线程安全的，所以快照需要在修改此文档的线程中生成。
+     * @since 3.4.0
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DocumentNode> T deepCloneSelf(boolean copyOnWrite) {
+        return copyOnWrite ? (T) copyOnWriteClone() : deepCloneSelf();
+    }
+
+    /**
+     * 以写时复制的方式复制自身，可以共享数据的容器需要覆盖此方法
+     */
+    DocumentNode copyOnWriteClone() {
+        if (this instanceof DtBsonValue) {
+            return deepCloneSelf();
+        }
+        return cloneNode(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DocumentNode cloneNode(boolean copyOnWrite) {
         if (this instanceof Collection) {
-            return (T) deepCloneCollection(collectionSupplierFromClass(this.getClass()));
+            return (DocumentNode) deepCloneCollection(collectionSupplierFromClass(this.getClass()), copyOnWrite);
+        }
+        if (this instanceof Map) {
+            Supplier<Map<?, ?>> mapSupplier = mapSupplierFromClass(this.getClass());
+            if (mapSupplier != null) {
+                return (DocumentNode) deepCloneMap(mapSupplier, copyOnWrite);
+            }
+        } else if (!(this instanceof ContainerDocumentNode)) {
+            DocumentNode copy = cloneDocument(realClass(), copyOnWrite);
+            if (copy != null) {
+                return copy;
+            }
         }
         BsonDocument bsonDocument = BsonUtils.toBsonDocument(this);
-        return (T) BsonUtils.fromBsonDocument(bsonDocument, this.getClass());
+        return BsonUtils.fromBsonDocument(bsonDocument, this.getClass());
+    }
+
+    /**
+     * 通过 {@link GlobalModels#getShadowCloner}直接复制，不经过编解码
+     *
+     * @return 不能直接复制时返回null
+     */
+    @Nullable
+    private DocumentNode cloneDocument(Class<? extends DocumentNode> targetClass, boolean copyOnWrite) {
+        ShadowCloner cloner = GlobalModels.getShadowCloner(realClass(), copyOnWrite);
+        if (cloner == null) {
+            return null;
+        }
+        boolean enhanced = GlobalModels.hasClassEnhancer(targetClass);
+        DocumentNode copy;
+        if (enhanced) {
+            copy = create(targetClass, false);
+        } else {
+            try {
+                copy = targetClass.getConstructor().newInstance();
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (ReflectiveOperationException e) {
+                throw new DocumentClassDefinitionException("create instance failed: " + targetClass, e);
+            }
+        }
+        cloner.clone(this, copy);
+        if (enhanced && GlobalModels.isFillNullByEmpty(targetClass)) {
+            GlobalModels.fillNewDocumentNode(copy);
+        }
+        return copy;
     }
 
     /**
@@ -156,6 +230,10 @@ public abstract class DocumentNode {
         if (this instanceof ContainerDocumentNode) {
             throw new DocumentClassDefinitionException("ContainerDocumentNode should not clone by this method.");
         }
+        DocumentNode copy = cloneDocument(targetClass.asSubclass(DocumentNode.class), false);
+        if (copy != null) {
+            return targetClass.cast(copy);
+        }
         BsonDocument bsonDocument = BsonUtils.toBsonDocument(this);
         return BsonUtils.fromBsonDocument(bsonDocument, targetClass);
     }
@@ -166,6 +244,8 @@ public abstract class DocumentNode {
     }
 
     /**
+     * 通过setter填充为null的字段，已开启更新记录时记录填充的字段
+     *
      * @see DocumentNodeFiller
      */
     @SuppressWarnings("unchecked")
@@ -177,14 +257,18 @@ public abstract class DocumentNode {
         filler.accept(this);
     }
 
-    @SuppressWarnings("unchecked")
     protected <E> Collection<E> deepCloneCollection(Supplier<Collection<?>> collectionSupplier) {
+        return deepCloneCollection(collectionSupplier, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    <E> Collection<E> deepCloneCollection(Supplier<Collection<?>> collectionSupplier, boolean copyOnWrite) {
         try {
             Collection<E> to = (Collection<E>) collectionSupplier.get();
             Collection<E> from = (Collection<E>) this;
             for (E o : from) {
                 if (o instanceof DocumentNode) {
-                    to.add((E) ((DocumentNode) o).deepCloneSelf());
+                    to.add((E) ((DocumentNode) o).deepCloneSelf(copyOnWrite));
                 } else {
                     to.add(o);
                 }
@@ -195,15 +279,19 @@ public abstract class DocumentNode {
         }
     }
 
-    @SuppressWarnings("unchecked")
     protected <K, E> Map<K, E> deepCloneMap(Supplier<Map<?, ?>> mapSupplier) {
+        return deepCloneMap(mapSupplier, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    <K, E> Map<K, E> deepCloneMap(Supplier<Map<?, ?>> mapSupplier, boolean copyOnWrite) {
         try {
             Map<K, E> to = (Map<K, E>) mapSupplier.get();
             Map<K, E> from = (Map<K, E>) this;
             for (Map.Entry<K, E> entry : from.entrySet()) {
                 Object value = entry.getValue();
                 if (value instanceof DocumentNode) {
-                    to.put(entry.getKey(), (E) ((DocumentNode) value).deepCloneSelf());
+                    to.put(entry.getKey(), (E) ((DocumentNode) value).deepCloneSelf(copyOnWrite));
                 } else {
                     to.put(entry.getKey(), entry.getValue());
                 }
@@ -225,85 +313,218 @@ public abstract class DocumentNode {
     }
 
     /**
-     * 作为根文档记录更新的updateCollector，初始为null，调用过 {@link #enableUpdateCollect()}之后才有值
+     * @return 没有无参构造方法时返回null
      */
-    private final SyncMongoUpdateCollector __updateCollector = createUpdateCollector();
+    @Nullable
+    private static Supplier<Map<?, ?>> mapSupplierFromClass(Class<?> mapClass) {
+        Constructor<?> constructor;
+        try {
+            constructor = mapClass.getConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        return () -> {
+            try {
+                return (Map<?, ?>) constructor.newInstance();
+            } catch (Exception e) {
+                throw new DocumentClassDefinitionException("create map failed", e);
+            }
+        };
+    }
+
+    /**
+     * 作为根文档记录更新的updateCollector，初始为null，调用过 {@link #enableUpdateCollect()}之后才有值。
+     * 嵌套文档和容器节点一般不会作为记录根节点，所以不创建。
+     */
+    private volatile SyncMongoUpdateCollector __updateCollector;
 
     /**
-     * 每个文档只能有一个parent。
-     * 使用WeakReference避免创建应用代码逻辑之外的引用关系。
+     * 每个文档只能有一个parent，parent和字段名放在同一个不可变对象中一起修改，读取路径时不会读到不一致的parent和字段名。
+     * 直接引用parent，子节点被外部引用时parent也不会被回收。
      */
-    private volatile ParentInfo __parent;
+    private volatile ParentLink __parentLink;
+
+    /**
+     * 修改字段时加的锁，第一次使用时创建，参考 {@link #getRecordLock()}
+     */
+    private volatile Object __recordLock;
+
+    private static final AtomicReferenceFieldUpdater<DocumentNode, Object> RECORD_LOCK_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DocumentNode.class, Object.class, "__recordLock");
 
     /**
-     * 修改字段时加的锁，主要作用是保证在并发环境下，字段的值和UpdateCollector中一致
+     * 修改字段时加的锁，主要作用是保证在并发环境下，字段的值和UpdateCollector中一致，作为记录根节点时也是updateCollector的锁。
+     * <p>
+     * 锁是内部的对象，不是文档本身，外部代码对文档加的synchronized不会和记录更新互相等待。
+     * 很多节点创建后不会被修改，所以在第一次使用时创建，创建之后不再改变。
      */
     Object getRecordLock() {
-        return __updateCollector.getLock();
+        Object lock = __recordLock;
+        if (lock == null) {
+            lock = new Object();
+            if (!RECORD_LOCK_UPDATER.compareAndSet(this, null, lock)) {
+                lock = __recordLock;
+            }
+        }
+        return lock;
     }
 
+    /**
+     * 在 {@link #enableUpdateCollect()} 时调用，创建的记录器需要以 {@link #getRecordLock()} 作为锁
+     */
     protected SyncMongoUpdateCollector createUpdateCollector() {
-        return new SyncMongoUpdateCollector();
+        int stripeCount = StripedMongoUpdateCollector.getStripeCount(getClass());
+        Object lock = getRecordLock();
+        return stripeCount == 1 ? new SyncMongoUpdateCollector(lock) : new StripedMongoUpdateCollector(lock, stripeCount);
     }
 
     void enableUpdateCollect() {
-        __updateCollector.enableUpdateCollect();
+        SyncMongoUpdateCollector updateCollector = __updateCollector;
+        if (updateCollector == null) {
+            synchronized (getRecordLock()) {
+                updateCollector = __updateCollector;
+                if (updateCollector == null) {
+                    __updateCollector = updateCollector = createUpdateCollector();
+                }
+            }
+        }
+        updateCollector.enableUpdateCollect();
     }
 
     /**
      * 清空更新记录，并不再记录
      */
     void disableUpdateCollect() {
-        __updateCollector.disableUpdateCollect();
+        SyncMongoUpdateCollector updateCollector = __updateCollector;
+        if (updateCollector != null) {
+            updateCollector.disableUpdateCollect();
+        }
     }
 
     boolean hasEnableUpdateCollect() {
-        return __updateCollector.hasEnableUpdateCollect();
+        SyncMongoUpdateCollector updateCollector = __updateCollector;
+        return updateCollector != null && updateCollector.hasEnableUpdateCollect();
     }
 
-    ParentInfo getParent() {
-        return this.__parent;
+    /**
+     * @return 正在记录更新时返回updateCollector，否则返回null
+     */
+    @Nullable
+    private SyncMongoUpdateCollector enabledUpdateCollector() {
+        SyncMongoUpdateCollector updateCollector = __updateCollector;
+        return updateCollector != null && updateCollector.hasEnableUpdateCollect() ? updateCollector : null;
+    }
+
+    @Nullable
+    DocumentNode getParent() {
+        ParentLink link = __parentLink;
+        return link == null ? null : link.parent;
     }
 
     void setParent(DocumentNode node, String parentPath) {
         //加锁保证一个 Document被多线程同时赋值给多个文档时，只能赋值成功一次
         synchronized (getRecordLock()) {
-            ParentInfo parent = getParent();
-            if (parent != null) {
+            if (this.__parentLink != null) {
                 throw new MultiParentException();
             } else {
-                this.__parent = new ParentInfo(node, parentPath);
+                this.__parentLink = new ParentLink(node, parentPath);
             }
         }
     }
 
     void unsetParent(Object parent) {
         synchronized (getRecordLock()) {
-            ParentInfo parent1 = getParent();
-            if (parent1 == null) {
+            DocumentNode documentNode = getParent();
+            if (documentNode == null) {
                 throw new IllegalStateException("currently no parent, expect parent:" + parent);
+            } else if (documentNode != parent) {
+                throw new IllegalStateException("currently parent incorrect, expect parent:"
+                        + parent + ", actual:" + documentNode);
             } else {
-                DocumentNode documentNode = parent1.getNode();
-                if (documentNode != null && documentNode != parent) {
-                    throw new IllegalStateException("currently parent incorrect, expect parent:"
-                            + parent + ", actual:" + documentNode);
-                } else {
-                    this.__parent = null;
-                }
+                this.__parentLink = null;
+            }
+        }
+    }
+
+    /**
+     * 解码时关联parent。节点是刚解码创建的，还没有被其他线程访问，所以不需要加锁
+     */
+    void initParent(DocumentNode node, String parentPath) {
+        if (this.__parentLink != null) {
+            throw new MultiParentException();
+        }
+        this.__parentLink = new ParentLink(node, parentPath);
+    }
+
+    /**
+     * 解码时字段值被替换，如果以前的值关联的是parent则取消关联
+     */
+    void detachParent(DocumentNode parent) {
+        if (getParent() == parent) {
+            this.__parentLink = null;
+        }
+    }
+
+    /**
+     * parent和当前文档在parent中的字段名，关联parent时创建，之后不再修改，取消关联时整个对象被移除。
+     * 并发读取到旧的关联的线程仍然可以用它计算出一致的路径。
+     */
+    private static final class ParentLink {
+        final DocumentNode parent;
+
+        final String property;
+
+        /**
+         * 缓存的当前文档路径，父文档的路径改变时重新创建。UpdatePath不可变，不需要volatile
+         */
+        UpdatePath path;
+
+        ParentLink(DocumentNode parent, String property) {
+            this.parent = parent;
+            this.property = property;
+        }
+
+        UpdatePath getPath() {
+            UpdatePath parentPath = parent.getPath();
+            UpdatePath p = path;
+            if (p == null || p.getParent() != parentPath) {
+                path = p = UpdatePath.of(parentPath, property);
             }
+            return p;
         }
     }
 
+    /**
+     * @return 此节点或上级节点是否正在记录更新
+     */
+    boolean isRecordingUpdate() {
+        if (hasEnableUpdateCollect()) {
+            return true;
+        }
+        DocumentNode parentNode = getParent();
+        return parentNode != null && parentNode.isRecordingUpdate();
+    }
+
+    /**
+     * 沿parent向上检查每一级缓存的路径，路径没有变化时不创建对象。
+     * 复杂度是节点深度，所以记录一次更新时只在开始调用一次，向上递归时使用路径的上级路径。
+     *
+     * @return 此节点在最上级文档中的路径，没有parent时返回null
+     */
+    @Nullable
+    UpdatePath getPath() {
+        ParentLink link = __parentLink;
+        return link == null ? null : link.getPath();
+    }
+
     /**
      * 记录此文档整个更新
      */
     void recordSelfAssign() {
-        ParentInfo parentInfo = getParent();
-        if (parentInfo != null) {
-            DocumentNode node = parentInfo.getNode();
-            if (node != null) {
-                node.recordFieldAssign(this, this, parentInfo.parentProperty);
-            }
+        ParentLink link = __parentLink;
+        if (link != null) {
+            UpdatePath path = link.getPath();
+            link.parent.recordPathAssign(this, this, path, path.getParent(), false);
         }
     }
 
@@ -312,10 +533,10 @@ public abstract class DocumentNode {
      *
      * @param arg           新的值
      * @param previousValue 以前的值
-     * @param path          路径
+     * @param fieldName     字段名
      */
-    void recordFieldAssign(Object arg, Object previousValue, String path) {
-        recordFieldAssign(arg, previousValue, path, false);
+    void recordFieldAssign(Object arg, Object previousValue, String fieldName) {
+        recordFieldAssign(arg, previousValue, fieldName, false);
     }
 
     /**
@@ -323,27 +544,37 @@ public abstract class DocumentNode {
      *
      * @param arg            新的值
      * @param previousValue  以前的值
-     * @param path           路径
+     * @param fieldName      字段名
      * @param setByListIndex 是否本次调用是list.set直接触发，如果是则生成根据元素下标更新的记录
      */
-    void recordFieldAssign(Object arg, Object previousValue, String path, boolean setByListIndex) {
-        if (__updateCollector.hasEnableUpdateCollect()) {
+    void recordFieldAssign(Object arg, Object previousValue, String fieldName, boolean setByListIndex) {
+        UpdatePath nodePath = getPath();
+        recordPathAssign(arg, previousValue, UpdatePath.of(nodePath, fieldName), nodePath, setByListIndex);
+    }
+
+    /**
+     * @param path     字段在最上级文档中的路径，在递归调用中不变，记录时转换为相对于记录根节点的路径
+     * @param nodePath 当前节点在最上级文档中的路径，是path的上级路径。向上递归时取它的上级路径，
+     *                 每次记录只在开始时计算一次节点路径，不需要在每一级重新遍历到最上级文档
+     */
+    private void recordPathAssign(Object arg, Object previousValue, UpdatePath path, @Nullable UpdatePath nodePath,
+                                  boolean setByListIndex) {
+        SyncMongoUpdateCollector updateCollector = enabledUpdateCollector();
+        if (updateCollector != null) {
+            UpdatePath relativePath = path.relativeTo(nodePath);
             if (arg == null) {
-                __updateCollector.unsetField(path, previousValue);
+                updateCollector.unsetField(relativePath, previousValue);
             } else {
-                __updateCollector.setField(path, arg, previousValue);
+                updateCollector.setField(relativePath, arg, previousValue);
             }
         }
-        ParentInfo parentInfo = getParent();
-        if (parentInfo != null) {
-            DocumentNode parentNode = parentInfo.getNode();
-            if (parentNode != null) {
-                if (!setByListIndex && this instanceof Collection) {
-                    //Collection中不记录下级元素的路径，操作变成对collection的全部更新
-                    parentNode.recordFieldAssign(this, previousValue, parentInfo.parentProperty);
-                } else {
-                    parentNode.recordFieldAssign(arg, previousValue, getConcatPath(parentInfo.parentProperty, path));
-                }
+        DocumentNode parentNode = getParent();
+        if (parentNode != null && nodePath != null) {
+            if (!setByListIndex && this instanceof Collection) {
+                //Collection中不记录下级元素的路径，操作变成对collection的全部更新
+                parentNode.recordPathAssign(this, previousValue, nodePath, nodePath.getParent(), false);
+            } else {
+                parentNode.recordPathAssign(arg, previousValue, path, nodePath.getParent(), false);
             }
         }
     }
@@ -351,31 +582,35 @@ public abstract class DocumentNode {
     /**
      * 记录Collection容器操作
      *
-     * @param updateCollectorConsumer 第二个参数是path，path在递归调用中被拼接
+     * @param updateCollectorConsumer 第二个参数是容器相对于记录根节点的路径
      */
-    void recordCollectionOp(BiConsumer<MongoUpdateCollector, String> updateCollectorConsumer) {
-        recordCollectionOp0("", updateCollectorConsumer, true);
+    void recordCollectionOp(BiConsumer<MongoUpdateCollector, UpdatePath> updateCollectorConsumer) {
+        if (hasEnableUpdateCollect()) {
+            throw new IllegalStateException("collection cannot as root");
+        }
+        ParentLink link = __parentLink;
+        if (link != null) {
+            UpdatePath path = link.getPath();
+            link.parent.recordCollectionOp0(path, path.getParent(), updateCollectorConsumer);
+        }
     }
 
-    private void recordCollectionOp0(String path, BiConsumer<MongoUpdateCollector, String> updateCollectorConsumer,
-                                     boolean isStart) {
-        if (__updateCollector.hasEnableUpdateCollect()) {
-            if (path.isEmpty()) {
-                throw new IllegalStateException("collection cannot as root");
-            }
-            updateCollectorConsumer.accept(__updateCollector, path);
-        }
-        ParentInfo parentInfo = getParent();
-        if (parentInfo != null) {
-            DocumentNode parentNode = parentInfo.getNode();
-            if (parentNode != null) {
-                if (this instanceof Collection && !isStart) {
-                    //Collection中不记录下级元素的路径，操作变成对collection的全部更新
-                    parentNode.recordFieldAssign(this, this, parentInfo.parentProperty);
-                } else {
-                    parentNode.recordCollectionOp0(getConcatPath(parentInfo.parentProperty, path),
-                            updateCollectorConsumer, false);
-                }
+    /**
+     * @param nodePath 当前节点在最上级文档中的路径，参考 {@link #recordPathAssign}
+     */
+    private void recordCollectionOp0(UpdatePath path, @Nullable UpdatePath nodePath,
+                                     BiConsumer<MongoUpdateCollector, UpdatePath> updateCollectorConsumer) {
+        SyncMongoUpdateCollector updateCollector = enabledUpdateCollector();
+        if (updateCollector != null) {
+            updateCollectorConsumer.accept(updateCollector, path.relativeTo(nodePath));
+        }
+        DocumentNode parentNode = getParent();
+        if (parentNode != null && nodePath != null) {
+            if (this instanceof Collection) {
+                //Collection中不记录下级元素的路径，操作变成对collection的全部更新
+                parentNode.recordPathAssign(this, this, nodePath, nodePath.getParent(), false);
+            } else {
+                parentNode.recordCollectionOp0(path, nodePath.getParent(), updateCollectorConsumer);
             }
         }
     }
@@ -389,19 +624,35 @@ public abstract class DocumentNode {
     @Nullable
     @BsonIgnore
     Bson getUpdateRecord(boolean clear) {
-        if (!hasEnableUpdateCollect()) {
+        return getUpdateRecord(clear, null);
+    }
+
+    /**
+     * 获取更新记录
+     *
+     * @param clear        是否清空记录
+     * @param excludePaths 排除的路径，为null时不排除
+     */
+    @Nullable
+    @BsonIgnore
+    Bson getUpdateRecord(boolean clear, @Nullable Set<String> excludePaths) {
+        SyncMongoUpdateCollector updateCollector = enabledUpdateCollector();
+        if (updateCollector == null) {
             return null;
         }
+        return updateCollector.getUpdate(excludePaths, clear);
+    }
+
+    /**
+     * 在没有其他线程记录更新的情况下执行action，参考 {@link SyncMongoUpdateCollector#callExclusively}
+     */
+    <T> T callWithRecordLocked(Supplier<T> action) {
+        SyncMongoUpdateCollector updateCollector = __updateCollector;
+        if (updateCollector != null) {
+            return updateCollector.callExclusively(action);
+        }
         synchronized (getRecordLock()) {
-            SyncMongoUpdateCollector updateCollector = __updateCollector;
-            if (updateCollector == null) {
-                return null;
-            }
-            Bson bson = updateCollector.getUpdate();
-            if (clear) {
-                updateCollector.clearUpdate();
-            }
-            return bson;
+            return action.get();
         }
     }
 
@@ -415,43 +666,10 @@ public abstract class DocumentNode {
     @Nullable
     @BsonIgnore
     public MongoUpdateCollector.MongoUpdate getMongoUpdate() { //TODO 测试
-        if (!hasEnableUpdateCollect()) {
+        SyncMongoUpdateCollector updateCollector = enabledUpdateCollector();
+        if (updateCollector == null) {
             return null;
         }
-        synchronized (getRecordLock()) {
-            return __updateCollector.getMongoUpdate();
-        }
-    }
-
-    private static class ParentInfo {
-        final WeakReference<DocumentNode> node;
-        //当前文档是父文档的哪个字段
-        final String parentProperty;
-
-        ParentInfo(DocumentNode node, String parentProperty) {
-            this.node = new WeakReference<>(node);
-            this.parentProperty = parentProperty;
-        }
-
-        DocumentNode getNode() {
-            return node.get();
-        }
-    }
-
-    private static String getConcatPath(String parent, String fieldName) {
-        if (isNullOrEmpty(parent) && isNullOrEmpty(fieldName)) {
-            return "";
-        }
-        if (isNullOrEmpty(parent)) {
-            return fieldName;
-        }
-        if (isNullOrEmpty(fieldName)) {
-            return parent;
-        }
-        return parent + "." + fieldName;
-    }
-
-    private static boolean isNullOrEmpty(String s) {
-        return s == null || s.isEmpty();
+        return updateCollector.getMongoUpdate();
     }
 }
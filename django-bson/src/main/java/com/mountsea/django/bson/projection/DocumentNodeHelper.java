@@ -25,6 +25,9 @@ package com.mountsea.django.bson.projection;
 
 import org.bson.conversions.Bson;
 
+import java.util.Set;
+import java.util.function.Supplier;
+
 /**
  * {@link DocumentNode} 的有些方法需要暴露给特定的类，但是又不适合用protect或public，
  * 所以通过此类暴露 {@link DocumentNode} 的包私有方法。
@@ -54,9 +57,25 @@ public class DocumentNodeHelper {
         return documentNode.getUpdateRecord(clear);
     }
 
+    public static Bson getUpdateRecord(DocumentNode documentNode, boolean clear, Set<String> excludePaths) {
+        return documentNode.getUpdateRecord(clear, excludePaths);
+    }
+
     public static void clearUpdateCollector(DocumentNode documentNode) {
         documentNode.clearUpdateCollector();
     }
 
+    public static <T> T callWithRecordLocked(DocumentNode documentNode, Supplier<T> action) {
+        return documentNode.callWithRecordLocked(action);
+    }
+
+    public static void initParent(DocumentNode documentNode, DocumentNode parent, String parentPath) {
+        documentNode.initParent(parent, parentPath);
+    }
+
+    public static void detachParent(DocumentNode documentNode, DocumentNode parent) {
+        documentNode.detachParent(parent);
+    }
+
 
 }
@@ -0,0 +1,166 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import com.mountsea.django.bson.projection.dtbson.DtBsonArray;
+import com.mountsea.django.bson.projection.dtbson.DtBsonDocument;
+import com.mountsea.django.bson.projection.pojo.GlobalModels;
+import org.apache.commons.lang3.ClassUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 代理类中一个setter的更新记录逻辑，和代理类的生成方式无关。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+class DocumentSetterRecorder {
+
+    /**
+     * 调用被代理的原始setter
+     */
+    @FunctionalInterface
+    interface SuperSetter {
+        Object invoke() throws Throwable;
+    }
+
+    private final Method setter;
+
+    private final Field field;
+
+    private final boolean isImmutableType;
+
+    private final boolean isDtBsonValueType;
+
+    private final String name;
+
+    DocumentSetterRecorder(Method setter, Field field, boolean isImmutableType, boolean isDtBsonValueType, String name) {
+        this.setter = setter;
+        this.field = field;
+        this.isImmutableType = isImmutableType;
+        this.isDtBsonValueType = isDtBsonValueType;
+        this.name = name;
+    }
+
+    Method getSetter() {
+        return setter;
+    }
+
+    /**
+     * 字段是基础类型时，参数不会是DocumentNode，也不需要检查类型
+     */
+    boolean isPrimitive() {
+        return field.getType().isPrimitive();
+    }
+
+    Object setAndRecord(DocumentNode receiverDocument, Object arg, SuperSetter superSetter) throws Throwable {
+        boolean argImmutable = isImmutableObject(arg);
+
+        if (!isActualArgsCorrect(arg)) {
+            throw new IllegalArgumentException("Parameter type and field type are inconsistent");
+        }
+
+        //加锁保证多线程对同一文档的同一字段赋值时，字段的最终值和根文档的更新记录是一致的
+        //此过程只加锁了receiverDocument，如果receiverDocument的parent在此期间被set/unset，最终
+        //记录的是路径更短的parent的更新，receiverDocument的更新变成了无关的，所以不会导致问题
+        synchronized (receiverDocument.getRecordLock()) {
+            if (!argImmutable) {
+                //由于arg可能并发的关联到其他parent，这个关联只能成功一次，所以先关联成功后再调用setter
+                ((DocumentNode) arg).setParent(receiverDocument, name);
+            }
+
+            Object previous = field.get(receiverDocument);
+
+            //假设setter和getter的实现都是简单的，里面不会去对别的对象加锁，所以不会产生死锁
+            Object r = null;
+            try {
+                r = superSetter.invoke();
+            } catch (Throwable throwable) {
+                //setter抛出异常
+                if (!argImmutable) {
+                    ((DocumentNode) arg).unsetParent(receiverDocument);
+                }
+                throw throwable;
+            }
+
+            //set成功后，取消以前字段值的parent
+            boolean previousImmutable = isImmutableObject(previous);
+            if (!previousImmutable) {
+                ((DocumentNode) previous).unsetParent(receiverDocument);
+            }
+
+            receiverDocument.recordFieldAssign(arg, previous, name);
+            return r;
+        }
+    }
+
+    /**
+     * 基础类型字段的setter，没有记录更新时不读取字段，参数不需要装箱
+     */
+    Object setPrimitiveAndRecord(DocumentNode receiverDocument, SuperSetter superSetter) throws Throwable {
+        synchronized (receiverDocument.getRecordLock()) {
+            if (!receiverDocument.isRecordingUpdate()) {
+                return superSetter.invoke();
+            }
+            Object previous = field.get(receiverDocument);
+            Object r = superSetter.invoke();
+            receiverDocument.recordFieldAssign(field.get(receiverDocument), previous, name);
+            return r;
+        }
+    }
+
+    private boolean isImmutableObject(Object obj) {
+        if (obj == null) {
+            return true;
+        } else if (isDtBsonValueType) {
+            return !(obj instanceof DtBsonDocument || obj instanceof DtBsonArray);
+        } else {
+            return isImmutableType;
+        }
+    }
+
+    /**
+     * 对字段赋值时，对象的类型必须和字段类型一致，不能是字段的子类型，只有 DtBsonValue类型的字段除外
+     */
+    private boolean isActualArgsCorrect(Object arg) {
+        if (arg == null) {
+            return true;
+        }
+        if (arg instanceof Enum) {
+            return true;
+        }
+        if (isDtBsonValueType) {
+            return field.getType().isInstance(arg);
+        }
+        if (ClassUtils.isPrimitiveOrWrapper(field.getType())) {
+            return ClassUtils.isAssignable(arg.getClass(), field.getType());
+        }
+        if (field.getType() != GlobalModels.getCGLibProxyRawClass(arg.getClass())) {
+            return false;
+        }
+        return true;
+    }
+}
@@ -43,9 +43,9 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * 更新记录结构类。
      * <p>
      * 更新记录的规则：
-     * 所有可用的操作符有 $set,$unset,$push(each),$pull(All),$addToSet(each)，其中$set/$unset是字段赋值操作，其他是数组操作。
+     * 所有可用的操作符有 $set,$unset,$push(each),$pull(All),$pop,$addToSet(each)，其中$set/$unset是字段赋值操作，其他是数组操作。
      * <p>
-     * 新旧记录路径相同时，新的字段赋值操作覆盖旧的任何操作，新的数组操作仅当和原有操作符相同时合并为批量操作，
+     * 新旧记录路径相同时，新的字段赋值操作覆盖旧的任何操作，新的数组操作仅当和原有操作符相同时合并为批量操作($pop不能合并)，
      * 否则数组操作变为对容器字段本身的$set操作.
      * <p>
      * 新旧记录路径不同但有重合时，保留路径更短的一个。同时如果保留的记录的操作符不是赋值，则改为赋值。
@@ -60,6 +60,11 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
         Map<String, List<Object>> getPull();
 
         Map<String, List<Object>> getAddToSet();
+
+        /**
+         * @return 路径 -> -1(移除第一个元素) 或 1(移除最后一个元素)
+         */
+        Map<String, Integer> getPop();
     }
 
     /**
@@ -76,7 +81,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param value the assigned value
      * @param previousValue the previous value
      */
-    void setField(String path, Object value, Object previousValue);
+    void setField(UpdatePath path, Object value, Object previousValue);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #setField(UpdatePath, Object, Object)}
+     */
+    default void setField(String path, Object value, Object previousValue) {
+        setField(UpdatePath.parse(path), value, previousValue);
+    }
 
     /**
      * $unset 操作
@@ -84,7 +96,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param path path
      * @param previousValue previous value
      */
-    void unsetField(String path, Object previousValue);
+    void unsetField(UpdatePath path, Object previousValue);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #unsetField(UpdatePath, Object)}
+     */
+    default void unsetField(String path, Object previousValue) {
+        unsetField(UpdatePath.parse(path), previousValue);
+    }
 
     /**
      * $push 操作
@@ -93,7 +112,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param value      操作元素
      */
-    void pushArrayValue(String path, Collection<?> collection, Object value);
+    void pushArrayValue(UpdatePath path, Collection<?> collection, Object value);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #pushArrayValue(UpdatePath, Collection, Object)}
+     */
+    default void pushArrayValue(String path, Collection<?> collection, Object value) {
+        pushArrayValue(UpdatePath.parse(path), collection, value);
+    }
 
     /**
      * $push 操作. 批量添加
@@ -102,7 +128,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param values     操作元素
      */
-    void pushArrayValueBatch(String path, Collection<?> collection, Collection<?> values);
+    void pushArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #pushArrayValueBatch(UpdatePath, Collection, Collection)}
+     */
+    default void pushArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+        pushArrayValueBatch(UpdatePath.parse(path), collection, values);
+    }
 
     /**
      * $pull 操作
@@ -111,7 +144,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param value      操作元素
      */
-    void pullArrayValue(String path, Collection<?> collection, Object value);
+    void pullArrayValue(UpdatePath path, Collection<?> collection, Object value);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #pullArrayValue(UpdatePath, Collection, Object)}
+     */
+    default void pullArrayValue(String path, Collection<?> collection, Object value) {
+        pullArrayValue(UpdatePath.parse(path), collection, value);
+    }
 
     /**
      * $pull 操作. 批量添加
@@ -120,7 +160,49 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param values     操作元素
      */
-    void pullArrayValueBatch(String path, Collection<?> collection, Collection<?> values);
+    void pullArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #pullArrayValueBatch(UpdatePath, Collection, Collection)}
+     */
+    default void pullArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+        pullArrayValueBatch(UpdatePath.parse(path), collection, values);
+    }
+
+    /**
+     * $pop 操作
+     *
+     * @param path       容器路径
+     * @param collection 容器对象
+     * @param first      true时移除第一个元素，false时移除最后一个元素
+     */
+    void popArrayValue(UpdatePath path, Collection<?> collection, boolean first);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #popArrayValue(UpdatePath, Collection, boolean)}
+     */
+    default void popArrayValue(String path, Collection<?> collection, boolean first) {
+        popArrayValue(UpdatePath.parse(path), collection, first);
+    }
+
+    /**
+     * 从list中移除一个元素后调用，由实现选择代价最小的操作：$pop, $pull 或者对list本身的 $set
+     *
+     * @param path  list路径
+     * @param list  已经移除了元素的list
+     * @param index 被移除元素原来的位置，未知时为-1
+     * @param value 被移除的元素
+     */
+    void removeListValue(UpdatePath path, List<?> list, int index, Object value);
+
+    /**
+     * 从list中移除多个元素后调用，由实现选择 $pull 或者对list本身的 $set
+     *
+     * @param path   list路径
+     * @param list   已经移除了元素的list
+     * @param values 被移除的元素
+     */
+    void removeListValueBatch(UpdatePath path, List<?> list, Collection<?> values);
 
     /**
      * $addToSet 操作
@@ -129,7 +211,14 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param value      操作元素
      */
-    void addToSetArrayValue(String path, Collection<?> collection, Object value);
+    void addToSetArrayValue(UpdatePath path, Collection<?> collection, Object value);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #addToSetArrayValue(UpdatePath, Collection, Object)}
+     */
+    default void addToSetArrayValue(String path, Collection<?> collection, Object value) {
+        addToSetArrayValue(UpdatePath.parse(path), collection, value);
+    }
 
     /**
      * $addToSet 操作. 批量添加
@@ -138,6 +227,13 @@ public interface MongoUpdateCollector extends BasicUpdateCollector<Bson> {
      * @param collection 容器对象
      * @param values     操作元素
      */
-    void addToSetArrayValueBatch(String path, Collection<?> collection, Collection<?> values);
+    void addToSetArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values);
+
+    /**
+     * 以'.'分隔的路径字符串调用 {@link #addToSetArrayValueBatch(UpdatePath, Collection, Collection)}
+     */
+    default void addToSetArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+        addToSetArrayValueBatch(UpdatePath.parse(path), collection, values);
+    }
 
 }
@@ -23,7 +23,7 @@
  */
 package com.mountsea.django.bson.projection;
 
-import com.mongodb.client.model.Updates;
+import com.mountsea.django.bson.KnownTypes;
 import com.mountsea.django.bson.util.InternalUtils;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -32,7 +32,6 @@ import org.bson.conversions.Bson;
 
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * @author guch
@@ -48,12 +47,14 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
      * set/unset覆盖push/pull且不能被反覆盖
      * 两个push相互叠加，变为pushEach
      * push与pull叠加，变成set
+     * pop不能叠加，两个pop也变成set
      */
     public enum Op {
         $set,
         $unset, // 生成的bson中, unset的字段名对应value为空字符串
         $push,
         $pull,
+        $pop, // elementValues中只有一个元素，-1表示移除第一个元素，1表示移除最后一个元素
         $addToSet,
         ;
 
@@ -64,7 +65,7 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
 
     static class UpdateRecord {
         private Op op;
-        private String path;
+        private UpdatePath path;
 
         /**
          * set时是赋值对象, unset时是null, pull和push时是容器对象
@@ -72,42 +73,31 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
         private Object fieldValue;
 
         /**
-         * pull和push时是被操作的元素
+         * pull和push时是被操作的元素，pop时是-1或1
          */
         private List<Object> elementValues;
 
-        Bson toBson() {
-            Bson bson = null;
-            switch (op) {
-                case $set:
-                    bson = Updates.set(path, fieldValue);
-                    break;
-                case $unset:
-                    bson = Updates.unset(path);
-                    break;
-                case $push:
-                    if (elementValues.size() == 1) {
-                        bson = Updates.push(path, elementValues.get(0));
-                    } else {
-                        bson = Updates.pushEach(path, elementValues);
-                    }
-                    break;
-                case $pull:
-                    if (elementValues.size() == 1) {
-                        bson = Updates.pull(path, elementValues.get(0));
-                    } else {
-                        bson = Updates.pullAll(path, elementValues);
-                    }
-                    break;
-                case $addToSet:
-                    if (elementValues.size() == 1) {
-                        bson = Updates.addToSet(path, elementValues.get(0));
-                    } else {
-                        bson = Updates.addEachToSet(path, elementValues);
-                    }
-                    break;
+        /**
+         * 按添加顺序链接的前后记录
+         */
+        private UpdateRecord prev;
+
+        private UpdateRecord next;
+
+        /**
+         * 是否已经被 {@link #getUpdate()} 生成的Bson引用，被引用后不能再修改elementValues
+         */
+        private boolean published;
+
+        /**
+         * @return 可修改的elementValues
+         */
+        List<Object> getMutableElementValues() {
+            if (published) {
+                elementValues = new ArrayList<>(elementValues);
+                published = false;
             }
-            return bson;
+            return elementValues;
         }
 
         public Op getOp() {
@@ -118,11 +108,11 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
             this.op = op;
         }
 
-        public String getPath() {
+        public UpdatePath getPath() {
             return path;
         }
 
-        public void setPath(String path) {
+        public void setPath(UpdatePath path) {
             this.path = path;
         }
 
@@ -142,7 +132,7 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
             this.elementValues = elementValues;
         }
 
-        public UpdateRecord(Op op, String path, Object fieldValue) {
+        public UpdateRecord(Op op, UpdatePath path, Object fieldValue) {
             this.op = op;
             this.path = path;
             this.fieldValue = fieldValue;
@@ -150,13 +140,47 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
 
     }
 
-    List<UpdateRecord> list;
+    /**
+     * 按路径索引的记录，任意两条记录的路径互不重合
+     */
+    private UpdatePathTrie trie;
+
+    /**
+     * 按添加顺序链接的记录
+     */
+    private UpdateRecord head;
+
+    private UpdateRecord tail;
+
+    private int size;
 
-    private List<UpdateRecord> getList() {
-        if (list == null) {
-            list = new LinkedList<>();
+    private void link(UpdateRecord updateRecord) {
+        updateRecord.prev = tail;
+        updateRecord.next = null;
+        if (tail == null) {
+            head = updateRecord;
+        } else {
+            tail.next = updateRecord;
         }
-        return list;
+        tail = updateRecord;
+        size++;
+    }
+
+    private void unlink(UpdateRecord updateRecord) {
+        UpdateRecord prev = updateRecord.prev;
+        UpdateRecord next = updateRecord.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        updateRecord.prev = updateRecord.next = null;
+        size--;
     }
 
     /**
@@ -167,13 +191,13 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
      * @param isShortFirst 是否shortPath上的操作先被添加
      */
     private void onMergeOp(UpdateRecord shortPath, UpdateRecord longPath, boolean isShortFirst) {
-        if (shortPath.getPath().length() == longPath.getPath().length() &&
-                shortPath.getOp() == longPath.getOp() && !shortPath.getOp().isAssign()) {
+        if (shortPath.getPath().getDepth() == longPath.getPath().getDepth() &&
+                shortPath.getOp() == longPath.getOp() && !shortPath.getOp().isAssign() && shortPath.getOp() != Op.$pop) {
             // 是相同的数组操作, 且路径一样, 合并为each..
             if (isShortFirst) {
-                shortPath.getElementValues().addAll(longPath.getElementValues());
+                shortPath.getMutableElementValues().addAll(longPath.getElementValues());
             } else {
-                longPath.getElementValues().addAll(shortPath.getElementValues());
+                longPath.getMutableElementValues().addAll(shortPath.getElementValues());
                 shortPath.setElementValues(longPath.getElementValues()); // 替换List
             }
         } else {
@@ -184,91 +208,89 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
         }
     }
 
-
     public void add(UpdateRecord updateRecord) {
-        if (list == null) {
-            getList().add(updateRecord);
-            return;
+        if (trie == null) {
+            trie = new UpdatePathTrie();
         }
 
-        Iterator<UpdateRecord> iterator = list.iterator();
-        boolean isAdd = true;
-        while (iterator.hasNext()) {
-            UpdateRecord next = iterator.next();
-            if (InternalUtils.isEqOrSubPath(updateRecord.getPath(), next.path)) {
-                iterator.remove();
-                onMergeOp(updateRecord, next, false);
-                continue;
-            }
-            if (InternalUtils.isSubPath(next.path, updateRecord.getPath())) {
-                isAdd = false;
-                onMergeOp(next, updateRecord, true);
-                // 不会再存在路径重叠
-                break;
-            }
+        UpdatePathTrie.PathNode node = trie.getNodeOrCoveringNode(updateRecord.getPath());
+        UpdateRecord existing = node.record;
+        if (existing != null && existing.getPath().getDepth() < updateRecord.getPath().getDepth()) {
+            // 被上级路径的记录覆盖, 不会再存在路径重叠
+            onMergeOp(existing, updateRecord, true);
+            return;
         }
-        if (isAdd) {
-            list.add(updateRecord);
+        if (existing != null) {
+            unlink(existing);
+            onMergeOp(updateRecord, existing, false);
+        } else if (node.hasChildren()) {
+            node.removeDescendants(next -> {
+                unlink(next);
+                onMergeOp(updateRecord, next, false);
+            });
         }
+        node.record = updateRecord;
+        link(updateRecord);
     }
 
     @Nullable
     @Override
     public Bson getUpdate() {
-        if (list == null) {
+        if (head == null) {
             return null;
         }
-        return Updates.combine(list.stream()
-                .map(UpdateRecord::toBson).collect(Collectors.toList()));
+        CollectedUpdateBson bson = new CollectedUpdateBson(size);
+        appendTo(bson, null);
+        return bson;
     }
 
     @Nullable
     @Override
     public Bson getUpdate(Set<String> excludePaths) {
-        if (list == null) {
+        if (head == null) {
             return null;
         }
-        return Updates.combine(list.stream()
-                .filter(x -> !hasExclude(excludePaths, x.path))
-                .map(UpdateRecord::toBson).collect(Collectors.toList()));
+        CollectedUpdateBson bson = new CollectedUpdateBson(size);
+        appendTo(bson, excludePaths);
+        return bson;
+    }
+
+    /**
+     * @return 当前的记录数
+     */
+    int getRecordCount() {
+        return size;
+    }
+
+    /**
+     * 把全部记录按添加顺序加入bson，用于合并多个记录器的更新
+     *
+     * @param excludePaths 排除的路径，为null时不排除
+     */
+    void appendTo(CollectedUpdateBson bson, @Nullable Set<String> excludePaths) {
+        for (UpdateRecord updateRecord = head; updateRecord != null; updateRecord = updateRecord.next) {
+            if (excludePaths == null || !hasExclude(excludePaths, updateRecord.path.toString())) {
+                bson.add(updateRecord.op, updateRecord.path, updateRecord.fieldValue, updateRecord.elementValues);
+                updateRecord.published = true;
+            }
+        }
     }
 
     @Override
     @Nullable
     public MongoUpdate getMongoUpdate() {
-        if (list == null) {
+        if (head == null) {
             return null;
         }
+        MongoUpdateBuilder builder = new MongoUpdateBuilder();
+        appendTo(builder);
+        return builder.build();
+    }
 
-        Map<String, Object> set = null;
-        Set<String> unset = null;
-        Map<String, List<Object>> push = null;
-        Map<String, List<Object>> pull = null;
-        Map<String, List<Object>> addToSet = null;
-        for (UpdateRecord updateRecord : list) {
-            switch (updateRecord.op) {
-                case $set:
-                    (set == null ? set = new HashMap<>() : set).put(updateRecord.path, updateRecord.fieldValue);
-                    break;
-                case $unset:
-                    (unset == null ? unset = new HashSet<>() : unset).add(updateRecord.path);
-                    break;
-                case $push:
-                    (push == null ? push = new HashMap<>() : push).put(updateRecord.path, updateRecord.elementValues);
-                    break;
-                case $pull:
-                    (pull == null ? pull = new HashMap<>() : pull).put(updateRecord.path, updateRecord.elementValues);
-                    break;
-                case $addToSet:
-                    (addToSet == null ? addToSet = new HashMap<>() : addToSet).put(updateRecord.path, updateRecord.elementValues);
-                    break;
-            }
+    void appendTo(MongoUpdateBuilder builder) {
+        for (UpdateRecord updateRecord = head; updateRecord != null; updateRecord = updateRecord.next) {
+            builder.add(updateRecord);
         }
-        return new MongoUpdateImpl(set == null ? Collections.emptyMap() : set,
-                unset == null ? Collections.emptySet() : unset,
-                push == null ? Collections.emptyMap() : push,
-                pull == null ? Collections.emptyMap() : pull,
-                addToSet == null ? Collections.emptyMap() : addToSet);
     }
 
     private boolean hasExclude(Set<String> excludePaths, String path) {
@@ -282,10 +304,12 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
 
     @Override
     public void clearUpdate() {
-        list = null;
+        trie = null;
+        head = tail = null;
+        size = 0;
     }
 
-    protected void recordUpdate(Op op, String path, Object fieldValue, Object previousValue,
+    protected void recordUpdate(Op op, UpdatePath path, Object fieldValue, Object previousValue,
                                 boolean collectionBatchOp, Object collectionOpValue, Collection<?> collectionBatchOpValues) {
         if (!op.isAssign() && fieldValue == null) throw new IllegalArgumentException();
         if (collectionBatchOp && collectionBatchOpValues == null) throw new IllegalArgumentException();
@@ -304,53 +328,203 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
     }
 
     @Override
-    public void setField(String path, Object value, Object previousValue) {
+    public void setField(UpdatePath path, Object value, Object previousValue) {
         recordUpdate(Op.$set, path, value, previousValue,
                 false, null, null);
     }
 
     @Override
-    public void unsetField(String path, Object previousValue) {
+    public void unsetField(UpdatePath path, Object previousValue) {
         recordUpdate(Op.$unset, path, null, previousValue,
                 false, null, null);
     }
 
     @Override
-    public void pushArrayValue(String path, Collection<?> collection, Object value) {
+    public void pushArrayValue(UpdatePath path, Collection<?> collection, Object value) {
         recordUpdate(Op.$push, path, collection, collection,
                 false, value, null);
     }
 
     @Override
-    public void pushArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+    public void pushArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values) {
         recordUpdate(Op.$push, path, collection, collection,
                 true, null, values);
     }
 
     @Override
-    public void pullArrayValue(String path, Collection<?> collection, Object value) {
+    public void pullArrayValue(UpdatePath path, Collection<?> collection, Object value) {
         recordUpdate(Op.$pull, path, collection, collection,
                 false, value, null);
     }
 
     @Override
-    public void pullArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+    public void pullArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values) {
         recordUpdate(Op.$pull, path, collection, collection,
                 true, null, values);
     }
 
     @Override
-    public void addToSetArrayValue(String path, Collection<?> collection, Object value) {
+    public void popArrayValue(UpdatePath path, Collection<?> collection, boolean first) {
+        recordUpdate(Op.$pop, path, collection, collection,
+                false, first ? -1 : 1, null);
+    }
+
+    @Override
+    public void removeListValue(UpdatePath path, List<?> list, int index, Object value) {
+        switch (chooseRemoveOp(path, list, index, value, null)) {
+            case $pop:
+                popArrayValue(path, list, index == 0);
+                break;
+            case $pull:
+                pullArrayValue(path, list, value);
+                break;
+            default:
+                setField(path, list, list);
+        }
+    }
+
+    @Override
+    public void removeListValueBatch(UpdatePath path, List<?> list, Collection<?> values) {
+        if (chooseRemoveOp(path, list, -1, null, values) == Op.$pull) {
+            pullArrayValueBatch(path, list, values);
+        } else {
+            setField(path, list, list);
+        }
+    }
+
+    /**
+     * 移除list元素时的代价模型，按顺序选择:
+     * <ol>
+     * <li>路径上已有记录(可以合并的$pull除外)，或者被上级路径的记录覆盖时，一次更新中同一字段不能使用多个操作符，
+     * 合并的结果一定是$set，直接返回$set，省去后面的检查</li>
+     * <li>list已经为空时，$set空数组和其他操作一样小，并且是幂等的，后续的操作也都能合并到$set中</li>
+     * <li>移除第一个或最后一个元素时用$pop，操作数只有一个数字</li>
+     * <li>移除的元素都是不可变的简单类型，并且list中没有剩下和它们相等的元素时用$pull。需要遍历一次list，
+     * 但比编码整个list代价低</li>
+     * <li>其他情况$set整个list</li>
+     * </ol>
+     *
+     * @param index  移除单个元素时的位置，未知或者批量移除时为-1
+     * @param value  移除单个元素时的元素
+     * @param values 批量移除时的元素，移除单个元素时为null
+     * @return $set, $pop 或 $pull
+     */
+    protected Op chooseRemoveOp(UpdatePath path, List<?> list, int index, Object value, @Nullable Collection<?> values) {
+        if (trie != null) {
+            UpdatePathTrie.PathNode node = trie.getNodeOrCoveringNode(path);
+            UpdateRecord existing = node.record;
+            if (node.hasChildren() || (existing != null &&
+                    (existing.getOp() != Op.$pull || existing.getPath().getDepth() < path.getDepth()))) {
+                return Op.$set;
+            }
+            if (existing != null) {
+                // 只能和已有的$pull合并
+                return isPullable(list, value, values) ? Op.$pull : Op.$set;
+            }
+        }
+        if (list.isEmpty()) {
+            return Op.$set;
+        }
+        if (values == null && (index == 0 || (index > 0 && index == list.size()))) {
+            return Op.$pop;
+        }
+        return isPullable(list, value, values) ? Op.$pull : Op.$set;
+    }
+
+    private static boolean isPullable(List<?> list, Object value, @Nullable Collection<?> values) {
+        if (values == null) {
+            return isSimpleAndImmutable(value) && !containsEquivalent(list, value);
+        }
+        for (Object o : values) {
+            if (!isSimpleAndImmutable(o)) {
+                return false;
+            }
+        }
+        for (Object o : values) {
+            if (containsEquivalent(list, o)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSimpleAndImmutable(Object o) {
+        return o == null || KnownTypes.isSimpleAndImmutableType(o.getClass());
+    }
+
+    /**
+     * 按数据库的比较规则判断list中是否有和value相等的元素，$pull会移除所有相等的元素。
+     * 数字按数值比较 (数据库中1和1L, 1.0是相等的)
+     */
+    private static boolean containsEquivalent(List<?> list, Object value) {
+        for (Object o : list) {
+            if (Objects.equals(o, value)) {
+                return true;
+            }
+            if (o instanceof Number && value instanceof Number &&
+                    ((Number) o).doubleValue() == ((Number) value).doubleValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void addToSetArrayValue(UpdatePath path, Collection<?> collection, Object value) {
         recordUpdate(Op.$addToSet, path, collection, collection,
                 false, value, null);
     }
 
     @Override
-    public void addToSetArrayValueBatch(String path, Collection<?> collection, Collection<?> values) {
+    public void addToSetArrayValueBatch(UpdatePath path, Collection<?> collection, Collection<?> values) {
         recordUpdate(Op.$addToSet, path, collection, collection,
                 true, null, values);
     }
 
+    /**
+     * 按操作符分组生成 {@link MongoUpdate}
+     */
+    static final class MongoUpdateBuilder {
+        private Map<String, Object> set;
+        private Set<String> unset;
+        private Map<String, List<Object>> push;
+        private Map<String, List<Object>> pull;
+        private Map<String, List<Object>> addToSet;
+        private Map<String, Integer> pop;
+
+        void add(UpdateRecord updateRecord) {
+            switch (updateRecord.op) {
+                case $set:
+                    (set == null ? set = new HashMap<>() : set).put(updateRecord.path.toString(), updateRecord.fieldValue);
+                    break;
+                case $unset:
+                    (unset == null ? unset = new HashSet<>() : unset).add(updateRecord.path.toString());
+                    break;
+                case $push:
+                    (push == null ? push = new HashMap<>() : push).put(updateRecord.path.toString(), updateRecord.elementValues);
+                    break;
+                case $pull:
+                    (pull == null ? pull = new HashMap<>() : pull).put(updateRecord.path.toString(), updateRecord.elementValues);
+                    break;
+                case $addToSet:
+                    (addToSet == null ? addToSet = new HashMap<>() : addToSet).put(updateRecord.path.toString(), updateRecord.elementValues);
+                    break;
+                case $pop:
+                    (pop == null ? pop = new HashMap<>() : pop).put(updateRecord.path.toString(), (Integer) updateRecord.elementValues.get(0));
+                    break;
+            }
+        }
+
+        MongoUpdate build() {
+            return new MongoUpdateImpl(set == null ? Collections.emptyMap() : set,
+                    unset == null ? Collections.emptySet() : unset,
+                    push == null ? Collections.emptyMap() : push,
+                    pull == null ? Collections.emptyMap() : pull,
+                    addToSet == null ? Collections.emptyMap() : addToSet,
+                    pop == null ? Collections.emptyMap() : pop);
+        }
+    }
+
     @Getter
     @ToString
     @AllArgsConstructor
@@ -365,5 +539,7 @@ public class MongoUpdateCollectorImpl implements MongoUpdateCollector {
         private final Map<String, List<Object>> pull;
 
         private final Map<String, List<Object>> addToSet;
+
+        private final Map<String, Integer> pop;
     }
 }
@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 原生类型容器 {@link PrimitiveDocumentList} 和 {@link PrimitiveKeyDocumentMap} 的编解码，
+ * 直接调用 {@link BsonWriter}/{@link BsonReader} 的数值读写方法，不经过元素codec，也不装箱。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public class PrimitiveContainerCodecProvider implements CodecProvider {
+
+    private static final Map<Class<?>, PrimitiveContainerCodec<?>> CODECS = new HashMap<>();
+
+    static {
+        addCodec(new PrimitiveListCodec<>(DocumentIntList.class, DocumentIntList::new));
+        addCodec(new PrimitiveListCodec<>(DocumentLongList.class, DocumentLongList::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentIntIntMap.class, DocumentIntIntMap::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentIntLongMap.class, DocumentIntLongMap::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentIntDoubleMap.class, DocumentIntDoubleMap::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentLongIntMap.class, DocumentLongIntMap::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentLongLongMap.class, DocumentLongLongMap::new));
+        addCodec(new PrimitiveMapCodec<>(DocumentLongDoubleMap.class, DocumentLongDoubleMap::new));
+    }
+
+    private static void addCodec(PrimitiveContainerCodec<?> codec) {
+        CODECS.put(codec.getEncoderClass(), codec);
+    }
+
+    /**
+     * @return 原生类型容器的codec，不是原生类型容器时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PrimitiveContainerCodec<T> getCodec(Class<T> clazz) {
+        return (PrimitiveContainerCodec<T>) CODECS.get(clazz);
+    }
+
+    @Override
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        return getCodec(clazz);
+    }
+
+    /**
+     * 原生类型容器的codec，同时提供空容器的创建
+     */
+    public abstract static class PrimitiveContainerCodec<T> implements Codec<T> {
+        private final Class<T> encoderClass;
+
+        private final Supplier<T> instanceCreator;
+
+        PrimitiveContainerCodec(Class<T> encoderClass, Supplier<T> instanceCreator) {
+            this.encoderClass = encoderClass;
+            this.instanceCreator = instanceCreator;
+        }
+
+        public T createInstance() {
+            return instanceCreator.get();
+        }
+
+        @Override
+        public Class<T> getEncoderClass() {
+            return encoderClass;
+        }
+    }
+
+    private static class PrimitiveListCodec<T extends PrimitiveDocumentList> extends PrimitiveContainerCodec<T> {
+
+        PrimitiveListCodec(Class<T> encoderClass, Supplier<T> instanceCreator) {
+            super(encoderClass, instanceCreator);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+            PrimitiveKind kind = value.getKind();
+            writer.writeStartArray();
+            for (int i = 0, size = value.size(); i < size; i++) {
+                kind.write(writer, value.elementAt(i));
+            }
+            writer.writeEndArray();
+        }
+
+        @Override
+        public T decode(BsonReader reader, DecoderContext decoderContext) {
+            T list = createInstance();
+            PrimitiveKind kind = list.getKind();
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                list.appendElement(kind.read(reader));
+            }
+            reader.readEndArray();
+            return list;
+        }
+    }
+
+    private static class PrimitiveMapCodec<T extends PrimitiveKeyDocumentMap> extends PrimitiveContainerCodec<T> {
+
+        PrimitiveMapCodec(Class<T> encoderClass, Supplier<T> instanceCreator) {
+            super(encoderClass, instanceCreator);
+        }
+
+        @Override
+        public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+            PrimitiveKind valueKind = value.getValueKind();
+            writer.writeStartDocument();
+            for (int slot = value.nextSlot(0); slot >= 0; slot = value.nextSlot(slot + 1)) {
+                writer.writeName(Long.toString(value.keyAt(slot)));
+                valueKind.write(writer, value.valueAt(slot));
+            }
+            writer.writeEndDocument();
+        }
+
+        @Override
+        public T decode(BsonReader reader, DecoderContext decoderContext) {
+            T map = createInstance();
+            PrimitiveKind keyKind = map.getKeyKind();
+            PrimitiveKind valueKind = map.getValueKind();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                long key = keyKind.parseKey(reader.readName());
+                map.putDecoded(key, valueKind.read(reader));
+            }
+            reader.readEndDocument();
+            return map;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用原生类型数组存储元素的list，元素不装箱。
+ * 修改时直接生成更新记录: 末尾添加为$push，按下标修改为$set数组元素，删除元素按代价模型选择$pop/$pull/$set，
+ * 其他结构变化为$set整个数组。
+ * 只有在关联到上级文档时才会为更新记录装箱元素。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@NotThreadSafe
+public abstract class PrimitiveDocumentList extends ContainerDocumentNode {
+
+    private final PrimitiveKind kind;
+
+    protected int size;
+
+    /**
+     * 元素数组是否和其他list共享，为true时修改前需要先复制数组。
+     * 写时复制的快照和原list共享数组，双方在第一次修改时各自复制
+     */
+    boolean shared;
+
+    private List<Object> view;
+
+    PrimitiveDocumentList(PrimitiveKind kind) {
+        this.kind = kind;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return 下标位置的元素，以long表示
+     */
+    abstract long elementAt(int index);
+
+    /**
+     * 解码时在末尾添加元素，不记录更新
+     */
+    abstract void appendElement(long value);
+
+    PrimitiveKind getKind() {
+        return kind;
+    }
+
+    /**
+     * 元素装箱后的只读视图，用于更新记录
+     */
+    List<Object> asList() {
+        List<Object> v = view;
+        if (v == null) {
+            view = v = new AbstractList<Object>() {
+                @Override
+                public Object get(int index) {
+                    checkIndex(index);
+                    return kind.box(elementAt(index));
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return v;
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    protected void checkPositionIndex(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * 记录在index位置添加了元素，在调用前需要已经完成添加
+     */
+    void recordAdd(int index, long value) {
+        if (getParent() == null) {
+            return;
+        }
+        if (index == size - 1) {
+            Object boxed = kind.box(value);
+            List<Object> list = asList();
+            recordCollectionOp((collector, path) -> collector.pushArrayValue(path, list, boxed));
+        } else {
+            recordSelfAssign();
+        }
+    }
+
+    /**
+     * 记录在末尾添加了count个元素，在调用前需要已经完成添加
+     */
+    void recordAppendAll(int count) {
+        if (getParent() == null || count == 0) {
+            return;
+        }
+        List<Object> list = asList();
+        List<Object> values = new ArrayList<>(list.subList(size - count, size));
+        recordCollectionOp((collector, path) -> collector.pushArrayValueBatch(path, list, values));
+    }
+
+    void recordSet(int index, long value, long previous) {
+        if (getParent() == null) {
+            return;
+        }
+        recordFieldAssign(kind.box(value), kind.box(previous), Integer.toString(index), true);
+    }
+
+    /**
+     * 记录移除了index位置的元素，在调用前需要已经完成移除
+     */
+    void recordRemoveAt(int index, long removed) {
+        if (getParent() == null) {
+            return;
+        }
+        Object boxed = kind.box(removed);
+        List<Object> list = asList();
+        recordCollectionOp((collector, path) -> collector.removeListValue(path, list, index, boxed));
+    }
+
+    void recordStructChange() {
+        if (getParent() == null) {
+            return;
+        }
+        recordSelfAssign();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PrimitiveDocumentList that = (PrimitiveDocumentList) o;
+        if (size != that.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (elementAt(i) != that.elementAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            long e = elementAt(i);
+            h = 31 * h + (int) (e ^ (e >>> 32));
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(elementAt(i));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+/**
+ * 原生类型key的Map，使用开放寻址(线性探测)的数组存储，key和value都不装箱。
+ * key和value在内部统一保存为long，double类型的value保存为 {@link Double#doubleToRawLongBits(double)}。
+ * key为0的entry单独保存在数组最后一个位置，数组其他位置的0表示空位置。
+ * <p>
+ * 在数据库中保存为document，字段名是key的十进制字符串，和 {@code DocumentMap<Integer, ?>} 的格式一致。
+ * put/remove直接生成对应字段的$set/$unset记录，不需要查找key到字符串的转换器。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@NotThreadSafe
+public abstract class PrimitiveKeyDocumentMap extends ContainerDocumentNode {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private final PrimitiveKind keyKind;
+
+    private final PrimitiveKind valueKind;
+
+    private long[] keys;
+
+    private long[] values;
+
+    private boolean containsZeroKey;
+
+    private int mask;
+
+    private int maxFill;
+
+    private int size;
+
+    /**
+     * keys和values是否和其他Map共享，为true时修改前需要先复制数组，参考 {@link #shareFrom}
+     */
+    private boolean shared;
+
+    PrimitiveKeyDocumentMap(PrimitiveKind keyKind, PrimitiveKind valueKind, int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        if (!keyKind.isKeySupported()) {
+            throw new IllegalArgumentException("Map key of " + keyKind.name().toLowerCase() + " is not supported");
+        }
+        this.keyKind = keyKind;
+        this.valueKind = valueKind;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        ensureExclusive();
+        Arrays.fill(keys, 0);
+        containsZeroKey = false;
+        size = 0;
+        if (getParent() != null) {
+            recordSelfAssign();
+        }
+    }
+
+    PrimitiveKind getKeyKind() {
+        return keyKind;
+    }
+
+    PrimitiveKind getValueKind() {
+        return valueKind;
+    }
+
+    /**
+     * @return key所在的位置，不存在时返回-1
+     */
+    int findSlot(long key) {
+        if (key == 0) {
+            return containsZeroKey ? mask + 1 : -1;
+        }
+        long[] keys = this.keys;
+        int pos = mix(key) & mask;
+        long k;
+        while ((k = keys[pos]) != 0) {
+            if (k == key) {
+                return pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 遍历用，返回from及之后第一个有entry的位置，没有时返回-1
+     */
+    int nextSlot(int from) {
+        long[] keys = this.keys;
+        for (int i = from; i <= mask; i++) {
+            if (keys[i] != 0) {
+                return i;
+            }
+        }
+        return from <= mask + 1 && containsZeroKey ? mask + 1 : -1;
+    }
+
+    long keyAt(int slot) {
+        return slot == mask + 1 ? 0 : keys[slot];
+    }
+
+    long valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * 修改已有entry的值
+     *
+     * @return 以前的值
+     */
+    long setValueAt(int slot, long value) {
+        ensureExclusive();
+        long previous = values[slot];
+        values[slot] = value;
+        if (getParent() != null) {
+            recordFieldAssign(valueKind.box(value), valueKind.box(previous), Long.toString(keyAt(slot)));
+        }
+        return previous;
+    }
+
+    /**
+     * @return 以前的值，没有时返回0
+     */
+    long putValue(long key, long value) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            return setValueAt(slot, value);
+        }
+        insert(key, value);
+        if (getParent() != null) {
+            recordFieldAssign(valueKind.box(value), null, Long.toString(key));
+        }
+        return 0;
+    }
+
+    /**
+     * @return 被移除的值，没有时返回0
+     */
+    long removeKey(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return 0;
+        }
+        ensureExclusive();
+        long previous = values[slot];
+        if (slot == mask + 1) {
+            containsZeroKey = false;
+        } else {
+            shiftKeys(slot);
+        }
+        size--;
+        if (getParent() != null) {
+            recordFieldAssign(null, valueKind.box(previous), Long.toString(key));
+        }
+        return previous;
+    }
+
+    /**
+     * 解码时添加entry，不记录更新
+     */
+    void putDecoded(long key, long value) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            ensureExclusive();
+            values[slot] = value;
+        } else {
+            insert(key, value);
+        }
+    }
+
+    /**
+     * 复制另一个相同类型Map的全部entry，用于deepCloneSelf
+     */
+    void copyFrom(PrimitiveKeyDocumentMap other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.containsZeroKey = other.containsZeroKey;
+        this.mask = other.mask;
+        this.maxFill = other.maxFill;
+        this.size = other.size;
+    }
+
+    /**
+     * 和另一个相同类型的Map共享数组，用于写时复制的快照。共享之后双方在第一次修改时各自复制数组
+     */
+    void shareFrom(PrimitiveKeyDocumentMap other) {
+        this.keys = other.keys;
+        this.values = other.values;
+        this.containsZeroKey = other.containsZeroKey;
+        this.mask = other.mask;
+        this.maxFill = other.maxFill;
+        this.size = other.size;
+        this.shared = true;
+        other.shared = true;
+    }
+
+    private void ensureExclusive() {
+        if (shared) {
+            keys = keys.clone();
+            values = values.clone();
+            shared = false;
+        }
+    }
+
+    private void insert(long key, long value) {
+        ensureExclusive();
+        if (key == 0) {
+            containsZeroKey = true;
+            values[mask + 1] = value;
+        } else {
+            long[] keys = this.keys;
+            int pos = mix(key) & mask;
+            while (keys[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+            values[pos] = value;
+        }
+        if (++size >= maxFill) {
+            rehash((mask + 1) << 1);
+        }
+    }
+
+    /**
+     * 删除pos位置的entry后，把后面同一探测序列上的entry向前移动，保证查找时不会提前遇到空位置
+     */
+    private void shiftKeys(int pos) {
+        long[] keys = this.keys;
+        long[] values = this.values;
+        int last;
+        long curr;
+        for (; ; ) {
+            pos = ((last = pos) + 1) & mask;
+            for (; ; ) {
+                if ((curr = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int slot = mix(curr) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = curr;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int oldCapacity = mask + 1;
+        allocate(newCapacity);
+        long[] keys = this.keys;
+        for (int i = 0; i < oldCapacity; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int pos = mix(key) & mask;
+                while (keys[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                keys[pos] = key;
+                values[pos] = oldValues[i];
+            }
+        }
+        values[newCapacity] = oldValues[oldCapacity];
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity + 1];
+        values = new long[capacity + 1];
+        shared = false;
+        mask = capacity - 1;
+        maxFill = Math.min((int) Math.ceil(capacity * LOAD_FACTOR), capacity - 1);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Too large expected size: " + expectedSize);
+            }
+        }
+        return capacity;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PrimitiveKeyDocumentMap that = (PrimitiveKeyDocumentMap) o;
+        if (size != that.size) {
+            return false;
+        }
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            int thatSlot = that.findSlot(keyAt(slot));
+            if (thatSlot < 0 || that.values[thatSlot] != values[slot]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            long key = keyAt(slot);
+            long value = values[slot];
+            h += (int) (key ^ (key >>> 32)) ^ (int) (value ^ (value >>> 32));
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder().append('{');
+        boolean first = true;
+        for (int slot = nextSlot(0); slot >= 0; slot = nextSlot(slot + 1)) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(keyAt(slot)).append('=').append(valueKind.box(values[slot]));
+        }
+        return sb.append('}').toString();
+    }
+}
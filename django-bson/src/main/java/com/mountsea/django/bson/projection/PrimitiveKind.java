@@ -0,0 +1,183 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+
+/**
+ * 原生类型容器的元素类型，负责元素在BSON中的读写和装箱。
+ * 容器内部统一用long保存元素，double使用 {@link Double#doubleToRawLongBits(double)} 转换。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+enum PrimitiveKind {
+    INT {
+        @Override
+        Object box(long bits) {
+            return (int) bits;
+        }
+
+        @Override
+        void write(BsonWriter writer, long bits) {
+            writer.writeInt32((int) bits);
+        }
+
+        @Override
+        long read(BsonReader reader) {
+            BsonType bsonType = reader.getCurrentBsonType();
+            switch (bsonType) {
+                case INT32:
+                    return reader.readInt32();
+                case INT64:
+                    long l = reader.readInt64();
+                    if (l != (int) l) {
+                        throw lossyConversion(l, this);
+                    }
+                    return l;
+                case DOUBLE:
+                    double d = reader.readDouble();
+                    if (d != (int) d) {
+                        throw lossyConversion(d, this);
+                    }
+                    return (int) d;
+                default:
+                    throw invalidType(bsonType, this);
+            }
+        }
+
+        @Override
+        long parseKey(String name) {
+            return Integer.parseInt(name);
+        }
+    },
+    LONG {
+        @Override
+        Object box(long bits) {
+            return bits;
+        }
+
+        @Override
+        void write(BsonWriter writer, long bits) {
+            writer.writeInt64(bits);
+        }
+
+        @Override
+        long read(BsonReader reader) {
+            BsonType bsonType = reader.getCurrentBsonType();
+            switch (bsonType) {
+                case INT32:
+                    return reader.readInt32();
+                case INT64:
+                    return reader.readInt64();
+                case DOUBLE:
+                    double d = reader.readDouble();
+                    if (d != (long) d) {
+                        throw lossyConversion(d, this);
+                    }
+                    return (long) d;
+                default:
+                    throw invalidType(bsonType, this);
+            }
+        }
+
+        @Override
+        long parseKey(String name) {
+            return Long.parseLong(name);
+        }
+    },
+    DOUBLE {
+        @Override
+        Object box(long bits) {
+            return Double.longBitsToDouble(bits);
+        }
+
+        @Override
+        void write(BsonWriter writer, long bits) {
+            writer.writeDouble(Double.longBitsToDouble(bits));
+        }
+
+        @Override
+        long read(BsonReader reader) {
+            BsonType bsonType = reader.getCurrentBsonType();
+            switch (bsonType) {
+                case INT32:
+                    return Double.doubleToRawLongBits(reader.readInt32());
+                case INT64:
+                    return Double.doubleToRawLongBits(reader.readInt64());
+                case DOUBLE:
+                    return Double.doubleToRawLongBits(reader.readDouble());
+                default:
+                    throw invalidType(bsonType, this);
+            }
+        }
+
+        @Override
+        boolean isKeySupported() {
+            return false;
+        }
+
+        @Override
+        long parseKey(String name) {
+            throw new UnsupportedOperationException("Map key of double is not supported, found key: " + name);
+        }
+    };
+
+    /**
+     * @return 装箱后的元素，只在需要记录更新时调用
+     */
+    abstract Object box(long bits);
+
+    abstract void write(BsonWriter writer, long bits);
+
+    /**
+     * 读取当前位置的数值，允许数据库中的数值类型和容器元素类型不一致，但是不能丢失精度
+     */
+    abstract long read(BsonReader reader);
+
+    /**
+     * 是否可以作为Map的key，double转为字段名后不能保证还原出同一个值，所以不支持
+     */
+    boolean isKeySupported() {
+        return true;
+    }
+
+    /**
+     * 把Map的字段名转换为key
+     */
+    abstract long parseKey(String name);
+
+    private static BsonInvalidOperationException lossyConversion(Object value, PrimitiveKind kind) {
+        return new BsonInvalidOperationException(String.format("Could not convert `%s` to a %s without losing precision",
+                value, kind.name().toLowerCase()));
+    }
+
+    private static BsonInvalidOperationException invalidType(BsonType bsonType, PrimitiveKind kind) {
+        return new BsonInvalidOperationException(String.format("Invalid numeric type for %s, found: %s",
+                kind.name().toLowerCase(), bsonType));
+    }
+}
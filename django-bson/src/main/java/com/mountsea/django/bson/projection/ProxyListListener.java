@@ -25,6 +25,7 @@ package com.mountsea.django.bson.projection;
 
 import com.mountsea.django.bson.projection.containerlisten.ListListener;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -48,6 +49,44 @@ class ProxyListListener<E> extends ProxyCollectionListener<E> implements ListLis
         node.recordFieldAssign(e, previous, index + "", true);
     }
 
+    @Override
+    public void afterRemoveAt(List<E> list, int index, E removed) {
+        processLeaveElement(removed);
+        recordRemove(list, index, removed);
+    }
+
+    @Override
+    public void afterRemove(Collection<E> collection, Object value) {
+        processLeaveElement(value);
+        //位置未知，只能选择$pull或者$set
+        recordRemove(collection, -1, value);
+    }
+
+    @Override
+    public void afterRemoveAll(Collection<E> collection, Collection<?> values) {
+        for (Object value : values) {
+            processLeaveElement(value);
+        }
+        List<?> list = getList(collection);
+        node.recordCollectionOp((collector, path) -> {
+            collector.removeListValueBatch(path, list, values);
+        });
+    }
+
+    private void recordRemove(Collection<E> collection, int index, Object value) {
+        List<?> list = getList(collection);
+        node.recordCollectionOp((collector, path) -> {
+            collector.removeListValue(path, list, index, value);
+        });
+    }
+
+    /**
+     * 回退为$set时记录的值和 {@link #recordSelfAssign()} 一样是容器节点本身
+     */
+    private List<?> getList(Collection<E> collection) {
+        return node instanceof List ? (List<?>) node : (List<?>) collection;
+    }
+
     @Override
     public void afterStructChange(List<E> list) {
         recordSelfAssign();
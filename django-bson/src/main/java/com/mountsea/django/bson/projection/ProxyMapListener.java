@@ -81,8 +81,9 @@ class ProxyMapListener<K, V> extends ProxyContainerListener<V, Map<K, V>> implem
     @Override
     public void afterPut(Map<K, V> map, K k, V v, V previous) {
         processLeaveElement(previous);
-        processIncomingElement(k, v);
-        node.recordFieldAssign(v, previous, keyToString(k));
+        String key = keyToString(k);
+        processIncomingElement(key, v);
+        node.recordFieldAssign(v, previous, key);
     }
 
     @Override
@@ -100,9 +101,9 @@ class ProxyMapListener<K, V> extends ProxyContainerListener<V, Map<K, V>> implem
         node.recordSelfAssign();
     }
 
-    protected void processIncomingElement(K key, V v) {
+    protected void processIncomingElement(String key, V v) {
         if (v instanceof DocumentNode) {
-            ((DocumentNode) v).setParent(node, keyToString(key));
+            ((DocumentNode) v).setParent(node, key);
         }
     }
 
@@ -0,0 +1,257 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import com.mountsea.django.bson.annotation.StripedUpdateRecord;
+import org.bson.conversions.Bson;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 按顶层字段分段加锁的更新记录器，由 {@link StripedUpdateRecord} 启用。
+ * <p>
+ * {@link SyncMongoUpdateCollector} 的所有记录都在根文档的一个锁中进行，多线程修改同一文档的不同分支时会相互等待。
+ * 此类把记录按路径的顶层字段分配到多个 {@link MongoUpdateCollectorImpl} 中，每个分段有自己的锁。
+ * 不同顶层字段的路径不会重合，所以各分段的记录可以独立合并，获取更新记录时再按分段顺序合并为一个更新。
+ * <p>
+ * {@link #getLock()} 仍然是根文档的锁，对根文档字段赋值时加锁。获取/清空记录以及 {@link #callExclusively}
+ * 会先加根文档的锁，再按顺序加所有分段的锁，所以得到的记录和加锁时的文档状态一致。分段锁中不会再加其他锁，不会产生死锁。
+ * <p>
+ * 分段数为1时和 {@link SyncMongoUpdateCollector} 完全一致。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public class StripedMongoUpdateCollector extends SyncMongoUpdateCollector {
+
+    /**
+     * 分段数为1时为null
+     */
+    @Nullable
+    private final MongoUpdateCollectorImpl[] stripes;
+
+    @Nullable
+    private final ReentrantLock[] locks;
+
+    /**
+     * @param stripeCount 分段数，会向上取整为2的幂
+     */
+    public StripedMongoUpdateCollector(int stripeCount) {
+        this(null, stripeCount);
+    }
+
+    /**
+     * @param lock        根文档的锁，为null时使用此对象，参考 {@link SyncMongoUpdateCollector#SyncMongoUpdateCollector(Object)}
+     * @param stripeCount 分段数，会向上取整为2的幂
+     */
+    public StripedMongoUpdateCollector(@Nullable Object lock, int stripeCount) {
+        super(lock);
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Illegal stripe count: " + stripeCount);
+        }
+        if (stripeCount == 1) {
+            this.stripes = null;
+            this.locks = null;
+        } else {
+            int n = Integer.highestOneBit(stripeCount - 1) << 1;
+            this.stripes = new MongoUpdateCollectorImpl[n];
+            this.locks = new ReentrantLock[n];
+            for (int i = 0; i < n; i++) {
+                stripes[i] = new MongoUpdateCollectorImpl();
+                locks[i] = new ReentrantLock();
+            }
+        }
+    }
+
+    /**
+     * @return 类上 {@link StripedUpdateRecord} 指定的分段数，没有时返回1
+     */
+    public static int getStripeCount(Class<?> documentClass) {
+        StripedUpdateRecord annotation = documentClass.getAnnotation(StripedUpdateRecord.class);
+        return annotation == null ? 1 : annotation.value();
+    }
+
+    public int getStripeCount() {
+        return stripes == null ? 1 : stripes.length;
+    }
+
+    private int stripeOf(UpdatePath path) {
+        int h = path.getTopSegment().hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    @Override
+    public <T> T callExclusively(Supplier<T> action) {
+        if (stripes == null) {
+            return super.callExclusively(action);
+        }
+        synchronized (getLock()) {
+            lockAll();
+            try {
+                return action.get();
+            } finally {
+                unlockAll();
+            }
+        }
+    }
+
+    @Override
+    protected void recordUpdate(Op op, UpdatePath path, Object fieldValue, Object previousValue,
+                                boolean collectionBatchOp, Object collectionOpValue, Collection<?> collectionBatchOpValues) {
+        if (stripes == null) {
+            super.recordUpdate(op, path, fieldValue, previousValue, collectionBatchOp, collectionOpValue, collectionBatchOpValues);
+            return;
+        }
+        int i = stripeOf(path);
+        ReentrantLock lock = locks[i];
+        lock.lock();
+        try {
+            stripes[i].recordUpdate(op, path, fieldValue, previousValue, collectionBatchOp, collectionOpValue, collectionBatchOpValues);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeListValue(UpdatePath path, List<?> list, int index, Object value) {
+        if (stripes == null) {
+            super.removeListValue(path, list, index, value);
+            return;
+        }
+        // 选择操作和记录操作要在同一个锁中，记录时通过recordUpdate重入分段锁
+        int i = stripeOf(path);
+        ReentrantLock lock = locks[i];
+        lock.lock();
+        try {
+            switch (stripes[i].chooseRemoveOp(path, list, index, value, null)) {
+                case $pop:
+                    popArrayValue(path, list, index == 0);
+                    break;
+                case $pull:
+                    pullArrayValue(path, list, value);
+                    break;
+                default:
+                    setField(path, list, list);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeListValueBatch(UpdatePath path, List<?> list, Collection<?> values) {
+        if (stripes == null) {
+            super.removeListValueBatch(path, list, values);
+            return;
+        }
+        int i = stripeOf(path);
+        ReentrantLock lock = locks[i];
+        lock.lock();
+        try {
+            if (stripes[i].chooseRemoveOp(path, list, -1, null, values) == Op.$pull) {
+                pullArrayValueBatch(path, list, values);
+            } else {
+                setField(path, list, list);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bson getUpdate() {
+        return stripes == null ? super.getUpdate() : callExclusively(() -> mergeUpdate(null));
+    }
+
+    @Nullable
+    @Override
+    public Bson getUpdate(Set<String> excludePaths) {
+        return stripes == null ? super.getUpdate(excludePaths) : callExclusively(() -> mergeUpdate(excludePaths));
+    }
+
+    @Nullable
+    private Bson mergeUpdate(@Nullable Set<String> excludePaths) {
+        int size = 0;
+        for (MongoUpdateCollectorImpl stripe : stripes) {
+            size += stripe.getRecordCount();
+        }
+        if (size == 0) {
+            return null;
+        }
+        CollectedUpdateBson bson = new CollectedUpdateBson(size);
+        for (MongoUpdateCollectorImpl stripe : stripes) {
+            stripe.appendTo(bson, excludePaths);
+        }
+        return bson;
+    }
+
+    @Nullable
+    @Override
+    public MongoUpdate getMongoUpdate() {
+        if (stripes == null) {
+            return super.getMongoUpdate();
+        }
+        return callExclusively(() -> {
+            MongoUpdateBuilder builder = null;
+            for (MongoUpdateCollectorImpl stripe : stripes) {
+                if (stripe.getRecordCount() > 0) {
+                    stripe.appendTo(builder == null ? builder = new MongoUpdateBuilder() : builder);
+                }
+            }
+            return builder == null ? null : builder.build();
+        });
+    }
+
+    @Override
+    public void clearUpdate() {
+        if (stripes == null) {
+            super.clearUpdate();
+            return;
+        }
+        callExclusively(() -> {
+            for (MongoUpdateCollectorImpl stripe : stripes) {
+                stripe.clearUpdate();
+            }
+            return null;
+        });
+    }
+}
@@ -27,7 +27,9 @@ import org.bson.conversions.Bson;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * @author guch
@@ -37,6 +39,21 @@ public class SyncMongoUpdateCollector extends MongoUpdateCollectorImpl {
 
     private volatile boolean enable;
 
+    private final Object lock;
+
+    public SyncMongoUpdateCollector() {
+        this.lock = this;
+    }
+
+    /**
+     * @param lock 记录和获取更新时加的锁，作为文档的记录器时是文档的记录锁，参考 {@link DocumentNode#getRecordLock()}。
+     *             为null时使用此对象
+     * @since 3.4.0
+     */
+    public SyncMongoUpdateCollector(@Nullable Object lock) {
+        this.lock = lock == null ? this : lock;
+    }
+
     public boolean hasEnableUpdateCollect() {
         return enable;
     }
@@ -44,7 +61,7 @@ public class SyncMongoUpdateCollector extends MongoUpdateCollectorImpl {
     public void disableUpdateCollect() {
         synchronized (getLock()) {
             enable = false;
-            super.clearUpdate();
+            clearUpdate();
         }
     }
 
@@ -53,7 +70,36 @@ public class SyncMongoUpdateCollector extends MongoUpdateCollectorImpl {
     }
 
     protected Object getLock() {
-        return this;
+        return lock;
+    }
+
+    /**
+     * 在没有其他线程记录更新的情况下执行action，用于需要读取整个文档，并和更新记录保持一致的操作
+     *
+     * @since 3.4.0
+     */
+    public <T> T callExclusively(Supplier<T> action) {
+        synchronized (getLock()) {
+            return action.get();
+        }
+    }
+
+    /**
+     * 获取更新记录，获取和清空之间不会有新的记录
+     *
+     * @param excludePaths 排除的路径，为null时不排除
+     * @param clear        是否清空记录
+     * @since 3.4.0
+     */
+    @Nullable
+    public Bson getUpdate(@Nullable Set<String> excludePaths, boolean clear) {
+        return callExclusively(() -> {
+            Bson bson = excludePaths == null ? getUpdate() : getUpdate(excludePaths);
+            if (clear) {
+                clearUpdate();
+            }
+            return bson;
+        });
     }
 
     @Nullable
@@ -88,11 +134,26 @@ public class SyncMongoUpdateCollector extends MongoUpdateCollectorImpl {
     }
 
     @Override
-    protected void recordUpdate(Op op, String path, Object fieldValue, Object previousValue,
+    protected void recordUpdate(Op op, UpdatePath path, Object fieldValue, Object previousValue,
                                 boolean collectionBatchOp, Object collectionOpValue, Collection<?> collectionBatchOpValues) {
         synchronized (getLock()) {
             super.recordUpdate(op, path, fieldValue, previousValue, collectionBatchOp, collectionOpValue, collectionBatchOpValues);
         }
     }
 
+    @Override
+    public void removeListValue(UpdatePath path, List<?> list, int index, Object value) {
+        // 选择操作和记录操作要在同一个锁中
+        synchronized (getLock()) {
+            super.removeListValue(path, list, index, value);
+        }
+    }
+
+    @Override
+    public void removeListValueBatch(UpdatePath path, List<?> list, Collection<?> values) {
+        synchronized (getLock()) {
+            super.removeListValueBatch(path, list, values);
+        }
+    }
+
 }
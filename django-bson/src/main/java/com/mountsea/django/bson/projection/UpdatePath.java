@@ -0,0 +1,195 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+/**
+ * 更新记录的路径。由上级路径和当前路径段组成，以'.'连接的路径字符串只在需要时(如生成Bson时)才生成并缓存。
+ * <p>
+ * 文档节点的路径缓存在节点中，对字段赋值时只需要在节点路径下创建一个路径段，
+ * 不需要在每一级父节点上重新拼接路径字符串。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public final class UpdatePath {
+
+    @Nullable
+    private final UpdatePath parent;
+
+    private final String segment;
+
+    private final int depth;
+
+    /**
+     * 创建时由上级路径的hash计算，更新记录合并时不需要遍历整个路径
+     */
+    private final int hash;
+
+    private String dottedPath;
+
+    private UpdatePath(@Nullable UpdatePath parent, String segment) {
+        this.parent = parent;
+        this.segment = Objects.requireNonNull(segment);
+        this.depth = parent == null ? 1 : parent.depth + 1;
+        this.hash = parent == null ? segment.hashCode() : 31 * parent.hash + segment.hashCode();
+    }
+
+    /**
+     * @param parent  上级路径，为null时创建第一级路径
+     * @param segment 路径段
+     */
+    public static UpdatePath of(@Nullable UpdatePath parent, String segment) {
+        return new UpdatePath(parent, segment);
+    }
+
+    /**
+     * 从以'.'分隔的路径字符串创建
+     */
+    public static UpdatePath parse(String dottedPath) {
+        UpdatePath path = null;
+        int start = 0;
+        while (true) {
+            int end = dottedPath.indexOf('.', start);
+            if (end < 0) {
+                path = new UpdatePath(path, dottedPath.substring(start));
+                path.dottedPath = dottedPath;
+                return path;
+            }
+            path = new UpdatePath(path, dottedPath.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    public UpdatePath child(String segment) {
+        return new UpdatePath(this, segment);
+    }
+
+    @Nullable
+    public UpdatePath getParent() {
+        return parent;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return 路径段数量
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return 第一级路径段
+     */
+    public String getTopSegment() {
+        UpdatePath path = this;
+        while (path.parent != null) {
+            path = path.parent;
+        }
+        return path.segment;
+    }
+
+    /**
+     * 获取相对于上级路径的路径
+     *
+     * @param ancestor 上级路径，需要是此路径的上级路径，为null时返回自身
+     */
+    public UpdatePath relativeTo(@Nullable UpdatePath ancestor) {
+        if (ancestor == null) {
+            return this;
+        }
+        if (depth <= ancestor.depth) {
+            throw new IllegalArgumentException("Not sub path. path:" + this + ", ancestor:" + ancestor);
+        }
+        if (depth == ancestor.depth + 1) {
+            return new UpdatePath(null, segment);
+        }
+        return new UpdatePath(parent.relativeTo(ancestor), segment);
+    }
+
+    @Override
+    public String toString() {
+        String s = dottedPath;
+        if (s == null) {
+            dottedPath = s = parent == null ? segment : buildDottedPath();
+        }
+        return s;
+    }
+
+    /**
+     * 先计算总长度，再从最后一段向前填充，只遍历两次路径，不递归
+     */
+    private String buildDottedPath() {
+        int length = depth - 1;
+        for (UpdatePath p = this; p != null; p = p.parent) {
+            length += p.segment.length();
+        }
+        char[] chars = new char[length];
+        int end = length;
+        for (UpdatePath p = this; p != null; p = p.parent) {
+            int start = end - p.segment.length();
+            p.segment.getChars(0, p.segment.length(), chars, start);
+            if (p.parent != null) {
+                chars[--start] = '.';
+            }
+            end = start;
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof UpdatePath)) {
+            return false;
+        }
+        UpdatePath other = (UpdatePath) o;
+        if (depth != other.depth) {
+            return false;
+        }
+        UpdatePath a = this;
+        UpdatePath b = other;
+        // 深度相同，同时走到第一级路径
+        while (a != b) {
+            if (a.hash != b.hash || !a.segment.equals(b.segment)) {
+                return false;
+            }
+            a = a.parent;
+            b = b.parent;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
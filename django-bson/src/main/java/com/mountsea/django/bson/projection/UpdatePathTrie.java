@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection;
+
+import com.mountsea.django.bson.projection.MongoUpdateCollectorImpl.UpdateRecord;
+
+import java.util.function.Consumer;
+
+/**
+ * 以 {@link UpdatePath} 的路径段为节点的前缀树，用于 {@link MongoUpdateCollectorImpl} 保存待合并的更新记录。
+ * <p>
+ * 树中的记录满足：任意两条记录的路径互不重合(不相同，也不互为上下级路径)。
+ * 因此查找新记录路径上的上级记录或下级记录时，只需要沿路径向下走一次，复杂度为路径深度。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+class UpdatePathTrie {
+
+    private final PathNode root = new PathNode(null, 0);
+
+    /**
+     * 获取路径对应的节点，沿途如果遇到已有记录的上级节点，则返回该上级节点。不存在的节点会被创建。
+     * <p>
+     * 返回的节点如果有记录，且记录的路径比参数路径短，表示新记录被该上级记录覆盖。
+     */
+    PathNode getNodeOrCoveringNode(UpdatePath path) {
+        UpdatePath parent = path.getParent();
+        PathNode parentNode = parent == null ? root : getNodeOrCoveringNode(parent);
+        if (parentNode.record != null) {
+            return parentNode;
+        }
+        return parentNode.getOrCreateChild(path.getSegment());
+    }
+
+    static final class PathNode {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private final String segment;
+
+        private final int hash;
+
+        /**
+         * 哈希桶中的下一个节点
+         */
+        private PathNode nextInBucket;
+
+        private PathNode[] children;
+
+        private int childCount;
+
+        /**
+         * 此路径上的记录，有记录时不会有子节点
+         */
+        UpdateRecord record;
+
+        private PathNode(String segment, int hash) {
+            this.segment = segment;
+            this.hash = hash;
+        }
+
+        boolean hasChildren() {
+            return childCount > 0;
+        }
+
+        /**
+         * 遍历所有下级节点上的记录，并删除所有下级节点
+         */
+        void removeDescendants(Consumer<UpdateRecord> removedRecordConsumer) {
+            if (children == null) {
+                return;
+            }
+            for (PathNode bucket : children) {
+                for (PathNode child = bucket; child != null; child = child.nextInBucket) {
+                    if (child.record != null) {
+                        removedRecordConsumer.accept(child.record);
+                    }
+                    child.removeDescendants(removedRecordConsumer);
+                }
+            }
+            children = null;
+            childCount = 0;
+        }
+
+        private PathNode getOrCreateChild(String segment) {
+            int h = segment.hashCode();
+            if (children != null) {
+                for (PathNode child = children[h & (children.length - 1)]; child != null; child = child.nextInBucket) {
+                    if (child.segment == segment || (child.hash == h && child.segment.equals(segment))) {
+                        return child;
+                    }
+                }
+            } else {
+                children = new PathNode[INITIAL_CAPACITY];
+            }
+            if (childCount >= children.length * 3 / 4) {
+                resize();
+            }
+            PathNode child = new PathNode(segment, h);
+            int index = h & (children.length - 1);
+            child.nextInBucket = children[index];
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        private void resize() {
+            PathNode[] newChildren = new PathNode[children.length << 1];
+            for (PathNode bucket : children) {
+                PathNode child = bucket;
+                while (child != null) {
+                    PathNode next = child.nextInBucket;
+                    int index = child.hash & (newChildren.length - 1);
+                    child.nextInBucket = newChildren[index];
+                    newChildren[index] = child;
+                    child = next;
+                }
+            }
+            children = newChildren;
+        }
+    }
+}
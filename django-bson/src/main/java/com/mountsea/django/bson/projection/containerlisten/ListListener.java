@@ -42,6 +42,20 @@ public interface ListListener<T> extends CollectionListener<T> {
      */
     void afterSet(List<T> list, int index, T t, T previous);
 
+    /**
+     * 根据index移除元素后调用，在能确定被移除元素位置时代替 {@link #afterRemove} 调用
+     * 包括 list.remove(int)，list.remove(Object)，listIterator.remove，LinkedList的removeFirst/removeLast/poll等
+     * <p>
+     * 默认实现调用 {@link #afterRemove}
+     *
+     * @param list    包装后的list，已经移除了元素
+     * @param index   被移除的元素原来的位置
+     * @param removed 被移除的元素
+     */
+    default void afterRemoveAt(List<T> list, int index, T removed) {
+        afterRemove(list, removed);
+    }
+
     /**
      * list结构改变，但没有新增和删除元素
      * 包括 list.sort
@@ -138,32 +138,59 @@ public class ListenableCollection<E> implements Collection<E>, ListenableContain
         return collection.toArray(a);
     }
 
+    /*
+     * 单个元素的修改方法调用频繁，不使用doWithThreadLock和doWithChangeLock，避免每次调用创建lambda对象
+     */
+
     @Override
     public boolean add(E e) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(
-                    (hasLock) -> {
-                        E e1 = transform(e, hasLock);
-                        boolean r = collection.add(e1);
-                        if (hasLock && r) {
-                            listener.afterAdd(getThis(), e1, true);
-                        }
-                        return r;
-                    });
-        });
+        if (lock == null) {
+            return doAdd(e);
+        }
+        synchronized (lock) {
+            return doAdd(e);
+        }
+    }
+
+    private boolean doAdd(E e) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            E e1 = transform(e, hasLock);
+            boolean r = collection.add(e1);
+            if (hasLock && r) {
+                listener.afterAdd(getThis(), e1, true);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public boolean remove(Object o) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                Object r = removeInternal(o);
-                if (r != REMOVE_FAILED && hasLock) {
-                    listener.afterRemove(getThis(), r);
-                }
-                return r != REMOVE_FAILED;
-            });
-        });
+        if (lock == null) {
+            return doRemove(o);
+        }
+        synchronized (lock) {
+            return doRemove(o);
+        }
+    }
+
+    private boolean doRemove(Object o) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            Object r = removeInternal(o);
+            if (r != REMOVE_FAILED && hasLock) {
+                listener.afterRemove(getThis(), r);
+            }
+            return r != REMOVE_FAILED;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     /**
@@ -307,12 +334,27 @@ public class ListenableCollection<E> implements Collection<E>, ListenableContain
             }
 
             public void remove() {
-                doWithThreadLock(() -> {
-                    changeLock.doWithChangeLock(() -> {
-                        iterator.remove();
-                        return true;
-                    }, () -> listener.afterRemove(getThis(), lastRet));
-                });
+                if (lock == null) {
+                    doRemove();
+                } else {
+                    synchronized (lock) {
+                        doRemove();
+                    }
+                }
+            }
+
+            private void doRemove() {
+                boolean hasLock = changeLock.tryLock();
+                try {
+                    iterator.remove();
+                    if (hasLock) {
+                        listener.afterRemove(getThis(), lastRet);
+                    }
+                } finally {
+                    if (hasLock) {
+                        changeLock.tryUnlock();
+                    }
+                }
             }
         };
     }
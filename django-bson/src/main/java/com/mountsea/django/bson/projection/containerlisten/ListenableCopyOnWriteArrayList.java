@@ -450,7 +450,7 @@ public class ListenableCopyOnWriteArrayList<E> implements List<E>, RandomAccess
                         numMoved);
                 setArray(newElements);
             }
-            listener.afterRemove(getThis(), oldValue);
+            listener.afterRemoveAt(getThis(), index, oldValue);
             return oldValue;
         } finally {
             lock.unlock();
@@ -480,6 +480,7 @@ public class ListenableCopyOnWriteArrayList<E> implements List<E>, RandomAccess
      * A version of remove(Object) using the strong hint that given
      * recent snapshot contains o at the given index.
      */
+    @SuppressWarnings("unchecked")
     private boolean remove(Object o, Object[] snapshot, int index) {
         final ReentrantLock lock = this.lock;
         lock.lock();
@@ -509,7 +510,7 @@ public class ListenableCopyOnWriteArrayList<E> implements List<E>, RandomAccess
                     newElements, index,
                     len - index - 1);
             setArray(newElements);
-            listener.afterRemove(getThis(), target);
+            listener.afterRemoveAt(getThis(), index, (E) target);
             return true;
         } finally {
             lock.unlock();
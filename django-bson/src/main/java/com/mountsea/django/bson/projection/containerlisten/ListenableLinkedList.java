@@ -47,61 +47,71 @@ public class ListenableLinkedList<E> extends ListenableList<E> implements Listen
 
     @Override
     public E removeFirst() {
-        return changeLock.doWithChangeLock(hasLock -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             E r = getLinkedList().removeFirst();
             if (hasLock) {
-                getListener().afterRemove(getThis(), r);
+                getListener().afterRemoveAt(getThis(), 0, r);
             }
             return r;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public E removeLast() {
-        return changeLock.doWithChangeLock(hasLock -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             E r = getLinkedList().removeLast();
             if (hasLock) {
-                getListener().afterRemove(getThis(), r);
+                getListener().afterRemoveAt(getThis(), size(), r);
             }
             return r;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public void addFirst(E e) {
-        changeLock.doWithChangeLock(hasLock -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             E e1 = transform(e, hasLock);
             getLinkedList().addFirst(e1);
             if (hasLock) {
                 getListener().afterAdd(getThis(), e1, false);
             }
-            return null;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public void addLast(E e) {
-        changeLock.doWithChangeLock(hasLock -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             E e1 = transform(e, hasLock);
             getLinkedList().addLast(e1);
             if (hasLock) {
                 getListener().afterAdd(getThis(), e1, true);
             }
-            return null;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public E poll() {
-        return changeLock.doWithChangeLock((hasLock) -> {
-            boolean isEmpty = isEmpty();
-            E r = getLinkedList().poll();
-            //不能通过r==null判断是否移除了元素
-            if (hasLock && !isEmpty) {
-                listener.afterRemove(getThis(), r);
-            }
-            return r;
-        });
+        return pollFirst();
     }
 
     @Override
@@ -138,28 +148,38 @@ public class ListenableLinkedList<E> extends ListenableList<E> implements Listen
 
     @Override
     public E pollFirst() {
-        return changeLock.doWithChangeLock((hasLock) -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             boolean isEmpty = isEmpty();
             E r = getLinkedList().pollFirst();
             //不能通过r==null判断是否移除了元素
             if (hasLock && !isEmpty) {
-                listener.afterRemove(getThis(), r);
+                getListener().afterRemoveAt(getThis(), 0, r);
             }
             return r;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public E pollLast() {
-        return changeLock.doWithChangeLock((hasLock) -> {
+        boolean hasLock = changeLock.tryLock();
+        try {
             boolean isEmpty = isEmpty();
             E r = getLinkedList().pollLast();
             //不能通过r==null判断是否移除了元素
             if (hasLock && !isEmpty) {
-                listener.afterRemove(getThis(), r);
+                getListener().afterRemoveAt(getThis(), size(), r);
             }
             return r;
-        });
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
@@ -83,39 +83,112 @@ public class ListenableList<E> extends ListenableCollection<E> implements List<E
 
     @Override
     public E set(int index, E element) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                E e1 = transform(element, hasLock);
-                E pre = getRawList().set(index, e1);
-                if (hasLock) {
-                    getListener().afterSet(getThis(), index, e1, pre);
-                }
-                return pre;
-            });
-        });
+        if (lock == null) {
+            return doSet(index, element);
+        }
+        synchronized (lock) {
+            return doSet(index, element);
+        }
+    }
+
+    private E doSet(int index, E element) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            E e1 = transform(element, hasLock);
+            E pre = getRawList().set(index, e1);
+            if (hasLock) {
+                getListener().afterSet(getThis(), index, e1, pre);
+            }
+            return pre;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public void add(int index, E element) {
-        doWithThreadLock(() -> {
-            changeLock.doWithChangeLock((hasLock) -> {
-                boolean isTail = index == size();
-                E element1 = transform(element, hasLock);
-                getRawList().add(index, element1);
-                if (hasLock) {
-                    listener.afterAdd(getThis(), element1, isTail);
-                }
-                return null;
-            });
-        });
+        if (lock == null) {
+            doAddAt(index, element);
+        } else {
+            synchronized (lock) {
+                doAddAt(index, element);
+            }
+        }
+    }
+
+    private void doAddAt(int index, E element) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            boolean isTail = index == size();
+            E element1 = transform(element, hasLock);
+            getRawList().add(index, element1);
+            if (hasLock) {
+                listener.afterAdd(getThis(), element1, isTail);
+            }
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public E remove(int index) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(() -> getRawList().remove(index),
-                    (r) -> getListener().afterRemove(getThis(), r));
-        });
+        if (lock == null) {
+            return doRemoveAt(index);
+        }
+        synchronized (lock) {
+            return doRemoveAt(index);
+        }
+    }
+
+    private E doRemoveAt(int index) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            E r = getRawList().remove(index);
+            if (hasLock) {
+                getListener().afterRemoveAt(getThis(), index, r);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
+    }
+
+    /**
+     * 先查找元素位置再按位置移除，使listener能得到被移除元素的位置
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (lock == null) {
+            return doRemoveObject(o);
+        }
+        synchronized (lock) {
+            return doRemoveObject(o);
+        }
+    }
+
+    private boolean doRemoveObject(Object o) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            int index = getRawList().indexOf(o);
+            if (index < 0) {
+                return false;
+            }
+            E r = getRawList().remove(index);
+            if (hasLock) {
+                getListener().afterRemoveAt(getThis(), index, r);
+            }
+            return true;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
@@ -206,6 +279,11 @@ public class ListenableList<E> extends ListenableCollection<E> implements List<E
             getListener().afterSet(getThis(), index + fromIndex, e, pre);
         }
 
+        @Override
+        public void afterRemoveAt(List<E> list, int index, E removed) {
+            getListener().afterRemoveAt(getThis(), index + fromIndex, removed);
+        }
+
         @Override
         public void afterStructChange(List<E> list) {
             getListener().afterStructChange(getThis());
@@ -271,40 +349,79 @@ public class ListenableList<E> extends ListenableCollection<E> implements List<E
 
             @Override
             public void remove() {
-                doWithThreadLock(() -> {
-                    changeLock.doWithChangeLock(() -> {
-                        iterator.remove();
-                        return true;
-                    }, () -> listener.afterRemove(getThis(), lastRet));
-                });
+                if (lock == null) {
+                    doRemove();
+                } else {
+                    synchronized (lock) {
+                        doRemove();
+                    }
+                }
+            }
+
+            private void doRemove() {
+                boolean hasLock = changeLock.tryLock();
+                try {
+                    iterator.remove();
+                    if (hasLock) {
+                        getListener().afterRemoveAt(getThis(), lastIndex, lastRet);
+                    }
+                } finally {
+                    if (hasLock) {
+                        changeLock.tryUnlock();
+                    }
+                }
             }
 
             @Override
             public void set(E e) {
-                doWithThreadLock(() -> {
-                    changeLock.doWithChangeLock((hasLock) -> {
-                        E e1 = transform(e, hasLock);
-                        iterator.set(e1);
-                        if (hasLock) {
-                            getListener().afterSet(getThis(), lastIndex, e1, lastRet);
-                        }
-                        return true;
-                    });
-                });
+                if (lock == null) {
+                    doSet(e);
+                } else {
+                    synchronized (lock) {
+                        doSet(e);
+                    }
+                }
+            }
+
+            private void doSet(E e) {
+                boolean hasLock = changeLock.tryLock();
+                try {
+                    E e1 = transform(e, hasLock);
+                    iterator.set(e1);
+                    if (hasLock) {
+                        getListener().afterSet(getThis(), lastIndex, e1, lastRet);
+                    }
+                } finally {
+                    if (hasLock) {
+                        changeLock.tryUnlock();
+                    }
+                }
             }
 
             @Override
             public void add(E e) {
-                doWithThreadLock(() -> {
-                    changeLock.doWithChangeLock((hasLock) -> {
-                        E e1 = transform(e, hasLock);
-                        iterator.add(e1);
-                        if (hasLock) {
-                            listener.afterAdd(getThis(), e1, false);
-                        }
-                        return true;
-                    });
-                });
+                if (lock == null) {
+                    doAdd(e);
+                } else {
+                    synchronized (lock) {
+                        doAdd(e);
+                    }
+                }
+            }
+
+            private void doAdd(E e) {
+                boolean hasLock = changeLock.tryLock();
+                try {
+                    E e1 = transform(e, hasLock);
+                    iterator.add(e1);
+                    if (hasLock) {
+                        listener.afterAdd(getThis(), e1, false);
+                    }
+                } finally {
+                    if (hasLock) {
+                        changeLock.tryUnlock();
+                    }
+                }
             }
         };
     }
@@ -126,26 +126,59 @@ public class ListenableMap<K, V> implements Map<K, V>, ListenableContainer {
         return map.get(key);
     }
 
+    /*
+     * 单个键值的修改方法调用频繁，不使用doWithThreadLock和doWithChangeLock，避免每次调用创建lambda对象
+     */
+
     @Override
     public V put(K key, V value) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock((hasLock) -> {
-                V value1 = transform(key, value, hasLock);
-                V pre = map.put(key, value1);
-                if (hasLock) {
-                    listener.afterPut(getThis(), key, value1, pre);
-                }
-                return pre;
-            });
-        });
+        if (lock == null) {
+            return doPut(key, value);
+        }
+        synchronized (lock) {
+            return doPut(key, value);
+        }
+    }
+
+    private V doPut(K key, V value) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            V value1 = transform(key, value, hasLock);
+            V pre = map.put(key, value1);
+            if (hasLock) {
+                listener.afterPut(getThis(), key, value1, pre);
+            }
+            return pre;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public V remove(Object key) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(() -> map.remove(key),
-                    (r) -> listener.afterRemove(getThis(), key, r));
-        });
+        if (lock == null) {
+            return doRemove(key);
+        }
+        synchronized (lock) {
+            return doRemove(key);
+        }
+    }
+
+    private V doRemove(Object key) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            V r = map.remove(key);
+            if (hasLock) {
+                listener.afterRemove(getThis(), key, r);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
@@ -231,39 +264,80 @@ public class ListenableMap<K, V> implements Map<K, V>, ListenableContainer {
 
     @Override
     public V putIfAbsent(K key, V value) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                V value1 = transform(key, value, hasLock);
-                V r = map.putIfAbsent(key, value1);
-                //putIfAbsent返回null，则一定put了newValue
-                if (hasLock && r == null) {
-                    listener.afterPut(getThis(), key, value1, null);
-                }
-                return r;
-            });
-        });
+        if (lock == null) {
+            return doPutIfAbsent(key, value);
+        }
+        synchronized (lock) {
+            return doPutIfAbsent(key, value);
+        }
+    }
+
+    private V doPutIfAbsent(K key, V value) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            V value1 = transform(key, value, hasLock);
+            V r = map.putIfAbsent(key, value1);
+            //putIfAbsent返回null，则一定put了newValue
+            if (hasLock && r == null) {
+                listener.afterPut(getThis(), key, value1, null);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public boolean remove(Object key, Object value) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(() -> map.remove(key, value),
-                    () -> listener.afterRemove(getThis(), key, value));
-        });
+        if (lock == null) {
+            return doRemove(key, value);
+        }
+        synchronized (lock) {
+            return doRemove(key, value);
+        }
+    }
+
+    private boolean doRemove(Object key, Object value) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            boolean r = map.remove(key, value);
+            if (hasLock && r) {
+                listener.afterRemove(getThis(), key, value);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public boolean replace(K key, V oldValue, V newValue) {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                V newValue1 = transform(key, newValue, hasLock);
-                boolean replace = map.replace(key, oldValue, newValue1);
-                if (hasLock && replace) {
-                    listener.afterPut(getThis(), key, newValue1, oldValue);
-                }
-                return replace;
-            });
-        });
+        if (lock == null) {
+            return doReplace(key, oldValue, newValue);
+        }
+        synchronized (lock) {
+            return doReplace(key, oldValue, newValue);
+        }
+    }
+
+    private boolean doReplace(K key, V oldValue, V newValue) {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            V newValue1 = transform(key, newValue, hasLock);
+            boolean replace = map.replace(key, oldValue, newValue1);
+            if (hasLock && replace) {
+                listener.afterPut(getThis(), key, newValue1, oldValue);
+            }
+            return replace;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
@@ -451,14 +525,28 @@ public class ListenableMap<K, V> implements Map<K, V>, ListenableContainer {
 
                 @Override
                 public void remove() {
+                    if (lock == null) {
+                        doRemove();
+                    } else {
+                        synchronized (lock) {
+                            doRemove();
+                        }
+                    }
+                }
+
+                private void doRemove() {
                     Entry<K, V> previous = this.previous;
-                    doWithThreadLock(() -> {
-                        changeLock.doWithChangeLock(() -> {
-                                    iterator.remove();
-                                    return true;
-                                },
-                                () -> listener.afterRemove(getThis(), previous.getKey(), previous.getValue()));
-                    });
+                    boolean hasLock = changeLock.tryLock();
+                    try {
+                        iterator.remove();
+                        if (hasLock) {
+                            listener.afterRemove(getThis(), previous.getKey(), previous.getValue());
+                        }
+                    } finally {
+                        if (hasLock) {
+                            changeLock.tryUnlock();
+                        }
+                    }
                 }
             };
         }
@@ -487,19 +575,31 @@ public class ListenableMap<K, V> implements Map<K, V>, ListenableContainer {
         }
 
         @Override
-        @SuppressWarnings({"unchecked", "rawtypes"})
         public V1 setValue(V1 value) {
+            if (lock == null) {
+                return doSetValue(value);
+            }
+            synchronized (lock) {
+                return doSetValue(value);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private V1 doSetValue(V1 value) {
             MapListener listener = ListenableMap.this.listener;
-            return doWithThreadLock(() -> {
-                return changeLock.doWithChangeLock((hasLock) -> {
-                    V1 value1 = (V1) transform((K) entry.getKey(), (V) value, hasLock);
-                    V1 r = entry.setValue(value1);
-                    if (hasLock) {
-                        listener.afterPut(getThis(), entry.getKey(), value1, r);
-                    }
-                    return r;
-                });
-            });
+            boolean hasLock = changeLock.tryLock();
+            try {
+                V1 value1 = (V1) transform((K) entry.getKey(), (V) value, hasLock);
+                V1 r = entry.setValue(value1);
+                if (hasLock) {
+                    listener.afterPut(getThis(), entry.getKey(), value1, r);
+                }
+                return r;
+            } finally {
+                if (hasLock) {
+                    changeLock.tryUnlock();
+                }
+            }
         }
 
         @Override
@@ -102,27 +102,51 @@ public class ListenableNavigableSet<E> extends ListenableSortedSet<E> implements
 
     @Override
     public E pollFirst() {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                E r = getSet().pollFirst();
-                if (hasLock && r != null) {
-                    getListener().afterRemove(getThis(), r);
-                }
-                return r;
-            });
-        });
+        if (lock == null) {
+            return doPollFirst();
+        }
+        synchronized (lock) {
+            return doPollFirst();
+        }
+    }
+
+    private E doPollFirst() {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            E r = getSet().pollFirst();
+            if (hasLock && r != null) {
+                getListener().afterRemove(getThis(), r);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 
     @Override
     public E pollLast() {
-        return doWithThreadLock(() -> {
-            return changeLock.doWithChangeLock(hasLock -> {
-                E r = getSet().pollLast();
-                if (hasLock && r != null) {
-                    getListener().afterRemove(getThis(), r);
-                }
-                return r;
-            });
-        });
+        if (lock == null) {
+            return doPollLast();
+        }
+        synchronized (lock) {
+            return doPollLast();
+        }
+    }
+
+    private E doPollLast() {
+        boolean hasLock = changeLock.tryLock();
+        try {
+            E r = getSet().pollLast();
+            if (hasLock && r != null) {
+                getListener().afterRemove(getThis(), r);
+            }
+            return r;
+        } finally {
+            if (hasLock) {
+                changeLock.tryUnlock();
+            }
+        }
     }
 }
@@ -106,22 +106,7 @@ public class DtBsonArray extends DocumentList<DtBsonValue> implements DtBsonValu
     public DtBsonArray clone() {
         DtBsonArray to = new DtBsonArray();
         for (DtBsonValue cur : this) {
-            switch (cur.getBsonType()) {
-                case DOCUMENT:
-                    to.add(cur.asDocument().clone());
-                    break;
-                case ARRAY:
-                    to.add(cur.asArray().clone());
-                    break;
-                case BINARY:
-                    to.add(DtBsonBinary.clone(cur.asBinary()));
-                    break;
-                case JAVASCRIPT_WITH_SCOPE:
-                    to.add(DtBsonJavaScriptWithScope.clone(cur.asJavaScriptWithScope()));
-                    break;
-                default:
-                    to.add(cur);
-            }
+            to.add(DtBsonValue.deepCopy(cur));
         }
         return to;
     }
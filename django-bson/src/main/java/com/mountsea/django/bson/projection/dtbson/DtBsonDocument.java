@@ -761,22 +761,7 @@ public class DtBsonDocument extends LinkedDocumentMap<String, DtBsonValue> imple
     public DtBsonDocument clone() {
         DtBsonDocument to = new DtBsonDocument();
         for (Entry<String, DtBsonValue> cur : entrySet()) {
-            switch (cur.getValue().getBsonType()) {
-                case DOCUMENT:
-                    to.put(cur.getKey(), cur.getValue().asDocument().clone());
-                    break;
-                case ARRAY:
-                    to.put(cur.getKey(), cur.getValue().asArray().clone());
-                    break;
-                case BINARY:
-                    to.put(cur.getKey(), DtBsonBinary.clone(cur.getValue().asBinary()));
-                    break;
-                case JAVASCRIPT_WITH_SCOPE:
-                    to.put(cur.getKey(), DtBsonJavaScriptWithScope.clone(cur.getValue().asJavaScriptWithScope()));
-                    break;
-                default:
-                    to.put(cur.getKey(), cur.getValue());
-            }
+            to.put(cur.getKey(), DtBsonValue.deepCopy(cur.getValue()));
         }
         return to;
     }
@@ -45,6 +45,26 @@ public interface DtBsonValue {
      */
     BsonType getBsonType();
 
+    /**
+     * 复制可以修改的值 (文档、数组、二进制等)，其他不可修改的值直接返回
+     *
+     * @since 3.4.0
+     */
+    static DtBsonValue deepCopy(DtBsonValue value) {
+        switch (value.getBsonType()) {
+            case DOCUMENT:
+                return value.asDocument().clone();
+            case ARRAY:
+                return value.asArray().clone();
+            case BINARY:
+                return DtBsonBinary.clone(value.asBinary());
+            case JAVASCRIPT_WITH_SCOPE:
+                return DtBsonJavaScriptWithScope.clone(value.asJavaScriptWithScope());
+            default:
+                return value;
+        }
+    }
+
     /**
      * Gets this value as a DtBsonDocument if it is one, otherwise throws exception
      *
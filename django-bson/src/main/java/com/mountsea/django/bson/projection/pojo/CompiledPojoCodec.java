@@ -0,0 +1,343 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection.pojo;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BooleanCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DoubleCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.IntegerCodec;
+import org.bson.codecs.LongCodec;
+import org.bson.codecs.StringCodec;
+import org.bson.codecs.configuration.CodecConfigurationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * 在 {@link PojoCodecImpl} 第一次使用时，根据已经特化的 {@link ClassModel} 预先编排好的编解码过程:
+ * <ul>
+ * <li>编码的属性顺序、id属性和discriminator预先确定，不需要每次比较PropertyModel</li>
+ * <li>解码时用字段名到属性的Hash表查找属性，代替遍历全部属性比较字段名</li>
+ * <li>每个属性的codec在编排时确定，int/long/double/boolean/String使用默认codec时直接读写BSON，
+ * 编码时配合 {@link GeneratedPropertyAccessor} 不装箱</li>
+ * </ul>
+ * 不支持的情况({@link #compile}返回null)由 {@link PojoCodecImpl} 继续处理。
+ * 调用者需要保证编码的对象和ClassModel的类型一致，解码时已经检查过discriminator。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class CompiledPojoCodec<T> implements Codec<T> {
+
+    private final ClassModel<T> classModel;
+
+    private final PropertyCodec<?> idProperty;
+
+    private final IdGenerator<?> idGenerator;
+
+    private final PropertyCodec<?>[] properties;
+
+    private final Map<String, PropertyCodec<?>> propertiesByWriteName;
+
+    private final String discriminatorKey;
+
+    private final String discriminator;
+
+    private CompiledPojoCodec(ClassModel<T> classModel, PropertyCodec<?> idProperty, IdGenerator<?> idGenerator,
+                              PropertyCodec<?>[] properties, Map<String, PropertyCodec<?>> propertiesByWriteName) {
+        this.classModel = classModel;
+        this.idProperty = idProperty;
+        this.idGenerator = idGenerator;
+        this.properties = properties;
+        this.propertiesByWriteName = propertiesByWriteName;
+        this.discriminatorKey = classModel.useDiscriminator() ? classModel.getDiscriminatorKey() : null;
+        this.discriminator = classModel.getDiscriminator();
+    }
+
+    /**
+     * @param classModel 已经特化并且设置了codec缓存的ClassModel
+     * @return 不支持时返回null
+     */
+    static <T> CompiledPojoCodec<T> compile(ClassModel<T> classModel) {
+        PropertyModel<?> idPropertyModel = classModel.getIdPropertyModel();
+        PropertyCodec<?> idProperty = null;
+        List<PropertyCodec<?>> properties = new ArrayList<>();
+        Map<String, PropertyCodec<?>> propertiesByWriteName = new HashMap<>();
+        for (PropertyModel<?> propertyModel : classModel.getPropertyModels()) {
+            if (propertyModel.getCachedCodec() == null) {
+                return null;
+            }
+            PropertyCodec<?> propertyCodec = new PropertyCodec<>(classModel.getName(), propertyModel);
+            if (propertyModel.equals(idPropertyModel)) {
+                idProperty = propertyCodec;
+            } else if (propertyModel.isReadable()) {
+                properties.add(propertyCodec);
+            }
+            if (propertyModel.isWritable()) {
+                propertiesByWriteName.putIfAbsent(propertyModel.getWriteName(), propertyCodec);
+            }
+        }
+        return new CompiledPojoCodec<>(classModel, idProperty, classModel.getIdPropertyModelHolder().getIdGenerator(),
+                properties.toArray(new PropertyCodec<?>[0]), propertiesByWriteName);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (idProperty != null) {
+            if (idGenerator == null) {
+                idProperty.encode(writer, value, encoderContext);
+            } else {
+                encodeGeneratedId(writer, value, encoderContext, idProperty);
+            }
+        }
+        if (discriminatorKey != null) {
+            writer.writeString(discriminatorKey, discriminator);
+        }
+        for (PropertyCodec<?> property : properties) {
+            property.encode(writer, value, encoderContext);
+        }
+        writer.writeEndDocument();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <I> void encodeGeneratedId(BsonWriter writer, T value, EncoderContext encoderContext, PropertyCodec<I> idProperty) {
+        PropertyAccessor<I> accessor = idProperty.accessor;
+        I id = accessor.get(value);
+        if (id == null && encoderContext.isEncodingCollectibleDocument()) {
+            id = ((IdGenerator<I>) idGenerator).generate();
+            try {
+                accessor.set(value, id);
+            } catch (Exception e) {
+                // ignore
+            }
+        }
+        idProperty.encodeValue(writer, id, encoderContext);
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        InstanceCreator<T> instanceCreator = classModel.getInstanceCreator();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (discriminatorKey != null && discriminatorKey.equals(name)) {
+                reader.readString();
+                continue;
+            }
+            PropertyCodec<?> property = propertiesByWriteName.get(name);
+            if (property == null) {
+                reader.skipValue();
+            } else {
+                property.decode(reader, decoderContext, instanceCreator, name);
+            }
+        }
+        reader.readEndDocument();
+        return instanceCreator.getInstance();
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return classModel.getType();
+    }
+
+    /**
+     * 单个属性的编解码
+     */
+    private static final class PropertyCodec<S> {
+        private final String className;
+
+        private final PropertyModel<S> propertyModel;
+
+        private final PropertyAccessor<S> accessor;
+
+        private final GeneratedPropertyAccessor<S> primitiveAccessor;
+
+        private final Codec<S> codec;
+
+        private final String readName;
+
+        private final ValueKind kind;
+
+        private final boolean defaultSerialization;
+
+        private final boolean decodeBsonNull;
+
+        @SuppressWarnings("unchecked")
+        PropertyCodec(String className, PropertyModel<S> propertyModel) {
+            this.className = className;
+            this.propertyModel = propertyModel;
+            this.accessor = propertyModel.getPropertyAccessor();
+            this.codec = propertyModel.getCachedCodec();
+            this.readName = propertyModel.getReadName();
+            this.kind = ValueKind.of(codec);
+            this.defaultSerialization = propertyModel.hasDefaultSerialization();
+            this.primitiveAccessor = defaultSerialization && accessor instanceof GeneratedPropertyAccessor
+                    ? (GeneratedPropertyAccessor<S>) accessor : null;
+            this.decodeBsonNull = propertyModel.shouldDecodeBsonNull();
+        }
+
+        void encode(BsonWriter writer, Object instance, EncoderContext encoderContext) {
+            if (primitiveAccessor != null && primitiveAccessor.encodePrimitive(writer, instance, readName, codec)) {
+                return;
+            }
+            encodeValue(writer, accessor.get(instance), encoderContext);
+        }
+
+        void encodeValue(BsonWriter writer, S value, EncoderContext encoderContext) {
+            if (defaultSerialization ? value == null : !propertyModel.shouldSerialize(value)) {
+                return;
+            }
+            writer.writeName(readName);
+            if (value == null) {
+                writer.writeNull();
+                return;
+            }
+            try {
+                switch (kind) {
+                    case INT32:
+                        writer.writeInt32((Integer) value);
+                        break;
+                    case INT64:
+                        writer.writeInt64((Long) value);
+                        break;
+                    case DOUBLE:
+                        writer.writeDouble((Double) value);
+                        break;
+                    case BOOLEAN:
+                        writer.writeBoolean((Boolean) value);
+                        break;
+                    case STRING:
+                        writer.writeString((String) value);
+                        break;
+                    default:
+                        encoderContext.encodeWithChildContext(codec, writer, value);
+                }
+            } catch (CodecConfigurationException e) {
+                throw new CodecConfigurationException(format("Failed to encode '%s'. Encoding '%s' errored with: %s",
+                        className, readName, e.getMessage()), e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void decode(BsonReader reader, DecoderContext decoderContext, InstanceCreator<?> instanceCreator, String name) {
+            try {
+                S value;
+                BsonType bsonType = reader.getCurrentBsonType();
+                if (bsonType == BsonType.NULL && !decodeBsonNull) {
+                    reader.readNull();
+                    value = null;
+                } else if (kind.bsonType == bsonType) {
+                    value = (S) kind.read(reader);
+                } else {
+                    value = decoderContext.decodeWithChildContext(codec, reader);
+                }
+                instanceCreator.set(value, propertyModel);
+            } catch (BsonInvalidOperationException | CodecConfigurationException e) {
+                throw new CodecConfigurationException(format("Failed to decode '%s'. Decoding '%s' errored with: %s",
+                        className, name, e.getMessage()), e);
+            }
+        }
+    }
+
+    /**
+     * 默认codec可以直接读写的值类型，只有BSON类型和codec的类型一致时才直接读取，其他情况交给codec处理类型转换
+     */
+    private enum ValueKind {
+        INT32(BsonType.INT32) {
+            @Override
+            Object read(BsonReader reader) {
+                return reader.readInt32();
+            }
+        },
+        INT64(BsonType.INT64) {
+            @Override
+            Object read(BsonReader reader) {
+                return reader.readInt64();
+            }
+        },
+        DOUBLE(BsonType.DOUBLE) {
+            @Override
+            Object read(BsonReader reader) {
+                return reader.readDouble();
+            }
+        },
+        BOOLEAN(BsonType.BOOLEAN) {
+            @Override
+            Object read(BsonReader reader) {
+                return reader.readBoolean();
+            }
+        },
+        STRING(BsonType.STRING) {
+            @Override
+            Object read(BsonReader reader) {
+                return reader.readString();
+            }
+        },
+        OTHER(null) {
+            /**
+             * bsonType为null，decode时不会直接读取，交给codec处理
+             */
+            @Override
+            Object read(BsonReader reader) {
+                throw new UnsupportedOperationException("Value of " + reader.getCurrentBsonType()
+                        + " should be decoded by codec");
+            }
+        };
+
+        private final BsonType bsonType;
+
+        ValueKind(BsonType bsonType) {
+            this.bsonType = bsonType;
+        }
+
+        abstract Object read(BsonReader reader);
+
+        static ValueKind of(Codec<?> codec) {
+            Class<?> codecClass = codec.getClass();
+            if (codecClass == IntegerCodec.class) {
+                return INT32;
+            } else if (codecClass == LongCodec.class) {
+                return INT64;
+            } else if (codecClass == DoubleCodec.class) {
+                return DOUBLE;
+            } else if (codecClass == BooleanCodec.class) {
+                return BOOLEAN;
+            } else if (codecClass == StringCodec.class) {
+                return STRING;
+            }
+            return OTHER;
+        }
+    }
+}
@@ -85,6 +85,16 @@ public final class Conventions {
      */
     public static final Convention OBJECT_ID_GENERATORS = new ConventionObjectIdGeneratorsImpl();
 
+    /**
+     * 使用LambdaMetafactory生成的getter/setter调用代替反射调用，不能生成时仍然使用反射。
+     *
+     * <p>Note: 此Convention不在 {@code DEFAULT_CONVENTIONS} 中，需要放在Convention列表的最后，
+     * 在 {@link #SET_PRIVATE_FIELDS_CONVENTION} 和 {@link #USE_GETTERS_FOR_SETTERS} 之后。</p>
+     *
+     * @since 3.4.0
+     */
+    public static final Convention GENERATED_ACCESSOR_CONVENTION = new ConventionGeneratedAccessorImpl();
+
     /**
      * The default conventions list
      */
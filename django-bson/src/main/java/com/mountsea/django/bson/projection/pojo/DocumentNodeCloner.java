@@ -0,0 +1,174 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection.pojo;
+
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.projection.ShadowCloner;
+import com.mountsea.django.bson.projection.dtbson.DtBsonValue;
+import com.mountsea.django.bson.util.InternalUtils;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 直接复制对象图的 {@link ShadowCloner}，用于 {@link DocumentNode#deepCloneSelf()}，不经过BSON编解码。
+ * <p>
+ * 每个类在第一次使用时根据ClassModel生成一个复制器，只复制编解码时会读写的属性，null值不复制 (和解码一致，保留目标对象的默认值)。
+ * 不可修改类型的值直接共享，DocumentNode类型的值递归复制，DtBsonValue类型的值按 {@link DtBsonValue#deepCopy} 复制。
+ * 写入代理的DocumentNode时和解码一样通过 {@link DocumentNodeDirectWriter} 直接写字段并关联parent。
+ * <p>
+ * 如果类中有属性只能通过构造方法赋值，或者属性类型不属于以上几种，则不能直接复制，{@link #get}返回null，仍然使用编解码复制。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class DocumentNodeCloner implements ShadowCloner {
+
+    private static final Map<Class<?>, DocumentNodeCloner> CLONERS = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, DocumentNodeCloner> COPY_ON_WRITE_CLONERS = new ConcurrentHashMap<>();
+
+    private final Class<?> documentClass;
+
+    private final boolean copyOnWrite;
+
+    /**
+     * 不能直接复制时为null
+     */
+    private final PropertyCloner[] properties;
+
+    /**
+     * documentClass没有代理时为null
+     */
+    private final DocumentNodeDirectWriter writer;
+
+    private DocumentNodeCloner(Class<?> documentClass, boolean copyOnWrite) {
+        this.documentClass = documentClass;
+        this.copyOnWrite = copyOnWrite;
+        this.properties = compile(GlobalModels.getClassModel(documentClass));
+        this.writer = properties != null && GlobalModels.hasClassEnhancer(documentClass) ?
+                DocumentNodeDirectWriter.get(documentClass) : null;
+    }
+
+    /**
+     * @param documentClass 原始类，不能是代理类
+     * @param copyOnWrite   是否以写时复制的方式复制下级节点，参考 {@link DocumentNode#deepCloneSelf(boolean)}
+     * @return 不能直接复制时返回null
+     */
+    @Nullable
+    static DocumentNodeCloner get(Class<?> documentClass, boolean copyOnWrite) {
+        Map<Class<?>, DocumentNodeCloner> cloners = copyOnWrite ? COPY_ON_WRITE_CLONERS : CLONERS;
+        DocumentNodeCloner cloner = cloners.get(documentClass);
+        if (cloner == null) {
+            cloner = InternalUtils.mapComputeIfAbsent(cloners, documentClass, c -> new DocumentNodeCloner(c, copyOnWrite));
+        }
+        return cloner.properties == null ? null : cloner;
+    }
+
+    /**
+     * 把src的属性复制到dst，dst的类型需要是src的类型或子类型
+     */
+    @Override
+    public void clone(Object src, Object dst) {
+        DocumentNodeDirectWriter writer = writerFor(dst.getClass());
+        for (PropertyCloner property : properties) {
+            Object value = property.propertyModel.getPropertyAccessor().get(src);
+            if (value == null) {
+                continue;
+            }
+            value = property.cloneValue(value, copyOnWrite);
+            if (writer != null) {
+                writer.set((DocumentNode) dst, property.propertyModel, value);
+            } else {
+                property.propertyModel.getPropertyAccessor().set(dst, value);
+            }
+        }
+    }
+
+    @Nullable
+    private DocumentNodeDirectWriter writerFor(Class<?> dstClass) {
+        Class<?> rawClass = GlobalModels.getCGLibProxyRawClass(dstClass);
+        if (rawClass == documentClass) {
+            return writer;
+        }
+        return GlobalModels.hasClassEnhancer(rawClass) ? DocumentNodeDirectWriter.get(rawClass) : null;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static PropertyCloner[] compile(ClassModel<?> classModel) {
+        List<PropertyCloner> properties = new ArrayList<>();
+        for (PropertyModel<?> propertyModel : classModel.getPropertyModels()) {
+            if (!propertyModel.isReadable() || !propertyModel.getPropertyMetadata().isSerializable()) {
+                continue;
+            }
+            if (!propertyModel.isWritable() || !propertyModel.getPropertyMetadata().isDeserializable()) {
+                // 只能通过构造方法赋值
+                return null;
+            }
+            Class<?> type = propertyModel.getTypeData().getType();
+            ValueKind kind;
+            if (DtBsonValue.class.isAssignableFrom(type)) {
+                kind = ValueKind.DT_BSON_VALUE;
+            } else if (DocumentNode.class.isAssignableFrom(type) && !GlobalModels.isImmutableType(type)) {
+                kind = ValueKind.DOCUMENT_NODE;
+            } else if (type != Object.class && GlobalModels.isImmutableType(type)) {
+                kind = ValueKind.IMMUTABLE;
+            } else {
+                return null;
+            }
+            properties.add(new PropertyCloner((PropertyModel<Object>) propertyModel, kind));
+        }
+        return properties.toArray(new PropertyCloner[0]);
+    }
+
+    private enum ValueKind {
+        IMMUTABLE, DOCUMENT_NODE, DT_BSON_VALUE
+    }
+
+    private static final class PropertyCloner {
+        private final PropertyModel<Object> propertyModel;
+
+        private final ValueKind kind;
+
+        PropertyCloner(PropertyModel<Object> propertyModel, ValueKind kind) {
+            this.propertyModel = propertyModel;
+            this.kind = kind;
+        }
+
+        Object cloneValue(Object value, boolean copyOnWrite) {
+            switch (kind) {
+                case DOCUMENT_NODE:
+                    return ((DocumentNode) value).deepCloneSelf(copyOnWrite);
+                case DT_BSON_VALUE:
+                    return DtBsonValue.deepCopy((DtBsonValue) value);
+                default:
+                    return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection.pojo;
+
+import com.mountsea.django.bson.annotation.IgnoreRecordField;
+import com.mountsea.django.bson.projection.ContainerDocumentNode;
+import com.mountsea.django.bson.projection.DocumentClassDefinitionException;
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
+import com.mountsea.django.bson.projection.dtbson.DtBsonValue;
+import com.mountsea.django.bson.util.InternalUtils;
+import com.mountsea.django.bson.util.LazyInitializer;
+import org.bson.codecs.configuration.CodecConfigurationException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * 解码代理的DocumentNode时，不经过setter的代理直接写字段。
+ * <p>
+ * 解码过程中对象还没有被其他线程访问，没有开启更新记录，也没有parent，所以setter代理中的加锁、类型检查、
+ * 记录更新都是不需要的。这里直接写字段，并且直接关联子节点的parent。对于 {@link com.mountsea.django.bson.annotation.FillNullByEmpty}
+ * 的类型，在同一次解码中填充仍为null的字段，不需要先填充空节点再被解码的值替换。
+ * <p>
+ * 有 {@link IgnoreRecordField} 的字段没有代理，仍然通过 {@link PropertyAccessor} 赋值。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class DocumentNodeDirectWriter {
+
+    private static final Map<Class<?>, DocumentNodeDirectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private final Class<? extends DocumentNode> documentClass;
+
+    private final Map<String, FieldSlot> slots;
+
+    private final boolean fillNullByEmpty;
+
+    private final LazyInitializer<List<FillEntry>> fillEntries;
+
+    private DocumentNodeDirectWriter(Class<? extends DocumentNode> documentClass) {
+        this.documentClass = documentClass;
+        this.fillNullByEmpty = GlobalModels.isFillNullByEmpty(documentClass);
+        ClassModel<? extends DocumentNode> classModel = GlobalModels.getClassModel(documentClass);
+        this.slots = new HashMap<>();
+        for (PropertyModel<?> propertyModel : classModel.getPropertyModels()) {
+            Field field = propertyModel.getPropertyMetadata().getField();
+            if (field == null || field.getAnnotation(IgnoreRecordField.class) != null) {
+                continue;
+            }
+            field.setAccessible(true);
+            slots.put(propertyModel.getName(), new FieldSlot(propertyModel.getName(), field));
+        }
+        this.fillEntries = new LazyInitializer<>(() -> createFillEntries(classModel));
+    }
+
+    /**
+     * @param documentClass 代理类或原始类
+     */
+    @SuppressWarnings("unchecked")
+    static DocumentNodeDirectWriter get(Class<?> documentClass) {
+        Class<?> rawClass = GlobalModels.getCGLibProxyRawClass(documentClass);
+        DocumentNodeDirectWriter writer = WRITERS.get(rawClass);
+        if (writer != null) {
+            return writer;
+        }
+        return InternalUtils.mapComputeIfAbsent(WRITERS, rawClass,
+                c -> new DocumentNodeDirectWriter((Class<? extends DocumentNode>) c));
+    }
+
+    /**
+     * @param fill 是否填充null字段
+     */
+    DocumentNode newInstance(boolean fill) {
+        DocumentNode document = DocumentNode.create(documentClass, false);
+        if (fill) {
+            fillNullNodeByEmpty(document);
+        }
+        return document;
+    }
+
+    boolean isFillNullByEmpty() {
+        return fillNullByEmpty;
+    }
+
+    <S> void set(DocumentNode document, PropertyModel<S> propertyModel, S value) {
+        FieldSlot slot = slots.get(propertyModel.getName());
+        if (slot != null) {
+            slot.set(document, value);
+        } else {
+            propertyModel.getPropertyAccessor().set(document, value);
+        }
+    }
+
+    /**
+     * 提前计算填充null字段所需的信息
+     */
+    void prepareFill() {
+        fillEntries.get();
+    }
+
+    /**
+     * 填充仍为null的DocumentNode类型字段，嵌套文档递归填充
+     */
+    void fillNullNodeByEmpty(DocumentNode document) {
+        for (FillEntry entry : fillEntries.get()) {
+            entry.fill(document);
+        }
+    }
+
+    private List<FillEntry> createFillEntries(ClassModel<?> classModel) {
+        List<FillEntry> entries = new ArrayList<>();
+        for (PropertyModel<?> propertyModel : classModel.getPropertyModels()) {
+            Class<?> type = propertyModel.getTypeData().getType();
+            if (GlobalModels.isImmutableType(type)) {
+                continue;
+            }
+            Supplier<Object> emptyCreator;
+            if (ContainerDocumentNode.class.isAssignableFrom(type)) {
+                emptyCreator = DocumentNodeFillerProviderImpl.containerInstanceCreator(propertyModel);
+            } else if (DocumentNode.class.isAssignableFrom(type)) {
+                emptyCreator = () -> get(type).newInstance(true);
+            } else {
+                throw new DocumentClassDefinitionException("Unknown property type:" + type);
+            }
+            entries.add(new FillEntry(propertyModel, slots.get(propertyModel.getName()), emptyCreator));
+        }
+        return entries;
+    }
+
+    private static final class FieldSlot {
+        private final String name;
+
+        private final Field field;
+
+        /**
+         * 字段值可能是需要关联parent的DocumentNode
+         */
+        private final boolean node;
+
+        FieldSlot(String name, Field field) {
+            this.name = name;
+            this.field = field;
+            Class<?> type = field.getType();
+            this.node = DtBsonValue.class.isAssignableFrom(type) ||
+                    (DocumentNode.class.isAssignableFrom(type) && !GlobalModels.isImmutableType(type));
+        }
+
+        Object get(DocumentNode document) {
+            try {
+                return field.get(document);
+            } catch (IllegalAccessException e) {
+                throw new CodecConfigurationException(format("Failed to get '%s' of %s", name, field.getDeclaringClass()), e);
+            }
+        }
+
+        void set(DocumentNode document, Object value) {
+            try {
+                if (!node) {
+                    field.set(document, value);
+                    return;
+                }
+                if (value instanceof DocumentNode) {
+                    DocumentNodeHelper.initParent((DocumentNode) value, document, name);
+                }
+                Object previous = field.get(document);
+                field.set(document, value);
+                if (previous instanceof DocumentNode && previous != value) {
+                    DocumentNodeHelper.detachParent((DocumentNode) previous, document);
+                }
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new CodecConfigurationException(format("Failed to set '%s' of %s", name, field.getDeclaringClass()), e);
+            }
+        }
+    }
+
+    private static final class FillEntry {
+        private final PropertyModel<Object> propertyModel;
+
+        private final FieldSlot slot;
+
+        private final Supplier<Object> emptyCreator;
+
+        @SuppressWarnings("unchecked")
+        FillEntry(PropertyModel<?> propertyModel, FieldSlot slot, Supplier<Object> emptyCreator) {
+            this.propertyModel = (PropertyModel<Object>) propertyModel;
+            this.slot = slot;
+            this.emptyCreator = emptyCreator;
+        }
+
+        void fill(DocumentNode document) {
+            if (slot != null) {
+                if (slot.get(document) == null) {
+                    slot.set(document, emptyCreator.get());
+                }
+            } else {
+                PropertyAccessor<Object> accessor = propertyModel.getPropertyAccessor();
+                if (accessor.get(document) == null) {
+                    accessor.set(document, emptyCreator.get());
+                }
+            }
+        }
+    }
+}
@@ -32,4 +32,9 @@ import com.mountsea.django.bson.projection.DocumentNode;
 interface DocumentNodeFillerProvider {
 
     <T extends DocumentNode> DocumentNodeFiller<T> getDocumentNodeFiller(Class<T> aClass);
+
+    /**
+     * 提前创建填充器，而不是在第一次填充时创建
+     */
+    void prepareDocumentNodeFiller(Class<? extends DocumentNode> aClass);
 }
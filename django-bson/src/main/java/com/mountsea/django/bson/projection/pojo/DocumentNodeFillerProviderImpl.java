@@ -27,6 +27,7 @@ import com.mountsea.django.bson.projection.ContainerDocumentNode;
 import com.mountsea.django.bson.projection.DocumentEnumMap;
 import com.mountsea.django.bson.projection.DocumentClassDefinitionException;
 import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.projection.PrimitiveContainerCodecProvider;
 import com.mountsea.django.bson.util.InternalUtils;
 import com.mountsea.django.bson.util.LazyInitializer;
 
@@ -56,8 +57,17 @@ class DocumentNodeFillerProviderImpl implements DocumentNodeFillerProvider {
         });
     }
 
+    @Override
+    public void prepareDocumentNodeFiller(Class<? extends DocumentNode> aClass) {
+        ((LazyDocumentNodeFiller<?>) getDocumentNodeFiller(aClass)).supplier.get();
+        if (GlobalModels.hasClassEnhancer(GlobalModels.getCGLibProxyRawClass(aClass))) {
+            DocumentNodeDirectWriter.get(aClass).prepareFill();
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private DocumentNodeFiller<?> create(Class<? extends DocumentNode> aClass) {
+        // 通过setter赋值，已开启更新记录的文档会加锁并记录填充的字段。新创建的文档使用 GlobalModels#fillNewDocumentNode
         ClassModel<?> classModel = GlobalModels.getClassModel(GlobalModels.getCGLibProxyRawClass(aClass));
         List<PropertyModel<?>> propertyModels = classModel.getPropertyModels();
         List<Consumer<Object>> propertyProcessors = new ArrayList<>();
@@ -98,9 +108,13 @@ class DocumentNodeFillerProviderImpl implements DocumentNodeFillerProvider {
         };
     }
 
-    private static Supplier<Object> containerInstanceCreator(PropertyModel<?> propertyModel) {
+    static Supplier<Object> containerInstanceCreator(PropertyModel<?> propertyModel) {
         TypeData<?> typeData = propertyModel.getPropertyMetadata().getTypeData();
         Class<?> type = typeData.getType();
+        PrimitiveContainerCodecProvider.PrimitiveContainerCodec<?> primitiveCodec = PrimitiveContainerCodecProvider.getCodec(type);
+        if (primitiveCodec != null) {
+            return primitiveCodec::createInstance;
+        }
         if (EnumMap.class.isAssignableFrom(type) || DocumentEnumMap.class.isAssignableFrom(type)) {
             Type[] mapKeyValueType = TypeWithTypeParametersUtils.getMapKeyValueType(typeData);
             Type keyType = mapKeyValueType[0];
@@ -0,0 +1,75 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection.pojo;
+
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.util.LazyInitializer;
+
+/**
+ * 使用无参构造方法的代理DocumentNode类的InstanceCreatorFactory，解码时通过 {@link DocumentNodeDirectWriter} 赋值。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class DocumentNodeInstanceCreatorFactory<T> implements InstanceCreatorFactory<T> {
+
+    /**
+     * ClassModel创建过程中不能创建DocumentNodeDirectWriter，所以在第一次创建对象时再初始化
+     */
+    private final LazyInitializer<DocumentNodeDirectWriter> writer;
+
+    DocumentNodeInstanceCreatorFactory(Class<T> documentClass) {
+        this.writer = new LazyInitializer<>(() -> DocumentNodeDirectWriter.get(documentClass));
+    }
+
+    @Override
+    public InstanceCreator<T> create() {
+        return new DocumentNodeInstanceCreator<>(writer.get());
+    }
+
+    private static final class DocumentNodeInstanceCreator<T> implements InstanceCreator<T> {
+        private final DocumentNodeDirectWriter writer;
+
+        private final DocumentNode instance;
+
+        DocumentNodeInstanceCreator(DocumentNodeDirectWriter writer) {
+            this.writer = writer;
+            this.instance = writer.newInstance(false);
+        }
+
+        @Override
+        public <S> void set(S value, PropertyModel<S> propertyModel) {
+            writer.set(instance, propertyModel, value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getInstance() {
+            if (writer.isFillNullByEmpty()) {
+                writer.fillNullNodeByEmpty(instance);
+            }
+            return (T) instance;
+        }
+    }
+}
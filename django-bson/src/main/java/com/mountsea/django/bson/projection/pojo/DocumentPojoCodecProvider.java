@@ -48,10 +48,13 @@ public final class DocumentPojoCodecProvider implements CodecProvider {
     private final List<Convention> conventions;
     private final DiscriminatorLookup discriminatorLookup;
     private final List<PropertyCodecProvider> propertyCodecProviders;
+    private final boolean compileCodecs;
 
     private DocumentPojoCodecProvider(final boolean automatic, final Map<Class<?>, ClassModel<?>> classModels, final Set<String> packages,
-                                      final List<Convention> conventions, final List<PropertyCodecProvider> propertyCodecProviders) {
+                                      final List<Convention> conventions, final List<PropertyCodecProvider> propertyCodecProviders,
+                                      final boolean compileCodecs) {
         this.automatic = automatic;
+        this.compileCodecs = compileCodecs;
         this.classModels = classModels;
         this.packages = packages;
         this.conventions = conventions;
@@ -78,14 +81,14 @@ public final class DocumentPojoCodecProvider implements CodecProvider {
     private <T> PojoCodec<T> getPojoCodec(final Class<T> clazz, final CodecRegistry registry) {
         ClassModel<T> classModel = (ClassModel<T>) classModels.get(clazz);
         if (classModel != null) {
-            return new PojoCodecImpl<T>(classModel, registry, propertyCodecProviders, discriminatorLookup);
+            return new PojoCodecImpl<T>(classModel, registry, propertyCodecProviders, discriminatorLookup, compileCodecs);
         } else if (automatic || (clazz.getPackage() != null && packages.contains(clazz.getPackage().getName()))) {
             try {
                 classModel = createClassModel(clazz, conventions);
                 if (clazz.isInterface() || !classModel.getPropertyModels().isEmpty()) {
                     discriminatorLookup.addClassModel(classModel);
                     return new AutomaticPojoCodec<T>(new PojoCodecImpl<T>(classModel, registry, propertyCodecProviders,
-                            discriminatorLookup));
+                            discriminatorLookup, compileCodecs));
                 }
             } catch (Exception e) {
                 LOGGER.warn(format("Cannot use '%s' with the PojoCodec.", clazz.getSimpleName()), e);
@@ -105,6 +108,7 @@ public final class DocumentPojoCodecProvider implements CodecProvider {
         private List<Convention> conventions = null;
         private final List<PropertyCodecProvider> propertyCodecProviders = new ArrayList<PropertyCodecProvider>();
         private boolean automatic;
+        private boolean compileCodecs;
 
         /**
          * Creates the PojoCodecProvider with the classes or packages that configured and registered.
@@ -121,7 +125,8 @@ public final class DocumentPojoCodecProvider implements CodecProvider {
                     register(createClassModel(clazz, immutableConventions));
                 }
             }
-            return new DocumentPojoCodecProvider(automatic, classModels, packages, immutableConventions, propertyCodecProviders);
+            return new DocumentPojoCodecProvider(automatic, classModels, packages, immutableConventions, propertyCodecProviders,
+                    compileCodecs);
         }
 
         /**
@@ -138,6 +143,19 @@ public final class DocumentPojoCodecProvider implements CodecProvider {
             return this;
         }
 
+        /**
+         * 是否在每个类的codec第一次使用时编排专用的编解码过程(字段名Hash查找、预先确定的属性顺序、基础类型直接读写)，
+         * 不支持的类继续使用通用的解释过程。
+         *
+         * @param compileCodecs 是否启用
+         * @return this
+         * @since 3.4.0
+         */
+        public Builder compileCodecs(final boolean compileCodecs) {
+            this.compileCodecs = compileCodecs;
+            return this;
+        }
+
         /**
          * Sets the conventions to use when creating {@code ClassModels} from classes or packages.
          *
@@ -0,0 +1,192 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.projection.pojo;
+
+import com.mountsea.django.bson.util.LambdaUtils;
+import org.bson.BsonWriter;
+import org.bson.codecs.BooleanCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DoubleCodec;
+import org.bson.codecs.IntegerCodec;
+import org.bson.codecs.LongCodec;
+import org.bson.codecs.configuration.CodecConfigurationException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static java.lang.String.format;
+
+/**
+ * 通过 {@link LambdaUtils} 生成getter/setter直接调用的PropertyAccessor，替代 {@link PropertyAccessorImpl} 中的
+ * {@link Method#invoke} 调用。每个属性生成自己的实现类，调用点是单态的，可以被JIT内联。
+ * <p>
+ * 只有能被 {@link LambdaUtils} 所在的ClassLoader访问的public类的public方法才会生成，
+ * 字段访问和不能生成的方法仍然使用 {@link PropertyAccessorImpl}。
+ * int/long/double/boolean类型的getter额外生成不装箱的版本，由 {@link PojoCodecImpl} 在使用默认codec编码时直接写入。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class GeneratedPropertyAccessor<T> implements PropertyAccessor<T> {
+
+    private final PropertyAccessorImpl<T> reflective;
+
+    private final Getter getter;
+
+    private final Setter setter;
+
+    private final IntGetter intGetter;
+
+    private final LongGetter longGetter;
+
+    private final DoubleGetter doubleGetter;
+
+    private final BooleanGetter booleanGetter;
+
+    private GeneratedPropertyAccessor(PropertyAccessorImpl<T> reflective, Getter getter, Setter setter) {
+        this.reflective = reflective;
+        this.getter = getter;
+        this.setter = setter;
+        Method getterMethod = getter == null ? null : reflective.getPropertyMetadata().getGetter();
+        Class<?> returnType = getterMethod == null ? null : getterMethod.getReturnType();
+        this.intGetter = returnType == int.class ? LambdaUtils.getInstanceMethodInvoker(getterMethod, IntGetter.class) : null;
+        this.longGetter = returnType == long.class ? LambdaUtils.getInstanceMethodInvoker(getterMethod, LongGetter.class) : null;
+        this.doubleGetter = returnType == double.class ? LambdaUtils.getInstanceMethodInvoker(getterMethod, DoubleGetter.class) : null;
+        this.booleanGetter = returnType == boolean.class ? LambdaUtils.getInstanceMethodInvoker(getterMethod, BooleanGetter.class) : null;
+    }
+
+    /**
+     * @return 生成的PropertyAccessor，getter和setter都不能生成时返回参数本身
+     */
+    static <T> PropertyAccessor<T> create(PropertyAccessorImpl<T> reflective) {
+        PropertyMetadata<T> metadata = reflective.getPropertyMetadata();
+        Method getterMethod = metadata.isSerializable() ? metadata.getGetter() : null;
+        Method setterMethod = metadata.isDeserializable() ? metadata.getSetter() : null;
+        Getter getter = canGenerate(getterMethod) ? LambdaUtils.getInstanceMethodInvoker(getterMethod, Getter.class) : null;
+        Setter setter = canGenerate(setterMethod) ? LambdaUtils.getInstanceMethodInvoker(setterMethod, Setter.class) : null;
+        if (getter == null && setter == null) {
+            return reflective;
+        }
+        return new GeneratedPropertyAccessor<>(reflective, getter, setter);
+    }
+
+    private static boolean canGenerate(Method method) {
+        if (method == null || Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(declaringClass.getModifiers())) {
+            return false;
+        }
+        // 生成的类由LambdaUtils所在的ClassLoader解析，不可见的类在调用时才会报错，所以提前检查
+        try {
+            return Class.forName(declaringClass.getName(), false, LambdaUtils.class.getClassLoader()) == declaringClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S> T get(S instance) {
+        if (getter == null) {
+            return reflective.get(instance);
+        }
+        try {
+            return (T) getter.get(instance);
+        } catch (RuntimeException e) {
+            throw new CodecConfigurationException(format("Unable to get value for property '%s' in %s",
+                    reflective.getPropertyMetadata().getName(), reflective.getPropertyMetadata().getDeclaringClassName()), e);
+        }
+    }
+
+    @Override
+    public <S> void set(S instance, T value) {
+        if (setter == null) {
+            reflective.set(instance, value);
+            return;
+        }
+        try {
+            setter.set(instance, value);
+        } catch (RuntimeException e) {
+            throw new CodecConfigurationException(format("Unable to set value for property '%s' in %s",
+                    reflective.getPropertyMetadata().getName(), reflective.getPropertyMetadata().getDeclaringClassName()), e);
+        }
+    }
+
+    /**
+     * 原生类型的属性使用默认codec时，直接写入BSON，不装箱
+     *
+     * @return 是否已经写入
+     */
+    boolean encodePrimitive(BsonWriter writer, Object instance, String name, Codec<?> codec) {
+        Class<?> codecClass = codec.getClass();
+        if (intGetter != null && codecClass == IntegerCodec.class) {
+            int value = intGetter.get(instance);
+            writer.writeName(name);
+            writer.writeInt32(value);
+        } else if (longGetter != null && codecClass == LongCodec.class) {
+            long value = longGetter.get(instance);
+            writer.writeName(name);
+            writer.writeInt64(value);
+        } else if (doubleGetter != null && codecClass == DoubleCodec.class) {
+            double value = doubleGetter.get(instance);
+            writer.writeName(name);
+            writer.writeDouble(value);
+        } else if (booleanGetter != null && codecClass == BooleanCodec.class) {
+            boolean value = booleanGetter.get(instance);
+            writer.writeName(name);
+            writer.writeBoolean(value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /* 以下接口由LambdaMetafactory生成的类实现，需要是public */
+
+    public interface Getter {
+        Object get(Object instance);
+    }
+
+    public interface Setter {
+        void set(Object instance, Object value);
+    }
+
+    public interface IntGetter {
+        int get(Object instance);
+    }
+
+    public interface LongGetter {
+        long get(Object instance);
+    }
+
+    public interface DoubleGetter {
+        double get(Object instance);
+    }
+
+    public interface BooleanGetter {
+        boolean get(Object instance);
+    }
+}
@@ -24,9 +24,13 @@
 package com.mountsea.django.bson.projection.pojo;
 
 import com.mountsea.django.bson.annotation.FillNullByEmpty;
+import com.mountsea.django.bson.projection.ByteBuddyProxiedDocumentCreatorProvider;
 import com.mountsea.django.bson.projection.DocumentNode;
 import com.mountsea.django.bson.projection.ProxiedDocumentCreator;
+import com.mountsea.django.bson.projection.ProxiedDocumentCreatorProvider;
+import com.mountsea.django.bson.projection.ShadowCloner;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 import static com.mountsea.django.bson.projection.pojo.GlobalModelsImpl.INSTANCE;
@@ -39,6 +43,11 @@ import static com.mountsea.django.bson.projection.pojo.GlobalModelsImpl.INSTANCE
  */
 public class GlobalModels {
 
+    /**
+     * 选择文档代理类的生成方式的系统属性，值为 bytebuddy 时使用 {@link ByteBuddyProxiedDocumentCreatorProvider}，默认使用CGLib
+     */
+    public static final String PROXY_GENERATOR_PROPERTY = "django.bson.proxyGenerator";
+
     /**
      * 注册ImmutableType
      *
@@ -93,6 +102,21 @@ public class GlobalModels {
         return INSTANCE.getDocumentNodeFiller(tClass);
     }
 
+    /**
+     * 填充新创建、刚解码或刚复制，还没有被其他线程访问的文档。代理类不经过setter的代理，
+     * 直接写字段并关联parent，不加锁也不记录更新，其他类型同 {@link DocumentNode#fillNullNodeByEmpty()}
+     *
+     * @since 3.4.0
+     */
+    public static void fillNewDocumentNode(DocumentNode document) {
+        Class<?> rawClass = getCGLibProxyRawClass(document.getClass());
+        if (hasClassEnhancer(rawClass)) {
+            DocumentNodeDirectWriter.get(rawClass).fillNullNodeByEmpty(document);
+        } else {
+            document.fillNullNodeByEmpty();
+        }
+    }
+
     /**
      * 获取一个类的所有属性信息
      */
@@ -108,7 +132,7 @@ public class GlobalModels {
     }
 
     /**
-     * 是否CGlib代理类
+     * 是否CGlib代理类或其他方式生成的代理类
      */
     public static boolean isProxyClass(Class<?> aClass) {
         return INSTANCE.isProxyClass(aClass);
@@ -132,4 +156,49 @@ public class GlobalModels {
     public static <T extends DocumentNode> ProxiedDocumentCreator<T> getProxiedDocumentCreator(Class<T> aClass) {
         return INSTANCE.getProxiedDocumentCreator(aClass);
     }
+
+    /**
+     * 设置生成文档代理类的方式，需要在创建任何文档对象之前调用，已经使用其他方式生成过代理类时抛出IllegalStateException
+     *
+     * @see #PROXY_GENERATOR_PROPERTY
+     * @since 3.4.0
+     */
+    public static void setProxiedDocumentCreatorProvider(ProxiedDocumentCreatorProvider provider) {
+        INSTANCE.setProxiedDocumentCreatorProvider(provider);
+    }
+
+    /**
+     * 启动时提前生成指定包(包括子包)下所有文档类的代理类，避免第一次使用时生成。
+     *
+     * @param classLoader  用于扫描和加载文档类
+     * @param packageNames 文档类所在的包
+     * @return 生成代理类的文档类数量
+     * @since 3.4.0
+     */
+    public static int pregenerateProxies(ClassLoader classLoader, String... packageNames) {
+        return INSTANCE.pregenerateProxies(classLoader, packageNames);
+    }
+
+    /**
+     * 提前创建文档类的ClassModel、代理类和填充器，避免第一次使用时创建。可以在多个线程中同时调用。
+     *
+     * @see com.mountsea.django.bson.util.DocumentClassIndex
+     * @since 3.4.0
+     */
+    public static void warmUp(Class<?> aClass) {
+        INSTANCE.warmUp(aClass);
+    }
+
+    /**
+     * 获取直接复制文档对象图的复制器，用于 {@link DocumentNode#deepCloneSelf()}
+     *
+     * @param documentClass 原始类，不能是代理类
+     * @param copyOnWrite   是否以写时复制的方式复制下级节点
+     * @return 类中有不能直接复制的属性时返回null
+     * @since 3.4.0
+     */
+    @Nullable
+    public static ShadowCloner getShadowCloner(Class<?> documentClass, boolean copyOnWrite) {
+        return DocumentNodeCloner.get(documentClass, copyOnWrite);
+    }
 }
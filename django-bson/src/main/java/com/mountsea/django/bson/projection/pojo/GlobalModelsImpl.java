@@ -27,11 +27,13 @@ import com.mountsea.django.bson.KnownTypes;
 import com.mountsea.django.bson.annotation.ImmutableDocument;
 import com.mountsea.django.bson.projection.*;
 import com.mountsea.django.bson.projection.dtbson.DtBsonValue;
+import com.mountsea.django.bson.util.ClassScanner;
 import com.mountsea.django.bson.util.InternalUtils;
 import org.apache.commons.lang3.ClassUtils;
 import org.bson.codecs.configuration.CodecConfigurationException;
 import org.bson.types.ObjectId;
 
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -49,6 +51,10 @@ class GlobalModelsImpl {
 
     private static final List<Convention> ALL_CLASS_MODEL_CONVENTION_LIST = new CopyOnWriteArrayList<>(Conventions.DEFAULT_CONVENTIONS);
 
+    static {
+        ALL_CLASS_MODEL_CONVENTION_LIST.add(Conventions.GENERATED_ACCESSOR_CONVENTION);
+    }
+
     private static final Map<Class<?>, Boolean> SIMPLE_TYPES = new ConcurrentHashMap<>();
 
     private static final ProxiedDocumentCreatorProvider DEFAULT_ENHANCER_PROVIDER = new DefaultProxiedDocumentCreatorProvider();
@@ -121,7 +127,8 @@ class GlobalModelsImpl {
     }
 
     boolean isContainerType(Class<?> aClass) {
-        return Collection.class.isAssignableFrom(aClass) || Map.class.isAssignableFrom(aClass);
+        return Collection.class.isAssignableFrom(aClass) || Map.class.isAssignableFrom(aClass)
+                || ContainerDocumentNode.class.isAssignableFrom(aClass);
     }
 
     /**
@@ -132,10 +139,11 @@ class GlobalModelsImpl {
     }
 
     /**
-     * 是否CGlib代理类
+     * 是否CGlib代理类或其他方式生成的代理类
      */
     public boolean isProxyClass(Class<?> aClass) {
-        return net.sf.cglib.proxy.Factory.class.isAssignableFrom(aClass);
+        return net.sf.cglib.proxy.Factory.class.isAssignableFrom(aClass) ||
+                GeneratedDocumentProxy.class.isAssignableFrom(aClass);
     }
 
     public boolean hasClassEnhancer(Class<?> aClass) {
@@ -158,7 +166,62 @@ class GlobalModelsImpl {
         if (!hasClassEnhancer(aClass)) {
             throw new DocumentClassDefinitionException(aClass + " not has enhancer");
         }
-        return DEFAULT_ENHANCER_PROVIDER.get(aClass);
+        return getProxiedDocumentCreatorProvider().get(aClass);
+    }
+
+    private volatile ProxiedDocumentCreatorProvider proxiedDocumentCreatorProvider;
+
+    ProxiedDocumentCreatorProvider getProxiedDocumentCreatorProvider() {
+        ProxiedDocumentCreatorProvider provider = proxiedDocumentCreatorProvider;
+        if (provider == null) {
+            synchronized (this) {
+                provider = proxiedDocumentCreatorProvider;
+                if (provider == null) {
+                    String generator = System.getProperty(GlobalModels.PROXY_GENERATOR_PROPERTY);
+                    if ("bytebuddy".equalsIgnoreCase(generator)) {
+                        provider = new ByteBuddyProxiedDocumentCreatorProvider();
+                    } else {
+                        provider = DEFAULT_ENHANCER_PROVIDER;
+                    }
+                    proxiedDocumentCreatorProvider = provider;
+                }
+            }
+        }
+        return provider;
+    }
+
+    synchronized void setProxiedDocumentCreatorProvider(ProxiedDocumentCreatorProvider provider) {
+        Objects.requireNonNull(provider);
+        if (proxiedDocumentCreatorProvider != null && proxiedDocumentCreatorProvider != provider) {
+            throw new IllegalStateException("ProxiedDocumentCreatorProvider already in use: " + proxiedDocumentCreatorProvider);
+        }
+        proxiedDocumentCreatorProvider = provider;
+    }
+
+    int pregenerateProxies(ClassLoader classLoader, String... packageNames) {
+        ProxiedDocumentCreatorProvider provider = getProxiedDocumentCreatorProvider();
+        int count = 0;
+        for (String packageName : packageNames) {
+            for (Class<?> aClass : ClassScanner.scan(classLoader, packageName)) {
+                if (hasClassEnhancer(aClass) && !Modifier.isAbstract(aClass.getModifiers())) {
+                    provider.get(aClass.asSubclass(DocumentNode.class));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 提前创建文档类的ClassModel，需要代理的文档类同时生成代理类和填充器
+     */
+    void warmUp(Class<?> aClass) {
+        getClassModel(aClass);
+        if (hasClassEnhancer(aClass)) {
+            Class<? extends DocumentNode> documentClass = aClass.asSubclass(DocumentNode.class);
+            getProxiedDocumentCreator(documentClass);
+            DOCUMENT_NODE_FILLER_PROVIDER.prepareDocumentNodeFiller(documentClass);
+        }
     }
 
     private final Map<Class<?>, Boolean> REG_IMMUTABLE_TYPES = new ConcurrentHashMap<>();
@@ -38,15 +38,18 @@ class LazyPojoCodec<T> extends PojoCodec<T> {
     private final PropertyCodecRegistry propertyCodecRegistry;
     private final DiscriminatorLookup discriminatorLookup;
     private final ConcurrentMap<ClassModel<?>, Codec<?>> codecCache;
+    private final boolean compileCodecs;
     private volatile PojoCodecImpl<T> pojoCodec;
 
     LazyPojoCodec(final ClassModel<T> classModel, final CodecRegistry registry, final PropertyCodecRegistry propertyCodecRegistry,
-                  final DiscriminatorLookup discriminatorLookup, final ConcurrentMap<ClassModel<?>, Codec<?>> codecCache) {
+                  final DiscriminatorLookup discriminatorLookup, final ConcurrentMap<ClassModel<?>, Codec<?>> codecCache,
+                  final boolean compileCodecs) {
         this.classModel = classModel;
         this.registry = registry;
         this.propertyCodecRegistry = propertyCodecRegistry;
         this.discriminatorLookup = discriminatorLookup;
         this.codecCache = codecCache;
+        this.compileCodecs = compileCodecs;
     }
 
     @Override
@@ -66,7 +69,8 @@ class LazyPojoCodec<T> extends PojoCodec<T> {
 
     private Codec<T> getPojoCodec() {
         if (pojoCodec == null) {
-            pojoCodec = new PojoCodecImpl<T>(classModel, registry, propertyCodecRegistry, discriminatorLookup, codecCache, true);
+            pojoCodec = new PojoCodecImpl<T>(classModel, registry, propertyCodecRegistry, discriminatorLookup, codecCache, true,
+                    compileCodecs);
         }
         return pojoCodec;
     }
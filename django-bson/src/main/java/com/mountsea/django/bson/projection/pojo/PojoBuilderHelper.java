@@ -155,17 +155,17 @@ final class PojoBuilderHelper {
             }
         }
 
-        CreateInstanceInvoker<?> createInstanceInvoker = null;
-        if (noArgsConstructor != null) {
-            if (GlobalModels.hasClassEnhancer(clazz)) {
-                createInstanceInvoker = getCreateInstanceInvokerByEnhancer(clazz);
-            } else {
+        if (noArgsConstructor != null && GlobalModels.hasClassEnhancer(clazz)) {
+            //代理的DocumentNode解码时直接写字段，不经过setter代理
+            classModelBuilder.instanceCreatorFactory(new DocumentNodeInstanceCreatorFactory<T>(clazz));
+        } else {
+            CreateInstanceInvoker<?> createInstanceInvoker = null;
+            if (noArgsConstructor != null) {
                 createInstanceInvoker = getCreateInstanceInvoker(noArgsConstructor);
             }
+            classModelBuilder.instanceCreatorFactory(new InstanceCreatorFactoryImpl<T>(
+                    new CreatorExecutable<T>(clazz, (CreateInstanceInvoker<T>) createInstanceInvoker)));
         }
-
-        classModelBuilder.instanceCreatorFactory(new InstanceCreatorFactoryImpl<T>(
-                new CreatorExecutable<T>(clazz, (CreateInstanceInvoker<T>) createInstanceInvoker)));
     }
 
     private static <T, S> PropertyMetadata<T> getOrCreateMethodPropertyMetadata(final String propertyName,
@@ -53,10 +53,15 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
     private final DiscriminatorLookup discriminatorLookup;
     private final ConcurrentMap<ClassModel<?>, Codec<?>> codecCache;
     private final boolean specialized;
+    private final boolean compileCodecs;
+    private volatile boolean compiled;
+    private volatile CompiledPojoCodec<T> compiledCodec;
 
     PojoCodecImpl(final ClassModel<T> classModel, final CodecRegistry codecRegistry,
-                  final List<PropertyCodecProvider> propertyCodecProviders, final DiscriminatorLookup discriminatorLookup) {
+                  final List<PropertyCodecProvider> propertyCodecProviders, final DiscriminatorLookup discriminatorLookup,
+                  final boolean compileCodecs) {
         this.classModel = classModel;
+        this.compileCodecs = compileCodecs;
         this.registry = fromRegistries(fromCodecs(this), codecRegistry);
         this.discriminatorLookup = discriminatorLookup;
         this.codecCache = new ConcurrentHashMap<>();
@@ -67,8 +72,9 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
 
     PojoCodecImpl(final ClassModel<T> classModel, final CodecRegistry registry, final PropertyCodecRegistry propertyCodecRegistry,
                   final DiscriminatorLookup discriminatorLookup, final ConcurrentMap<ClassModel<?>, Codec<?>> codecCache,
-                  final boolean specialized) {
+                  final boolean specialized, final boolean compileCodecs) {
         this.classModel = classModel;
+        this.compileCodecs = compileCodecs;
         this.registry = fromRegistries(fromCodecs(this), registry);
         this.discriminatorLookup = discriminatorLookup;
         this.codecCache = codecCache;
@@ -95,6 +101,11 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
         }
 
         if (areEquivalentTypes(value.getClass(), classModel.getType())) {
+            CompiledPojoCodec<T> compiledCodec = getCompiledCodec();
+            if (compiledCodec != null) {
+                compiledCodec.encode(writer, value, encoderContext);
+                return;
+            }
             writer.writeStartDocument();
 
             encodeIdProperty(writer, value, encoderContext, classModel.getIdPropertyModelHolder());
@@ -122,6 +133,10 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
                 throw new CodecConfigurationException(format("%s contains generic types that have not been specialised.%n"
                         + "Top level classes with generic types are not supported by the PojoCodec.", classModel.getName()));
             }
+            CompiledPojoCodec<T> compiledCodec = getCompiledCodec();
+            if (compiledCodec != null) {
+                return compiledCodec.decode(reader, decoderContext);
+            }
             InstanceCreator<T> instanceCreator = classModel.getInstanceCreator();
             decodeProperties(reader, decoderContext, instanceCreator);
             return instanceCreator.getInstance();
@@ -145,6 +160,20 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
         return classModel;
     }
 
+    /**
+     * 第一次使用时编排 {@link CompiledPojoCodec}，不支持时返回null
+     */
+    private CompiledPojoCodec<T> getCompiledCodec() {
+        if (!compileCodecs) {
+            return null;
+        }
+        if (!compiled) {
+            compiledCodec = CompiledPojoCodec.compile(classModel);
+            compiled = true;
+        }
+        return compiledCodec;
+    }
+
     private <S> void encodeIdProperty(final BsonWriter writer, final T instance, final EncoderContext encoderContext,
                                       final IdPropertyModelHolder<S> propertyModelHolder) {
         if (propertyModelHolder.getPropertyModel() != null) {
@@ -169,7 +198,13 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
     private <S> void encodeProperty(final BsonWriter writer, final T instance, final EncoderContext encoderContext,
                                     final PropertyModel<S> propertyModel) {
         if (propertyModel != null && propertyModel.isReadable()) {
-            S propertyValue = propertyModel.getPropertyAccessor().get(instance);
+            PropertyAccessor<S> propertyAccessor = propertyModel.getPropertyAccessor();
+            if (propertyAccessor instanceof GeneratedPropertyAccessor && propertyModel.hasDefaultSerialization()
+                    && ((GeneratedPropertyAccessor<S>) propertyAccessor).encodePrimitive(writer, instance,
+                    propertyModel.getReadName(), propertyModel.getCachedCodec())) {
+                return;
+            }
+            S propertyValue = propertyAccessor.get(instance);
             encodeValue(writer, encoderContext, propertyModel, propertyValue);
         }
     }
@@ -263,7 +298,8 @@ final class PojoCodecImpl<T> extends PojoCodec<T> {
             if (codecCache.containsKey(specialized)) {
                 codec = (Codec<S>) codecCache.get(specialized);
             } else {
-                codec = new LazyPojoCodec<S>(specialized, registry, propertyCodecRegistry, discriminatorLookup, codecCache);
+                codec = new LazyPojoCodec<S>(specialized, registry, propertyCodecRegistry, discriminatorLookup, codecCache,
+                        compileCodecs);
             }
         }
         return codec;
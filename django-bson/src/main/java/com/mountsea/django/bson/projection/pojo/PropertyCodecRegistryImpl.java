@@ -37,6 +37,7 @@ class PropertyCodecRegistryImpl implements PropertyCodecRegistry {
         if (propertyCodecProviders != null) {
             augmentedProviders.addAll(propertyCodecProviders);
         }
+        augmentedProviders.add(new PrimitiveContainerPropertyCodecProvider());
         augmentedProviders.add(new CollectionPropertyCodecProvider());
         augmentedProviders.add(new MapPropertyCodecProvider());
         augmentedProviders.add(new EnumPropertyCodecProvider(codecRegistry));
@@ -143,6 +143,13 @@ public final class PropertyModel<T> {
         return propertySerialization.shouldSerialize(value);
     }
 
+    /**
+     * @return 是否使用默认的序列化判断，即只要值不为null就序列化
+     */
+    boolean hasDefaultSerialization() {
+        return propertySerialization instanceof PropertyModelSerializationImpl;
+    }
+
     /**
      * @return the property accessor
      */
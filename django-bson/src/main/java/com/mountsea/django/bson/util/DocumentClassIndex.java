@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 读取编译期生成的文档类索引。
+ * <p>
+ * 索引由django-processor模块的注解处理器生成，文件为classpath中的 {@link #INDEX_RESOURCE}，每行一个文档类的二进制类名。
+ * 每个包含文档类的jar有各自的索引文件，读取时合并所有索引。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public final class DocumentClassIndex {
+
+    /**
+     * 索引文件路径，需要和注解处理器中的路径一致
+     */
+    public static final String INDEX_RESOURCE = "META-INF/django/document-classes";
+
+    private static final String COMMENT_PREFIX = "#";
+
+    private DocumentClassIndex() {
+    }
+
+    /**
+     * @param classLoader 用于查找索引文件和加载类
+     * @return 所有索引中的类，不包含无法加载的类。没有索引文件时返回空列表
+     */
+    public static List<Class<?>> load(ClassLoader classLoader) {
+        Set<String> classNames = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+            while (resources.hasMoreElements()) {
+                readIndex(resources.nextElement(), classNames);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("read document class index failed", e);
+        }
+
+        List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // 索引过期或依赖缺失的类忽略
+            }
+        }
+        return classes;
+    }
+
+    private static void readIndex(URL url, Set<String> classNames) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+                    classNames.add(line);
+                }
+            }
+        }
+    }
+}
@@ -103,16 +103,20 @@ public class LambdaUtils {
         try {
             MethodHandle handle = lookup.unreflect(implMethod);
             Class<?>[] methodParameterTypes = implMethod.getParameterTypes();
+            Class<?>[] interfaceParameterTypes = interfaceMethod.getParameterTypes();
             Class<?>[] instantiatedPTypes = new Class<?>[methodParameterTypes.length + 1];
             instantiatedPTypes[0] = implMethod.getDeclaringClass();
-            System.arraycopy(methodParameterTypes, 0, instantiatedPTypes, 1, methodParameterTypes.length);
+            for (int i = 0; i < methodParameterTypes.length; i++) {
+                instantiatedPTypes[i + 1] = instantiatedType(methodParameterTypes[i],
+                        i + 1 < interfaceParameterTypes.length ? interfaceParameterTypes[i + 1] : null);
+            }
 
             CallSite site = LambdaMetafactory.metafactory(
                     lookup, interfaceMethod.getName(),
                     MethodType.methodType(toBeImplI),
                     MethodType.methodType(interfaceMethod.getReturnType(),
-                            interfaceMethod.getParameterTypes()),
-                    handle, MethodType.methodType(implMethod.getReturnType(),
+                            interfaceParameterTypes),
+                    handle, MethodType.methodType(instantiatedType(implMethod.getReturnType(), interfaceMethod.getReturnType()),
                             instantiatedPTypes));
             return (T) site.getTarget().invoke();
         } catch (Throwable e) {
@@ -122,6 +126,20 @@ public class LambdaUtils {
     }
 
 
+    /**
+     * 实现方法的参数或返回值是原生类型, 而接口方法对应的是引用类型时, 使用包装类型, 由LambdaMetafactory生成装箱/拆箱.
+     * 接口方法返回void时忽略实现方法的返回值.
+     */
+    private static Class<?> instantiatedType(Class<?> implType, Class<?> interfaceType) {
+        if (interfaceType == void.class) {
+            return void.class;
+        }
+        if (implType.isPrimitive() && implType != void.class && interfaceType != null && !interfaceType.isPrimitive()) {
+            return org.apache.commons.lang3.ClassUtils.primitiveToWrapper(implType);
+        }
+        return implType;
+    }
+
     /**
      * 获取无参构造函数的代理
      *
@@ -0,0 +1,49 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.bson;
+
+import com.mountsea.django.bson.annotation.FillNullByEmpty;
+import com.mountsea.django.bson.projection.DocumentList;
+import com.mountsea.django.bson.projection.DocumentNode;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+@Getter
+@Setter
+@FillNullByEmpty
+public class FillEmptyDocument extends DocumentNode {
+    public static FillEmptyDocument create() {
+        return create(FillEmptyDocument.class);
+    }
+
+    private String name;
+
+    private DocumentList<Integer> list;
+
+    private ChainSetterDocument nested;
+}
@@ -51,6 +51,8 @@ public class MainDocument extends DocumentNode {
 
     private DocumentSet<Integer> simpleSet;
 
+    private LinkedDocumentList<Integer> simpleList;
+
     private DocumentList<TreeDocumentMap<Integer, MainDocument>> list2;
 
     private DocumentMap<Integer, LinkedDocumentList<MainDocument>> map2;
@@ -58,4 +60,12 @@ public class MainDocument extends DocumentNode {
     private DataDocument dataDocument;
 
     private DtBsonValue dtBsonValue;
+
+    private DocumentIntList intList;
+
+    private DocumentLongList longList;
+
+    private DocumentIntLongMap intLongMap;
+
+    private DocumentLongDoubleMap longDoubleMap;
 }
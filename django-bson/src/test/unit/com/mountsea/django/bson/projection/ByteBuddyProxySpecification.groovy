@@ -0,0 +1,60 @@
+package com.mountsea.django.bson.projection
+
+import com.mountsea.django.bson.BsonConvertingSpecification
+import com.mountsea.django.bson.ChainSetterDocument
+import com.mountsea.django.bson.DataDocument
+import com.mountsea.django.bson.projection.pojo.GlobalModels
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+class ByteBuddyProxySpecification extends BsonConvertingSpecification {
+
+    static provider = new ByteBuddyProxiedDocumentCreatorProvider()
+
+    def "should generate proxy class recording setter updates"() {
+        when:
+        def doc = provider.get(DataDocument).create()
+        DocumentNodeHelper.enableUpdateRecord(doc)
+        def list = new DocumentList<Integer>()
+        doc.setValue('a')
+        doc.setIntList(list)
+        list.add(1)
+
+        then:
+        doc instanceof GeneratedDocumentProxy
+        GlobalModels.isProxyClass(doc.getClass())
+        GlobalModels.getCGLibProxyRawClass(doc.getClass()) == DataDocument
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, true)) ==
+                toBsonDocument(['$set': ['value': 'a', 'intList': [1]]])
+
+        when:
+        doc.setIntList(new DocumentList<Integer>())
+        list.add(2)
+
+        then:
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, true)) == toBsonDocument(['$set': ['intList': []]])
+    }
+
+    def "should primitive setter record update and return original value"() {
+        when:
+        def doc = provider.get(ChainSetterDocument).create()
+
+        then:
+        doc.setF2(1) == doc
+        doc.f2 == 1
+
+        when:
+        DocumentNodeHelper.enableUpdateRecord(doc)
+        doc.setF2(2).setF1('x')
+
+        then:
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, true)) == toBsonDocument(['$set': ['f2': 2, 'f1': 'x']])
+    }
+
+    def "should pregenerate proxies for document classes in package"() {
+        expect:
+        GlobalModels.pregenerateProxies(getClass().getClassLoader(), 'com.mountsea.django.bson') > 0
+    }
+}
@@ -2,8 +2,11 @@ package com.mountsea.django.bson.projection
 
 import com.mountsea.django.bson.BsonConvertingSpecification
 import com.mountsea.django.bson.ChainSetterDocument
+import com.mountsea.django.bson.DataDocument
 import com.mountsea.django.bson.EnumTestDocument
+import com.mountsea.django.bson.FillEmptyDocument
 import com.mountsea.django.bson.Level
+import com.mountsea.django.bson.MainDocument
 import com.mountsea.django.bson.Sex
 import org.bson.BsonInt32
 import org.bson.BsonString
@@ -46,4 +49,169 @@ class DocumentNodeSpecification extends BsonConvertingSpecification {
         doc.sex == Sex.MAN
     }
 
+    def "should link parent and fill empty node when decoding"() {
+        when:
+        def doc = fromBsonDocument(toBsonDocument(['name': 'a', 'list': [1, 2]]), FillEmptyDocument)
+        DocumentNodeHelper.enableUpdateRecord(doc)
+
+        then:
+        doc.list == [1, 2]
+        doc.nested != null
+        doc.nested.f1 == null
+
+        when:
+        doc.list.add(3)
+        doc.nested.setF1('b')
+
+        then:
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, false)) ==
+                toBsonDocument(['$push': ['list': 3], '$set': ['nested.f1': 'b']])
+
+        when:
+        def list = doc.list
+        doc.setList(new DocumentList<Integer>())
+        list.add(4)
+
+        then:
+        !toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, false)).containsKey('$push')
+    }
+
+    def "should record filled nodes when filling live document"() {
+        given:
+        def doc = DocumentNode.create(FillEmptyDocument, false)
+        DocumentNodeHelper.enableUpdateRecord(doc)
+
+        when:
+        doc.fillNullNodeByEmpty()
+
+        then:
+        doc.list == []
+        doc.nested != null
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, false)) ==
+                toBsonDocument(['$set': ['list': [], 'nested': ['f2': 0]]])
+
+        when:
+        doc.nested.setF1('b')
+
+        then:
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(doc, false)) ==
+                toBsonDocument(['$set': ['list': [], 'nested': ['f1': 'b', 'f2': 0]]])
+    }
+
+    def "should record under new path after node relinked"() {
+        given:
+        def main = MainDocument.create()
+        def data = DataDocument.create()
+        main.setDataDocument(data)
+        main.setMap(new DocumentMap<Integer, DataDocument>())
+        DocumentNodeHelper.enableUpdateRecord(main)
+
+        when:
+        data.setValue('a')
+        then:
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(main, true)) == toBsonDocument(['$set': ['dataDocument.value': 'a']])
+
+        when:
+        main.setDataDocument(null)
+        main.map.put(2, data)
+        DocumentNodeHelper.getUpdateRecord(main, true)
+        data.setValue('b')
+        then:
+        data.getParent().is(main.map)
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(main, true)) == toBsonDocument(['$set': ['map.2.value': 'b']])
+    }
+
+    def "should not use document monitor as record lock"() {
+        given:
+        def main = MainDocument.create()
+        DocumentNodeHelper.enableUpdateRecord(main)
+
+        when:
+        def thread
+        synchronized (main) {
+            thread = Thread.start { main.setName('a') }
+            thread.join(1000)
+        }
+        then:
+        !thread.isAlive()
+        toBsonDocument(DocumentNodeHelper.getUpdateRecord(main, false)) == toBsonDocument(['$set': ['name': 'a']])
+        !DocumentNodeHelper.getRecordLock(main).is(main)
+        DocumentNodeHelper.getRecordLock(main).is(DocumentNodeHelper.getRecordLock(main))
+    }
+
+    def "should deep clone without sharing mutable nodes"() {
+        given:
+        MainDocument document = parseMainDocument(['id': 1, 'name': 'a', 'list': [['value': 'x']], 'map': ['2': ['value': 'y']],
+                                                   'dataDocument': ['value': 'z'], 'intList': [1, 2], 'intLongMap': ['1': 2]])
+        def bson = toBsonDocument(document)
+
+        when:
+        MainDocument copy = document.deepCloneSelf()
+
+        then:
+        copy.getClass() == document.getClass()
+        toBsonDocument(copy) == bson
+        !copy.list.is(document.list)
+        !copy.dataDocument.is(document.dataDocument)
+
+        when:
+        copy.dataDocument.setValue('changed')
+        copy.list.get(0).setValue('changed')
+
+        then:
+        toBsonDocument(document) == bson
+    }
+
+    def "should share primitive containers until modified in copy on write snapshot"() {
+        given:
+        MainDocument document = parseMainDocument(['intList': [1, 2, 3], 'intLongMap': ['1': 2]])
+        DocumentNodeHelper.enableUpdateRecord(document)
+
+        when:
+        MainDocument snapshot = document.deepCloneSelf(true)
+        document.intList.set(0, 10)
+        document.intList.add(4)
+        document.intLongMap.put(1, 3L)
+
+        then:
+        snapshot.intList.toArray() == [1, 2, 3] as int[]
+        snapshot.intLongMap.get(1) == 2L
+        document.intList.toArray() == [10, 2, 3, 4] as int[]
+        document.intLongMap.get(1) == 3L
+
+        when:
+        snapshot.intList.removeAt(0)
+
+        then:
+        snapshot.intList.toArray() == [2, 3] as int[]
+        document.intList.toArray() == [10, 2, 3, 4] as int[]
+    }
+
+    def "should link parent without update collector on nested nodes"() {
+        given:
+        MainDocument document = parseMainDocument(['dataDocument': ['value': 'a']])
+        def data = document.dataDocument
+
+        expect:
+        !DocumentNodeHelper.hasEnableUpdateCollect(data)
+        DocumentNodeHelper.getUpdateRecord(data, false) == null
+
+        when:
+        DocumentNodeHelper.enableUpdateRecord(document)
+        def other = MainDocument.create()
+        other.setDataDocument(data)
+
+        then:
+        thrown(MultiParentException)
+
+        when:
+        document.setDataDocument(null)
+        other.setDataDocument(data)
+        DocumentNodeHelper.enableUpdateRecord(other)
+        data.setValue('b')
+
+        then:
+        updateEqualsTo(document, ['$unset': ['dataDocument': '']])
+        updateEqualsTo(other, ['$set': ['dataDocument.value': 'b']])
+    }
 }
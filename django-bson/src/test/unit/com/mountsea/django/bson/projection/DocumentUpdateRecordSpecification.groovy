@@ -104,7 +104,7 @@ class DocumentUpdateRecordSpecification extends BsonConvertingSpecification {
                                            'map2.1': [[:], [:], ['name': 'v3']]]])
     }
 
-    def "should list.add/list.remove project to push/[set entire list]"() {
+    def "should list.add/list.remove project to push/pop/[set entire list]"() {
         given:
         MainDocument document = parseMainDocument(['list': []])
         document.enableUpdateCollect()
@@ -119,11 +119,75 @@ class DocumentUpdateRecordSpecification extends BsonConvertingSpecification {
         then:
         updateEqualsTo(document, ['$push': ['list': ['$each': [['value': 'v1'], ['value': 'v2'], ['value': 'v3']]]]])
 
-        when:
+        when: 'remove tail element'
         document.clearUpdateCollector()
         document.list.remove(parseDataDocument(['value': 'v3']))
         then:
-        updateEqualsTo(document, ['$set': ['list': [['value': 'v1'], ['value': 'v2']]]])
+        updateEqualsTo(document, ['$pop': ['list': 1]])
+
+        when: 'remove head element'
+        document.clearUpdateCollector()
+        document.list.add(parseDataDocument(['value': 'v3']))
+        document.clearUpdateCollector()
+        document.list.remove(0)
+        then:
+        updateEqualsTo(document, ['$pop': ['list': -1]])
+
+        when: 'pop twice'
+        document.list.remove(0)
+        then:
+        updateEqualsTo(document, ['$set': ['list': [['value': 'v3']]]])
+
+        when: 'remove mutable element in the middle'
+        document.list.addAll([parseDataDocument(['value': 'v4']), parseDataDocument(['value': 'v5'])])
+        document.clearUpdateCollector()
+        document.list.remove(1)
+        then:
+        updateEqualsTo(document, ['$set': ['list': [['value': 'v3'], ['value': 'v5']]]])
+    }
+
+    def "should list.remove project to pull when list's element is immutable and unique"() {
+        given:
+        MainDocument document = parseMainDocument(['simpleList': [1, 2, 3, 4, 5, 2]])
+        document.enableUpdateCollect()
+
+        when: 'remaining equal element'
+        document.simpleList.remove((Object) 2)
+        then:
+        updateEqualsTo(document, ['$set': ['simpleList': [1, 3, 4, 5, 2]]])
+
+        when:
+        document.clearUpdateCollector()
+        document.simpleList.remove((Object) 3)
+        document.simpleList.remove((Object) 4)
+        then:
+        updateEqualsTo(document, ['$pullAll': ['simpleList': [3, 4]]])
+
+        when: 'head element merge into existing pull'
+        document.simpleList.pollFirst()
+        then:
+        updateEqualsTo(document, ['$pullAll': ['simpleList': [3, 4, 1]]])
+
+        when: 'pop can not merge with pull'
+        document.simpleList.add(6)
+        document.clearUpdateCollector()
+        document.simpleList.pollLast()
+        document.simpleList.remove((Object) 2)
+        then:
+        updateEqualsTo(document, ['$set': ['simpleList': [5]]])
+
+        when:
+        document.simpleList.add(7)
+        document.clearUpdateCollector()
+        document.simpleList.removeAll([5])
+        then:
+        updateEqualsTo(document, ['$pull': ['simpleList': 5]])
+
+        when: 'list become empty'
+        document.clearUpdateCollector()
+        document.simpleList.pollLast()
+        then:
+        updateEqualsTo(document, ['$set': ['simpleList': []]])
     }
 
     def "should set.add/set.remove project to addToSet/pull when set's element is immutable"() {
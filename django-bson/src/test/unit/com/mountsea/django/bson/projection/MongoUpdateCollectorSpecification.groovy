@@ -1,6 +1,13 @@
 package com.mountsea.django.bson.projection
 
 import com.mountsea.django.bson.BsonConvertingSpecification
+import com.mountsea.django.bson.BsonUtils
+import com.mongodb.client.model.Updates
+import org.bson.BsonArray
+import org.bson.BsonDocument
+import org.bson.BsonInt32
+import org.bson.RawBsonDocument
+import org.bson.codecs.configuration.CodecRegistry
 
 /**
  * 测试MongoUpdateCollector的操作生成和各种情况下的操作合并
@@ -11,6 +18,8 @@ class MongoUpdateCollectorSpecification extends BsonConvertingSpecification {
 
     static MongoUpdateCollectorImpl collector = new MongoUpdateCollectorImpl()
 
+    static CodecRegistry codecRegistry = BsonUtils.getCommonCodecRegistry()
+
     def setup() {
         collector.clearUpdate()
     }
@@ -47,6 +56,21 @@ class MongoUpdateCollectorSpecification extends BsonConvertingSpecification {
         updateEqualsTo(collector, ['$pull': ['f5': 1], '$pullAll': ['f6': 1..3]])
     }
 
+    def 'test $pop'() {
+        when:
+        def list = []
+        collector.popArrayValue("f9", list, true)
+        collector.popArrayValue("f10", list, false)
+        then:
+        updateEqualsTo(collector, ['$pop': ['f9': -1, 'f10': 1]])
+        collector.getMongoUpdate().getPop() == ['f9': -1, 'f10': 1]
+
+        when: 'pop can not merge'
+        collector.popArrayValue("f9", list, true)
+        then:
+        updateEqualsTo(collector, ['$pop': ['f10': 1], '$set': ['f9': []]])
+    }
+
     def 'test $addToSet'() {
         when:
         def list = []
@@ -147,4 +171,124 @@ class MongoUpdateCollectorSpecification extends BsonConvertingSpecification {
         updateEqualsTo(collector, ['$set': ["f1": [666]]])
     }
 
+    def "should merge records among many sibling paths"() {
+        given:
+        List<Integer> list = [666]
+
+        when:
+        (0..<100).each { collector.setField("bag.slot" + it + ".count", it, null) }
+        collector.setField("bag.slot5", "v5", null)
+        collector.pushArrayValue("bag.slot6.items", list, 1)
+        collector.pushArrayValue("bag.slot6.items", list, 2)
+        collector.setField("bag.slot6.items.0", 3, null)
+        collector.setField("bag.slot10", "v10", null)
+        collector.setField("bag.slot10.count", 10, null)
+        collector.setField("bag.slot1", "v1", null)
+        def expect = [:]
+        (0..<100).each { expect["bag.slot" + it + ".count"] = it }
+        expect.remove("bag.slot1.count")
+        expect.remove("bag.slot5.count")
+        expect.remove("bag.slot10.count")
+        expect["bag.slot5"] = "v5"
+        expect["bag.slot6.items"] = [666]
+        expect["bag.slot10"] = "v10"
+        expect["bag.slot1"] = "v1"
+        then:
+        updateEqualsTo(collector, ['$set': expect])
+
+        when:
+        collector.unsetField("bag", null)
+        collector.setField("bag.slot1", "v1", null)
+        then:
+        updateEqualsTo(collector, ['$unset': ['bag': '']])
+    }
+
+    def "should accept UpdatePath and materialize dotted path"() {
+        given:
+        def bag = UpdatePath.of(UpdatePath.of(null, "player"), "bag")
+        def slot = bag.child("slot1")
+
+        expect:
+        slot.toString() == "player.bag.slot1"
+        slot.depth == 3
+        slot.topSegment == "player"
+        slot.relativeTo(bag.parent).toString() == "bag.slot1"
+        UpdatePath.parse("player.bag.slot1") == slot
+        UpdatePath.parse("player.bag.slot1").hashCode() == slot.hashCode()
+        UpdatePath.parse("player.bag.slot2") != slot
+        UpdatePath.parse("player.bag") != slot
+        UpdatePath.parse("player.bag.slot1").toString() == UpdatePath.of(UpdatePath.parse("player.bag"), "slot1").toString()
+
+        when:
+        collector.setField(slot, 1, null)
+        collector.setField(bag.child("slot2"), 2, null)
+        collector.setField("player.bag.slot3", 3, null)
+        then:
+        updateEqualsTo(collector, ['$set': ['player.bag.slot1': 1, 'player.bag.slot2': 2, 'player.bag.slot3': 3]])
+
+        when:
+        collector.setField(bag, [:], null)
+        then:
+        updateEqualsTo(collector, ['$set': ['player.bag': [:]]])
+    }
+
+    def "should encode collected update without intermediate document"() {
+        when:
+        def list = []
+        collector.setField("id", 1, null)
+        collector.setField("f1", "v1", null)
+        collector.pushArrayValueBatch("f2", list, 1..2)
+        collector.unsetField("f3", null)
+        def update = collector.getUpdate(["id"] as Set)
+        then:
+        update instanceof CollectedUpdateBson
+        update.toBsonDocument(BsonDocument, codecRegistry) instanceof RawBsonDocument
+        toBsonDocument(update) == toBsonDocument(Updates.combine(
+                Updates.set("f1", "v1"), Updates.pushEach("f2", [1, 2]), Updates.unset("f3")))
+
+        when: "更新记录生成后继续合并操作，不影响已生成的Bson"
+        collector.pushArrayValue("f2", list, 3)
+        then:
+        toBsonDocument(update).getDocument('$push') ==
+                new BsonDocument("f2", new BsonDocument('$each', new BsonArray([new BsonInt32(1), new BsonInt32(2)])))
+    }
+
+    def "should merge striped records of different top-level fields"() {
+        given:
+        def striped = new StripedMongoUpdateCollector(4)
+        def list = [1, 2, 3]
+
+        when:
+        striped.setField("a.b", 1, null)
+        striped.setField("c", "v", null)
+        striped.pushArrayValue("d", list, 3)
+        striped.setField("a", ['b': 2], null)
+        striped.removeListValue(UpdatePath.parse("e"), [2, 3], 0, 1)
+        then:
+        striped.stripeCount == 4
+        updateEqualsTo(striped, ['$set': ['a': ['b': 2], 'c': 'v'], '$push': ['d': 3], '$pop': ['e': -1]])
+        striped.getMongoUpdate().set.keySet() == ['a', 'c'] as Set
+
+        when:
+        def update = striped.getUpdate(null, true)
+        then:
+        toBsonDocument(update).containsKey('$set')
+        striped.getUpdate() == null
+        striped.getMongoUpdate() == null
+    }
+
+    def "should record concurrently with striped collector"() {
+        given:
+        def striped = new StripedMongoUpdateCollector(8)
+        def threads = (0..<8).collect { t ->
+            Thread.start {
+                1000.times { i -> striped.setField("f" + t + "." + i, i, null) }
+            }
+        }
+
+        when:
+        threads*.join()
+        then:
+        striped.getMongoUpdate().set.size() == 8000
+    }
 }
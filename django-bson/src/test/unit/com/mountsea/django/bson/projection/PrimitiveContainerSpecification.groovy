@@ -0,0 +1,133 @@
+package com.mountsea.django.bson.projection
+
+import com.mountsea.django.bson.BsonConvertingSpecification
+import com.mountsea.django.bson.MainDocument
+import org.bson.BsonInt64
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+class PrimitiveContainerSpecification extends BsonConvertingSpecification {
+
+    def "should encode and decode primitive containers"() {
+        given:
+        def bson = ['intList'      : [1, 2, 3],
+                    'longList'     : [new BsonInt64(1), new BsonInt64(5)],
+                    'intLongMap'   : ['1': new BsonInt64(10), '-2': new BsonInt64(20), '0': new BsonInt64(0)],
+                    'longDoubleMap': ['3': 1.5d]]
+
+        when:
+        MainDocument document = parseMainDocument(bson)
+
+        then:
+        document.intList.toArray() == [1, 2, 3] as int[]
+        document.longList.toArray() == [1L, 5L] as long[]
+        document.intLongMap.get(-2) == 20L
+        document.intLongMap.containsKey(0)
+        document.longDoubleMap.get(3L) == 1.5d
+        toBsonDocument(document) == toBsonDocument(bson)
+        document.intList.deepCloneSelf() == document.intList
+        document.intLongMap.deepCloneSelf() == document.intLongMap
+        toBsonDocument(document.deepCloneSelf()) == toBsonDocument(bson)
+    }
+
+    def "should read other numeric types without losing precision"() {
+        when:
+        MainDocument document = parseMainDocument(['longList': [1, 2.0d], 'longDoubleMap': ['1': 2]])
+
+        then:
+        document.longList.toArray() == [1L, 2L] as long[]
+        document.longDoubleMap.get(1L) == 2.0d
+
+        when:
+        parseMainDocument(['intList': [1.5d]])
+
+        then:
+        thrown(Exception)
+    }
+
+    def "test primitive list update recording"() {
+        given:
+        MainDocument document = parseMainDocument(['intList': [1, 2, 3, 4]])
+        document.enableUpdateCollect()
+
+        when:
+        document.intList.add(5)
+        then:
+        updateEqualsTo(document, ['$push': ['intList': 5]])
+
+        when:
+        document.clearUpdateCollector()
+        document.intList.set(1, 20)
+        then:
+        updateEqualsTo(document, ['$set': ['intList.1': 20]])
+
+        when:
+        document.clearUpdateCollector()
+        document.intList.removeAt(0)
+        then:
+        updateEqualsTo(document, ['$pop': ['intList': -1]])
+
+        when:
+        document.clearUpdateCollector()
+        document.intList.removeValue(3)
+        then:
+        updateEqualsTo(document, ['$pull': ['intList': 3]])
+
+        when:
+        document.clearUpdateCollector()
+        document.intList.add(0, 7)
+        then:
+        updateEqualsTo(document, ['$set': ['intList': [7, 20, 4, 5]]])
+    }
+
+    def "test primitive map update recording"() {
+        given:
+        MainDocument document = parseMainDocument(['intLongMap': ['1': new BsonInt64(10)]])
+        document.enableUpdateCollect()
+
+        when:
+        document.intLongMap.put(2, 20L)
+        document.intLongMap.addTo(1, 5L)
+        then:
+        updateEqualsTo(document, ['$set': ['intLongMap.2': new BsonInt64(20), 'intLongMap.1': new BsonInt64(15)]])
+
+        when:
+        document.clearUpdateCollector()
+        document.intLongMap.remove(2)
+        then:
+        updateEqualsTo(document, ['$unset': ['intLongMap.2': '']])
+
+        when:
+        document.clearUpdateCollector()
+        document.intLongMap.clear()
+        then:
+        updateEqualsTo(document, ['$set': ['intLongMap': [:]]])
+    }
+
+    def "primitive map should behave like HashMap"() {
+        given:
+        def random = new Random(1)
+        def map = new DocumentIntIntMap()
+        def expect = new HashMap<Integer, Integer>()
+
+        when:
+        10000.times {
+            int key = random.nextInt(512) - 256
+            if (random.nextInt(3) == 0) {
+                assert map.remove(key) == (expect.remove(key) ?: 0)
+            } else {
+                int value = random.nextInt()
+                assert map.put(key, value) == (expect.put(key, value) ?: 0)
+            }
+        }
+        def actual = [:]
+        map.forEach({ k, v -> actual.put(k, v) } as DocumentIntIntMap.EntryConsumer)
+
+        then:
+        map.size() == expect.size()
+        actual == expect
+        expect.every { k, v -> map.get(k) == v }
+    }
+}
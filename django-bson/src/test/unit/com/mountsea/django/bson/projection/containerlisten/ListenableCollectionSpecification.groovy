@@ -49,13 +49,13 @@ class ListenableCollectionSpecification extends Specification {
         when: 'remove by index'
         list.remove(4)
         then:
-        1 * listener.afterRemove({ it.is(list) }, 5)
+        1 * listener.afterRemoveAt({ it.is(list) }, 4, 5)
         list == 1..4
 
         when: 'remove by element'
         list.remove((Object) 4)
         then:
-        1 * listener.afterRemove({ it.is(list) }, 4)
+        1 * listener.afterRemoveAt({ it.is(list) }, 3, 4)
         list == 1..3
 
         when:
@@ -133,7 +133,7 @@ class ListenableCollectionSpecification extends Specification {
         listIterator.remove()
 
         then:
-        1 * listener.afterRemove({ it.is(list) }, 3)
+        1 * listener.afterRemoveAt({ it.is(list) }, 0, 3)
         list == [4, 5]
 
         when:
@@ -144,7 +144,7 @@ class ListenableCollectionSpecification extends Specification {
 
         then:
         1 * listener.afterSet({ it.is(list) }, 0, 444, 4)
-        1 * listener.afterRemove({ it.is(list) }, 5)
+        1 * listener.afterRemoveAt({ it.is(list) }, 1, 5)
         list == [444]
 
         where:
@@ -351,7 +351,7 @@ class ListenableCollectionSpecification extends Specification {
         when:
         list.remove(s3)
         then:
-        1 * listener.afterRemove(_, { it.is(s1) })
+        1 * listener.afterRemoveAt(_, 0, { it.is(s1) })
 
         when:
         list.removeAll([s3])
@@ -364,7 +364,7 @@ class ListenableCollectionSpecification extends Specification {
         def subList = list.subList(1, 3)
         subList.remove(s3)
         then:
-        1 * listener.afterRemove(_, { it.is(s2) })
+        1 * listener.afterRemoveAt(_, 1, { it.is(s2) })
 
         when:
         if (list instanceof Deque) {
@@ -385,7 +385,7 @@ class ListenableCollectionSpecification extends Specification {
         }
         then:
         if (list instanceof Deque) {
-            1 * listener.afterRemove(_, { it.is(s1) })
+            1 * listener.afterRemoveAt(_, 0, { it.is(s1) })
         }
 
         where:
@@ -0,0 +1,77 @@
+package com.mountsea.django.bson.projection.pojo
+
+import com.mountsea.django.bson.BsonConvertingSpecification
+import com.mountsea.django.bson.CommonCodecRegistry
+import org.bson.BsonDocument
+import org.bson.BsonDocumentReader
+import org.bson.BsonDocumentWriter
+import org.bson.BsonInt64
+import org.bson.BsonNull
+import org.bson.codecs.DecoderContext
+import org.bson.codecs.EncoderContext
+import org.bson.codecs.configuration.CodecConfigurationException
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+class CompiledPojoCodecSpecification extends BsonConvertingSpecification {
+
+    static class CompiledPojo {
+        int count
+        long total
+        double rate
+        boolean enabled
+        String name
+        List<Integer> values
+    }
+
+    static codec(boolean compiled) {
+        def conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS)
+        conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION)
+        DocumentPojoCodecProvider.builder().conventions(conventions).compileCodecs(compiled)
+                .register(CompiledPojo).build().get(CompiledPojo, new CommonCodecRegistry())
+    }
+
+    static encode(codec, Object value) {
+        def document = new BsonDocument()
+        codec.encode(new BsonDocumentWriter(document), value, EncoderContext.builder().build())
+        document
+    }
+
+    static decode(codec, BsonDocument document) {
+        codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build())
+    }
+
+    def "should encode and decode same as interpreted codec"() {
+        given:
+        def compiled = codec(true)
+        def interpreted = codec(false)
+        def pojo = new CompiledPojo(count: 3, total: 4L, rate: 1.5d, enabled: true, name: 'n', values: [1, 2])
+
+        expect:
+        encode(compiled, pojo) == encode(interpreted, pojo)
+        encode(compiled, pojo) == toBsonDocument(['count': 3, 'total': new BsonInt64(4), 'rate': 1.5d, 'enabled': true,
+                                                  'name': 'n', 'values': [1, 2]])
+
+        when:
+        def bsonDocument = toBsonDocument(['unknown': 'x', 'count': 5, 'total': 6, 'name': BsonNull.VALUE, 'values': [3]])
+        def decoded = decode(compiled, bsonDocument)
+
+        then:
+        encode(compiled, decoded) == encode(interpreted, decode(interpreted, bsonDocument))
+        decoded.count == 5
+        decoded.total == 6L
+        decoded.name == null
+        decoded.values == [3]
+    }
+
+    def "should report property name when decoding failed"() {
+        when:
+        decode(codec(true), toBsonDocument(['count': 'x']))
+
+        then:
+        def e = thrown(CodecConfigurationException)
+        e.message.contains("Decoding 'count' errored")
+    }
+}
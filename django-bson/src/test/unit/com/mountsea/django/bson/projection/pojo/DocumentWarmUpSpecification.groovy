@@ -0,0 +1,39 @@
+package com.mountsea.django.bson.projection.pojo
+
+import com.mountsea.django.bson.FillEmptyDocument
+import com.mountsea.django.bson.MainDocument
+import com.mountsea.django.bson.projection.DocumentNode
+import com.mountsea.django.bson.util.DocumentClassIndex
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+class DocumentWarmUpSpecification extends Specification {
+
+    def "should load document classes from index"() {
+        given:
+        def dir = Files.createTempDirectory('django-index')
+        def index = dir.resolve(DocumentClassIndex.INDEX_RESOURCE)
+        Files.createDirectories(index.parent)
+        index.toFile().text = "# comment\n${MainDocument.name}\n\ncom.example.NotExists\n${FillEmptyDocument.name}\n"
+        def classLoader = new URLClassLoader([dir.toUri().toURL()] as URL[], getClass().classLoader)
+
+        expect:
+        DocumentClassIndex.load(classLoader) == [MainDocument, FillEmptyDocument]
+        DocumentClassIndex.load(getClass().classLoader) == []
+    }
+
+    def "should warm up document class"() {
+        when:
+        GlobalModels.warmUp(FillEmptyDocument)
+        def doc = DocumentNode.create(FillEmptyDocument)
+
+        then:
+        doc.list != null
+        doc.nested != null
+    }
+}
@@ -0,0 +1,63 @@
+package com.mountsea.django.bson.projection.pojo
+
+import com.mountsea.django.bson.BsonConvertingSpecification
+import com.mountsea.django.bson.MainDocument
+import org.bson.BsonInt64
+import org.bson.codecs.configuration.CodecConfigurationException
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+class GeneratedPropertyAccessorSpecification extends BsonConvertingSpecification {
+
+    static class AccessorPojo {
+        int count
+        long total
+        double rate
+        boolean enabled
+        String name
+    }
+
+    static classModel(Class<?> aClass) {
+        def conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS)
+        conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION)
+        ClassModel.builder(aClass).conventions(conventions).build()
+    }
+
+    def "should generate accessor for public getter and setter"() {
+        given:
+        def model = classModel(AccessorPojo)
+        def pojo = new AccessorPojo()
+
+        expect:
+        model.propertyModels.every { it.propertyAccessor instanceof GeneratedPropertyAccessor }
+
+        when:
+        model.getPropertyModel('count').propertyAccessor.set(pojo, 3)
+        model.getPropertyModel('rate').propertyAccessor.set(pojo, 1.5d)
+        model.getPropertyModel('name').propertyAccessor.set(pojo, 'n')
+
+        then:
+        pojo.count == 3
+        pojo.rate == 1.5d
+        model.getPropertyModel('count').propertyAccessor.get(pojo) == 3
+        model.getPropertyModel('name').propertyAccessor.get(pojo) == 'n'
+        toBsonDocument(pojo) == toBsonDocument(['count': 3, 'total': new BsonInt64(0), 'rate': 1.5d, 'enabled': false, 'name': 'n'])
+
+        when:
+        model.getPropertyModel('total').propertyAccessor.set(pojo, null)
+
+        then:
+        thrown(CodecConfigurationException)
+    }
+
+    def "should keep encoding result same as reflective accessor"() {
+        given:
+        def document = parseMainDocument(['name': 'aaa', 'intList': [1, 2]])
+
+        expect:
+        GlobalModels.getClassModel(MainDocument).getPropertyModel('name').propertyAccessor instanceof GeneratedPropertyAccessor
+        toBsonDocument(document) == toBsonDocument(['name': 'aaa', 'intList': [1, 2]])
+    }
+}
@@ -30,6 +30,9 @@ import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mountsea.django.bson.BsonUtils;
 import com.mountsea.django.bson.projection.DocumentNodeHelper;
 import com.mountsea.django.bson.util.LazyInitializer;
@@ -60,6 +63,8 @@ import java.util.function.Supplier;
 @Slf4j(topic = "com.mountsea.django.core.dao")
 public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao {
 
+    private static final Set<String> ID_PATHS = Collections.singleton("id");
+
     protected final SessionBindingMongoDatabase sessionBindingMongoDatabase;
 
     protected final MongoClient mongoClient;
@@ -173,22 +178,19 @@ public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao
                 if (!resetUpdateRecord) {
                     return DefaultWriteContentDocument.createInsert(document, getCodecRegistry());
                 } else {
-                    Object lock = DocumentNodeHelper.getRecordLock(document);
-                    synchronized (lock) {
+                    return DocumentNodeHelper.callWithRecordLocked(document, () -> {
                         DefaultWriteContentDocument insert = DefaultWriteContentDocument.createInsert(document, getCodecRegistry());
                         DocumentNodeHelper.clearUpdateCollector(document);
                         return insert;
-                    }
+                    });
                 }
             } else {
-                Bson updateRecord = DocumentNodeHelper.getUpdateRecord(document, resetUpdateRecord);
+                //id字段不能更新，生成更新记录时直接排除，避免为了删除字段把更新记录转换为BsonDocument
+                Bson updateRecord = DocumentNodeHelper.getUpdateRecord(document, resetUpdateRecord, ID_PATHS);
                 if (updateRecord == null) {
                     return null;
                 }
                 WriteContentDocument update = DefaultWriteContentDocument.createUpdate(updateRecord, getCodecRegistry());
-                if (update.contains("id")) {
-                    update.remove("id");
-                }
                 if (update.isEmpty()) {
                     return null;
                 }
@@ -200,25 +202,27 @@ public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao
                         DefaultWriteContentDocument.createInsert(document, getCodecRegistry()) :
                         DefaultWriteContentDocument.createUpdate(document, getCodecRegistry());
             } else {
-                Object lock = DocumentNodeHelper.getRecordLock(document);
-                synchronized (lock) {
+                return DocumentNodeHelper.callWithRecordLocked(document, () -> {
                     WriteContentDocument writeContentDocument = saveMode == SaveMode.INSERT_ONLY ?
                             DefaultWriteContentDocument.createInsert(document, getCodecRegistry()) :
                             DefaultWriteContentDocument.createUpdate(document, getCodecRegistry());
                     DocumentNodeHelper.enableUpdateRecord(document);
                     return writeContentDocument;
-                }
+                });
             }
         }
     }
 
-    private <T extends CollectibleDocument> Bson keyToFilter(CollectibleDocumentDefinition definition, Object key) {
+    protected Bson keyToFilter(CollectibleDocumentDefinition definition, Object key) {
         return definition.getKeyDefinition().getBsonKeyConverter().keyToBsonFilter(key, getCodecRegistry(), definition.isAllowNullKeyField());
     }
 
-    private <T extends CollectibleDocument> Supplier<BsonDocument> keyFilterToValues(CollectibleDocumentDefinition definition,
-                                                                                     Bson filter,
-                                                                                     Object key) {
+    protected BsonDocument keyToBsonDocument(CollectibleDocumentDefinition definition, Object key) {
+        return definition.getKeyDefinition().getBsonKeyConverter().keyToBsonDocument(key, getCodecRegistry(),
+                definition.isAllowNullKeyField());
+    }
+
+    protected Supplier<BsonDocument> keyFilterToValues(CollectibleDocumentDefinition definition, Bson filter, Object key) {
         return () -> {
             if (filter instanceof BsonDocument) {
                 return (BsonDocument) filter;
@@ -273,6 +277,65 @@ public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao
         return getInternal(documentClass, filter, projection, values, definition, false, key);
     }
 
+    @Nonnull
+    @Override
+    public <T extends CollectibleDocument, K> Map<K, T> findAllByKeys(Class<T> documentClass, Collection<K> keys) {
+        CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+        List<Object> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinctKeys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return orderByKeys(distinctKeys, findAllByKeysInternal(documentClass, definition, distinctKeys, true));
+    }
+
+    @Nonnull
+    @Override
+    public <T extends CollectibleDocument, K> Map<K, T> getAllByKeys(Class<T> documentClass, Collection<K> keys) {
+        CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+        if (!definition.getKeyDefinition().isId()) {
+            checkAutoGenerateIdType(definition);
+        }
+        List<Object> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinctKeys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return orderByKeys(distinctKeys, getAllByKeysInternal(documentClass, definition, distinctKeys, true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, K> Map<K, T> orderByKeys(List<Object> keys, Map<Object, T> documents) {
+        Map<K, T> map = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        for (Object key : keys) {
+            T document = documents.get(key);
+            if (document != null) {
+                map.put((K) key, document);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 批量查找，keys中没有重复。
+     *
+     * @return 找到的文档，map的key为keys中的对象
+     */
+    @Nonnull
+    protected abstract <T extends CollectibleDocument> Map<Object, T> findAllByKeysInternal(Class<T> documentClass,
+                                                                                           CollectibleDocumentDefinition definition,
+                                                                                           List<Object> keys,
+                                                                                           boolean isCacheInterest);
+
+    /**
+     * 批量获取，不存在的文档初始化插入，keys中没有重复。
+     *
+     * @return 所有key对应的文档，map的key为keys中的对象
+     */
+    @Nonnull
+    protected abstract <T extends CollectibleDocument> Map<Object, T> getAllByKeysInternal(Class<T> documentClass,
+                                                                                          CollectibleDocumentDefinition definition,
+                                                                                          List<Object> keys,
+                                                                                          boolean isCacheInterest);
+
     /**
      * @param cacheKey 为null时不操作缓存
      */
@@ -357,6 +420,74 @@ public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao
     protected BulkSaveResult bulkSave(List<? extends CollectibleDocument> list, SaveMode saveMode,
                                       boolean isByKey, @Nullable List<String> byFields, boolean isCacheInterest,
                                       boolean checkLock) {
+        checkBulkSaveArguments(list, isByKey, byFields);
+        PreparedBulkSave prepared = new PreparedBulkSave(list, saveMode);
+        try {
+            BulkWriteResult bulkWriteResult;
+            try {
+                prepareBulkSave(prepared, isByKey, byFields, checkLock);
+                bulkWriteResult = bulkSaveInternal(prepared.documents, prepared.definition, saveMode, isCacheInterest);
+            } catch (Throwable t) {
+                onBulkSaveFailed(prepared);
+                throw t;
+            }
+            return completeBulkSave(prepared, bulkWriteResult);
+        } finally {
+            if (checkLock) {
+                unlockBulkSave(prepared);
+            }
+        }
+    }
+
+    /**
+     * bulkSave的中间状态，在准备阶段生成，入库后用来处理入库结果
+     */
+    protected static class PreparedBulkSave {
+        final List<? extends CollectibleDocument> list;
+
+        final SaveMode saveMode;
+
+        final List<InternalSaveDocument> documents;
+
+        CollectibleDocumentDefinition definition;
+
+        /**
+         * 在入库之前生成的id
+         */
+        Map<Integer, ObjectId> preGenIds;
+
+        /**
+         * 已加saveLock的最大下标
+         */
+        int lockIndex = -1;
+
+        /**
+         * 正在处理的下标
+         */
+        int index;
+
+        /**
+         * 是否在准备阶段把写入内容编码为BsonDocument，入库在其他线程进行时需要，见 {@link WriteContentDocument#encode()}
+         */
+        boolean encodeOnPrepare;
+
+        PreparedBulkSave(List<? extends CollectibleDocument> list, SaveMode saveMode) {
+            this.list = list;
+            this.saveMode = saveMode;
+            this.documents = new ArrayList<>(list.size());
+        }
+
+        public CollectibleDocumentDefinition getDefinition() {
+            return definition;
+        }
+
+        public List<InternalSaveDocument> getDocuments() {
+            return documents;
+        }
+    }
+
+    protected void checkBulkSaveArguments(List<? extends CollectibleDocument> list, boolean isByKey,
+                                          @Nullable List<String> byFields) {
         if (list.isEmpty()) {
             throw new IllegalArgumentException();
         }
@@ -364,134 +495,176 @@ public abstract class AbstractDao implements DatabaseMetaDao, KeyOperationalDao
             throw new IllegalArgumentException();
         }
         checkByFields(byFields);
-        int lockIndex = -1;
-        try {
-            List<InternalSaveDocument> internalSaveDocuments = new ArrayList<>(list.size());
-            CollectibleDocumentDefinition definition = null;
-            Class<?> documentClass = null;
-            //在入库之前生成的id
-            Map<Integer, ObjectId> preGenIds = null;
-            BulkWriteResult bulkWriteResult = null;
-            int i = 0;
-            try {
-                for (i = 0; i < list.size(); i++) {
-                    CollectibleDocument document = list.get(i);
-                    if (checkLock && !document.getSaveLock().tryLock()) {
-                        throw new ConcurrentSaveDjangoException();
-                    }
-                    lockIndex = i;
-                    if (definition == null) {
-                        documentClass = CollectibleDocumentDefinitions.getRealDocumentClass(document.getClass());
-                        definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
-                    } else {
-                        Class<?> aClass = CollectibleDocumentDefinitions.getRealDocumentClass(document.getClass());
-                        if (documentClass != aClass) {
-                            throw new IllegalArgumentException("Not same document type in list: "
-                                    + documentClass + " - " + aClass);
-                        }
-                    }
-                    //获取并清空文档上的更新内容
-                    WriteContentDocument writeContent = getWriteContent(document, saveMode, true);
-                    if (writeContent == null) {
-                        continue;
-                    }
-                    boolean byId = (isByKey && definition.getKeyDefinition().isId()) ||
-                            (!isByKey && byFields.contains("id"));
-
-                    if ((saveMode == SaveMode.INSERT_ONLY || saveMode == SaveMode.INSERT_OR_UPDATE) && document.getId() == null && !byId) {
-                        checkAutoGenerateIdType(definition);
-                        if (saveMode == SaveMode.INSERT_ONLY) {
-                            //使用insert插入，且id为空，需要先生成id，因为insert插入成功后不会返回服务器生成的id
-                            ObjectId objectId = new ObjectId();
-                            if (preGenIds == null) {
-                                preGenIds = new HashMap<>();
-                            }
-                            preGenIds.put(i, objectId);
-                            writeContent.put("_id", objectId);
-                        }
-                    }
-                    if (!byId && saveMode == SaveMode.INSERT_OR_UPDATE) {
-                        //使用upsert时，需要在update中加入key字段，如果key字段只放在filter中，新增插入的文档没有key字段 (id字段例外)
-                        if (isByKey) {
-                            addKeyFieldsToWriteContent(writeContent, definition, document);
-                        } else {
-                            addFieldsToWriteContent(writeContent, definition, document, byFields);
-                        }
+    }
+
+    /**
+     * 对文档加saveLock(如果checkLock)，获取并清空文档上的更新内容，生成写入请求。
+     * 抛出异常时需要调用 {@link #onBulkSaveFailed}，无论是否抛出异常都需要调用 {@link #unlockBulkSave}
+     */
+    protected void prepareBulkSave(PreparedBulkSave prepared, boolean isByKey, @Nullable List<String> byFields,
+                                   boolean checkLock) {
+        List<? extends CollectibleDocument> list = prepared.list;
+        SaveMode saveMode = prepared.saveMode;
+        CollectibleDocumentDefinition definition = null;
+        Class<?> documentClass = null;
+        for (int i = 0; i < list.size(); i++) {
+            prepared.index = i;
+            CollectibleDocument document = list.get(i);
+            if (checkLock && !document.getSaveLock().tryLock()) {
+                throw new ConcurrentSaveDjangoException();
+            }
+            prepared.lockIndex = i;
+            if (definition == null) {
+                documentClass = CollectibleDocumentDefinitions.getRealDocumentClass(document.getClass());
+                definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+                prepared.definition = definition;
+            } else {
+                Class<?> aClass = CollectibleDocumentDefinitions.getRealDocumentClass(document.getClass());
+                if (documentClass != aClass) {
+                    throw new IllegalArgumentException("Not same document type in list: "
+                            + documentClass + " - " + aClass);
+                }
+            }
+            //获取并清空文档上的更新内容
+            WriteContentDocument writeContent = getWriteContent(document, saveMode, true);
+            if (writeContent == null) {
+                continue;
+            }
+            boolean byId = (isByKey && definition.getKeyDefinition().isId()) ||
+                    (!isByKey && byFields.contains("id"));
+
+            if ((saveMode == SaveMode.INSERT_ONLY || saveMode == SaveMode.INSERT_OR_UPDATE) && document.getId() == null && !byId) {
+                checkAutoGenerateIdType(definition);
+                if (saveMode == SaveMode.INSERT_ONLY) {
+                    //使用insert插入，且id为空，需要先生成id，因为insert插入成功后不会返回服务器生成的id
+                    ObjectId objectId = new ObjectId();
+                    if (prepared.preGenIds == null) {
+                        prepared.preGenIds = new HashMap<>();
                     }
-                    if (isByKey) {
-                        Object key = definition.getKeyDefinition().getKeyExtractor().extractKey(document, definition.isAllowNullKeyField());
-                        InternalSaveDocument request = new InternalSaveDocument(document,
-                                saveMode == SaveMode.INSERT_ONLY ? null : keyToFilter(definition, key),
-                                writeContent, key);
-                        internalSaveDocuments.add(request);
-                    } else {
-                        Bson filter = null;
-                        if (saveMode != SaveMode.INSERT_ONLY) {
-                            List<Bson> fieldEqs = new ArrayList<>();
-                            for (String byField : byFields) {
-                                CollectibleDocumentDefinition.Property<?> property = definition.getPropertyMap().get(byField);
-                                if (property == null) {
-                                    throw new IllegalArgumentException("field not found:" + byField + ", in class:" + documentClass);
-                                }
-                                Object v = property.get(document);
-                                fieldEqs.add(Filters.eq(fixIdPropNameFromFieldToBson(byField), v));
-                            }
-                            filter = Filters.and(fieldEqs);
+                    prepared.preGenIds.put(i, objectId);
+                    writeContent.put("_id", objectId);
+                }
+            }
+            if (!byId && saveMode == SaveMode.INSERT_OR_UPDATE) {
+                //使用upsert时，需要在update中加入key字段，如果key字段只放在filter中，新增插入的文档没有key字段 (id字段例外)
+                if (isByKey) {
+                    addKeyFieldsToWriteContent(writeContent, definition, document);
+                } else {
+                    addFieldsToWriteContent(writeContent, definition, document, byFields);
+                }
+            }
+            if (prepared.encodeOnPrepare) {
+                writeContent.encode();
+            }
+            if (isByKey) {
+                Object key = definition.getKeyDefinition().getKeyExtractor().extractKey(document, definition.isAllowNullKeyField());
+                InternalSaveDocument request = new InternalSaveDocument(document,
+                        saveMode == SaveMode.INSERT_ONLY ? null : keyToFilter(definition, key),
+                        writeContent, key);
+                prepared.documents.add(request);
+            } else {
+                Bson filter = null;
+                if (saveMode != SaveMode.INSERT_ONLY) {
+                    List<Bson> fieldEqs = new ArrayList<>();
+                    for (String byField : byFields) {
+                        CollectibleDocumentDefinition.Property<?> property = definition.getPropertyMap().get(byField);
+                        if (property == null) {
+                            throw new IllegalArgumentException("field not found:" + byField + ", in class:" + documentClass);
                         }
-                        InternalSaveDocument request = new InternalSaveDocument(document, filter,
-                                writeContent, null);
-                        internalSaveDocuments.add(request);
+                        Object v = property.get(document);
+                        fieldEqs.add(Filters.eq(fixIdPropNameFromFieldToBson(byField), v));
                     }
+                    filter = Filters.and(fieldEqs);
                 }
-
-                bulkWriteResult = bulkSaveInternal(internalSaveDocuments, definition, saveMode, isCacheInterest);
-            } catch (Throwable t) {
-                //入库之前，已加saveLock再从文档对象上获取更新记录并清空记录，重新开始记录，如果入库失败，下次save时获取到的
-                //更新记录将不再是准确的(当前文档和库中的差异)，所以入库失败时关闭UpdateRecord，下次入库同步整个文档.
-                //为什么不在入库成功后再清空记录？因为加上saveLock并获取记录后，仍然可以修改文档，等入库成功后再清空记录，
-                //则清掉的记录和本次入库的会不一致。
-                log.error("bulkSaveInternal failed. reset document record state.");
-                list.subList(0, Math.min(list.size(), i + 1)).forEach(DocumentNodeHelper::disableUpdateRecord);
-                throw t;
+                InternalSaveDocument request = new InternalSaveDocument(document, filter,
+                        writeContent, null);
+                prepared.documents.add(request);
             }
+        }
+    }
 
-            boolean isAllSync = saveMode == SaveMode.INSERT_ONLY ||
-                    (bulkWriteResult.getUpserts().size() + bulkWriteResult.getMatchedCount()) == internalSaveDocuments.size();
-            if (!isAllSync) {
-                log.info("bulkSaveInternal not all document sync. reset document record state.");
-                list.forEach(DocumentNodeHelper::disableUpdateRecord);
-            }
+    /**
+     * 准备或入库失败时调用
+     */
+    protected void onBulkSaveFailed(PreparedBulkSave prepared) {
+        //入库之前，已加saveLock再从文档对象上获取更新记录并清空记录，重新开始记录，如果入库失败，下次save时获取到的
+        //更新记录将不再是准确的(当前文档和库中的差异)，所以入库失败时关闭UpdateRecord，下次入库同步整个文档.
+        //为什么不在入库成功后再清空记录？因为加上saveLock并获取记录后，仍然可以修改文档，等入库成功后再清空记录，
+        //则清掉的记录和本次入库的会不一致。
+        log.error("bulkSaveInternal failed. reset document record state.");
+        List<? extends CollectibleDocument> list = prepared.list;
+        list.subList(0, Math.min(list.size(), prepared.index + 1)).forEach(DocumentNodeHelper::disableUpdateRecord);
+    }
+
+    protected void unlockBulkSave(PreparedBulkSave prepared) {
+        for (int i = 0; i <= prepared.lockIndex; i++) {
+            CollectibleDocument document = prepared.list.get(i);
+            document.getSaveLock().unlock();
+        }
+        prepared.lockIndex = -1;
+    }
 
-            for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts()) {
-                CollectibleDocument document = list.get(upsert.getIndex());
-                BsonValue upsertedId = upsert.getId();
-                if (upsertedId instanceof BsonObjectId) {
-                    ObjectId objectId = upsertedId.asObjectId().getValue();
-                    setGeneratedObjectId(document, definition, objectId);
-                } else {
-                    log.error("unknown upserted id type {}, {}", upsertedId.getClass(), upsertedId);
-                }
+    /**
+     * 入库成功后，根据入库结果设置文档的状态
+     */
+    protected BulkSaveResult completeBulkSave(PreparedBulkSave prepared, BulkWriteResult bulkWriteResult) {
+        List<? extends CollectibleDocument> list = prepared.list;
+        boolean isAllSync = prepared.saveMode == SaveMode.INSERT_ONLY ||
+                (bulkWriteResult.getUpserts().size() + bulkWriteResult.getMatchedCount()) == prepared.documents.size();
+        if (!isAllSync) {
+            log.info("bulkSaveInternal not all document sync. reset document record state.");
+            list.forEach(DocumentNodeHelper::disableUpdateRecord);
+        }
+
+        for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts()) {
+            CollectibleDocument document = list.get(upsert.getIndex());
+            BsonValue upsertedId = upsert.getId();
+            if (upsertedId instanceof BsonObjectId) {
+                ObjectId objectId = upsertedId.asObjectId().getValue();
+                setGeneratedObjectId(document, prepared.definition, objectId);
+            } else {
+                log.error("unknown upserted id type {}, {}", upsertedId.getClass(), upsertedId);
             }
+        }
 
-            if (preGenIds != null) {
-                //入库前生成的id，入库成功后再设置到文档
-                CollectibleDocumentDefinition.Property<Object> idProperty = definition.getIdProperty();
-                for (Map.Entry<Integer, ObjectId> entry : preGenIds.entrySet()) {
-                    CollectibleDocument document = list.get(entry.getKey());
-                    idProperty.set(document, entry.getValue());
-                }
+        if (prepared.preGenIds != null) {
+            //入库前生成的id，入库成功后再设置到文档
+            CollectibleDocumentDefinition.Property<Object> idProperty = prepared.definition.getIdProperty();
+            for (Map.Entry<Integer, ObjectId> entry : prepared.preGenIds.entrySet()) {
+                CollectibleDocument document = list.get(entry.getKey());
+                idProperty.set(document, entry.getValue());
             }
+        }
 
-            return new BulkSaveResult(bulkWriteResult.getInsertedCount() + bulkWriteResult.getUpserts().size(),
-                    bulkWriteResult.getModifiedCount(), bulkWriteResult.getDeletedCount());
-        } finally {
-            if (checkLock) {
-                for (int i = 0; i <= lockIndex; i++) {
-                    CollectibleDocument document = list.get(i);
-                    document.getSaveLock().unlock();
-                }
+        return new BulkSaveResult(bulkWriteResult.getInsertedCount() + bulkWriteResult.getUpserts().size(),
+                bulkWriteResult.getModifiedCount(), bulkWriteResult.getDeletedCount());
+    }
+
+    /**
+     * 生成bulkWrite的写操作
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected List<WriteModel> toWriteModels(List<InternalSaveDocument> documents, SaveMode saveMode) {
+        List<WriteModel> writeModelList = new ArrayList<>(documents.size());
+        for (InternalSaveDocument saveDocument : documents) {
+            if (saveDocument == null) {
+                continue;
+            }
+            WriteContentDocument writeContent = saveDocument.getWriteContent();
+            switch (saveMode) {
+                case INSERT_OR_UPDATE:
+                    writeModelList.add(new UpdateOneModel<>(saveDocument.getFilter(), writeContent.getAsBson(),
+                            DBUtils.UPSERT_OPTION));
+                    break;
+                case INSERT_ONLY:
+                    writeModelList.add(new InsertOneModel<>(writeContent));
+                    break;
+                case UPDATE_ONLY:
+                    writeModelList.add(new UpdateOneModel<>(saveDocument.getFilter(), writeContent.getAsBson()));
+                    break;
             }
         }
+        return writeModelList;
     }
 
     private String fixIdPropNameFromFieldToBson(String s) {
@@ -0,0 +1,120 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.mountsea.django.core.exception.ConcurrentSaveDjangoException;
+import com.mountsea.django.core.model.BulkSaveResult;
+import com.mountsea.django.core.model.SaveMode;
+import com.mountsea.django.core.model.SaveResult;
+import org.bson.conversions.Bson;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link DatabaseDao} 中按key操作和findAll的异步版本，使用mongodb reactive-streams驱动，返回 {@link CompletableFuture}。
+ * 需要依赖 org.mongodb:mongodb-driver-reactivestreams。
+ * <p>
+ * 文档定义、编解码 ({@link AutoEnableUCCodecRegistry})、更新记录和缓存的处理都和同步的DatabaseDao相同。
+ * 不同的是，异步保存用tryLock对文档加saveLock，失败时返回 {@link ConcurrentSaveDjangoException}，
+ * 锁一直持有到入库完成并处理完结果。上一次异步保存完成之前，同一文档的异步保存返回ConcurrentSaveDjangoException，
+ * 同步保存则等待上一次保存完成。写入内容在调用线程中编码，保存方法返回之后对文档的修改只在下一次保存中写入。
+ * <p>
+ * CompletableFuture在驱动的线程中完成，不要在回调中执行阻塞操作。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public interface AsyncDatabaseDao extends DatabaseMetaDao {
+
+    /**
+     * 使用DaoFactory的默认配置创建
+     *
+     * @param mongoClient reactive-streams驱动的MongoClient，应该和DaoFactory的MongoDataSource连接同一个数据库
+     */
+    static AsyncDatabaseDao create(DatabaseDaoFactory databaseDaoFactory, MongoClient mongoClient) {
+        return create(databaseDaoFactory, databaseDaoFactory.getDefaultConfig(), mongoClient);
+    }
+
+    static AsyncDatabaseDao create(DatabaseDaoFactory databaseDaoFactory, DaoConfig daoConfig, MongoClient mongoClient) {
+        return new AsyncDatabaseDaoImpl(databaseDaoFactory, daoConfig, mongoClient);
+    }
+
+    MongoDatabase getMongoDatabase();
+
+    /**
+     * 同 {@link KeyOperationalDao#findByKey(Class, Object)}，文档不存在时结果为null
+     */
+    <T extends CollectibleDocument> CompletableFuture<T> findByKey(Class<T> documentClass, Object key);
+
+    /**
+     * 同 {@link KeyOperationalDao#findByKey(Class, Object, Bson)}
+     */
+    <T extends CollectibleDocument> CompletableFuture<T> findByKey(Class<T> documentClass, Object key, @Nullable Bson projection);
+
+    /**
+     * 同 {@link KeyOperationalDao#getByKey(Class, Object)}
+     */
+    <T extends CollectibleDocument> CompletableFuture<T> getByKey(Class<T> documentClass, Object key);
+
+    /**
+     * 同 {@link KeyOperationalDao#getByKey(Class, Object, Bson)}
+     */
+    <T extends CollectibleDocument> CompletableFuture<T> getByKey(Class<T> documentClass, Object key, @Nullable Bson projection);
+
+    /**
+     * 同 {@link KeyOperationalDao#saveByKey(CollectibleDocument)}
+     */
+    CompletableFuture<SaveResult> saveByKey(CollectibleDocument document);
+
+    /**
+     * 同 {@link KeyOperationalDao#saveByKey(CollectibleDocument, SaveMode)}
+     */
+    CompletableFuture<SaveResult> saveByKey(CollectibleDocument document, SaveMode saveMode);
+
+    /**
+     * 同 {@link KeyOperationalDao#bulkSaveByKey(List)}
+     */
+    CompletableFuture<BulkSaveResult> bulkSaveByKey(List<? extends CollectibleDocument> list);
+
+    /**
+     * 同 {@link KeyOperationalDao#bulkSaveByKey(List, SaveMode)}
+     */
+    CompletableFuture<BulkSaveResult> bulkSaveByKey(List<? extends CollectibleDocument> list, SaveMode saveMode);
+
+    /**
+     * 同 {@link CollectionOperationalDao#findAll(Class, Bson)}
+     */
+    <T extends CollectibleDocument> CompletableFuture<List<T>> findAll(Class<T> documentClass, Bson filters);
+
+    /**
+     * 同 {@link CollectionOperationalDao#findAll(Class, Bson, Bson, int, int, Bson)}
+     */
+    <T extends CollectibleDocument> CompletableFuture<List<T>> findAll(Class<T> documentClass, Bson filters,
+                                                                       @Nullable Bson projection, int skip, int limit,
+                                                                       @Nullable Bson sort);
+}
@@ -0,0 +1,368 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.mountsea.django.bson.BsonUtils;
+import com.mountsea.django.core.cache.CachePlugin;
+import com.mountsea.django.core.exception.DjangoException;
+import com.mountsea.django.core.model.BulkSaveResult;
+import com.mountsea.django.core.model.SaveMode;
+import com.mountsea.django.core.model.SaveResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j(topic = "com.mountsea.django.core.dao")
+class AsyncDatabaseDaoImpl implements AsyncDatabaseDao {
+
+    /**
+     * 复用同步dao中文档定义、写入内容、入库结果和缓存的处理，不通过它访问数据库
+     */
+    private final DatabaseDaoImpl dao;
+
+    private final MongoDatabase database;
+
+    AsyncDatabaseDaoImpl(DatabaseDaoFactory databaseDaoFactory, DaoConfig config, MongoClient mongoClient) {
+        this.dao = new DatabaseDaoImpl(databaseDaoFactory.getMongoDataSource().getMongoClient(), config,
+                databaseDaoFactory, null);
+        this.database = mongoClient.getDatabase(config.getDatabase()).withCodecRegistry(dao.getCodecRegistry());
+    }
+
+    @Override
+    public String getDatabaseName() {
+        return dao.getDatabaseName();
+    }
+
+    @Override
+    public DatabaseDaoFactory getDatabaseDaoFactory() {
+        return dao.getDatabaseDaoFactory();
+    }
+
+    @Override
+    public MongoDatabase getMongoDatabase() {
+        return database;
+    }
+
+    private <T extends CollectibleDocument> MongoCollection<T> getMongoCollection(Class<T> documentClass) {
+        return database.getCollection(CollectibleDocumentDefinitions.getDocumentDefinition(documentClass).getCollectionName(),
+                documentClass);
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<T> findByKey(Class<T> documentClass, Object key) {
+        return findByKey(documentClass, key, null, true);
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<T> findByKey(Class<T> documentClass, Object key,
+                                                                          @Nullable Bson projection) {
+        return findByKey(documentClass, key, projection, false);
+    }
+
+    private <T extends CollectibleDocument> CompletableFuture<T> findByKey(Class<T> documentClass, Object key,
+                                                                           @Nullable Bson projection, boolean isCacheInterest) {
+        try {
+            CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+            Bson filter = dao.keyToFilter(definition, key);
+            Supplier<CompletableFuture<T>> loader = () -> find(getMongoCollection(documentClass), documentClass, filter, projection);
+            if (!isCacheInterest || !dao.isDocumentCacheable(definition)) {
+                return loader.get();
+            }
+            return loadCached(definition, key, loader);
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<T> getByKey(Class<T> documentClass, Object key) {
+        return getByKey(documentClass, key, null, true);
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<T> getByKey(Class<T> documentClass, Object key,
+                                                                         @Nullable Bson projection) {
+        return getByKey(documentClass, key, projection, false);
+    }
+
+    private <T extends CollectibleDocument> CompletableFuture<T> getByKey(Class<T> documentClass, Object key,
+                                                                          @Nullable Bson projection, boolean isCacheInterest) {
+        try {
+            CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+            if (!definition.getKeyDefinition().isId()) {
+                dao.checkAutoGenerateIdType(definition);
+            }
+            Bson filter = dao.keyToFilter(definition, key);
+            Supplier<BsonDocument> values = dao.keyFilterToValues(definition, filter, key);
+            Supplier<CompletableFuture<T>> loader = () -> getInternal(documentClass, filter, projection, values, definition);
+            if (!isCacheInterest || !dao.isDocumentCacheable(definition)) {
+                return loader.get();
+            }
+            return loadCached(definition, key, loader);
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+    }
+
+    /**
+     * 先从缓存查找，不存在时异步加载，加载完成后加入缓存。
+     * 并发加载同一个key时，加入缓存时以缓存中已有的对象为准，保证获取到的是同一个对象。
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends CollectibleDocument> CompletableFuture<T> loadCached(CollectibleDocumentDefinition definition,
+                                                                            Object cacheKey,
+                                                                            Supplier<CompletableFuture<T>> loader) {
+        CachePlugin cachePlugin = dao.cachePlugin;
+        CollectibleDocument cached = cachePlugin.getIfPresent(definition, cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture((T) cached);
+        }
+        return loader.get().thenApply(loaded -> {
+            if (loaded == null) {
+                return null;
+            }
+            return (T) cachePlugin.get(definition, cacheKey, () -> loaded);
+        });
+    }
+
+    private <T extends CollectibleDocument> CompletableFuture<T> find(MongoCollection<T> collection, Class<T> documentClass,
+                                                                      Bson filter, @Nullable Bson projection) {
+        FindPublisher<T> publisher = collection.find(filter, documentClass);
+        if (projection != null) {
+            publisher.projection(projection);
+        }
+        return PublisherFutures.first(publisher.first()).whenComplete((result, t) -> {
+            if (t == null && log.isDebugEnabled()) {
+                log.debug("async find: collection {}, filter {}, projection {}, result {}", collection.getNamespace(),
+                        filter, projection, result);
+            }
+        });
+    }
+
+    private <T extends CollectibleDocument> CompletableFuture<T> getInternal(Class<T> documentClass, Bson filter,
+                                                                             @Nullable Bson projection,
+                                                                             Supplier<BsonDocument> initDocValues,
+                                                                             CollectibleDocumentDefinition definition) {
+        MongoCollection<T> collection = getMongoCollection(documentClass);
+        return find(collection, documentClass, filter, projection).thenCompose(find -> {
+            if (find != null) {
+                return CompletableFuture.completedFuture(find);
+            }
+            return insertIfNotFind(collection, documentClass, filter, initDocValues.get(), definition).thenCompose(insert -> {
+                if (insert != null) {
+                    return CompletableFuture.completedFuture(insert);
+                }
+                // 可能是被其他线程或进程先初始化
+                return find(collection, documentClass, filter, projection).thenApply(find1 -> {
+                    if (find1 == null) {
+                        throw new DjangoException("insert failed during get():" + filter.toString());
+                    }
+                    return find1;
+                });
+            });
+        });
+    }
+
+    /**
+     * 同 {@link KeyOperationalDaoImpl#insertIfNotFind}，如果插入成功则结果为新插入的文档，否则为null.
+     */
+    private <T extends CollectibleDocument> CompletableFuture<T> insertIfNotFind(MongoCollection<T> collection,
+                                                                                 Class<T> documentClass, Bson filters,
+                                                                                 BsonDocument initDocValues,
+                                                                                 CollectibleDocumentDefinition definition) {
+        T document = BsonUtils.fromBsonDocument(initDocValues, documentClass);
+        document.initForStore();
+        BsonDocument bsonDocument = dao.toBsonDocument(document);
+        if (bsonDocument.get("_id") == null && !(definition.getIdProperty().getType().equals(ObjectId.class) ||
+                definition.getIdProperty().getType().equals(BsonObjectId.class))) {
+            throw new DjangoException("_id is null and cannot auto generate when inserting");
+        }
+        // 仅当不存在则插入
+        return PublisherFutures.first(collection.updateOne(filters, Updates.setOnInsert(bsonDocument), DBUtils.UPSERT_OPTION))
+                .thenApply(updateResult -> {
+                    if (updateResult.getUpsertedId() == null) {
+                        log.debug("async insertIfNotFind failed: collection: {}, filters: {}, initDocValues: {}",
+                                collection.getNamespace(), filters, initDocValues);
+                        return null;
+                    }
+                    bsonDocument.put("_id", updateResult.getUpsertedId());
+                    return dao.fromBsonDocument(bsonDocument, documentClass);
+                });
+    }
+
+    @Override
+    public CompletableFuture<SaveResult> saveByKey(CollectibleDocument document) {
+        return saveByKey(document, SaveMode.INSERT_OR_UPDATE);
+    }
+
+    @Override
+    public CompletableFuture<SaveResult> saveByKey(CollectibleDocument document, SaveMode saveMode) {
+        return bulkSaveByKey(Collections.singletonList(document), saveMode).thenApply(bulkSaveResult -> {
+            return new SaveResult(bulkSaveResult.getInsertCount() > 0, bulkSaveResult.getUpdateCount() > 0);
+        });
+    }
+
+    @Override
+    public CompletableFuture<BulkSaveResult> bulkSaveByKey(List<? extends CollectibleDocument> list) {
+        return bulkSaveByKey(list, SaveMode.INSERT_OR_UPDATE);
+    }
+
+    @Override
+    public CompletableFuture<BulkSaveResult> bulkSaveByKey(List<? extends CollectibleDocument> list, SaveMode saveMode) {
+        AbstractDao.PreparedBulkSave prepared;
+        try {
+            dao.checkBulkSaveArguments(list, true, null);
+            prepared = new AbstractDao.PreparedBulkSave(list, saveMode);
+            //驱动可能在其他线程编码写入内容，在当前线程编码，返回后对文档的修改只记录到下一次保存
+            prepared.encodeOnPrepare = true;
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+        try {
+            dao.prepareBulkSave(prepared, true, null, true);
+        } catch (Throwable t) {
+            dao.onBulkSaveFailed(prepared);
+            dao.unlockBulkSave(prepared);
+            return failedFuture(t);
+        }
+        //入库在驱动的线程中完成，把saveLock转移出当前线程，入库完成(包括更新缓存)并处理完结果后再释放，
+        //保证同一文档的下一次保存不会先入库
+        detachBulkSaveLocks(prepared);
+        CompletableFuture<BulkWriteResult> future;
+        try {
+            future = bulkSaveInternal(prepared, saveMode);
+        } catch (Throwable t) {
+            future = failedFuture(t);
+        }
+        return future.handle((bulkWriteResult, t) -> {
+            try {
+                if (t != null) {
+                    dao.onBulkSaveFailed(prepared);
+                    throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+                }
+                return dao.completeBulkSave(prepared, bulkWriteResult);
+            } finally {
+                releaseBulkSaveLocks(prepared);
+            }
+        });
+    }
+
+    private static void detachBulkSaveLocks(AbstractDao.PreparedBulkSave prepared) {
+        for (int i = 0; i <= prepared.lockIndex; i++) {
+            prepared.list.get(i).getSaveLock().detach();
+        }
+    }
+
+    private static void releaseBulkSaveLocks(AbstractDao.PreparedBulkSave prepared) {
+        for (int i = 0; i <= prepared.lockIndex; i++) {
+            prepared.list.get(i).getSaveLock().releaseDetached();
+        }
+        prepared.lockIndex = -1;
+    }
+
+    /**
+     * 同 {@link CacheableDocumentDao#bulkSaveInternal}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private CompletableFuture<BulkWriteResult> bulkSaveInternal(AbstractDao.PreparedBulkSave prepared, SaveMode saveMode) {
+        List<WriteModel> writeModelList = dao.toWriteModels(prepared.getDocuments(), saveMode);
+        if (writeModelList.isEmpty()) {
+            return CompletableFuture.completedFuture(new NoActionBultWriteResult());
+        }
+        CollectibleDocumentDefinition definition = prepared.getDefinition();
+        boolean isCache = dao.isDocumentCacheable(definition);
+        MongoCollection collection = getMongoCollection(definition.getDocumentClass());
+        CompletableFuture<BulkWriteResult> future = PublisherFutures.first(collection.bulkWrite(writeModelList));
+        if (!isCache) {
+            return future.whenComplete((bulkWriteResult, t) -> {
+                for (InternalSaveDocument document : prepared.getDocuments()) {
+                    dao.invalidateLoad(definition, document.getCacheKey());
+                }
+            });
+        }
+        return future.whenComplete((bulkWriteResult, t) -> {
+            Throwable cause = t instanceof CompletionException ? t.getCause() : t;
+            for (InternalSaveDocument document : prepared.getDocuments()) {
+                if (cause == null) {
+                    dao.cachePlugin.save(definition, document.getCacheKey(), document.getDocument());
+                } else if (cause instanceof MongoException) {
+                    //报错时清空缓存
+                    dao.cachePlugin.remove(definition, document.getCacheKey());
+                }
+            }
+        });
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<List<T>> findAll(Class<T> documentClass, Bson filters) {
+        return findAll(documentClass, filters, null, 0, -1, null);
+    }
+
+    @Override
+    public <T extends CollectibleDocument> CompletableFuture<List<T>> findAll(Class<T> documentClass, Bson filters,
+                                                                              @Nullable Bson projection, int skip, int limit,
+                                                                              @Nullable Bson sort) {
+        try {
+            FindPublisher<T> publisher = getMongoCollection(documentClass).find(filters);
+            publisher.projection(projection);
+            publisher.skip(skip);
+            if (limit > 0) {
+                publisher.limit(limit);
+            }
+            if (sort != null) {
+                publisher.sort(sort);
+            }
+            return PublisherFutures.toList(publisher);
+        } catch (Throwable t) {
+            return failedFuture(t);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable t) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+}
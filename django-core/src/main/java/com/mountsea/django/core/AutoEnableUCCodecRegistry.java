@@ -60,6 +60,10 @@ public class AutoEnableUCCodecRegistry implements CodecRegistry {
 
     private final boolean enableUpdateCollect;
 
+    private final List<CodecRegistry> extendCodecRegistries;
+
+    private volatile AutoEnableUCCodecRegistry withoutUpdateCollect;
+
     public AutoEnableUCCodecRegistry() {
         this(true, Collections.emptyList());
     }
@@ -70,6 +74,7 @@ public class AutoEnableUCCodecRegistry implements CodecRegistry {
 
     public AutoEnableUCCodecRegistry(boolean enableUpdateCollect, List<CodecRegistry> extendCodecRegistries) {
         this.enableUpdateCollect = enableUpdateCollect;
+        this.extendCodecRegistries = extendCodecRegistries;
         List<CodecRegistry> codecRegistries = new ArrayList<>();
         codecRegistries.add(fromProviders(new DjangoModelCodecProvider()));
         codecRegistries.add(DEFAULT_CODEC_REGISTRY);
@@ -80,6 +85,30 @@ public class AutoEnableUCCodecRegistry implements CodecRegistry {
         codecRegistry = fromRegistries(codecRegistries);
     }
 
+    public boolean isEnableUpdateCollect() {
+        return enableUpdateCollect;
+    }
+
+    /**
+     * 返回使用相同扩展codec但不开启 update collect 的实例，用于只读查询。实例在首次调用时创建并复用。
+     */
+    public AutoEnableUCCodecRegistry withoutUpdateCollect() {
+        if (!enableUpdateCollect) {
+            return this;
+        }
+        AutoEnableUCCodecRegistry registry = withoutUpdateCollect;
+        if (registry == null) {
+            synchronized (this) {
+                registry = withoutUpdateCollect;
+                if (registry == null) {
+                    registry = new AutoEnableUCCodecRegistry(false, extendCodecRegistries);
+                    withoutUpdateCollect = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
     @Override
     public <T> Codec<T> get(Class<T> clazz) {
         return codecRegistry.get(clazz);
@@ -91,7 +120,8 @@ public class AutoEnableUCCodecRegistry implements CodecRegistry {
 
         public PojoCodecProvider() {
             List<Convention> conventions = new ArrayList<>(Conventions.DEFAULT_CONVENTIONS);
-            pojoCodecProvider = DocumentPojoCodecProvider.builder().automatic(true)
+            conventions.add(Conventions.GENERATED_ACCESSOR_CONVENTION);
+            pojoCodecProvider = DocumentPojoCodecProvider.builder().automatic(true).compileCodecs(true)
                     .conventions(conventions).build();
         }
 
@@ -0,0 +1,347 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mountsea.django.core.cache.CachePlugin;
+import com.mountsea.django.core.cache.CachePreloadConfig;
+import com.mountsea.django.core.cache.CachePreloadResult;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.conversions.Bson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * 缓存预加载。
+ * <p>
+ * 在调用线程上用游标读取原始文档 ({@link RawBsonDocument})，分批交给线程池并行解码，再通过
+ * {@link CachePlugin#getAll}加入缓存 (已经在缓存中的文档不会被覆盖)。
+ * 进度定期输出到日志，超过时间限制时停止读取，已加载的文档保留在缓存中。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j
+public class CachePreloader implements Closeable {
+
+    private static final int DECODE_BATCH_SIZE = 256;
+
+    private static final int HOT_KEYS_QUERY_SIZE = 1000;
+
+    private static final long PROGRESS_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param parallelism 解码线程数，小于等于0时使用CPU核数
+     */
+    public CachePreloader(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread thread = new Thread(r, "django-cache-preload-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 按配置依次预加载多个文档类，所有类共用timeBudgetMills。
+     *
+     * @param configs     key 类名
+     * @param daoProvider 根据配置获取用于加载的Dao
+     */
+    public List<CachePreloadResult> preloadAll(Map<String, CachePreloadConfig> configs,
+                                               Function<CachePreloadConfig, DatabaseDao> daoProvider, long timeBudgetMills) {
+        long start = System.nanoTime();
+        long deadline = toDeadline(start, timeBudgetMills);
+        List<CachePreloadResult> results = new ArrayList<>(configs.size());
+        for (Map.Entry<String, CachePreloadConfig> entry : configs.entrySet()) {
+            Class<? extends CollectibleDocument> documentClass;
+            try {
+                documentClass = Class.forName(entry.getKey(), true, Thread.currentThread().getContextClassLoader())
+                        .asSubclass(CollectibleDocument.class);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                log.error("Cache preload skipped, not a CollectibleDocument class: {}", entry.getKey());
+                results.add(new CachePreloadResult(null, 0, 0, false, e));
+                continue;
+            }
+            if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                results.add(new CachePreloadResult(documentClass, 0, 0, true, null));
+                continue;
+            }
+            results.add(preloadUntil(daoProvider.apply(entry.getValue()), documentClass, entry.getValue(), deadline));
+        }
+        log.info("Cache preload finished in {} ms, loaded {} documents of {} classes", elapsedMills(start),
+                results.stream().mapToLong(CachePreloadResult::getLoadedCount).sum(), results.size());
+        return results;
+    }
+
+    /**
+     * 预加载单个文档类。如果文档类没有开启缓存，不做任何操作。
+     */
+    public CachePreloadResult preload(DatabaseDao dao, Class<? extends CollectibleDocument> documentClass,
+                                      CachePreloadConfig config, long timeBudgetMills) {
+        return preloadUntil(dao, documentClass, config, toDeadline(System.nanoTime(), timeBudgetMills));
+    }
+
+    private CachePreloadResult preloadUntil(DatabaseDao dao, Class<? extends CollectibleDocument> documentClass,
+                                            CachePreloadConfig config, long deadline) {
+        if (!(dao instanceof CacheableDocumentDao)) {
+            throw new IllegalArgumentException("Unsupported dao: " + dao.getClass());
+        }
+        CacheableDocumentDao cacheableDao = (CacheableDocumentDao) dao;
+        CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+        if (!cacheableDao.isDocumentCacheable(definition)) {
+            log.warn("Cache preload skipped, cache is not enabled for {}", documentClass.getName());
+            return new CachePreloadResult(documentClass, 0, 0, false, null);
+        }
+        Loading loading = new Loading(definition, cacheableDao.cachePlugin,
+                cacheableDao.getCodecRegistry().get(documentClass), deadline);
+        try {
+            MongoCollection<RawBsonDocument> collection = cacheableDao.database.getCollection(
+                    definition.getCollectionName(), RawBsonDocument.class);
+            if (StringUtils.isNotBlank(config.getHotKeysFile())) {
+                for (Bson filter : readHotKeyFilters(definition, config.getHotKeysFile())) {
+                    if (!loading.load(collection.find(filter).batchSize(config.getBatchSize()))) {
+                        break;
+                    }
+                }
+            } else {
+                FindIterable<RawBsonDocument> iterable = collection.find(StringUtils.isBlank(config.getFilter()) ?
+                        new BsonDocument() : BsonDocument.parse(config.getFilter()));
+                if (StringUtils.isNotBlank(config.getSort())) {
+                    iterable.sort(BsonDocument.parse(config.getSort()));
+                }
+                if (config.getLimit() > 0) {
+                    iterable.limit(config.getLimit());
+                }
+                loading.load(iterable.batchSize(config.getBatchSize()));
+            }
+            loading.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            loading.error.compareAndSet(null, e);
+        } catch (Exception e) {
+            loading.error.compareAndSet(null, e);
+        }
+        CachePreloadResult result = new CachePreloadResult(documentClass, loading.loaded.get(), elapsedMills(loading.start),
+                loading.timedOut, loading.error.get());
+        if (result.getError() != null) {
+            log.error("Cache preload failed: " + result, result.getError());
+        } else if (result.isTimedOut()) {
+            log.warn("Cache preload stopped by time budget: {}", result);
+        } else {
+            log.info("Cache preload: {}", result);
+        }
+        return result;
+    }
+
+    /**
+     * 单字段key的行合并为 $in 查询，文档格式的行合并为 $or 查询，每个查询最多包含 HOT_KEYS_QUERY_SIZE 个key。
+     */
+    private List<Bson> readHotKeyFilters(CollectibleDocumentDefinition definition, String hotKeysFile) throws IOException {
+        CollectibleDocumentDefinition.KeyDefinition keyDefinition = definition.getKeyDefinition();
+        String singleField = keyDefinition.isId() ? "_id" :
+                keyDefinition.getPropertyMap().values().iterator().next().getPropertyName();
+        List<BsonValue> values = new ArrayList<>();
+        List<Bson> documents = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openHotKeysFile(hotKeysFile),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("{")) {
+                    documents.add(BsonDocument.parse(line));
+                } else {
+                    values.add(BsonDocument.parse("{v: " + line + "}").get("v"));
+                }
+            }
+        }
+        List<Bson> filters = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += HOT_KEYS_QUERY_SIZE) {
+            filters.add(Filters.in(singleField, values.subList(i, Math.min(values.size(), i + HOT_KEYS_QUERY_SIZE))));
+        }
+        for (int i = 0; i < documents.size(); i += HOT_KEYS_QUERY_SIZE) {
+            filters.add(Filters.or(documents.subList(i, Math.min(documents.size(), i + HOT_KEYS_QUERY_SIZE))));
+        }
+        return filters;
+    }
+
+    private static InputStream openHotKeysFile(String hotKeysFile) throws IOException {
+        if (hotKeysFile.startsWith(CLASSPATH_PREFIX)) {
+            String path = StringUtils.removeStart(hotKeysFile.substring(CLASSPATH_PREFIX.length()), "/");
+            InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
+            if (inputStream == null) {
+                throw new FileNotFoundException(hotKeysFile);
+            }
+            return inputStream;
+        }
+        return Files.newInputStream(Paths.get(hotKeysFile));
+    }
+
+    private static long toDeadline(long start, long timeBudgetMills) {
+        if (timeBudgetMills <= 0) {
+            return 0;
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMills);
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    private static long elapsedMills(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一个文档类的加载过程
+     */
+    private class Loading {
+        final CollectibleDocumentDefinition definition;
+        final CachePlugin cachePlugin;
+        final Codec<? extends CollectibleDocument> codec;
+        final long deadline;
+        final long start = System.nanoTime();
+        final int maxInFlight = parallelism * 2;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicLong loaded = new AtomicLong();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        long read;
+        long lastProgressLog = start;
+        boolean timedOut;
+
+        Loading(CollectibleDocumentDefinition definition, CachePlugin cachePlugin,
+                Codec<? extends CollectibleDocument> codec, long deadline) {
+            this.definition = definition;
+            this.cachePlugin = cachePlugin;
+            this.codec = codec;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return 是否可以继续加载 (没有超时和出错)
+         */
+        boolean load(FindIterable<RawBsonDocument> iterable) throws InterruptedException {
+            try (MongoCursor<RawBsonDocument> cursor = iterable.iterator()) {
+                List<RawBsonDocument> batch = new ArrayList<>(DECODE_BATCH_SIZE);
+                while (cursor.hasNext()) {
+                    long now = System.nanoTime();
+                    if (deadline != 0 && now - deadline >= 0) {
+                        timedOut = true;
+                        break;
+                    }
+                    if (error.get() != null) {
+                        break;
+                    }
+                    batch.add(cursor.next());
+                    read++;
+                    if (batch.size() >= DECODE_BATCH_SIZE) {
+                        submit(batch);
+                        batch = new ArrayList<>(DECODE_BATCH_SIZE);
+                    }
+                    if (now - lastProgressLog >= PROGRESS_LOG_INTERVAL_NANOS) {
+                        lastProgressLog = now;
+                        log.info("Cache preload {}: read {}, loaded {}, elapsed {} ms", definition.getDocumentClass().getName(),
+                                read, loaded.get(), elapsedMills(start));
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    submit(batch);
+                }
+            }
+            return !timedOut && error.get() == null;
+        }
+
+        private void submit(List<RawBsonDocument> batch) throws InterruptedException {
+            inFlight.acquire();
+            try {
+                executor.execute(() -> {
+                    try {
+                        decodeAndCache(batch);
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        private void decodeAndCache(List<RawBsonDocument> batch) {
+            CollectibleDocumentDefinition.KeyExtractor keyExtractor = definition.getKeyDefinition().getKeyExtractor();
+            Map<Object, CollectibleDocument> decoded = new HashMap<>(batch.size() * 4 / 3 + 1);
+            for (RawBsonDocument rawBsonDocument : batch) {
+                CollectibleDocument document = rawBsonDocument.decode(codec);
+                decoded.put(keyExtractor.extractKey(document, definition.isAllowNullKeyField()), document);
+            }
+            cachePlugin.getAll(definition, new ArrayList<>(decoded.keySet()), misses -> {
+                decoded.keySet().retainAll(misses);
+                return decoded;
+            });
+            loaded.addAndGet(batch.size());
+        }
+
+        /**
+         * 等待所有已提交的解码任务完成
+         */
+        void await() throws InterruptedException {
+            inFlight.acquire(maxInFlight);
+            inFlight.release(maxInFlight);
+        }
+    }
+}
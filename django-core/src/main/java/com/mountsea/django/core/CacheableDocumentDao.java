@@ -27,15 +27,26 @@ import com.mongodb.ClientSessionOptions;
 import com.mongodb.MongoException;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoClient;
+import com.mountsea.django.core.cache.CacheFlusher;
 import com.mountsea.django.core.cache.CachePlugin;
+import com.mountsea.django.core.cache.CacheReloader;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
 import com.mountsea.django.core.model.SaveMode;
+import com.mountsea.django.core.model.SaveResult;
+import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.bson.BsonDocument;
 import org.bson.conversions.Bson;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -45,37 +56,85 @@ import java.util.function.Supplier;
 @Slf4j(topic = "com.mountsea.django.core.dao")
 public class CacheableDocumentDao extends KeyOperationalDaoImpl {
 
+    private static final SaveResult WRITE_BACK_SAVE_RESULT = new SaveResult(false, false);
+
+    /**
+     * 没有启用缓存时合并对同一个key的并发findByKey/getByKey，所有Dao共用，key包含MongoClient和数据库
+     */
+    private static final KeyLoadCoalescer LOAD_COALESCER = new KeyLoadCoalescer();
+
     public CacheableDocumentDao(MongoClient mongoClient, DaoConfig config, DatabaseDaoFactory databaseDaoFactory,
                                 @Nullable ClientSessionOptions sessionOptions) {
         super(mongoClient, config, databaseDaoFactory, sessionOptions);
     }
 
+    private final DaoCacheCallback cacheCallback = new DaoCacheCallback(this);
+
     private CachePlugin getCachePlugin() {
         return cachePlugin;
     }
 
     @SuppressWarnings("unchecked")
-    private boolean isDocumentCacheable(CollectibleDocumentDefinition definition) {
+    protected boolean isDocumentCacheable(CollectibleDocumentDefinition definition) {
         if (!isCacheEnable()) {
             return false;
         }
         return cachePlugin != null && cachePlugin.isCacheEnable(definition);
     }
 
+    /**
+     * 类使用写回模式时 (见 {@link CachePlugin#markDirty})，INSERT_OR_UPDATE模式的保存只把文档放入缓存并标记，由缓存延迟保存，
+     * 此时返回的SaveResult的isInserted和isUpdated都为false。
+     * 使用session的Dao、id为空需要生成id的文档和其他保存模式仍然直接入库。
+     */
+    @Override
+    public SaveResult saveByKey(CollectibleDocument document, SaveMode saveMode) {
+        Objects.requireNonNull(document);
+        if (saveMode != SaveMode.INSERT_OR_UPDATE || clientSession != null) {
+            return super.saveByKey(document, saveMode);
+        }
+        CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(document.getClass());
+        if (!isDocumentCacheable(definition) || !getCachePlugin().isWriteBack(definition)
+                || (definition.getKeyDefinition().isId() && document.getId() == null)) {
+            return super.saveByKey(document, saveMode);
+        }
+        Object key = definition.getKeyDefinition().getKeyExtractor().extractKey(document, definition.isAllowNullKeyField());
+        getCachePlugin().save(definition, key, document);
+        getCachePlugin().markDirty(definition, key, document, cacheCallback);
+        return WRITE_BACK_SAVE_RESULT;
+    }
+
+    /**
+     * 没有启用缓存时，对同一个key的并发查找合并为一次查询，只有一个调用者得到查询的文档对象，其他调用者得到它的副本。使用session的Dao不合并。
+     * 通过Dao保存或删除之后的查找不加入保存之前开始的查询。
+     * 启用缓存时，查找不存在的文档的结果按类的negativeCacheTtlMills配置缓存，见 {@link CachePlugin#find}
+     */
     @Override
     @Nullable
     @SuppressWarnings("unchecked")
     protected <T extends CollectibleDocument> T findInternal(Class<T> documentClass, Bson filter,
                                                              @Nullable Bson projection, CollectibleDocumentDefinition definition,
                                                              boolean isCacheInterest, Object cacheKey) {
-        if (!isCacheInterest || !isDocumentCacheable(definition)) {
+        if (!isCacheInterest) {
             return super.findInternal(documentClass, filter, projection, definition, isCacheInterest, cacheKey);
         }
-        return (T) getCachePlugin().get(definition, cacheKey, () -> {
+        if (!isDocumentCacheable(definition)) {
+            if (clientSession != null) {
+                return super.findInternal(documentClass, filter, projection, definition, isCacheInterest, cacheKey);
+            }
+            return LOAD_COALESCER.load(new LoadKey(this, definition, cacheKey, false), () -> {
+                return super.findInternal(documentClass, filter, projection, definition, isCacheInterest, cacheKey);
+            }, CacheableDocumentDao::copyLoaded);
+        }
+        registerReloader(definition);
+        return (T) getCachePlugin().find(definition, cacheKey, () -> {
             return super.findInternal(documentClass, filter, projection, definition, isCacheInterest, cacheKey);
         });
     }
 
+    /**
+     * 和findInternal一样合并没有启用缓存时的并发调用，避免多个线程同时对同一个key执行插入
+     */
     @Override
     @Nonnull
     @SuppressWarnings("unchecked")
@@ -83,24 +142,110 @@ public class CacheableDocumentDao extends KeyOperationalDaoImpl {
                                                             @Nullable Bson projection, Supplier<BsonDocument> initDocValues,
                                                             CollectibleDocumentDefinition definition,
                                                             boolean isCacheInterest, Object cacheKey) {
-        if (!isCacheInterest || !isDocumentCacheable(definition)) {
+        if (!isCacheInterest) {
             return super.getInternal(documentClass, filter, projection, initDocValues, definition, isCacheInterest, cacheKey);
         }
+        if (!isDocumentCacheable(definition)) {
+            if (clientSession != null) {
+                return super.getInternal(documentClass, filter, projection, initDocValues, definition, isCacheInterest, cacheKey);
+            }
+            return LOAD_COALESCER.load(new LoadKey(this, definition, cacheKey, true), () -> {
+                return super.getInternal(documentClass, filter, projection, initDocValues, definition, isCacheInterest, cacheKey);
+            }, CacheableDocumentDao::copyLoaded);
+        }
+        registerReloader(definition);
         return (T) getCachePlugin().get(definition, cacheKey, () -> {
             return super.getInternal(documentClass, filter, projection, initDocValues, definition, isCacheInterest, cacheKey);
         });
     }
 
+    /**
+     * 复制合并加载的文档给等待的线程，加载的文档由AutoEnableUC解码时开启了修改记录，副本同样开启
+     */
+    static <T extends CollectibleDocument> T copyLoaded(T document) {
+        T copy = document.deepCloneSelf();
+        if (DocumentNodeHelper.hasEnableUpdateCollect(document)) {
+            DocumentNodeHelper.enableUpdateRecord(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * 没有启用缓存的类保存或删除后调用，之后对这个key的查找不加入写入之前开始的合并加载
+     */
+    void invalidateLoad(CollectibleDocumentDefinition definition, @Nullable Object cacheKey) {
+        if (cacheKey != null) {
+            LOAD_COALESCER.invalidate(new LoadKey(this, definition, cacheKey, false));
+            LOAD_COALESCER.invalidate(new LoadKey(this, definition, cacheKey, true));
+        }
+    }
+
+    @Nonnull
+    @Override
+    protected <T extends CollectibleDocument> Map<Object, T> findAllByKeysInternal(Class<T> documentClass,
+                                                                                  CollectibleDocumentDefinition definition,
+                                                                                  List<Object> keys, boolean isCacheInterest) {
+        if (!isCacheInterest || !isDocumentCacheable(definition)) {
+            return super.findAllByKeysInternal(documentClass, definition, keys, isCacheInterest);
+        }
+        return getAllCached(definition, keys,
+                misses -> super.findAllByKeysInternal(documentClass, definition, misses, isCacheInterest));
+    }
+
+    @Nonnull
+    @Override
+    protected <T extends CollectibleDocument> Map<Object, T> getAllByKeysInternal(Class<T> documentClass,
+                                                                                 CollectibleDocumentDefinition definition,
+                                                                                 List<Object> keys, boolean isCacheInterest) {
+        if (!isCacheInterest || !isDocumentCacheable(definition)) {
+            return super.getAllByKeysInternal(documentClass, definition, keys, isCacheInterest);
+        }
+        return getAllCached(definition, keys,
+                misses -> super.getAllByKeysInternal(documentClass, definition, misses, isCacheInterest));
+    }
+
+    /**
+     * 使用session的Dao不注册，重新加载在后台线程进行，不能使用session
+     */
+    private void registerReloader(CollectibleDocumentDefinition definition) {
+        if (clientSession == null) {
+            getCachePlugin().registerReloader(definition, cacheCallback);
+        }
+    }
+
+    /**
+     * 先从缓存获取，缓存中不存在的key用loader一次加载，加载结果放入缓存。
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends CollectibleDocument> Map<Object, T> getAllCached(CollectibleDocumentDefinition definition, List<Object> keys,
+                                                                        Function<List<Object>, Map<Object, T>> loader) {
+        registerReloader(definition);
+        return (Map<Object, T>) (Map<Object, ?>) getCachePlugin().getAll(definition, keys,
+                misses -> loader.apply(new ArrayList<>(misses)));
+    }
+
     @Override
     protected BulkWriteResult bulkSaveInternal(List<InternalSaveDocument> documents, CollectibleDocumentDefinition definition,
                                                SaveMode saveMode, boolean isCacheInterest) {
         boolean isCache = isCacheInterest && isDocumentCacheable(definition);
         try {
-            BulkWriteResult bulkWriteResult = super.bulkSaveInternal(documents, definition, saveMode, isCacheInterest);
+            BulkWriteResult bulkWriteResult;
+            try {
+                bulkWriteResult = super.bulkSaveInternal(documents, definition, saveMode, isCacheInterest);
+            } finally {
+                if (isCacheInterest && !isCache) {
+                    //报错时也可能已经写入一部分
+                    for (InternalSaveDocument document : documents) {
+                        invalidateLoad(definition, document.getCacheKey());
+                    }
+                }
+            }
             if (isCache) {
+                Map<Object, CollectibleDocument> saved = new HashMap<>(documents.size() * 4 / 3 + 1);
                 for (InternalSaveDocument document : documents) {
-                    getCachePlugin().save(definition, document.getCacheKey(), document.getDocument());
+                    saved.put(document.getCacheKey(), document.getDocument());
                 }
+                getCachePlugin().putAll(definition, saved);
             }
             return bulkWriteResult;
         } catch (MongoException e) {
@@ -120,7 +265,22 @@ public class CacheableDocumentDao extends KeyOperationalDaoImpl {
                                                                      CollectibleDocumentDefinition definition,
                                                                      boolean isCacheInterest,
                                                                      boolean isByKey) {
-        int r = super.bulkDeleteInternal(documents, documentClass, definition, isCacheInterest, isByKey);
+        if (isCacheInterest && isDocumentCacheable(definition) && getCachePlugin().isWriteBack(definition)) {
+            //写回模式下先移除，取消标记并等待正在保存的文档，避免保存在删除之后执行
+            for (InternalDeleteDocument document : documents) {
+                getCachePlugin().remove(definition, document.getCacheKey());
+            }
+        }
+        int r;
+        try {
+            r = super.bulkDeleteInternal(documents, documentClass, definition, isCacheInterest, isByKey);
+        } finally {
+            if (isCacheInterest && !isDocumentCacheable(definition)) {
+                for (InternalDeleteDocument document : documents) {
+                    invalidateLoad(definition, document.getCacheKey());
+                }
+            }
+        }
         if (isCacheInterest && isDocumentCacheable(definition)) {
             for (InternalDeleteDocument document : documents) {
                 getCachePlugin().remove(definition, document.getCacheKey());
@@ -129,4 +289,89 @@ public class CacheableDocumentDao extends KeyOperationalDaoImpl {
         return r;
     }
 
+    @EqualsAndHashCode
+    private static class LoadKey {
+        private final MongoClient mongoClient;
+
+        private final String database;
+
+        private final CollectibleDocumentDefinition definition;
+
+        private final Object key;
+
+        private final boolean isGet;
+
+        LoadKey(AbstractDao dao, CollectibleDocumentDefinition definition, Object key, boolean isGet) {
+            this.mongoClient = dao.mongoClient;
+            this.database = dao.getDatabaseName();
+            this.definition = definition;
+            this.key = key;
+            this.isGet = isGet;
+        }
+    }
+
+    /**
+     * 写回模式下保存缓存中标记的文档，refreshAfterWrite时重新加载文档。
+     * 同一个MongoClient和数据库的Dao的callback相等，缓存把它们标记的文档合并保存。
+     * 保存时不更新缓存，文档已在缓存中，或者正在被移出缓存。
+     */
+    private static class DaoCacheCallback implements CacheFlusher, CacheReloader {
+        private final CacheableDocumentDao dao;
+
+        DaoCacheCallback(CacheableDocumentDao dao) {
+            this.dao = dao;
+        }
+
+        @Override
+        public CollectibleDocument reload(CollectibleDocumentDefinition definition, Object key) {
+            //projection不为null时不使用缓存
+            return dao.findByKey(definition.getDocumentClass(), key, (Bson) null);
+        }
+
+        @Override
+        public boolean isSaving(CollectibleDocument document) {
+            return document.getSaveLock().isLocked();
+        }
+
+        @Override
+        public Collection<CollectibleDocument> flush(List<CollectibleDocument> documents) {
+            List<CollectibleDocument> locked = new ArrayList<>(documents.size());
+            List<CollectibleDocument> skipped = new ArrayList<>();
+            for (CollectibleDocument document : documents) {
+                if (document.getSaveLock().tryLock()) {
+                    locked.add(document);
+                } else {
+                    skipped.add(document);
+                }
+            }
+            try {
+                if (!locked.isEmpty()) {
+                    dao.bulkSave(locked, SaveMode.INSERT_OR_UPDATE, true, null, false, false);
+                }
+            } finally {
+                for (CollectibleDocument document : locked) {
+                    document.getSaveLock().unlock();
+                }
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DaoCacheCallback that = (DaoCacheCallback) o;
+            return dao.mongoClient == that.dao.mongoClient && dao.getDatabaseName().equals(that.dao.getDatabaseName());
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(dao.mongoClient) + dao.getDatabaseName().hashCode();
+        }
+    }
+
 }
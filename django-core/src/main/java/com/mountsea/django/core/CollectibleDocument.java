@@ -29,8 +29,6 @@ import com.mountsea.django.core.annotation.KeyField;
 import com.mountsea.django.core.annotation.KeyFieldName;
 
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link CollectibleDocument} 表示数据层的文档对象，每个CollectibleDocument的子类(abstract除外)对应一个mongodb的collection。
@@ -57,9 +55,9 @@ public abstract class CollectibleDocument extends DocumentNode implements Collec
 
     /**
      * 保存文档时，对[获取文档更新内容+入库]过程加的锁，用来保证多线程修改并保存同一文档时，文档的最终状态和数据库中一致。
-     * saveLock锁定时文档仍然可以修改。
+     * saveLock锁定时文档仍然可以修改。异步保存时锁一直持有到入库完成，参考 {@link SaveLock}
      */
-    private final Lock __saveLock = new ReentrantLock();
+    private final SaveLock __saveLock = new SaveLock();
 
     public abstract Object getId();
 
@@ -74,10 +72,10 @@ public abstract class CollectibleDocument extends DocumentNode implements Collec
     protected final SyncMongoUpdateCollector createUpdateCollector() {
         CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(this.getClass());
         Set<String> keyNames = definition.getKeyDefinition().getPropertyMap().keySet();
-        return new CollectibleDocumentUpdateCollector(keyNames);
+        return new CollectibleDocumentUpdateCollector(this, keyNames, StripedMongoUpdateCollector.getStripeCount(getClass()));
     }
 
-    Lock getSaveLock() {
+    SaveLock getSaveLock() {
         return __saveLock;
     }
 }
@@ -27,6 +27,7 @@ import com.mongodb.client.model.DeleteOptions;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.result.UpdateResult;
 import com.mountsea.django.core.model.BulkSaveResult;
+import com.mountsea.django.core.model.CursorOptions;
 import com.mountsea.django.core.model.MultiEquals;
 import com.mountsea.django.core.model.SaveMode;
 import com.mountsea.django.core.model.SaveResult;
@@ -35,6 +36,8 @@ import org.bson.conversions.Bson;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * @author guch
@@ -62,6 +65,30 @@ public interface CollectionOperationalDao {
     <T extends CollectibleDocument> List<T> findAll(Class<T> documentClass, Bson filters, @Nullable Bson projection,
                                                     int skip, int limit, Bson sort);
 
+    /* 游标查找 */
+
+    /**
+     * 以游标方式查找，文档在遍历时才逐个解码，适合结果集很大、不能一次全部放入内存的查询。
+     * 返回的游标必须关闭 (遍历到末尾时会自动关闭)。
+     *
+     * @see CursorOptions
+     */
+    @Nonnull
+    <T extends CollectibleDocument> DocumentCursor<T> findCursor(Class<T> documentClass, Bson filters, CursorOptions options);
+
+    /**
+     * 同 {@link #findCursor(Class, Bson, CursorOptions)}，以 Stream 方式返回。
+     * 返回的Stream必须关闭 (建议使用try-with-resources)，关闭时释放游标。
+     */
+    @Nonnull
+    <T extends CollectibleDocument> Stream<T> findStream(Class<T> documentClass, Bson filters, CursorOptions options);
+
+    /**
+     * 遍历所有符合条件的文档，方法返回 (包括consumer抛出异常) 时游标已关闭。
+     */
+    <T extends CollectibleDocument> void forEach(Class<T> documentClass, Bson filters, CursorOptions options,
+                                                 Consumer<? super T> consumer);
+
     /**
      * 根据条件查找。
      * <p>
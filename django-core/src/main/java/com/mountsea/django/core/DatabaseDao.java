@@ -51,5 +51,11 @@ public interface DatabaseDao extends DatabaseMetaDao, KeyOperationalDao, Collect
     <T> T withNewSessionTransaction(TransactionRunner<T> transactionRunner,
                                     @Nullable ClientSessionOptions sessionOptions, @Nullable TransactionOptions transactionOptions);
 
+    /**
+     * 创建延迟保存队列，加入队列的文档由后台线程定期通过bulkWrite批量保存，见 {@link WriteBehindSaveQueue}。
+     * 绑定session的dao不支持此方法。
+     */
+    WriteBehindSaveQueue createWriteBehindSaveQueue(WriteBehindConfig config);
+
 
 }
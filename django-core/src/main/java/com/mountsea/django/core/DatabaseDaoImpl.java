@@ -53,8 +53,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.mountsea.django.core.model.MongoModels._id;
 import static com.mountsea.django.core.model.MongoModels.idEquals;
@@ -112,6 +117,40 @@ class DatabaseDaoImpl extends CacheableDocumentDao implements DatabaseDao {
         return findAllInternal(documentClass, filters, projection, skip, limit, sort);
     }
 
+    @Nonnull
+    @Override
+    public <T extends CollectibleDocument> DocumentCursor<T> findCursor(Class<T> documentClass, Bson filters,
+                                                                        CursorOptions options) {
+        Objects.requireNonNull(options);
+        SessionBindingMongoCollection<T> mongoCollection = getSessionBindingMongoCollection(documentClass);
+        if (options.isReadOnly()) {
+            mongoCollection = mongoCollection.withSessionBindingCodecRegistry(config.getCodecRegistry().withoutUpdateCollect());
+        }
+        FindIterable<T> iterable = createFindIterable(mongoCollection, filters, options.getProjection(),
+                options.getSkip(), options.getLimit(), options.getSort());
+        if (options.getBatchSize() > 0) {
+            iterable.batchSize(options.getBatchSize());
+        }
+        return new MongoDocumentCursor<>(iterable.iterator());
+    }
+
+    @Nonnull
+    @Override
+    public <T extends CollectibleDocument> Stream<T> findStream(Class<T> documentClass, Bson filters, CursorOptions options) {
+        DocumentCursor<T> cursor = findCursor(documentClass, filters, options);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    @Override
+    public <T extends CollectibleDocument> void forEach(Class<T> documentClass, Bson filters, CursorOptions options,
+                                                        Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer);
+        try (DocumentCursor<T> cursor = findCursor(documentClass, filters, options)) {
+            cursor.forEachRemaining(consumer);
+        }
+    }
+
     @Nullable
     @Override
     public <T extends CollectibleDocument> T findOne(Class<T> documentClass, Bson filters) {
@@ -150,6 +189,11 @@ class DatabaseDaoImpl extends CacheableDocumentDao implements DatabaseDao {
     private <T extends CollectibleDocument> List<T> findAllInternal(Class<T> documentClass, Bson filters, @Nullable Bson projection,
                                                                     int skip, int limit, @Nullable Bson sort) {
         SessionBindingMongoCollection<T> mongoCollection = getSessionBindingMongoCollection(documentClass);
+        return DBUtils.toList(createFindIterable(mongoCollection, filters, projection, skip, limit, sort));
+    }
+
+    private static <T> FindIterable<T> createFindIterable(SessionBindingMongoCollection<T> mongoCollection, Bson filters,
+                                                          @Nullable Bson projection, int skip, int limit, @Nullable Bson sort) {
         FindIterable<T> iterable = mongoCollection.find(filters);
         iterable.projection(projection);
         iterable.skip(skip);
@@ -159,7 +203,7 @@ class DatabaseDaoImpl extends CacheableDocumentDao implements DatabaseDao {
         if (sort != null) {
             iterable.sort(sort);
         }
-        return DBUtils.toList(iterable);
+        return iterable;
     }
 
     @Override
@@ -454,4 +498,9 @@ class DatabaseDaoImpl extends CacheableDocumentDao implements DatabaseDao {
             }
         }
     }
+
+    @Override
+    public WriteBehindSaveQueue createWriteBehindSaveQueue(WriteBehindConfig config) {
+        return new WriteBehindSaveQueue(this, config);
+    }
 }
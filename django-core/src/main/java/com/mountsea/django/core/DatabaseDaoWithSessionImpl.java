@@ -90,4 +90,10 @@ class DatabaseDaoWithSessionImpl extends DatabaseDaoImpl implements DatabaseDaoW
             return null;
         }, transactionOptions);
     }
+
+    @Override
+    public WriteBehindSaveQueue createWriteBehindSaveQueue(WriteBehindConfig config) {
+        //后台线程不能使用当前session
+        throw new UnsupportedOperationException("write-behind queue is not supported by dao with session");
+    }
 }
@@ -24,8 +24,10 @@
 package com.mountsea.django.core;
 
 import com.mountsea.django.bson.BsonUtils;
+import com.mountsea.django.bson.projection.CollectedUpdateBson;
 import com.mountsea.django.bson.util.InternalUtils;
 import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
 import org.bson.BsonValue;
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -40,6 +42,8 @@ import static com.mountsea.django.core.WriteContentDocument.Mode.UPDATE;
 /**
  * 文档初始为CollectibleDocument或Bson对象，如果有字段操作需求时，转换为Document对象，
  * 如果没有字段操作的需求，则可以避免多余的复制过程。
+ * <p>
+ * 文档更新记录生成的 {@link CollectedUpdateBson} 在没有字段操作时直接交给驱动编码，不转换为BsonDocument。
  *
  * @author guch
  * @since 3.0.0
@@ -47,7 +51,7 @@ import static com.mountsea.django.core.WriteContentDocument.Mode.UPDATE;
 class DefaultWriteContentDocument implements WriteContentDocument {
 
     /**
-     * 以下3个字段中只有一个不为null
+     * 以下4个字段中只有一个不为null
      */
     Object object;
 
@@ -55,6 +59,8 @@ class DefaultWriteContentDocument implements WriteContentDocument {
 
     BsonDocument bsonDocument;
 
+    CollectedUpdateBson collectedUpdate;
+
     final CodecRegistry codecRegistry;
 
     final Mode mode;
@@ -73,8 +79,12 @@ class DefaultWriteContentDocument implements WriteContentDocument {
 
     public static DefaultWriteContentDocument createUpdate(Bson bson, CodecRegistry codecRegistry) {
         DefaultWriteContentDocument document = new DefaultWriteContentDocument(codecRegistry, UPDATE);
-        //Bson编码时需要先转换BsonDocument，可以提前此过程
-        document.bsonDocument = BsonUtils.toBsonDocument(bson, codecRegistry);
+        if (bson instanceof CollectedUpdateBson) {
+            document.collectedUpdate = (CollectedUpdateBson) bson;
+        } else {
+            //Bson编码时需要先转换BsonDocument，可以提前此过程
+            document.bsonDocument = BsonUtils.toBsonDocument(bson, codecRegistry);
+        }
         return document;
     }
 
@@ -90,7 +100,10 @@ class DefaultWriteContentDocument implements WriteContentDocument {
 
     public Bson getAsBson() {
         convertToDocument();
-        return document == null ? bsonDocument : document;
+        if (document != null) {
+            return document;
+        }
+        return bsonDocument != null ? bsonDocument : collectedUpdate;
     }
 
     @Override
@@ -104,6 +117,9 @@ class DefaultWriteContentDocument implements WriteContentDocument {
         if (bsonDocument != null) {
             return bsonDocument;
         }
+        if (collectedUpdate != null) {
+            return collectedUpdate;
+        }
         throw new IllegalStateException();
     }
 
@@ -163,11 +179,18 @@ class DefaultWriteContentDocument implements WriteContentDocument {
         convertToDocument();
         if (document != null) {
             return document.isEmpty();
+        } else if (collectedUpdate != null) {
+            return collectedUpdate.isEmpty();
         } else {
             return bsonDocument.isEmpty();
         }
     }
 
+    @Override
+    public void encode() {
+        convertToBsonDocument();
+    }
+
     /**
      * 从CollectibleDocument转换到Document，执行浅复制。
      * 如果已经是BsonDocument状态，则调用没有影响，转换后仍然是BsonDocument状态
@@ -195,6 +218,11 @@ class DefaultWriteContentDocument implements WriteContentDocument {
             if (object != null) {
                 this.bsonDocument = BsonUtils.toBsonDocument(object, codecRegistry);
                 this.object = null;
+            } else if (collectedUpdate != null) {
+                BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+                collectedUpdate.encode(writer, codecRegistry);
+                this.bsonDocument = writer.getDocument();
+                this.collectedUpdate = null;
             } else {
                 this.bsonDocument = BsonUtils.toBsonDocument(document, codecRegistry);
                 this.document = null;
@@ -0,0 +1,141 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mountsea.django.bson.projection.DocumentNode;
+import com.mountsea.django.bson.projection.pojo.GlobalModels;
+import com.mountsea.django.bson.util.ClassScanner;
+import com.mountsea.django.bson.util.DocumentClassIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.io.Closeable;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动时预热文档类的元数据。
+ * <p>
+ * ClassModel、代理类、填充器、{@link CollectibleDocumentDefinition} (key、集合名、版本字段) 和Codec默认都在第一次使用时通过反射创建，
+ * 会使每种文档的第一次请求变慢。预热在线程池中并行创建这些信息，文档类来自编译期生成的索引 ({@link DocumentClassIndex})
+ * 或者扫描指定的包。
+ * <p>
+ * 单个文档类预热失败只记录日志，第一次使用时会再次创建并抛出异常。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j
+public class DocumentModelWarmer implements Closeable {
+
+    private final ExecutorService executor;
+
+    /**
+     * @param parallelism 线程数，小于等于0时使用CPU核数
+     */
+    public DocumentModelWarmer(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "django-model-warmer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 预热索引中的文档类和指定包(包括子包)下的文档类
+     *
+     * @param classLoader     用于读取索引、扫描和加载文档类
+     * @param codecRegistries 需要提前获取Codec的CodecRegistry，为空时不获取Codec
+     * @param packageNames    需要扫描的包，为空时只使用索引
+     * @return 预热成功的文档类数量
+     */
+    public int warmUpAll(ClassLoader classLoader, Collection<? extends CodecRegistry> codecRegistries, String... packageNames) {
+        Set<Class<?>> classes = new LinkedHashSet<>(DocumentClassIndex.load(classLoader));
+        for (String packageName : packageNames) {
+            classes.addAll(ClassScanner.scan(classLoader, packageName));
+        }
+        return warmUp(classes, codecRegistries);
+    }
+
+    /**
+     * 并行预热文档类，不是文档类的类会被忽略
+     *
+     * @param codecRegistries 需要提前获取Codec的CodecRegistry，为空时不获取Codec
+     * @return 预热成功的文档类数量
+     */
+    public int warmUp(Collection<Class<?>> classes, Collection<? extends CodecRegistry> codecRegistries) {
+        long start = System.nanoTime();
+        Map<Class<?>, Future<?>> futures = new LinkedHashMap<>();
+        for (Class<?> aClass : classes) {
+            if (isDocumentClass(aClass)) {
+                futures.put(aClass, executor.submit(() -> warmUp(aClass, codecRegistries)));
+            }
+        }
+        int warmed = 0;
+        for (Map.Entry<Class<?>, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+                warmed++;
+            } catch (ExecutionException e) {
+                log.error("Warm up document class failed: " + entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Warm up document classes interrupted");
+                break;
+            }
+        }
+        log.info("Warm up finished in {} ms, {} of {} document classes", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                warmed, futures.size());
+        return warmed;
+    }
+
+    private static boolean isDocumentClass(Class<?> aClass) {
+        return DocumentNode.class.isAssignableFrom(aClass) && !aClass.isInterface()
+                && !Modifier.isAbstract(aClass.getModifiers()) && !GlobalModels.isContainerType(aClass)
+                && !GlobalModels.isProxyClass(aClass);
+    }
+
+    private static void warmUp(Class<?> documentClass, Collection<? extends CodecRegistry> codecRegistries) {
+        GlobalModels.warmUp(documentClass);
+        if (CollectibleDocument.class.isAssignableFrom(documentClass)) {
+            CollectibleDocumentDefinitions.getDocumentDefinition(documentClass);
+        }
+        for (CodecRegistry codecRegistry : codecRegistries) {
+            codecRegistry.get(documentClass);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
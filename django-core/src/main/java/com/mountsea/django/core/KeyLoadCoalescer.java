@@ -0,0 +1,193 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mountsea.django.core.exception.DjangoException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 合并对同一个key的并发加载 (single-flight): 同一个key同时只有一个线程执行加载，其他线程等待加载结果或同一个异常。
+ * 加载的结果只返回给执行加载的线程，等待的线程各自得到一个副本，副本在执行加载的线程返回前复制，
+ * 此时结果还没有被调用者修改。加载完成后不保留结果，之后的调用重新加载。
+ * <p>
+ * 每个key有一个代数，保存或删除后用 {@link #invalidate} 增加，调用者只加入和当前代数相同的加载，
+ * 保存之后的查找不会得到保存之前开始的加载的结果。代数按key的hash分段保存，不同key共用一段时只会少合并，不影响正确性。
+ * <p>
+ * 用于没有启用缓存的类的findByKey/getByKey。启用缓存的类由 {@link com.mountsea.django.core.cache.CachePlugin#get} 保证同一个key只加载一次。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class KeyLoadCoalescer {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final ConcurrentHashMap<Object, InFlight> inFlights = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    /**
+     * @param copier 为等待的线程复制加载结果，结果为null时不调用
+     */
+    @SuppressWarnings("unchecked")
+    <T> T load(Object key, Supplier<T> loader, UnaryOperator<T> copier) {
+        InFlight inFlight;
+        while (true) {
+            //先读取代数再开始加载，加载一定在这一代的保存之后执行
+            inFlight = new InFlight(Thread.currentThread(), generations.get(stripe(key)));
+            InFlight existing = inFlights.putIfAbsent(key, inFlight);
+            if (existing == null) {
+                break;
+            }
+            if (existing.thread == Thread.currentThread()) {
+                //加载过程中重入同一个key，直接加载，等待会死锁
+                return loader.get();
+            }
+            if (existing.generation != inFlight.generation) {
+                //加载在保存或删除之前开始，不加入，替换为新的加载
+                if (inFlights.replace(key, existing, inFlight)) {
+                    break;
+                }
+                continue;
+            }
+            if (existing.addWaiter()) {
+                return (T) existing.take();
+            }
+            //加载已经结束并从inFlights中移除，重新查找
+        }
+        T value;
+        try {
+            value = loader.get();
+        } catch (Throwable t) {
+            close(key, inFlight);
+            inFlight.future.completeExceptionally(t);
+            throw t;
+        }
+        int waiters = close(key, inFlight);
+        if (waiters == 0) {
+            return value;
+        }
+        try {
+            Object[] copies = new Object[waiters];
+            for (int i = 0; i < waiters; i++) {
+                copies[i] = value == null ? null : copier.apply(value);
+            }
+            inFlight.future.complete(copies);
+        } catch (Throwable t) {
+            inFlight.future.completeExceptionally(t);
+        }
+        return value;
+    }
+
+    /**
+     * 先从inFlights中移除，之后不会再有线程等待
+     *
+     * @return 等待的线程数
+     */
+    private int close(Object key, InFlight inFlight) {
+        inFlights.remove(key, inFlight);
+        synchronized (inFlight) {
+            inFlight.closed = true;
+            return inFlight.waiters;
+        }
+    }
+
+    /**
+     * key对应的文档已经保存或删除，在写入完成后调用，之后的调用不再加入已经开始的加载
+     */
+    void invalidate(Object key) {
+        generations.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    int getInFlightCount() {
+        return inFlights.size();
+    }
+
+    private static Object[] join(CompletableFuture<Object[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DjangoException(cause);
+        }
+    }
+
+    private static class InFlight {
+        private final Thread thread;
+
+        private final long generation;
+
+        /**
+         * 每个等待的线程一个副本
+         */
+        private final CompletableFuture<Object[]> future = new CompletableFuture<>();
+
+        private final AtomicInteger taken = new AtomicInteger();
+
+        /**
+         * 在InFlight上同步
+         */
+        private int waiters;
+
+        private boolean closed;
+
+        private InFlight(Thread thread, long generation) {
+            this.thread = thread;
+            this.generation = generation;
+        }
+
+        /**
+         * @return 是否加入等待，加载已经结束时返回false
+         */
+        private synchronized boolean addWaiter() {
+            if (closed) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        private Object take() {
+            return join(future)[taken.getAndIncrement()];
+        }
+    }
+}
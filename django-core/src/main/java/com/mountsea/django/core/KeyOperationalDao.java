@@ -32,7 +32,9 @@ import org.bson.conversions.Bson;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
@@ -87,6 +89,26 @@ public interface KeyOperationalDao {
     @Nonnull
     <T extends CollectibleDocument> T getByKey(Class<T> documentClass, Object key, @Nullable Bson projection);
 
+    /**
+     * 根据一组key批量查找。先从缓存中获取，缓存中不存在的文档通过一次查询获取 (单字段key使用$in，多字段key使用$or)，
+     * 并加入缓存。
+     *
+     * @return 以参数中的key为map的key，顺序和参数中一致，不存在的文档不包含在返回值中
+     */
+    @Nonnull
+    @CacheAware
+    <T extends CollectibleDocument, K> Map<K, T> findAllByKeys(Class<T> documentClass, Collection<K> keys);
+
+    /**
+     * 根据一组key批量获取，如果不存在则按照key字段初始化，所有需要初始化的文档通过一次bulkWrite插入。
+     * 其他同 {@link #findAllByKeys(Class, Collection)} 和 {@link #getByKey(Class, Object)}。
+     *
+     * @return 以参数中的key为map的key，顺序和参数中一致
+     */
+    @Nonnull
+    @CacheAware
+    <T extends CollectibleDocument, K> Map<K, T> getAllByKeys(Class<T> documentClass, Collection<K> keys);
+
     /* save操作 */
 
     /**
@@ -24,7 +24,10 @@
 package com.mountsea.django.core;
 
 import com.mongodb.ClientSessionOptions;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.model.*;
@@ -34,17 +37,24 @@ import com.mountsea.django.bson.BsonUtils;
 import com.mountsea.django.core.exception.DjangoException;
 import com.mountsea.django.core.model.SaveMode;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
 import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt64;
 import org.bson.BsonObjectId;
 import org.bson.BsonValue;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
 import org.bson.types.ObjectId;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -109,6 +119,216 @@ class KeyOperationalDaoImpl extends AbstractDao implements KeyOperationalDao {
         }
     }
 
+    @Nonnull
+    @Override
+    protected <T extends CollectibleDocument> Map<Object, T> findAllByKeysInternal(Class<T> documentClass,
+                                                                                  CollectibleDocumentDefinition definition,
+                                                                                  List<Object> keys, boolean isCacheInterest) {
+        List<BsonDocument> matchKeys = new ArrayList<>(keys.size());
+        Map<BsonDocument, BsonDocument> keyDocuments = toKeyDocuments(definition, keys, matchKeys);
+        Map<BsonDocument, T> found = findAllByKeyDocuments(getSessionBindingMongoCollection(documentClass), documentClass,
+                definition, keyDocuments);
+        return toCallerKeys(keys, matchKeys, found);
+    }
+
+    @Nonnull
+    @Override
+    protected <T extends CollectibleDocument> Map<Object, T> getAllByKeysInternal(Class<T> documentClass,
+                                                                                 CollectibleDocumentDefinition definition,
+                                                                                 List<Object> keys, boolean isCacheInterest) {
+        SessionBindingMongoCollection<T> collection = getSessionBindingMongoCollection(documentClass);
+        List<BsonDocument> matchKeys = new ArrayList<>(keys.size());
+        Map<BsonDocument, BsonDocument> keyDocuments = toKeyDocuments(definition, keys, matchKeys);
+        Map<BsonDocument, T> result = findAllByKeyDocuments(collection, documentClass, definition, keyDocuments);
+        if (result.size() < keyDocuments.size()) {
+            Map<BsonDocument, BsonDocument> notFound = new LinkedHashMap<>(keyDocuments);
+            notFound.keySet().removeAll(result.keySet());
+            result.putAll(insertAllIfNotFind(collection, documentClass, notFound, definition));
+            if (result.size() < keyDocuments.size()) {
+                // 可能是被其他线程或进程先初始化
+                notFound.keySet().removeAll(result.keySet());
+                Map<BsonDocument, T> find = findAllByKeyDocuments(collection, documentClass, definition, notFound);
+                if (find.size() < notFound.size()) {
+                    throw new DjangoException("insert failed during getAllByKeys():" + notFound.values());
+                }
+                result.putAll(find);
+            }
+        }
+        return toCallerKeys(keys, matchKeys, result);
+    }
+
+    /**
+     * 把keys转为key文档，按 {@link #toMatchKey} 去重。
+     * <p>
+     * keys中equals不同的对象可能对应同一个key文档(如key类没有实现equals，或同一个数值的Integer和Long)，
+     * 只查询或插入一次，结果对每个key都返回。
+     *
+     * @param matchKeys 输出参数，按keys的顺序放入每个key的匹配用的key文档
+     * @return 匹配用的key文档 - 查询和插入用的key文档
+     */
+    private Map<BsonDocument, BsonDocument> toKeyDocuments(CollectibleDocumentDefinition definition, List<Object> keys,
+                                                           List<BsonDocument> matchKeys) {
+        Map<BsonDocument, BsonDocument> keyDocuments = new LinkedHashMap<>(keys.size() * 4 / 3 + 1);
+        for (Object key : keys) {
+            BsonDocument keyDocument = keyToBsonDocument(definition, key);
+            BsonDocument matchKey = toMatchKey(keyDocument);
+            keyDocuments.putIfAbsent(matchKey, keyDocument);
+            matchKeys.add(matchKey);
+        }
+        return keyDocuments;
+    }
+
+    private static <T> Map<Object, T> toCallerKeys(List<Object> keys, List<BsonDocument> matchKeys,
+                                                   Map<BsonDocument, T> documents) {
+        Map<Object, T> result = new HashMap<>(keys.size() * 4 / 3 + 1);
+        for (int i = 0; i < keys.size(); i++) {
+            T document = documents.get(matchKeys.get(i));
+            if (document != null) {
+                result.put(keys.get(i), document);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用来匹配查询结果的key文档。数据库按数值比较不同类型的数字，BsonValue的equals则区分类型，
+     * 所以整数值统一转为Int64，其他数字转为Double。
+     */
+    static BsonDocument toMatchKey(BsonDocument keyDocument) {
+        BsonDocument matchKey = new BsonDocument();
+        for (Map.Entry<String, BsonValue> entry : keyDocument.entrySet()) {
+            matchKey.put(entry.getKey(), toMatchValue(entry.getValue()));
+        }
+        return matchKey;
+    }
+
+    private static BsonValue toMatchValue(BsonValue value) {
+        switch (value.getBsonType()) {
+            case INT32:
+                return new BsonInt64(value.asInt32().getValue());
+            case DOUBLE:
+                return toMatchNumber(value.asDouble().getValue());
+            case DECIMAL128:
+                Decimal128 decimal = value.asDecimal128().getValue();
+                if (decimal.isNaN() || decimal.isInfinite()) {
+                    return value;
+                }
+                try {
+                    return toMatchNumber(decimal.bigDecimalValue().doubleValue());
+                } catch (ArithmeticException e) {
+                    // -0
+                    return toMatchNumber(0);
+                }
+            case DOCUMENT:
+                return toMatchKey(value.asDocument());
+            case ARRAY:
+                BsonArray array = new BsonArray();
+                for (BsonValue v : value.asArray()) {
+                    array.add(toMatchValue(v));
+                }
+                return array;
+            default:
+                return value;
+        }
+    }
+
+    private static BsonValue toMatchNumber(double d) {
+        long l = (long) d;
+        if (l == d && l != Long.MAX_VALUE && l != Long.MIN_VALUE) {
+            return new BsonInt64(l);
+        }
+        return new BsonDouble(d);
+    }
+
+    /**
+     * 单字段的key使用 $in 查询，多字段的key使用 $or 查询。
+     *
+     * @param keyDocuments 匹配用的key文档 - 查询用的key文档
+     * @return 匹配用的key文档 - 找到的文档
+     */
+    private <T extends CollectibleDocument> Map<BsonDocument, T> findAllByKeyDocuments(SessionBindingMongoCollection<T> collection,
+                                                                                      Class<T> documentClass,
+                                                                                      CollectibleDocumentDefinition definition,
+                                                                                      Map<BsonDocument, BsonDocument> keyDocuments) {
+        Map<BsonDocument, T> result = new HashMap<>(keyDocuments.size() * 4 / 3 + 1);
+        if (keyDocuments.isEmpty()) {
+            return result;
+        }
+        Bson filter;
+        if (keyDocuments.size() == 1) {
+            filter = keyDocuments.values().iterator().next();
+        } else if (definition.getKeyDefinition().getPropertyMap().size() == 1) {
+            String field = keyDocuments.values().iterator().next().getFirstKey();
+            List<BsonValue> values = new ArrayList<>(keyDocuments.size());
+            for (BsonDocument keyDocument : keyDocuments.values()) {
+                values.add(keyDocument.get(field));
+            }
+            filter = Filters.in(field, values);
+        } else {
+            filter = Filters.or(new ArrayList<>(keyDocuments.values()));
+        }
+        CollectibleDocumentDefinition.KeyExtractor keyExtractor = definition.getKeyDefinition().getKeyExtractor();
+        for (T document : collection.find(filter, documentClass)) {
+            BsonDocument matchKey = toMatchKey(keyExtractor.extractBsonKey(document, definition.isAllowNullKeyField()));
+            if (keyDocuments.containsKey(matchKey)) {
+                result.put(matchKey, document);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("findAllByKeys: collection {}, keys {}, found {}", collection.getNamespace(),
+                    keyDocuments.size(), result.size());
+        }
+        return result;
+    }
+
+    /**
+     * 批量初始化插入，返回插入成功的文档
+     *
+     * @param keyDocuments 匹配用的key文档 - 插入用的key文档
+     * @return 匹配用的key文档 - 插入的文档
+     */
+    private <T extends CollectibleDocument> Map<BsonDocument, T> insertAllIfNotFind(SessionBindingMongoCollection<T> collection,
+                                                                                   Class<T> documentClass,
+                                                                                   Map<BsonDocument, BsonDocument> keyDocuments,
+                                                                                   CollectibleDocumentDefinition definition) {
+        List<BsonDocument> keys = new ArrayList<>(keyDocuments.size());
+        List<BsonDocument> inserts = new ArrayList<>(keyDocuments.size());
+        List<UpdateOneModel<T>> models = new ArrayList<>(keyDocuments.size());
+        for (Map.Entry<BsonDocument, BsonDocument> entry : keyDocuments.entrySet()) {
+            T document = BsonUtils.fromBsonDocument(entry.getValue(), documentClass);
+            document.initForStore();
+            BsonDocument bsonDocument = toBsonDocument(document);
+            if (bsonDocument.get("_id") == null && !(definition.getIdProperty().getType().equals(ObjectId.class) ||
+                    definition.getIdProperty().getType().equals(BsonObjectId.class))) {
+                throw new DjangoException("_id is null and cannot auto generate when inserting");
+            }
+            keys.add(entry.getKey());
+            inserts.add(bsonDocument);
+            // 仅当不存在则插入
+            models.add(new UpdateOneModel<>(entry.getValue(), Updates.setOnInsert(bsonDocument), DBUtils.UPSERT_OPTION));
+        }
+        BulkWriteResult bulkWriteResult;
+        try {
+            bulkWriteResult = collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // 并发初始化时可能出现duplicate key，其余文档的插入结果仍然有效
+            if (e.getWriteConcernError() != null ||
+                    !e.getWriteErrors().stream().allMatch(x -> x.getCategory() == ErrorCategory.DUPLICATE_KEY)) {
+                throw e;
+            }
+            bulkWriteResult = e.getWriteResult();
+        }
+        Map<BsonDocument, T> result = new HashMap<>();
+        for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts()) {
+            BsonDocument bsonDocument = inserts.get(upsert.getIndex());
+            bsonDocument.put("_id", upsert.getId());
+            result.put(keys.get(upsert.getIndex()), fromBsonDocument(bsonDocument, documentClass));
+        }
+        log.debug("insertAllIfNotFind: collection: {}, count: {}, inserted: {}", collection.getNamespace(),
+                models.size(), result.size());
+        return result;
+    }
+
     /**
      * 初始化插入, 如果插入成功则返回新插入的文档，否则返回null.
      */
@@ -138,36 +358,11 @@ class KeyOperationalDaoImpl extends AbstractDao implements KeyOperationalDao {
         }
     }
 
-    private UpdateOptions getUpsertOption() {
-        UpdateOptions updateOptions = new UpdateOptions();
-        updateOptions.upsert(true);
-        return updateOptions;
-    }
-
     @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     protected BulkWriteResult bulkSaveInternal(List<InternalSaveDocument> documents, CollectibleDocumentDefinition definition,
                                                SaveMode saveMode, boolean isCacheInterest) {
-        List<WriteModel> writeModelList = new ArrayList<>(documents.size());
-        for (InternalSaveDocument saveDocument : documents) {
-            if (saveDocument == null) {
-                continue;
-            }
-            WriteContentDocument writeContent = saveDocument.getWriteContent();
-            switch (saveMode) {
-                case INSERT_OR_UPDATE:
-                    writeModelList.add(new UpdateOneModel<>(saveDocument.getFilter(), writeContent.getAsBson(),
-                            getUpsertOption()));
-                    break;
-                case INSERT_ONLY:
-                    writeModelList.add(new InsertOneModel<>(writeContent));
-                    break;
-                case UPDATE_ONLY:
-                    writeModelList.add(new UpdateOneModel<>(saveDocument.getFilter(), writeContent.getAsBson()));
-                    break;
-            }
-        }
-
+        List<WriteModel> writeModelList = toWriteModels(documents, saveMode);
         if (writeModelList.isEmpty()) {
             return new NoActionBultWriteResult();
         }
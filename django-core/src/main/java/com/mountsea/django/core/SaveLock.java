@@ -0,0 +1,163 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 文档的saveLock。和 {@link java.util.concurrent.locks.ReentrantLock} (非公平)一样可重入，
+ * 另外可以通过 {@link #detach()} 把锁转为不属于任何线程的锁定状态，再由其他线程调用 {@link #releaseDetached()} 释放。
+ * <p>
+ * 异步保存在调用线程中获取文档更新内容，在驱动的线程中完成入库，需要在入库完成之前一直持有锁，
+ * 否则同一文档的下一次保存可能先入库。锁转移之后，原来的线程也不能再重入。
+ * <p>
+ * 直接继承AQS，每个文档只多一个对象。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class SaveLock extends AbstractQueuedSynchronizer implements Lock {
+
+    private static final int DETACHED_RELEASE = -1;
+
+    @Override
+    protected boolean tryAcquire(int acquires) {
+        Thread current = Thread.currentThread();
+        int c = getState();
+        if (c == 0) {
+            if (compareAndSetState(0, acquires)) {
+                setExclusiveOwnerThread(current);
+                return true;
+            }
+        } else if (current == getExclusiveOwnerThread()) {
+            int nextc = c + acquires;
+            if (nextc < 0) {
+                throw new Error("Maximum lock count exceeded");
+            }
+            setState(nextc);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean tryRelease(int releases) {
+        if (releases == DETACHED_RELEASE) {
+            // 转移后的锁只由入库完成的回调释放，释放之前其他线程不能修改state
+            if (getExclusiveOwnerThread() != null || getState() == 0) {
+                throw new IllegalMonitorStateException();
+            }
+            int c = getState() - 1;
+            setState(c);
+            return c == 0;
+        }
+        if (Thread.currentThread() != getExclusiveOwnerThread()) {
+            throw new IllegalMonitorStateException();
+        }
+        int c = getState() - releases;
+        boolean free = c == 0;
+        if (free) {
+            setExclusiveOwnerThread(null);
+        }
+        setState(c);
+        return free;
+    }
+
+    @Override
+    protected boolean isHeldExclusively() {
+        return getExclusiveOwnerThread() == Thread.currentThread();
+    }
+
+    /**
+     * 把当前线程持有的锁转为不属于任何线程的锁定状态，重入的次数不变，每一次需要调用一次 {@link #releaseDetached()}。
+     * 已经转移过的锁再次调用时不做处理
+     *
+     * @throws IllegalMonitorStateException 如果当前线程没有持有锁，并且锁也没有被转移
+     */
+    void detach() {
+        if (getExclusiveOwnerThread() == null && getState() > 0) {
+            return;
+        }
+        if (!isHeldExclusively()) {
+            throw new IllegalMonitorStateException();
+        }
+        setExclusiveOwnerThread(null);
+        // volatile写，使其他线程在读取state之后能读到owner的修改
+        setState(getState());
+    }
+
+    /**
+     * 在任意线程释放一次 {@link #detach()} 转移的锁
+     */
+    void releaseDetached() {
+        release(DETACHED_RELEASE);
+    }
+
+    @Override
+    public void lock() {
+        acquire(1);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        acquireInterruptibly(1);
+    }
+
+    @Override
+    public boolean tryLock() {
+        return tryAcquire(1);
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryAcquireNanos(1, unit.toNanos(time));
+    }
+
+    @Override
+    public void unlock() {
+        release(1);
+    }
+
+    /**
+     * 是否被任意线程持有，或者已转移还没有释放
+     */
+    boolean isLocked() {
+        return getState() != 0;
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new ConditionObject();
+    }
+
+    @Override
+    public String toString() {
+        Thread owner = getExclusiveOwnerThread();
+        int c = getState();
+        return super.toString() + (c == 0 ? "[Unlocked]" : owner == null ? "[Detached]" : "[Locked by thread " + owner.getName() + "]");
+    }
+}
@@ -94,6 +94,14 @@ public class SessionBindingMongoCollection<T> {
     }
 
 
+    /**
+     * 和 {@link #withCodecRegistry(CodecRegistry)} 相同，但返回的集合仍然绑定当前session
+     */
+    public SessionBindingMongoCollection<T> withSessionBindingCodecRegistry(CodecRegistry codecRegistry) {
+        return new SessionBindingMongoCollection<>(mongoCollection.withCodecRegistry(codecRegistry), clientSessionSupplier);
+    }
+
+
     public com.mongodb.client.MongoCollection<T> withReadPreference(ReadPreference readPreference) {
         return mongoCollection.withReadPreference(readPreference);
     }
@@ -0,0 +1,63 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link WriteBehindSaveQueue} 的配置
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Getter
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class WriteBehindConfig {
+
+    /**
+     * 后台线程两次flush之间的间隔
+     */
+    private final long flushIntervalMillis;
+
+    /**
+     * 队列中等待保存的文档数量上限，达到上限时由加入文档的线程同步执行flush。
+     * 保存失败的文档也计算在内，flush之后仍然达到上限时拒绝加入新的文档
+     */
+    private final int maxPendingDocuments;
+
+    /**
+     * 每次bulkWrite最多包含的文档数量
+     */
+    private final int maxBatchSize;
+
+    public static class Builder {
+        // 默认值
+        private long flushIntervalMillis = 1000;
+        private int maxPendingDocuments = 10000;
+        private int maxBatchSize = 500;
+    }
+}
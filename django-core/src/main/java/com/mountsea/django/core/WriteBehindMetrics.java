@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import lombok.ToString;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link WriteBehindSaveQueue} 中一个collection的统计数据
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@ToString
+public class WriteBehindMetrics {
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    private final LongAdder replaced = new LongAdder();
+
+    private final LongAdder bulkWrites = new LongAdder();
+
+    private final LongAdder savedDocuments = new LongAdder();
+
+    private final LongAdder failedDocuments = new LongAdder();
+
+    private final LongAdder flushNanos = new LongAdder();
+
+    /**
+     * 加入队列的文档次数，不包括合并到已在队列中的文档，以及同一个key加入不同文档对象的次数
+     */
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    /**
+     * 加入队列时文档已在队列中，和之前的保存请求合并的次数
+     */
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    /**
+     * 同一个key已有其他文档对象在队列中，加入新的文档对象的次数。加入时会先同步flush队列
+     */
+    public long getReplaced() {
+        return replaced.sum();
+    }
+
+    /**
+     * 执行bulkWrite的次数
+     */
+    public long getBulkWrites() {
+        return bulkWrites.sum();
+    }
+
+    /**
+     * 通过bulkWrite保存的文档数量
+     */
+    public long getSavedDocuments() {
+        return savedDocuments.sum();
+    }
+
+    /**
+     * 保存失败的文档数量，失败的文档留在队列中，重试时再次失败会重复计数
+     */
+    public long getFailedDocuments() {
+        return failedDocuments.sum();
+    }
+
+    /**
+     * 执行bulkWrite的总耗时
+     */
+    public long getFlushNanos() {
+        return flushNanos.sum();
+    }
+
+    void recordEnqueue() {
+        enqueued.increment();
+    }
+
+    void recordMerge() {
+        merged.increment();
+    }
+
+    void recordReplace() {
+        replaced.increment();
+    }
+
+    void recordSave(int documents, long nanos) {
+        bulkWrites.increment();
+        savedDocuments.add(documents);
+        flushNanos.add(nanos);
+    }
+
+    void recordFailure(int documents, long nanos) {
+        failedDocuments.add(documents);
+        flushNanos.add(nanos);
+    }
+}
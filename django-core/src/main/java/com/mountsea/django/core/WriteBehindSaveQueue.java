@@ -0,0 +1,335 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core;
+
+import com.mountsea.django.core.exception.DjangoException;
+import com.mountsea.django.core.model.SaveMode;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 延迟保存队列。多次修改文档后，不需要每次调用 {@link KeyOperationalDao#saveByKey}，而是把文档加入队列，
+ * 由后台线程定期把队列中的文档按文档类分组，通过 {@link AbstractDao#bulkSave} 批量保存。
+ * <p>
+ * 队列中的文档按key去重，同一个文档在保存之前多次加入队列只保存一次，保存的内容是文档上累积的更新记录。
+ * 保存过程和saveByKey相同: 对文档加saveLock，获取并清空更新记录，然后入库。如果同一个key加入了不同的文档对象，
+ * 两个文档对象的更新记录不能合并，加入时先同步flush队列，使之前的文档对象先保存。
+ * <p>
+ * 保存失败的文档留在队列中，在下次flush时重试，此时文档的更新记录已关闭，重试时会保存整个文档。
+ * 同一个key后加入的文档对象排在失败的文档对象之后，前面的保存成功之后才会保存。
+ * <p>
+ * 队列中的文档数量达到 {@link WriteBehindConfig#getMaxPendingDocuments()} 时，由加入文档的线程同步执行flush，
+ * flush之后仍然达到上限(保存失败的文档留在队列中)时，加入新的文档抛出异常。
+ * <p>
+ * 使用 {@link DatabaseDao#createWriteBehindSaveQueue} 创建，不再使用时调用 {@link #close()} 保存剩余的文档并停止后台线程。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j(topic = "com.mountsea.django.core.dao")
+public class WriteBehindSaveQueue implements Closeable {
+
+    private final AbstractDao dao;
+
+    private final WriteBehindConfig config;
+
+    private final ScheduledExecutorService executor;
+
+    private final Map<String, WriteBehindMetrics> metricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 保证同时只有一个线程在保存队列中的文档，避免同一key的两次保存乱序
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * key -> 按加入顺序排列的不同文档对象，一般只有一个。文档保存成功之后才从队列中移除，
+     * 保存过程中再次加入同一个文档对象时和正在保存的请求合并。访问时在pendingLock上同步
+     */
+    private final LinkedHashMap<PendingKey, ArrayDeque<CollectibleDocument>> pending = new LinkedHashMap<>();
+
+    /**
+     * pending中的文档总数
+     */
+    private int pendingCount;
+
+    private final Object pendingLock = new Object();
+
+    private volatile boolean closed;
+
+    WriteBehindSaveQueue(AbstractDao dao, WriteBehindConfig config) {
+        if (config.getFlushIntervalMillis() <= 0 || config.getMaxPendingDocuments() <= 0 || config.getMaxBatchSize() <= 0) {
+            throw new IllegalArgumentException(config.toString());
+        }
+        this.dao = dao;
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "django-write-behind-" + dao.getDatabaseName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, config.getFlushIntervalMillis(),
+                config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public WriteBehindConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 把文档加入队列，如果文档已在队列中，则和之前的保存请求合并。
+     * 同一个key已经有其他文档对象在队列中，或者队列已满时，在当前线程同步flush。
+     *
+     * @throws DjangoException 如果队列已关闭，或者flush之后队列仍然是满的
+     */
+    public void enqueue(CollectibleDocument document) {
+        if (closed) {
+            throw new DjangoException("write-behind queue closed");
+        }
+        PendingKey pendingKey = PendingKey.of(document);
+        WriteBehindMetrics metrics = getMetrics(pendingKey.definition);
+        boolean added = false;
+        boolean full;
+        synchronized (pendingLock) {
+            ArrayDeque<CollectibleDocument> documents = pending.get(pendingKey);
+            if (documents != null && containsInstance(documents, document)) {
+                metrics.recordMerge();
+                return;
+            }
+            full = pendingCount >= config.getMaxPendingDocuments();
+            if (documents == null && !full) {
+                addPending(pendingKey, document);
+                metrics.recordEnqueue();
+                added = true;
+                full = pendingCount >= config.getMaxPendingDocuments();
+            }
+        }
+        if (!added) {
+            enqueueAfterFlush(pendingKey, document, metrics);
+        } else if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * 先保存队列中已有的文档，再把文档加入队列。在flushLock中加入，flush期间其他线程不会插入同一个key的文档
+     */
+    private void enqueueAfterFlush(PendingKey pendingKey, CollectibleDocument document, WriteBehindMetrics metrics) {
+        flushLock.lock();
+        try {
+            flush();
+            synchronized (pendingLock) {
+                ArrayDeque<CollectibleDocument> documents = pending.get(pendingKey);
+                if (documents != null && containsInstance(documents, document)) {
+                    metrics.recordMerge();
+                    return;
+                }
+                if (pendingCount >= config.getMaxPendingDocuments()) {
+                    throw new DjangoException("write-behind queue full, pending documents:" + pendingCount
+                            + ", document:" + pendingKey);
+                }
+                addPending(pendingKey, document);
+                if (documents == null) {
+                    metrics.recordEnqueue();
+                } else {
+                    metrics.recordReplace();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void addPending(PendingKey pendingKey, CollectibleDocument document) {
+        pending.computeIfAbsent(pendingKey, k -> new ArrayDeque<>(2)).addLast(document);
+        pendingCount++;
+    }
+
+    private static boolean containsInstance(ArrayDeque<CollectibleDocument> documents, CollectibleDocument document) {
+        for (CollectibleDocument d : documents) {
+            if (d == document) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 同步保存队列中的所有文档。每一轮保存每个key排在最前面的文档，同一个key有多个文档对象时，
+     * 前一个保存成功之后，在下一轮保存后一个。保存失败的文档留在队列中。
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Set<PendingKey> keys = null;
+            while (true) {
+                Map<CollectibleDocumentDefinition, List<Map.Entry<PendingKey, CollectibleDocument>>> groups = new LinkedHashMap<>();
+                synchronized (pendingLock) {
+                    for (Map.Entry<PendingKey, ArrayDeque<CollectibleDocument>> entry : pending.entrySet()) {
+                        if (keys == null || keys.contains(entry.getKey())) {
+                            groups.computeIfAbsent(entry.getKey().definition, k -> new ArrayList<>())
+                                    .add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().peekFirst()));
+                        }
+                    }
+                }
+                if (groups.isEmpty()) {
+                    return;
+                }
+                // 下一轮只保存本轮保存成功，并且还有后续文档对象的key
+                keys = new HashSet<>();
+                for (Map.Entry<CollectibleDocumentDefinition, List<Map.Entry<PendingKey, CollectibleDocument>>> group : groups.entrySet()) {
+                    List<Map.Entry<PendingKey, CollectibleDocument>> entries = group.getValue();
+                    for (int from = 0; from < entries.size(); from += config.getMaxBatchSize()) {
+                        int to = Math.min(entries.size(), from + config.getMaxBatchSize());
+                        List<Map.Entry<PendingKey, CollectibleDocument>> batch = entries.subList(from, to);
+                        if (saveBatch(group.getKey(), batch)) {
+                            removeSaved(batch, keys);
+                        }
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 保存成功的文档从队列中移除，还有后续文档对象的key加入nextKeys
+     */
+    private void removeSaved(List<Map.Entry<PendingKey, CollectibleDocument>> batch, Set<PendingKey> nextKeys) {
+        synchronized (pendingLock) {
+            for (Map.Entry<PendingKey, CollectibleDocument> entry : batch) {
+                ArrayDeque<CollectibleDocument> documents = pending.get(entry.getKey());
+                // 只有持有flushLock的线程会移除文档，保存期间队首不会改变
+                documents.removeFirst();
+                pendingCount--;
+                if (documents.isEmpty()) {
+                    pending.remove(entry.getKey());
+                } else {
+                    nextKeys.add(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 是否保存成功
+     */
+    private boolean saveBatch(CollectibleDocumentDefinition definition, List<Map.Entry<PendingKey, CollectibleDocument>> batch) {
+        List<CollectibleDocument> documents = new ArrayList<>(batch.size());
+        for (Map.Entry<PendingKey, CollectibleDocument> entry : batch) {
+            documents.add(entry.getValue());
+        }
+        WriteBehindMetrics metrics = getMetrics(definition);
+        long start = System.nanoTime();
+        try {
+            dao.bulkSave(documents, SaveMode.INSERT_OR_UPDATE, true, null, true, true);
+            metrics.recordSave(documents.size(), System.nanoTime() - start);
+            return true;
+        } catch (Throwable t) {
+            metrics.recordFailure(documents.size(), System.nanoTime() - start);
+            log.error("write-behind save failed, {} documents of collection {} stay in queue", documents.size(),
+                    definition.getCollectionName(), t);
+            return false;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("write-behind flush failed", t);
+        }
+    }
+
+    /**
+     * 队列中等待保存的文档数量
+     */
+    public int getPendingCount() {
+        synchronized (pendingLock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * @return collection名称 -> 统计数据
+     */
+    public Map<String, WriteBehindMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metricsMap);
+    }
+
+    private WriteBehindMetrics getMetrics(CollectibleDocumentDefinition definition) {
+        return metricsMap.computeIfAbsent(definition.getCollectionName(), k -> new WriteBehindMetrics());
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 停止后台线程，然后保存队列中剩余的文档。关闭后不能再加入文档。
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(config.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    private static class PendingKey {
+        private final CollectibleDocumentDefinition definition;
+
+        private final Object key;
+
+        private PendingKey(CollectibleDocumentDefinition definition, Object key) {
+            this.definition = definition;
+            this.key = key;
+        }
+
+        static PendingKey of(CollectibleDocument document) {
+            CollectibleDocumentDefinition definition = CollectibleDocumentDefinitions.getDocumentDefinition(document.getClass());
+            Object key = definition.getKeyDefinition().getKeyExtractor().extractKey(document, definition.isAllowNullKeyField());
+            return new PendingKey(definition, key);
+        }
+    }
+}
@@ -67,4 +67,12 @@ interface WriteContentDocument {
     boolean contains(String field);
 
     boolean isEmpty();
+
+    /**
+     * 立即编码为BsonDocument，之后不再引用文档对象。用于在其他线程编码的异步保存，
+     * 调用者在保存返回后继续修改文档时，修改不会写入这次保存
+     *
+     * @since 3.4.0
+     */
+    void encode();
 }
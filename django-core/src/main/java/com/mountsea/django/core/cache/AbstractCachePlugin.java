@@ -54,6 +54,12 @@ public abstract class AbstractCachePlugin implements CachePlugin {
         return enable != null && enable;
     }
 
+    @Override
+    public boolean isWriteBack(CollectibleDocumentDefinition definition) {
+        Boolean writeBack = resolveConfigForClass(definition).getWriteBack();
+        return writeBack != null && writeBack;
+    }
+
     protected SingleItemCacheConfig resolveConfigForClass(CollectibleDocumentDefinition definition) {
         Attribute<SingleItemCacheConfig> attr = definition.getAttributeMap().attr(CACHE_CONFIG_KEY);
         SingleItemCacheConfig singleItemCacheConfig = attr.get();
@@ -65,7 +71,10 @@ public abstract class AbstractCachePlugin implements CachePlugin {
             EnableDocumentCache documentCache = documentClass.getAnnotation(EnableDocumentCache.class);
             SingleItemCacheConfig annoConfig = documentCache == null ? null :
                     new SingleItemCacheConfig(true, documentCache.maxSize(), documentCache.expireAfterAccessMills(),
-                            documentCache.expireAfterWriteMills(), documentCache.weakReference().toBooleanWrapper(), documentCache.softReference().toBooleanWrapper());
+                            documentCache.expireAfterWriteMills(), documentCache.weakReference().toBooleanWrapper(), documentCache.softReference().toBooleanWrapper(),
+                            documentCache.offHeapMaxBytes(), documentCache.writeBack().toBooleanWrapper(),
+                            documentCache.negativeCacheTtlMills(), documentCache.refreshAfterWriteMills(),
+                            documentCache.expireJitterPercent());
 
             singleItemCacheConfig = mergeConfig(mergeConfig(cacheConfig, annoConfig), globalConfig);
             attr.set(singleItemCacheConfig);
@@ -80,7 +89,12 @@ public abstract class AbstractCachePlugin implements CachePlugin {
                     highPri.getExpireAfterAccessMills() != 0 ? highPri.getExpireAfterAccessMills() : lowPri.getExpireAfterAccessMills(),
                     highPri.getExpireAfterWriteMills() != 0 ? highPri.getExpireAfterWriteMills() : lowPri.getExpireAfterWriteMills(),
                     highPri.getWeakReference() != null ? highPri.getWeakReference() : lowPri.getWeakReference(),
-                    highPri.getSoftReference() != null ? highPri.getSoftReference() : lowPri.getSoftReference());
+                    highPri.getSoftReference() != null ? highPri.getSoftReference() : lowPri.getSoftReference(),
+                    highPri.getOffHeapMaxBytes() != 0 ? highPri.getOffHeapMaxBytes() : lowPri.getOffHeapMaxBytes(),
+                    highPri.getWriteBack() != null ? highPri.getWriteBack() : lowPri.getWriteBack(),
+                    highPri.getNegativeCacheTtlMills() != 0 ? highPri.getNegativeCacheTtlMills() : lowPri.getNegativeCacheTtlMills(),
+                    highPri.getRefreshAfterWriteMills() != 0 ? highPri.getRefreshAfterWriteMills() : lowPri.getRefreshAfterWriteMills(),
+                    highPri.getExpireJitterPercent() != 0 ? highPri.getExpireJitterPercent() : lowPri.getExpireJitterPercent());
         } else {
             if (highPri != null) {
                 return highPri;
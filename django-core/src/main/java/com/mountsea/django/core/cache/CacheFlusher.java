@@ -0,0 +1,49 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import com.mountsea.django.core.CollectibleDocument;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 把写回模式下标记的文档保存到数据库，由Dao提供，见 {@link CachePlugin#markDirty}。
+ * <p>
+ * 缓存把equals相同的flusher标记的同一类文档合并到一次调用中批量保存，所以实现需要按目标数据库实现equals和hashCode。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public interface CacheFlusher {
+
+    /**
+     * 批量保存文档。实现需要用tryLock对每个文档加saveLock，加锁失败的文档正在被其他线程保存，不保存，返回给缓存在下次重试。
+     * 保存失败时抛出异常，此时文档的更新记录已关闭，和bulkSave失败时相同，下次保存时会保存整个文档。
+     *
+     * @param documents 同一个类的文档，不为空
+     * @return 因saveLock被其他线程持有而没有保存的文档
+     */
+    Collection<CollectibleDocument> flush(List<CollectibleDocument> documents);
+}
@@ -26,6 +26,14 @@ package com.mountsea.django.core.cache;
 import com.mountsea.django.core.CollectibleDocument;
 import com.mountsea.django.core.CollectibleDocumentDefinition;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -44,6 +52,69 @@ public interface CachePlugin {
      */
     CollectibleDocument get(CollectibleDocumentDefinition definition, Object key, Supplier<CollectibleDocument> supplier);
 
+    /**
+     * 同 {@link #get}，用于查找可能不存在的文档。supplier返回null时，如果类配置了negativeCacheTtlMills，
+     * 记录key不存在，在此时间内再次调用直接返回null，不调用supplier。
+     * 同一个key的文档通过 {@link #save}、{@link #putAll} 放入缓存，或者通过 {@link #get} 加载到文档时清除记录。
+     * <p>
+     * 默认实现调用 {@link #get}，不记录不存在的key。
+     *
+     * @since 3.4.0
+     */
+    default CollectibleDocument find(CollectibleDocumentDefinition definition, Object key, Supplier<CollectibleDocument> supplier) {
+        return get(definition, key, supplier);
+    }
+
+    /**
+     * 只在缓存中查找，不存在时返回null，不加载，也不改变缓存中的内容。
+     * <p>
+     * 默认实现调用 {@link #get} 并传入返回null的supplier，会被记为一次加载，缓存实现应覆盖此方法。
+     *
+     * @since 3.4.0
+     */
+    @Nullable
+    default CollectibleDocument getIfPresent(CollectibleDocumentDefinition definition, Object key) {
+        return get(definition, key, () -> null);
+    }
+
+    /**
+     * 批量查找，缓存中不存在的key一次性调用bulkLoader加载，加载结果加入缓存。
+     * bulkLoader返回的map中不包含的key (文档不存在) 不加入缓存。
+     * 和 {@link #get}一样要保证并发时同一个key获取到的是同一个对象：加载期间如果其他线程已经把相同key放入缓存，返回缓存中的对象。
+     * <p>
+     * 默认实现逐个调用 {@link #get}，缓存实现有批量接口时应覆盖此方法。
+     *
+     * @param bulkLoader 参数为缓存中不存在的key，不会为空
+     * @return 存在的文档，不包含不存在的key
+     */
+    default Map<Object, CollectibleDocument> getAll(CollectibleDocumentDefinition definition, Collection<?> keys,
+                                                    Function<Set<Object>, Map<Object, ? extends CollectibleDocument>> bulkLoader) {
+        Map<Object, CollectibleDocument> result = new HashMap<>(keys.size() * 4 / 3 + 1);
+        Set<Object> misses = new LinkedHashSet<>();
+        for (Object key : keys) {
+            CollectibleDocument cached = getIfPresent(definition, key);
+            if (cached != null) {
+                result.put(key, cached);
+            } else {
+                misses.add(key);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<Object, ? extends CollectibleDocument> loaded = bulkLoader.apply(misses);
+            for (Map.Entry<Object, ? extends CollectibleDocument> entry : loaded.entrySet()) {
+                result.put(entry.getKey(), get(definition, entry.getKey(), entry::getValue));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量新增插入或更新，同 {@link #save}
+     */
+    default void putAll(CollectibleDocumentDefinition definition, Map<?, ? extends CollectibleDocument> documents) {
+        documents.forEach((key, document) -> save(definition, key, document));
+    }
+
     /**
      * 从缓存移除
      */
@@ -53,4 +124,70 @@ public interface CachePlugin {
      * 文档新增插入或更新。
      */
     void save(CollectibleDocumentDefinition definition, Object key, CollectibleDocument dbDocument);
+
+    /**
+     * 类是否使用写回模式
+     *
+     * @since 3.4.0
+     */
+    default boolean isWriteBack(CollectibleDocumentDefinition definition) {
+        return false;
+    }
+
+    /**
+     * 写回模式下，标记缓存中的文档有需要保存的修改，文档由flusher延迟保存:
+     * <ul>
+     *     <li>定期批量保存所有标记的文档，同一个collection的文档合并到一次bulkWrite</li>
+     *     <li>文档因数量超出或过期从缓存中移除时，在移除前同步保存</li>
+     *     <li>{@link #close()}时保存剩余的文档</li>
+     * </ul>
+     * 同一个key在保存之前多次标记只保存一次。文档从缓存中手动移除时 (如删除文档) 取消标记。
+     *
+     * @since 3.4.0
+     */
+    default void markDirty(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document,
+                           CacheFlusher flusher) {
+        throw new UnsupportedOperationException("write-back not supported: " + getClass().getName());
+    }
+
+    /**
+     * 注册类的重新加载函数，用于refreshAfterWriteMills。Dao在从缓存获取文档时注册，同一个类只保留最后注册的
+     *
+     * @since 3.4.0
+     */
+    default void registerReloader(CollectibleDocumentDefinition definition, CacheReloader reloader) {
+    }
+
+    /**
+     * @return 类的缓存统计数据，类还没有创建缓存或者缓存实现不支持时返回null
+     * @since 3.4.0
+     */
+    @Nullable
+    default DocumentCacheStats getStats(CollectibleDocumentDefinition definition) {
+        return null;
+    }
+
+    /**
+     * @return 已创建缓存的所有类的统计数据，key 类名
+     * @since 3.4.0
+     */
+    default Map<String, DocumentCacheStats> getStats() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 同步保存所有写回模式下标记的文档
+     *
+     * @since 3.4.0
+     */
+    default void flushDirty() {
+    }
+
+    /**
+     * 保存所有写回模式下标记的文档，并释放资源
+     *
+     * @since 3.4.0
+     */
+    default void close() {
+    }
 }
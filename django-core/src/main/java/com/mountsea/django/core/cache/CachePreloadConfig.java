@@ -0,0 +1,70 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import com.mountsea.django.core.DatabaseDaoFactory;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 单个文档类的缓存预加载配置。
+ * <p>
+ * 按条件加载：使用filter/sort/limit查询，filter和sort为json格式，如 {"level": {"$gte": 10}}。
+ * 按热点key加载：hotKeysFile中每行一个key，单字段key为字段值的json格式 (如 123, "name")，
+ * {@link com.mountsea.django.core.annotation.KeyClass} 类型的key为包含key字段的json文档。配置了hotKeysFile时忽略filter/sort/limit。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Data
+@NoArgsConstructor
+public class CachePreloadConfig {
+
+    /**
+     * 使用的DaoFactory名称，加载时使用DaoFactory的默认database
+     */
+    private String factory = DatabaseDaoFactory.GLOBAL_DAO_FACTORY_NAME;
+
+    /**
+     * 查询条件，为空则加载全部文档
+     */
+    private String filter;
+
+    private String sort;
+
+    /**
+     * 最多加载的文档数，小于等于0表示不限制 (仍然受缓存的maxSize限制)
+     */
+    private int limit;
+
+    /**
+     * 热点key文件，以 classpath: 开头时从classpath读取，否则为文件路径
+     */
+    private String hotKeysFile;
+
+    /**
+     * 每次从服务器拉取的文档数
+     */
+    private int batchSize = 1000;
+}
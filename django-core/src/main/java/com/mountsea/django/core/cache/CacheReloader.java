@@ -0,0 +1,53 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import com.mountsea.django.core.CollectibleDocument;
+import com.mountsea.django.core.CollectibleDocumentDefinition;
+
+import javax.annotation.Nullable;
+
+/**
+ * 从数据库重新加载缓存中的文档，用于refreshAfterWriteMills，由Dao提供，见 {@link CachePlugin#registerReloader}
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public interface CacheReloader {
+
+    /**
+     * 在后台线程中调用
+     *
+     * @return 文档不存在时返回null
+     */
+    @Nullable
+    CollectibleDocument reload(CollectibleDocumentDefinition definition, Object key);
+
+    /**
+     * 文档是否正在保存。保存时先清空更新记录再入库，入库完成之前文档看起来没有未保存的修改，重新加载的结果不能替换它
+     */
+    default boolean isSaving(CollectibleDocument document) {
+        return false;
+    }
+}
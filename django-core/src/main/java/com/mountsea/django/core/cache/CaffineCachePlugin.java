@@ -24,63 +24,287 @@
 package com.mountsea.django.core.cache;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
 import com.mountsea.django.core.CollectibleDocument;
 import com.mountsea.django.core.CollectibleDocumentDefinition;
+import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
  * 使用caffine缓存实现
+ * <p>
+ * 写回模式下标记的文档由 {@link WriteBackBuffer} 定期保存，文档因数量超出或过期被移除时，在caffine的 {@link CacheWriter}
+ * 中等待正在保存的文档并同步保存剩余的文档，保存完成前其他线程获取同一个key会等待，不会从数据库加载到旧的文档。
+ * 文档被替换时不在写入的线程保存，被替换的文档由后台线程尽快保存。
+ * <p>
+ * 配置了refreshAfterWriteMills的类在专用的线程池中重新加载，重新加载使用Dao注册的 {@link CacheReloader}，见 {@link Refresher}。
+ * 所有类的缓存都记录统计数据，通过 {@link #getStats} 获取。
  *
  * @author guch
  * @since 3.0.0
  */
+@Slf4j
 public class CaffineCachePlugin extends AbstractCachePlugin implements CachePlugin {
 
     private final Map<String, Cache<Object, Object>> map = new ConcurrentHashMap<>();
 
+    /**
+     * 不存在的key，只对配置了negativeCacheTtlMills的类创建
+     */
+    private final Map<String, Optional<Cache<Object, Boolean>>> negativeMap = new ConcurrentHashMap<>();
+
+    private final WriteBackBuffer writeBackBuffer;
+
+    private final Map<String, CacheReloader> reloaders = new ConcurrentHashMap<>();
+
+    /**
+     * 只对配置了refreshAfterWriteMills的类创建
+     */
+    private final Map<String, Refresher> refreshers = new ConcurrentHashMap<>();
+
+    /**
+     * 第一次创建配置了refreshAfterWriteMills的类的缓存时创建
+     */
+    private volatile ExecutorService refreshExecutor;
+
     public CaffineCachePlugin(DocumentCacheConfigs configs) {
         super(configs);
+        this.writeBackBuffer = new WriteBackBuffer(configs.getWriteBackFlushIntervalMills(), configs.getWriteBackMaxBatchSize());
     }
 
     @Override
     public CollectibleDocument get(CollectibleDocumentDefinition definition, Object key, Supplier<CollectibleDocument> supplier) {
         Cache<Object, Object> cache = getCache(definition);
-        return (CollectibleDocument) cache.get(key, o -> {
-            return supplier.get();
+        Cache<Object, Boolean> negative = getNegativeCache(definition);
+        CollectibleDocument document = (CollectibleDocument) cache.get(key, k -> {
+            CollectibleDocument loaded = loadOnMiss(definition, k, supplier);
+            if (loaded != null && negative != null) {
+                negative.invalidate(k);
+            }
+            afterWrite(definition, k, loaded);
+            return loaded;
+        });
+        return afterRead(definition, key, document);
+    }
+
+    /**
+     * 不调用 {@link #loadOnMiss}，堆外等其他层级的缓存也不会被取出
+     */
+    @Override
+    @Nullable
+    public CollectibleDocument getIfPresent(CollectibleDocumentDefinition definition, Object key) {
+        return afterRead(definition, key, (CollectibleDocument) getCache(definition).getIfPresent(key));
+    }
+
+    /**
+     * 不存在的key在caffine的加载函数中记录，和同一个key的 {@link #save} 互斥，
+     * 所以不会在save清除记录之后，又记录了save之前查询的不存在的结果。
+     */
+    @Override
+    public CollectibleDocument find(CollectibleDocumentDefinition definition, Object key, Supplier<CollectibleDocument> supplier) {
+        Cache<Object, Boolean> negative = getNegativeCache(definition);
+        if (negative == null) {
+            return get(definition, key, supplier);
+        }
+        Cache<Object, Object> cache = getCache(definition);
+        CollectibleDocument document = (CollectibleDocument) cache.get(key, k -> {
+            if (negative.getIfPresent(k) != null) {
+                return null;
+            }
+            CollectibleDocument loaded = loadOnMiss(definition, k, supplier);
+            if (loaded == null) {
+                negative.put(k, Boolean.TRUE);
+            } else {
+                afterWrite(definition, k, loaded);
+            }
+            return loaded;
         });
+        return afterRead(definition, key, document);
+    }
+
+    /**
+     * 命中部分用 {@link Cache#getAllPresent}一次获取。
+     * 没有使用 {@link Cache#getAll(Iterable, Function)}，因为它会用加载结果覆盖加载期间其他线程放入的对象，
+     * 这里用putIfAbsent加入缓存，保证同一个key获取到的是同一个对象。
+     */
+    @Override
+    public Map<Object, CollectibleDocument> getAll(CollectibleDocumentDefinition definition, Collection<?> keys,
+                                                   Function<Set<Object>, Map<Object, ? extends CollectibleDocument>> bulkLoader) {
+        Cache<Object, Object> cache = getCache(definition);
+        Map<Object, Object> present = cache.getAllPresent(keys);
+        Map<Object, CollectibleDocument> result = new HashMap<>(keys.size() * 4 / 3 + 1);
+        Set<Object> misses = new LinkedHashSet<>();
+        for (Object key : keys) {
+            Object cached = present.get(key);
+            if (cached != null) {
+                result.put(key, afterRead(definition, key, (CollectibleDocument) cached));
+            } else {
+                misses.add(key);
+            }
+        }
+        if (!misses.isEmpty()) {
+            ConcurrentMap<Object, Object> cacheMap = cache.asMap();
+            Cache<Object, Boolean> negative = getNegativeCache(definition);
+            for (Map.Entry<Object, ? extends CollectibleDocument> entry : bulkLoader.apply(misses).entrySet()) {
+                Object pre = cacheMap.putIfAbsent(entry.getKey(), entry.getValue());
+                if (pre == null) {
+                    afterWrite(definition, entry.getKey(), entry.getValue());
+                }
+                if (negative != null) {
+                    negative.invalidate(entry.getKey());
+                }
+                result.put(entry.getKey(), pre != null ? (CollectibleDocument) pre : entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(CollectibleDocumentDefinition definition, Map<?, ? extends CollectibleDocument> documents) {
+        getCache(definition).putAll(documents);
+        documents.forEach((key, document) -> afterWrite(definition, key, document));
+        Cache<Object, Boolean> negative = getNegativeCache(definition);
+        if (negative != null) {
+            negative.invalidateAll(documents.keySet());
+        }
     }
 
     @Override
     public void remove(CollectibleDocumentDefinition definition, Object key) {
         Cache<Object, Object> cache = getCache(definition);
         cache.invalidate(key);
+        if (isWriteBack(definition)) {
+            //文档被移出缓存后保存失败时仍然标记着，不在缓存中时不会调用onDelete
+            writeBackBuffer.onRemoved(definition, key, false);
+        }
+        Cache<Object, Boolean> negative = getNegativeCache(definition);
+        if (negative != null) {
+            negative.invalidate(key);
+        }
     }
 
     @Override
     public void save(CollectibleDocumentDefinition definition, Object key, CollectibleDocument dbDocument) {
         Cache<Object, Object> cache = getCache(definition);
         cache.put(key, dbDocument);
+        afterWrite(definition, key, dbDocument);
+        Cache<Object, Boolean> negative = getNegativeCache(definition);
+        if (negative != null) {
+            negative.invalidate(key);
+        }
+    }
+
+    @Override
+    public void markDirty(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document,
+                          CacheFlusher flusher) {
+        if (!isWriteBack(definition)) {
+            throw new IllegalStateException("write-back not enabled: " + definition.getDocumentClass().getName());
+        }
+        writeBackBuffer.markDirty(definition, key, document, flusher);
     }
 
-    private Cache<Object, Object> getCache(CollectibleDocumentDefinition definition) {
+    @Override
+    public void flushDirty() {
+        writeBackBuffer.flush();
+    }
+
+    @Override
+    public void registerReloader(CollectibleDocumentDefinition definition, CacheReloader reloader) {
+        if (resolveConfigForClass(definition).getRefreshAfterWriteMills() <= 0) {
+            return;
+        }
+        String name = definition.getDocumentClass().getName();
+        if (!reloader.equals(reloaders.get(name))) {
+            reloaders.put(name, reloader);
+        }
+    }
+
+    @Override
+    @Nullable
+    public DocumentCacheStats getStats(CollectibleDocumentDefinition definition) {
+        String name = definition.getDocumentClass().getName();
+        Cache<Object, Object> cache = map.get(name);
+        return cache == null ? null : toStats(name, cache);
+    }
+
+    @Override
+    public Map<String, DocumentCacheStats> getStats() {
+        Map<String, DocumentCacheStats> stats = new TreeMap<>();
+        map.forEach((name, cache) -> stats.put(name, toStats(name, cache)));
+        return stats;
+    }
+
+    private DocumentCacheStats toStats(String name, Cache<Object, Object> cache) {
+        CacheStats stats = cache.stats();
+        Refresher refresher = refreshers.get(name);
+        return new DocumentCacheStats(cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.loadSuccessCount(), stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount(),
+                refresher == null ? 0 : refresher.refreshed.sum(),
+                refresher == null ? 0 : refresher.skipped.sum());
+    }
+
+    @Override
+    public void close() {
+        writeBackBuffer.close();
+        ExecutorService executor = refreshExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return 写回模式下标记了还没有保存的文档数量
+     * @since 3.4.0
+     */
+    public int getDirtyCount() {
+        return writeBackBuffer.getDirtyCount();
+    }
+
+    protected Cache<Object, Object> getCache(CollectibleDocumentDefinition definition) {
         Class<? extends CollectibleDocument> documentClass = definition.getDocumentClass();
         return map.computeIfAbsent(documentClass.getName(), name -> {
             DocumentCacheConfigs.SingleItemCacheConfig cacheConfig = resolveConfigForClass(definition);
             Caffeine<Object, Object> builder = Caffeine.newBuilder();
+            configureCache(definition, cacheConfig, builder);
+            if (isWriterRequired(definition)) {
+                if (cacheConfig.getWeakReference() != null && cacheConfig.getWeakReference()) {
+                    //caffine的weakKeys不能和CacheWriter同时使用
+                    throw new IllegalArgumentException("weakReference can not be used with write-back or off-heap cache: "
+                            + documentClass.getName());
+                }
+                builder.writer(createWriter(definition));
+            }
+            builder.recordStats();
             if (cacheConfig.getMaxSize() > 0) {
                 builder.maximumSize(cacheConfig.getMaxSize());
             }
-            if (cacheConfig.getExpireAfterAccessMills() > 0) {
-                builder.expireAfterAccess(cacheConfig.getExpireAfterAccessMills(), TimeUnit.MILLISECONDS);
-            }
-            if (cacheConfig.getExpireAfterWriteMills() > 0) {
-                builder.expireAfterWrite(cacheConfig.getExpireAfterWriteMills(), TimeUnit.MILLISECONDS);
-            }
+            configureExpiry(name, cacheConfig, builder);
             if (cacheConfig.getSoftReference() != null && cacheConfig.getSoftReference()) {
                 builder.softValues();
             }
@@ -88,8 +312,358 @@ public class CaffineCachePlugin extends AbstractCachePlugin implements CachePlug
                 builder.weakValues();
                 builder.weakKeys();
             }
+            if (cacheConfig.getRefreshAfterWriteMills() > 0) {
+                Refresher refresher = new Refresher(definition, cacheConfig.getRefreshAfterWriteMills());
+                builder.removalListener(refresher);
+                refreshers.put(name, refresher);
+            }
             return builder.build();
         });
     }
 
+    private void configureExpiry(String name, DocumentCacheConfigs.SingleItemCacheConfig cacheConfig,
+                                 Caffeine<Object, Object> builder) {
+        long expireAfterAccessMills = cacheConfig.getExpireAfterAccessMills();
+        long expireAfterWriteMills = cacheConfig.getExpireAfterWriteMills();
+        int jitterPercent = cacheConfig.getExpireJitterPercent();
+        if (jitterPercent > 0 && expireAfterWriteMills > 0) {
+            if (expireAfterAccessMills <= 0) {
+                builder.expireAfter(new JitteredExpiry(TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMills), jitterPercent));
+                return;
+            }
+            log.warn("expireJitterPercent can not be used with expireAfterAccessMills, ignored. class: {}", name);
+        }
+        if (expireAfterAccessMills > 0) {
+            builder.expireAfterAccess(expireAfterAccessMills, TimeUnit.MILLISECONDS);
+        }
+        if (expireAfterWriteMills > 0) {
+            builder.expireAfterWrite(expireAfterWriteMills, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private ExecutorService getRefreshExecutor() {
+        ExecutorService executor = refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = refreshExecutor;
+                if (executor == null) {
+                    AtomicInteger threadIndex = new AtomicInteger();
+                    int threads = Math.max(1, configs.getRefreshThreads());
+                    executor = Executors.newFixedThreadPool(threads, r -> {
+                        Thread thread = new Thread(r, "django-cache-refresh-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 文档有未保存的修改时返回false，没有开启更新记录时不能确定，也返回false
+     */
+    private static boolean isClean(CollectibleDocument document) {
+        return DocumentNodeHelper.callWithRecordLocked(document, () -> {
+            return DocumentNodeHelper.hasEnableUpdateCollect(document)
+                    && DocumentNodeHelper.getUpdateRecord(document, false) == null;
+        });
+    }
+
+    /**
+     * 文档放入缓存之后调用，记录写入时间
+     */
+    private void afterWrite(CollectibleDocumentDefinition definition, Object key, @Nullable CollectibleDocument document) {
+        if (document == null || refreshers.isEmpty()) {
+            return;
+        }
+        Refresher refresher = refreshers.get(definition.getDocumentClass().getName());
+        if (refresher != null) {
+            refresher.recordWrite(key);
+        }
+    }
+
+    /**
+     * 从缓存读取到文档之后调用，超过refreshAfterWriteMills时在后台重新加载
+     */
+    @Nullable
+    private CollectibleDocument afterRead(CollectibleDocumentDefinition definition, Object key, @Nullable CollectibleDocument document) {
+        if (document == null || refreshers.isEmpty()) {
+            return document;
+        }
+        Refresher refresher = refreshers.get(definition.getDocumentClass().getName());
+        if (refresher != null) {
+            refresher.afterRead(key, document);
+        }
+        return document;
+    }
+
+    /**
+     * refreshAfterWriteMills的实现。没有使用caffine的refreshAfterWrite，因为重新加载跳过时返回原来的文档，caffine仍然会写入，
+     * 重新计算写入时间和过期时间，并且重新加载期间key被移除时，caffine会放入加载的文档。
+     * <p>
+     * 记录每个key的文档放入缓存的时间，读取时超过refreshAfterWriteMills的key在专用的线程池中重新加载，同一个key同时只有一个重新加载。
+     * 加载的文档在 {@link ConcurrentMap#computeIfPresent} 中替换，只有缓存中仍然是读取到的文档对象并且没有未保存的修改时才替换，
+     * 检查和替换是原子的。否则中止计算，不写入缓存，过期时间不变，在refreshAfterWriteMills之后再重新加载。
+     */
+    private class Refresher implements RemovalListener<Object, Object> {
+        private final CollectibleDocumentDefinition definition;
+
+        private final String name;
+
+        private final long refreshNanos;
+
+        /**
+         * key -> 文档放入缓存的时间。文档移出缓存时删除，没有记录的key在读取时记录
+         */
+        private final ConcurrentHashMap<Object, WriteTime> writeTimes = new ConcurrentHashMap<>();
+
+        private final LongAdder refreshed = new LongAdder();
+
+        private final LongAdder skipped = new LongAdder();
+
+        Refresher(CollectibleDocumentDefinition definition, long refreshAfterWriteMills) {
+            this.definition = definition;
+            this.name = definition.getDocumentClass().getName();
+            this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterWriteMills);
+        }
+
+        void recordWrite(Object key) {
+            writeTimes.put(key, new WriteTime(System.nanoTime()));
+        }
+
+        void afterRead(Object key, CollectibleDocument document) {
+            WriteTime writeTime = writeTimes.get(key);
+            if (writeTime == null) {
+                writeTimes.putIfAbsent(key, new WriteTime(System.nanoTime()));
+                return;
+            }
+            if (System.nanoTime() - writeTime.nanos < refreshNanos || !writeTime.refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                getRefreshExecutor().execute(() -> refresh(key, document, writeTime));
+            } catch (RejectedExecutionException e) {
+                //已关闭
+            }
+        }
+
+        private void refresh(Object key, CollectibleDocument oldDocument, WriteTime writeTime) {
+            boolean replaced = false;
+            try {
+                replaced = reload(key, oldDocument, writeTime);
+            } catch (Throwable t) {
+                log.warn("refresh failed, class: {}, key: {}", name, key, t);
+            } finally {
+                if (!replaced) {
+                    writeTimes.replace(key, writeTime, new WriteTime(System.nanoTime()));
+                }
+            }
+        }
+
+        /**
+         * 有未保存修改的文档不替换，加载前和替换时都检查，加载期间修改的文档也不替换。
+         * 加载期间保存过的文档 (写入时间不是触发此次重新加载的记录)、正在保存的文档和写回模式下标记了还没有保存的文档也不替换，
+         * 保存时更新记录已清空，但加载的可能是保存之前的数据。
+         * 没有注册CacheReloader时不重新加载
+         *
+         * @param writeTime 触发此次重新加载时的写入时间记录
+         * @return 是否替换了缓存中的文档
+         */
+        private boolean reload(Object key, CollectibleDocument oldDocument, WriteTime writeTime) {
+            CacheReloader reloader = reloaders.get(name);
+            if (reloader == null) {
+                return false;
+            }
+            if (!isUnchanged(key, oldDocument, writeTime, reloader)) {
+                skipped.increment();
+                return false;
+            }
+            CollectibleDocument document = reloader.reload(definition, key);
+            boolean[] replaced = new boolean[1];
+            try {
+                getCache(definition).asMap().computeIfPresent(key, (k, v) -> {
+                    if (v != oldDocument) {
+                        throw SkipRefreshException.INSTANCE;
+                    }
+                    if (!isUnchanged(k, oldDocument, writeTime, reloader)) {
+                        skipped.increment();
+                        throw SkipRefreshException.INSTANCE;
+                    }
+                    //在替换前计数，读到新文档时统计中已经包含这次重新加载
+                    refreshed.increment();
+                    replaced[0] = true;
+                    return document;
+                });
+            } catch (SkipRefreshException e) {
+                return false;
+            }
+            if (replaced[0]) {
+                if (document != null) {
+                    recordWrite(key);
+                }
+            }
+            return replaced[0];
+        }
+
+        private boolean isUnchanged(Object key, CollectibleDocument oldDocument, WriteTime writeTime, CacheReloader reloader) {
+            return writeTimes.get(key) == writeTime && !reloader.isSaving(oldDocument)
+                    && !(isWriteBack(definition) && writeBackBuffer.isDirty(definition, key))
+                    && isClean(oldDocument);
+        }
+
+        @Override
+        public void onRemoval(@Nullable Object key, @Nullable Object value, RemovalCause cause) {
+            if (key != null && cause != RemovalCause.REPLACED) {
+                writeTimes.remove(key);
+            }
+        }
+    }
+
+    private static class WriteTime {
+        private final long nanos;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        WriteTime(long nanos) {
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * 中止重新加载的computeIfPresent，抛出异常时caffine不写入缓存
+     */
+    private static final class SkipRefreshException extends RuntimeException {
+        private static final SkipRefreshException INSTANCE = new SkipRefreshException();
+
+        private SkipRefreshException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 每个文档的写入后过期时间在 base * (1 ± jitterPercent%) 内随机，读取不改变过期时间
+     */
+    private static class JitteredExpiry implements Expiry<Object, Object> {
+        private final long baseNanos;
+
+        private final long jitterNanos;
+
+        JitteredExpiry(long baseNanos, int jitterPercent) {
+            this.baseNanos = baseNanos;
+            this.jitterNanos = baseNanos / 100 * Math.min(jitterPercent, 100);
+        }
+
+        private long nextDuration() {
+            if (jitterNanos <= 0) {
+                return baseNanos;
+            }
+            long duration = baseNanos + ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1);
+            return Math.max(1, duration);
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return nextDuration();
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return nextDuration();
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    @Nullable
+    private Cache<Object, Boolean> getNegativeCache(CollectibleDocumentDefinition definition) {
+        return negativeMap.computeIfAbsent(definition.getDocumentClass().getName(), name -> {
+            DocumentCacheConfigs.SingleItemCacheConfig cacheConfig = resolveConfigForClass(definition);
+            if (cacheConfig.getNegativeCacheTtlMills() <= 0) {
+                return Optional.empty();
+            }
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .expireAfterWrite(cacheConfig.getNegativeCacheTtlMills(), TimeUnit.MILLISECONDS);
+            if (cacheConfig.getMaxSize() > 0) {
+                builder.maximumSize(cacheConfig.getMaxSize());
+            }
+            return Optional.of(builder.build());
+        }).orElse(null);
+    }
+
+    /**
+     * 缓存没有命中时在caffine的加载函数中调用，默认调用supplier从数据库加载
+     *
+     * @return 可以返回null，表示文档不存在
+     * @since 3.4.0
+     */
+    @Nullable
+    protected CollectibleDocument loadOnMiss(CollectibleDocumentDefinition definition, Object key,
+                                             Supplier<CollectibleDocument> supplier) {
+        return supplier.get();
+    }
+
+    private CacheWriter<Object, Object> createWriter(CollectibleDocumentDefinition definition) {
+        return new CacheWriter<Object, Object>() {
+            @Override
+            public void write(Object key, Object value) {
+                onWrite(definition, key, (CollectibleDocument) value);
+            }
+
+            @Override
+            public void delete(Object key, @Nullable Object value, RemovalCause cause) {
+                onDelete(definition, key, (CollectibleDocument) value, cause);
+            }
+        };
+    }
+
+    /**
+     * 创建类的缓存时调用，是否需要调用 {@link #onWrite} 和 {@link #onDelete}
+     *
+     * @since 3.4.0
+     */
+    protected boolean isWriterRequired(CollectibleDocumentDefinition definition) {
+        return isWriteBack(definition);
+    }
+
+    /**
+     * 创建类的缓存时调用，子类可以在builder上添加配置。不能设置writer，需要监听写入和移除时覆盖 {@link #onWrite} 和 {@link #onDelete}。
+     * 配置了refreshAfterWriteMills的类不能设置removalListener
+     *
+     * @since 3.4.0
+     */
+    protected void configureCache(CollectibleDocumentDefinition definition, DocumentCacheConfigs.SingleItemCacheConfig cacheConfig,
+                                  Caffeine<Object, Object> builder) {
+    }
+
+    /**
+     * 文档放入缓存时调用 (包括替换，不包括get时加载)，在caffine的 {@link CacheWriter} 中同步执行。
+     * 只有 {@link #isWriterRequired} 返回true时调用
+     *
+     * @since 3.4.0
+     */
+    protected void onWrite(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document) {
+        if (isWriteBack(definition)) {
+            writeBackBuffer.onReplaced(definition, key, document);
+        }
+    }
+
+    /**
+     * 文档从缓存中移除时调用，在caffine的 {@link CacheWriter} 中同步执行，返回前其他线程不能获取此key。
+     * 只有 {@link #isWriterRequired} 返回true时调用
+     *
+     * @param document 弱引用或软引用被回收时为null
+     * @since 3.4.0
+     */
+    protected void onDelete(CollectibleDocumentDefinition definition, Object key, @Nullable CollectibleDocument document,
+                            RemovalCause cause) {
+        if (isWriteBack(definition)) {
+            writeBackBuffer.onRemoved(definition, key, cause.wasEvicted());
+        }
+    }
+
 }
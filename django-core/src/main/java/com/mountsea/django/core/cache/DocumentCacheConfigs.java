@@ -82,10 +82,70 @@ public interface DocumentCacheConfigs {
          * null表示未配置(使用默认的全局配置)。
          */
         private Boolean softReference;
+
+        /**
+         * 堆外缓存层的最大字节数，-1表示不使用堆外缓存。
+         * 堆内缓存因数量超出移除的文档编码后保存在堆外内存，再次访问时解码并放回堆内缓存。
+         * 只有 {@link OffHeapTieredCachePlugin} 使用此配置。
+         * <p>
+         * 堆外内存按512字节分页，每个文档至少占用一页，并向上取整为页的整数倍，小于512字节的文档也占用512字节。
+         * 配置值向下取整为512的倍数。
+         * <p>
+         * 0表示未配置(使用默认的全局配置)。
+         *
+         * @since 3.4.0
+         */
+        private long offHeapMaxBytes;
+
+        /**
+         * 是否使用写回模式，见 {@link CachePlugin#markDirty}。
+         * 写回模式下saveByKey只标记文档需要保存，由缓存定期、在文档从缓存中移除时和关闭时批量入库。
+         * <p>
+         * null表示未配置(使用默认的全局配置)。
+         *
+         * @since 3.4.0
+         */
+        private Boolean writeBack;
+
+        /**
+         * 查找不存在的文档时，记录key不存在的时间，在此时间内再次查找同一个key直接返回null，不查询数据库。-1表示不记录。
+         * 保存同一个key的文档时清除记录。
+         * <p>
+         * 0表示未配置(使用默认的全局配置)。
+         *
+         * @since 3.4.0
+         */
+        private long negativeCacheTtlMills;
+
+        /**
+         * 写入后多久在后台重新加载，-1表示不重新加载。
+         * 超过此时间后第一次访问时返回缓存中的文档，同时在后台线程从数据库重新加载，加载完成后替换缓存中的文档，
+         * 有未保存修改的文档不替换。用于读多写少的文档，避免过期后多个线程同时等待加载。
+         * <p>
+         * 0表示未配置(使用默认的全局配置)。
+         *
+         * @since 3.4.0
+         */
+        private long refreshAfterWriteMills;
+
+        /**
+         * expireAfterWriteMills的随机浮动百分比，每个文档的过期时间在 expireAfterWriteMills * (1 ± expireJitterPercent%) 内随机，
+         * 避免同时加载的文档同时过期。-1表示不浮动。只在没有配置expireAfterAccessMills时有效。
+         * <p>
+         * 0表示未配置(使用默认的全局配置)。
+         *
+         * @since 3.4.0
+         */
+        private int expireJitterPercent;
+
+        public SingleItemCacheConfig(Boolean enable, int maxSize, long expireAfterAccessMills, long expireAfterWriteMills,
+                                     Boolean weakReference, Boolean softReference) {
+            this(enable, maxSize, expireAfterAccessMills, expireAfterWriteMills, weakReference, softReference, 0, null, 0, 0, 0);
+        }
     }
 
     SingleItemCacheConfig DEFAULT_DEFAULT_CONFIG = new SingleItemCacheConfig(false, 1000,
-            -1L, -1L, false, true);
+            -1L, -1L, false, true, -1L, false, -1L, -1L, -1);
 
     /**
      * 返回默认全局配置。默认配置中，{@link SingleItemCacheConfig}的方法不能返回null。
@@ -97,4 +157,31 @@ public interface DocumentCacheConfigs {
      */
     SingleItemCacheConfig getDocumentClassConfig(Class<? extends CollectibleDocument> aClass);
 
+    /**
+     * 写回模式下定期保存文档的间隔
+     *
+     * @since 3.4.0
+     */
+    default long getWriteBackFlushIntervalMills() {
+        return 1000;
+    }
+
+    /**
+     * 写回模式下每次bulkWrite最多包含的文档数量
+     *
+     * @since 3.4.0
+     */
+    default int getWriteBackMaxBatchSize() {
+        return 500;
+    }
+
+    /**
+     * 后台重新加载文档 (refreshAfterWriteMills) 的线程数
+     *
+     * @since 3.4.0
+     */
+    default int getRefreshThreads() {
+        return 2;
+    }
+
 }
@@ -48,6 +48,42 @@ public class DocumentCacheProperties implements DocumentCacheConfigs {
      */
     private Map<String, SingleItemCacheConfig> classes = new HashMap<>();
 
+    /**
+     * 启动时预加载缓存的配置，key 类名
+     */
+    private Map<String, CachePreloadConfig> preload = new HashMap<>();
+
+    /**
+     * 启动预加载的总时间限制，超时后停止加载 (已加载的文档保留在缓存中)，小于等于0表示不限制
+     */
+    private long preloadTimeBudgetMills = 60000;
+
+    /**
+     * 预加载时解码文档的线程数，小于等于0时使用CPU核数
+     */
+    private int preloadParallelism = 0;
+
+    /**
+     * 是否使用 {@link OffHeapTieredCachePlugin}，为true时配置了offHeapMaxBytes的类在堆内缓存满后，
+     * 把没有未保存修改的文档放入堆外缓存
+     */
+    private boolean offHeapTierEnable = false;
+
+    /**
+     * 写回模式下定期保存文档的间隔
+     */
+    private long writeBackFlushIntervalMills = 1000;
+
+    /**
+     * 写回模式下每次bulkWrite最多包含的文档数量
+     */
+    private int writeBackMaxBatchSize = 500;
+
+    /**
+     * 后台重新加载文档 (refreshAfterWriteMills) 的线程数
+     */
+    private int refreshThreads = 2;
+
     @Override
     public SingleItemCacheConfig getDefaultConfig() {
         if (defaultConfig == null) {
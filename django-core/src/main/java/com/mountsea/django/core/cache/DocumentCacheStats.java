@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 一个文档类的缓存统计数据，见 {@link CachePlugin#getStats}。创建后不再变化。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class DocumentCacheStats {
+
+    /**
+     * 缓存中的文档数量，近似值
+     */
+    private final long estimatedSize;
+
+    /**
+     * 获取时命中的次数
+     */
+    private final long hitCount;
+
+    /**
+     * 获取时没有命中的次数
+     */
+    private final long missCount;
+
+    /**
+     * 没有命中时加载到文档的次数
+     */
+    private final long loadSuccessCount;
+
+    /**
+     * 没有命中时加载失败的次数，包括文档不存在和抛出异常
+     */
+    private final long loadFailureCount;
+
+    /**
+     * 加载的总耗时，包括后台重新加载
+     */
+    private final long totalLoadTimeNanos;
+
+    /**
+     * 因数量超出、过期或被GC回收移除的文档数量
+     */
+    private final long evictionCount;
+
+    /**
+     * 后台重新加载后替换了缓存中文档的次数
+     */
+    private final long refreshCount;
+
+    /**
+     * 后台重新加载时因文档有未保存的修改、正在保存或者加载期间被保存而没有替换的次数
+     */
+    private final long refreshSkipCount;
+
+    /**
+     * @return 命中率，没有获取过时返回1.0
+     */
+    public double getHitRatio() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return 平均每次加载的耗时
+     */
+    public double getAverageLoadNanos() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+}
@@ -80,4 +80,50 @@ public @interface EnableDocumentCache {
      * null表示未配置(使用默认的全局配置)。
      */
     BoolValue softReference() default BoolValue.DEFAULT;
+
+    /**
+     * 堆外缓存层的最大字节数，-1表示不使用堆外缓存。只有 {@link OffHeapTieredCachePlugin} 使用此配置。
+     * <p>
+     * 0表示未配置(使用默认的全局配置)。
+     *
+     * @since 3.4.0
+     */
+    long offHeapMaxBytes() default 0;
+
+    /**
+     * 是否使用写回模式，见 {@link CachePlugin#markDirty}
+     * <p>
+     * DEFAULT表示未配置(使用默认的全局配置)。
+     *
+     * @since 3.4.0
+     */
+    BoolValue writeBack() default BoolValue.DEFAULT;
+
+    /**
+     * 查找不存在的文档时，记录key不存在的时间，在此时间内再次查找同一个key直接返回null，不查询数据库。-1表示不记录。
+     * 保存同一个key的文档 (saveByKey/insert等) 时清除记录。
+     * <p>
+     * 0表示未配置(使用默认的全局配置)。
+     *
+     * @since 3.4.0
+     */
+    long negativeCacheTtlMills() default 0;
+
+    /**
+     * 写入后多久在后台重新加载，-1表示不重新加载，见 {@link DocumentCacheConfigs.SingleItemCacheConfig#getRefreshAfterWriteMills()}
+     * <p>
+     * 0表示未配置(使用默认的全局配置)。
+     *
+     * @since 3.4.0
+     */
+    long refreshAfterWriteMills() default 0;
+
+    /**
+     * expireAfterWriteMills的随机浮动百分比，-1表示不浮动，见 {@link DocumentCacheConfigs.SingleItemCacheConfig#getExpireJitterPercent()}
+     * <p>
+     * 0表示未配置(使用默认的全局配置)。
+     *
+     * @since 3.4.0
+     */
+    int expireJitterPercent() default 0;
 }
@@ -0,0 +1,252 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import javax.annotation.Nullable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 在堆外内存中保存编码后的文档字节，用于 {@link OffHeapTieredCachePlugin}。
+ * <p>
+ * 内存按 {@link #PAGE_SIZE} 分页，页从 {@link #SLAB_SIZE} 大小的直接内存块 (direct ByteBuffer) 中分配，块在需要时才创建，
+ * 创建后不再释放，由store对象回收时一起回收。每个entry占用若干个页，页不需要连续，所以不会产生碎片。
+ * 页用完时按LRU顺序移除entry，直到有足够的页。
+ * <p>
+ * 每个entry至少占用一页，最后一页没有用完的部分浪费，平均每个entry浪费半页。页取512字节，
+ * 小文档不会占用过多的内存，代价是每页在空闲页栈中占用一个int，例如1GB的store占用8MB堆内存。
+ * <p>
+ * 所有操作在同一个锁中进行，写入和读取时在锁中复制字节，编解码在锁外进行。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+final class OffHeapDocumentStore {
+
+    static final int PAGE_SIZE = 512;
+
+    static final int SLAB_SIZE = 1024 * 1024;
+
+    private static final int PAGES_PER_SLAB = SLAB_SIZE / PAGE_SIZE;
+
+    private final int maxPages;
+
+    private final ByteBuffer[] slabs;
+
+    /**
+     * 空闲页的栈，只包含已经创建了内存块的页
+     */
+    private final int[] freePages;
+
+    private int freeCount;
+
+    /**
+     * 还没有创建内存块的第一个页
+     */
+    private int nextNewPage;
+
+    /**
+     * 按访问顺序排列，第一个是最久没有访问的
+     */
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long evictionCount;
+
+    /**
+     * 已保存的entry的字节数之和，不包括页中没有用完的部分
+     */
+    private long usedBytes;
+
+    /**
+     * @param maxBytes 最多使用的堆外内存字节数，向下取整为页大小的倍数，至少一页
+     */
+    OffHeapDocumentStore(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Illegal max bytes: " + maxBytes);
+        }
+        this.maxPages = (int) Math.max(1, Math.min(maxBytes / PAGE_SIZE, Integer.MAX_VALUE - PAGES_PER_SLAB));
+        this.slabs = new ByteBuffer[(maxPages + PAGES_PER_SLAB - 1) / PAGES_PER_SLAB];
+        this.freePages = new int[maxPages];
+    }
+
+    /**
+     * 保存bytes，key已存在时替换。空间不足时移除最久没有访问的entry
+     *
+     * @return 超过总容量不能保存时返回false
+     */
+    synchronized boolean put(Object key, byte[] bytes) {
+        remove(key);
+        int pageCount = Math.max(1, (bytes.length + PAGE_SIZE - 1) / PAGE_SIZE);
+        if (pageCount > maxPages) {
+            return false;
+        }
+        while (availablePages() < pageCount) {
+            evictEldest();
+        }
+        int[] pages = new int[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            int page = allocatePage();
+            pages[i] = page;
+            int offset = i * PAGE_SIZE;
+            int length = Math.min(PAGE_SIZE, bytes.length - offset);
+            if (length > 0) {
+                pageBuffer(page).put(bytes, offset, length);
+            }
+        }
+        entries.put(key, new Entry(pages, bytes.length, System.currentTimeMillis()));
+        usedBytes += bytes.length;
+        return true;
+    }
+
+    /**
+     * 移除并返回key对应的bytes
+     *
+     * @param maxAgeMills 保存后超过此时间的entry视为过期，移除后返回null。小于等于0表示不过期
+     */
+    @Nullable
+    synchronized byte[] take(Object key, long maxAgeMills) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        byte[] bytes = null;
+        if (maxAgeMills <= 0 || System.currentTimeMillis() - entry.storedAtMills <= maxAgeMills) {
+            bytes = new byte[entry.length];
+            for (int i = 0; i < entry.pages.length; i++) {
+                int offset = i * PAGE_SIZE;
+                int length = Math.min(PAGE_SIZE, entry.length - offset);
+                if (length > 0) {
+                    pageBuffer(entry.pages[i]).get(bytes, offset, length);
+                }
+            }
+        }
+        release(entry);
+        return bytes;
+    }
+
+    synchronized boolean remove(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        release(entry);
+        return true;
+    }
+
+    synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            release(entry);
+        }
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 已保存的entry的字节数
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return 已保存的entry占用的页的字节数，大于等于 {@link #getUsedBytes()}
+     */
+    synchronized long getAllocatedBytes() {
+        return (long) (nextNewPage - freeCount) * PAGE_SIZE;
+    }
+
+    /**
+     * @return 因空间不足移除的entry数量
+     */
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    long getMaxBytes() {
+        return (long) maxPages * PAGE_SIZE;
+    }
+
+    private int availablePages() {
+        return freeCount + (maxPages - nextNewPage);
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        Entry eldest = iterator.next().getValue();
+        iterator.remove();
+        release(eldest);
+        evictionCount++;
+    }
+
+    private int allocatePage() {
+        if (freeCount > 0) {
+            return freePages[--freeCount];
+        }
+        int page = nextNewPage++;
+        int slab = page / PAGES_PER_SLAB;
+        if (slabs[slab] == null) {
+            int slabPages = Math.min(PAGES_PER_SLAB, maxPages - slab * PAGES_PER_SLAB);
+            slabs[slab] = ByteBuffer.allocateDirect(slabPages * PAGE_SIZE);
+        }
+        return page;
+    }
+
+    /**
+     * @return 页所在的内存块，position已经移动到页的起始位置
+     */
+    private ByteBuffer pageBuffer(int page) {
+        ByteBuffer slab = slabs[page / PAGES_PER_SLAB];
+        // 转换为Buffer调用，避免在java9以上编译后在java8运行时找不到ByteBuffer.position(int)
+        ((Buffer) slab).position((page % PAGES_PER_SLAB) * PAGE_SIZE);
+        return slab;
+    }
+
+    private void release(Entry entry) {
+        usedBytes -= entry.length;
+        for (int page : entry.pages) {
+            freePages[freeCount++] = page;
+        }
+    }
+
+    private static final class Entry {
+        final int[] pages;
+
+        final int length;
+
+        final long storedAtMills;
+
+        Entry(int[] pages, int length, long storedAtMills) {
+            this.pages = pages;
+            this.length = length;
+            this.storedAtMills = storedAtMills;
+        }
+    }
+}
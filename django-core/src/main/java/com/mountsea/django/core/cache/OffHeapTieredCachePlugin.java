@@ -0,0 +1,258 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.mountsea.django.bson.projection.DocumentNodeHelper;
+import com.mountsea.django.core.AutoEnableUCCodecRegistry;
+import com.mountsea.django.core.CollectibleDocument;
+import com.mountsea.django.core.CollectibleDocumentDefinition;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 两级缓存: 堆内是 {@link CaffineCachePlugin} 的文档对象缓存，堆外保存编码后的BSON字节。
+ * 只对配置了 {@link DocumentCacheConfigs.SingleItemCacheConfig#getOffHeapMaxBytes()} 的类启用堆外缓存，其他类和
+ * {@link CaffineCachePlugin} 相同。
+ * <p>
+ * 堆内缓存因数量超过maxSize移除文档时，如果文档没有未保存的修改，编码后放入堆外缓存；有未保存的修改时不放入，
+ * 避免之后从堆外取出的文档丢失修改。过期、手动移除、被替换的文档不放入堆外缓存。
+ * 获取文档时堆内没有命中，先从堆外缓存中取出并解码，放回堆内缓存，堆外的副本同时移除，所以同一个key最多只在一级中存在。
+ * 堆外也没有时才从数据库加载。
+ * <p>
+ * 堆外缓存中的文档按放入堆外的时间计算过期，过期时间取expireAfterAccessMills和expireAfterWriteMills中较小的正数。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j
+public class OffHeapTieredCachePlugin extends CaffineCachePlugin {
+
+    private final CodecRegistry codecRegistry;
+
+    private final Map<String, Optional<OffHeapDocumentStore>> stores = new ConcurrentHashMap<>();
+
+    public OffHeapTieredCachePlugin(DocumentCacheConfigs configs) {
+        this(configs, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE);
+    }
+
+    /**
+     * @param codecRegistry 编解码堆外文档使用，需要和Dao使用的CodecRegistry一致，解码时需要开启更新记录
+     */
+    public OffHeapTieredCachePlugin(DocumentCacheConfigs configs, CodecRegistry codecRegistry) {
+        super(configs);
+        this.codecRegistry = codecRegistry;
+    }
+
+    /**
+     * 先从堆外缓存中取出，没有时才调用supplier
+     */
+    @Override
+    protected CollectibleDocument loadOnMiss(CollectibleDocumentDefinition definition, Object key,
+                                             Supplier<CollectibleDocument> supplier) {
+        OffHeapDocumentStore store = getStore(definition);
+        if (store != null) {
+            CollectibleDocument document = promote(definition, store, key);
+            if (document != null) {
+                return document;
+            }
+        }
+        return supplier.get();
+    }
+
+    /**
+     * 堆内没有命中的key先从堆外缓存中取出，剩下的再调用bulkLoader
+     */
+    @Override
+    public Map<Object, CollectibleDocument> getAll(CollectibleDocumentDefinition definition, Collection<?> keys,
+                                                   Function<Set<Object>, Map<Object, ? extends CollectibleDocument>> bulkLoader) {
+        OffHeapDocumentStore store = getStore(definition);
+        if (store == null) {
+            return super.getAll(definition, keys, bulkLoader);
+        }
+        return super.getAll(definition, keys, misses -> {
+            Map<Object, CollectibleDocument> loaded = new HashMap<>(misses.size() * 4 / 3 + 1);
+            Set<Object> dbMisses = new LinkedHashSet<>();
+            for (Object key : misses) {
+                CollectibleDocument document = promote(definition, store, key);
+                if (document != null) {
+                    loaded.put(key, document);
+                } else {
+                    dbMisses.add(key);
+                }
+            }
+            if (!dbMisses.isEmpty()) {
+                loaded.putAll(bulkLoader.apply(dbMisses));
+            }
+            return loaded;
+        });
+    }
+
+    @Override
+    public void remove(CollectibleDocumentDefinition definition, Object key) {
+        super.remove(definition, key);
+        OffHeapDocumentStore store = getStore(definition);
+        if (store != null) {
+            store.remove(key);
+        }
+    }
+
+    /**
+     * @return 类在堆外缓存中的文档数量，没有启用堆外缓存时返回0
+     */
+    public int getOffHeapSize(CollectibleDocumentDefinition definition) {
+        OffHeapDocumentStore store = getStore(definition);
+        return store == null ? 0 : store.size();
+    }
+
+    /**
+     * @return 类的堆外缓存中文档编码后的字节数，不包括按页分配时浪费的部分，没有启用堆外缓存时返回0
+     */
+    public long getOffHeapUsedBytes(CollectibleDocumentDefinition definition) {
+        OffHeapDocumentStore store = getStore(definition);
+        return store == null ? 0 : store.getUsedBytes();
+    }
+
+    @Override
+    protected boolean isWriterRequired(CollectibleDocumentDefinition definition) {
+        return super.isWriterRequired(definition) || getStore(definition) != null;
+    }
+
+    @Override
+    protected void onWrite(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document) {
+        super.onWrite(definition, key, document);
+        OffHeapDocumentStore store = getStore(definition);
+        if (store != null) {
+            store.remove(key);
+        }
+    }
+
+    /**
+     * 写回模式下标记的文档先在父类中保存，保存成功后没有未保存的修改，可以放入堆外缓存
+     */
+    @Override
+    protected void onDelete(CollectibleDocumentDefinition definition, Object key, @Nullable CollectibleDocument document,
+                            RemovalCause cause) {
+        super.onDelete(definition, key, document, cause);
+        OffHeapDocumentStore store = getStore(definition);
+        if (store == null) {
+            return;
+        }
+        if (cause == RemovalCause.SIZE && document != null) {
+            demote(definition, store, key, document);
+        } else {
+            store.remove(key);
+        }
+    }
+
+    @Nullable
+    private OffHeapDocumentStore getStore(CollectibleDocumentDefinition definition) {
+        return stores.computeIfAbsent(definition.getDocumentClass().getName(), name -> {
+            DocumentCacheConfigs.SingleItemCacheConfig cacheConfig = resolveConfigForClass(definition);
+            if (cacheConfig.getOffHeapMaxBytes() <= 0) {
+                return Optional.empty();
+            }
+            return Optional.of(new OffHeapDocumentStore(cacheConfig.getOffHeapMaxBytes()));
+        }).orElse(null);
+    }
+
+    private void demote(CollectibleDocumentDefinition definition, OffHeapDocumentStore store, Object key, CollectibleDocument document) {
+        byte[] bytes;
+        try {
+            bytes = DocumentNodeHelper.callWithRecordLocked(document, () -> {
+                // 没有开启更新记录时不能确定文档是否有未保存的修改
+                if (!DocumentNodeHelper.hasEnableUpdateCollect(document)
+                        || DocumentNodeHelper.getUpdateRecord(document, false) != null) {
+                    return null;
+                }
+                return encode(definition, document);
+            });
+        } catch (Exception e) {
+            log.warn("encode document to off-heap cache failed, class:{}, key:{}", definition.getDocumentClass().getName(), key, e);
+            bytes = null;
+        }
+        if (bytes == null || !store.put(key, bytes)) {
+            store.remove(key);
+        }
+    }
+
+    @Nullable
+    private CollectibleDocument promote(CollectibleDocumentDefinition definition, OffHeapDocumentStore store, Object key) {
+        byte[] bytes = store.take(key, getOffHeapMaxAge(definition));
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return decode(definition, bytes);
+        } catch (Exception e) {
+            log.warn("decode document from off-heap cache failed, class:{}, key:{}", definition.getDocumentClass().getName(), key, e);
+            return null;
+        }
+    }
+
+    private long getOffHeapMaxAge(CollectibleDocumentDefinition definition) {
+        DocumentCacheConfigs.SingleItemCacheConfig cacheConfig = resolveConfigForClass(definition);
+        long access = cacheConfig.getExpireAfterAccessMills();
+        long write = cacheConfig.getExpireAfterWriteMills();
+        if (access > 0 && write > 0) {
+            return Math.min(access, write);
+        }
+        return Math.max(access, write);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] encode(CollectibleDocumentDefinition definition, CollectibleDocument document) {
+        Codec<CollectibleDocument> codec = (Codec<CollectibleDocument>) codecRegistry.get(definition.getDocumentClass());
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            codec.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+
+    private CollectibleDocument decode(CollectibleDocumentDefinition definition, byte[] bytes) {
+        Codec<? extends CollectibleDocument> codec = codecRegistry.get(definition.getDocumentClass());
+        try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+            return codec.decode(reader, DecoderContext.builder().build());
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2021 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.cache;
+
+import com.mountsea.django.core.CollectibleDocument;
+import com.mountsea.django.core.CollectibleDocumentDefinition;
+import com.mountsea.django.core.exception.DjangoException;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 写回模式下标记的文档，用于 {@link CaffineCachePlugin#markDirty}。
+ * <p>
+ * 和 {@link com.mountsea.django.core.WriteBehindSaveQueue} 相同，文档按key去重，定期按类和flusher分组批量保存。
+ * 同一个key标记了不同的文档对象时按标记顺序保存，前一个保存成功之后才保存后一个，并请求后台线程尽快flush。
+ * 正在保存的文档保存结束之前仍然记录在key下，缓存移除此key时可以看到:
+ * <ul>
+ *     <li>因数量超出、过期被移除时，等待正在保存的文档，然后同步保存剩余的文档</li>
+ *     <li>手动移除 (如删除文档) 时取消剩余的文档，正在保存的文档保存失败后不再重试，并等待它保存结束</li>
+ * </ul>
+ * flusher用tryLock对文档加saveLock，加锁失败表示其他线程正在保存此文档，文档留到下次flush再保存，
+ * 所以在缓存的移除回调中同步保存时不会和持有saveLock等待缓存的线程死锁。flusher保存时不访问缓存，
+ * 移除回调中等待正在保存的文档也不会死锁。
+ * 保存失败的文档排回同一个key的最前面，此时文档的更新记录已关闭，重试时会保存整个文档。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Slf4j(topic = "com.mountsea.django.core.dao")
+final class WriteBackBuffer {
+
+    private final long flushIntervalMills;
+
+    private final int maxBatchSize;
+
+    /**
+     * 保证同时只有一个线程在定期flush
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 访问时在dirtyLock上同步，正在保存的文档保存结束时在dirtyLock上notifyAll
+     */
+    private final LinkedHashMap<DirtyKey, DirtyState> dirty = new LinkedHashMap<>();
+
+    private final Object dirtyLock = new Object();
+
+    /**
+     * 已经向executor提交了一次flush，还没有开始执行
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * 第一次标记文档时创建
+     */
+    private volatile ScheduledExecutorService executor;
+
+    private volatile boolean closed;
+
+    WriteBackBuffer(long flushIntervalMills, int maxBatchSize) {
+        if (flushIntervalMills <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("flushIntervalMills:" + flushIntervalMills + ", maxBatchSize:" + maxBatchSize);
+        }
+        this.flushIntervalMills = flushIntervalMills;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 标记文档。同一个key排在最后的是同一个文档对象时合并，否则排在后面，
+     * 此时两个文档对象的更新记录不能合并，请求后台线程尽快保存前面的文档。
+     */
+    void markDirty(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document, CacheFlusher flusher) {
+        if (closed) {
+            throw new DjangoException("write-back cache closed");
+        }
+        DirtyKey dirtyKey = new DirtyKey(definition, key);
+        boolean superseded;
+        synchronized (dirtyLock) {
+            DirtyState state = dirty.computeIfAbsent(dirtyKey, k -> new DirtyState());
+            DirtyEntry last = state.queued.peekLast();
+            superseded = last != null && last.document != document;
+            if (last == null || superseded) {
+                state.queued.addLast(new DirtyEntry(dirtyKey, document, flusher));
+            }
+        }
+        startTimer();
+        if (superseded) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 缓存中key对应的文档被替换为document时调用，在caffine的写入回调中执行，不在此线程保存。
+     * 如果标记了另一个文档对象，请求后台线程尽快保存
+     */
+    void onReplaced(CollectibleDocumentDefinition definition, Object key, CollectibleDocument document) {
+        synchronized (dirtyLock) {
+            DirtyState state = dirty.get(new DirtyKey(definition, key));
+            if (state == null || !state.containsOther(document)) {
+                return;
+            }
+        }
+        requestFlush();
+    }
+
+    /**
+     * 文档从缓存中移除时调用，在caffine的移除回调中执行，返回前其他线程不能获取此key
+     *
+     * @param evicted 是否因数量超出、过期被移除。为true时同步保存文档，否则 (手动移除) 取消标记
+     */
+    void onRemoved(CollectibleDocumentDefinition definition, Object key, boolean evicted) {
+        DirtyKey dirtyKey = new DirtyKey(definition, key);
+        if (!evicted) {
+            synchronized (dirtyLock) {
+                DirtyState state = dirty.get(dirtyKey);
+                if (state == null) {
+                    return;
+                }
+                state.queued.clear();
+                if (state.inFlight != null) {
+                    state.inFlight.cancelled = true;
+                }
+                // 等待正在保存的文档，使之后的删除在它之后执行
+                awaitInFlight(dirtyKey);
+                removeIfEmpty(dirtyKey);
+            }
+            return;
+        }
+        while (true) {
+            DirtyEntry entry;
+            synchronized (dirtyLock) {
+                if (!awaitInFlight(dirtyKey)) {
+                    return;
+                }
+                DirtyState state = dirty.get(dirtyKey);
+                if (state == null) {
+                    return;
+                }
+                entry = state.queued.pollFirst();
+                if (entry == null) {
+                    dirty.remove(dirtyKey);
+                    return;
+                }
+                state.inFlight = entry;
+            }
+            if (!saveBatch(Collections.singletonList(entry))) {
+                // 保存失败或者其他线程正在保存，留到下次flush
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在dirtyLock中调用，等待key正在保存的文档保存结束
+     *
+     * @return 是否等到，等待时线程被中断返回false
+     */
+    private boolean awaitInFlight(DirtyKey dirtyKey) {
+        while (true) {
+            DirtyState state = dirty.get(dirtyKey);
+            if (state == null || state.inFlight == null) {
+                return true;
+            }
+            try {
+                dirtyLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void removeIfEmpty(DirtyKey dirtyKey) {
+        DirtyState state = dirty.get(dirtyKey);
+        if (state != null && state.inFlight == null && state.queued.isEmpty()) {
+            dirty.remove(dirtyKey);
+        }
+    }
+
+    /**
+     * 同步保存所有标记的文档。每一轮保存每个key排在最前面的文档，同一个key有多个文档对象时，
+     * 前一个保存成功之后，在下一轮保存后一个。保存失败的文档留在队列中。
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            Set<DirtyKey> keys = null;
+            while (true) {
+                Map<BatchKey, List<DirtyEntry>> groups = new LinkedHashMap<>();
+                synchronized (dirtyLock) {
+                    for (Map.Entry<DirtyKey, DirtyState> e : dirty.entrySet()) {
+                        DirtyState state = e.getValue();
+                        if ((keys == null || keys.contains(e.getKey())) && state.inFlight == null && !state.queued.isEmpty()) {
+                            DirtyEntry entry = state.queued.pollFirst();
+                            state.inFlight = entry;
+                            groups.computeIfAbsent(new BatchKey(entry.key.definition, entry.flusher), k -> new ArrayList<>()).add(entry);
+                        }
+                    }
+                }
+                if (groups.isEmpty()) {
+                    return;
+                }
+                // 下一轮只保存本轮保存成功，并且还有后续文档对象的key
+                keys = new HashSet<>();
+                for (List<DirtyEntry> entries : groups.values()) {
+                    for (int from = 0; from < entries.size(); from += maxBatchSize) {
+                        List<DirtyEntry> batch = entries.subList(from, Math.min(entries.size(), from + maxBatchSize));
+                        if (saveBatch(batch)) {
+                            collectNextKeys(batch, keys);
+                        }
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void collectNextKeys(List<DirtyEntry> batch, Set<DirtyKey> nextKeys) {
+        synchronized (dirtyLock) {
+            for (DirtyEntry entry : batch) {
+                DirtyState state = dirty.get(entry.key);
+                if (state != null && !state.queued.isEmpty()) {
+                    nextKeys.add(entry.key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 保存已设为inFlight的文档，结束后清除inFlight，保存失败或者被跳过的文档排回最前面
+     *
+     * @param batch 同一个类和flusher的文档
+     * @return 是否全部保存成功
+     */
+    private boolean saveBatch(List<DirtyEntry> batch) {
+        List<CollectibleDocument> documents = new ArrayList<>(batch.size());
+        for (DirtyEntry entry : batch) {
+            documents.add(entry.document);
+        }
+        Collection<CollectibleDocument> skipped;
+        try {
+            skipped = batch.get(0).flusher.flush(documents);
+        } catch (Throwable t) {
+            log.error("write-back save failed, requeue {} documents of collection {}", batch.size(),
+                    batch.get(0).key.definition.getCollectionName(), t);
+            synchronized (dirtyLock) {
+                for (DirtyEntry entry : batch) {
+                    complete(entry, false);
+                }
+                dirtyLock.notifyAll();
+            }
+            return false;
+        }
+        //其他线程正在保存的文档，下次再保存
+        synchronized (dirtyLock) {
+            for (DirtyEntry entry : batch) {
+                complete(entry, !containsIdentity(skipped, entry.document));
+            }
+            dirtyLock.notifyAll();
+        }
+        return skipped.isEmpty();
+    }
+
+    private static boolean containsIdentity(Collection<CollectibleDocument> documents, CollectibleDocument document) {
+        for (CollectibleDocument d : documents) {
+            if (d == document) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在dirtyLock中调用。没有保存的文档排回最前面，先于之后标记的其他文档对象保存，
+     * 已被手动移除取消的文档，或者排在最前面的是同一个文档对象时不再排回
+     */
+    private void complete(DirtyEntry entry, boolean saved) {
+        DirtyState state = dirty.get(entry.key);
+        if (state == null || state.inFlight != entry) {
+            return;
+        }
+        state.inFlight = null;
+        if (!saved && !entry.cancelled) {
+            DirtyEntry first = state.queued.peekFirst();
+            if (first == null || first.document != entry.document) {
+                state.queued.addFirst(entry);
+            }
+        }
+        removeIfEmpty(entry.key);
+    }
+
+    private void startTimer() {
+        if (executor != null) {
+            return;
+        }
+        synchronized (this) {
+            if (executor != null || closed) {
+                return;
+            }
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "django-write-back");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMills, flushIntervalMills, TimeUnit.MILLISECONDS);
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * 在后台线程执行一次flush，已经提交还没有执行时不重复提交
+     */
+    private void requestFlush() {
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::flushQuietly);
+        } catch (RejectedExecutionException e) {
+            //已关闭，close时保存剩余的文档
+            flushRequested.set(false);
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        } catch (Throwable t) {
+            log.error("write-back flush failed", t);
+        }
+    }
+
+    /**
+     * @return key是否有标记了还没有保存的文档，包括正在保存的文档
+     */
+    boolean isDirty(CollectibleDocumentDefinition definition, Object key) {
+        synchronized (dirtyLock) {
+            return dirty.containsKey(new DirtyKey(definition, key));
+        }
+    }
+
+    /**
+     * @return 标记了还没有保存的文档数量，包括正在保存的文档
+     */
+    int getDirtyCount() {
+        synchronized (dirtyLock) {
+            int count = 0;
+            for (DirtyState state : dirty.values()) {
+                count += state.queued.size() + (state.inFlight == null ? 0 : 1);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 停止定时任务，然后保存剩余的文档。关闭后不能再标记文档。
+     */
+    void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            executor = this.executor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(flushIntervalMills, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        int remaining = getDirtyCount();
+        if (remaining > 0) {
+            log.error("write-back cache closed with {} unsaved documents", remaining);
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class DirtyKey {
+        private final CollectibleDocumentDefinition definition;
+
+        private final Object key;
+
+        private DirtyKey(CollectibleDocumentDefinition definition, Object key) {
+            this.definition = definition;
+            this.key = key;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class BatchKey {
+        private final CollectibleDocumentDefinition definition;
+
+        private final CacheFlusher flusher;
+
+        private BatchKey(CollectibleDocumentDefinition definition, CacheFlusher flusher) {
+            this.definition = definition;
+            this.flusher = flusher;
+        }
+    }
+
+    /**
+     * 一个key下标记的文档，字段在dirtyLock中访问。queued和inFlight都为空时从dirty中移除
+     */
+    private static class DirtyState {
+        /**
+         * 等待保存的文档，按标记顺序排列，一般只有一个
+         */
+        private final ArrayDeque<DirtyEntry> queued = new ArrayDeque<>(2);
+
+        /**
+         * 正在保存的文档
+         */
+        private DirtyEntry inFlight;
+
+        /**
+         * 等待保存的文档中是否有其他文档对象
+         */
+        private boolean containsOther(CollectibleDocument document) {
+            for (DirtyEntry entry : queued) {
+                if (entry.document != document) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class DirtyEntry {
+        private final DirtyKey key;
+
+        private final CollectibleDocument document;
+
+        private final CacheFlusher flusher;
+
+        /**
+         * 正在保存时被手动移除，保存失败后不再排回。在dirtyLock中访问
+         */
+        private boolean cancelled;
+
+        private DirtyEntry(DirtyKey key, CollectibleDocument document, CacheFlusher flusher) {
+            this.key = key;
+            this.document = document;
+            this.flusher = flusher;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.bson.conversions.Bson;
+
+import javax.annotation.Nullable;
+
+/**
+ * 游标方式查找 (findCursor/findStream/forEach) 的选项.
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@Getter
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class CursorOptions {
+
+    public static final CursorOptions DEFAULT = CursorOptions.builder().build();
+
+    /**
+     * 选择返回字段，为空则返回全部字段
+     */
+    @Nullable
+    private final Bson projection;
+
+    /**
+     * 跳过的文档数
+     */
+    private final int skip;
+
+    /**
+     * 数量限制，小于等于0表示不限制
+     */
+    private final int limit;
+
+    @Nullable
+    private final Bson sort;
+
+    /**
+     * 每次从服务器拉取的文档数，小于等于0则使用驱动默认值
+     */
+    private final int batchSize;
+
+    /**
+     * 只读遍历时不开启文档的更新记录，减少解码后的额外开销。
+     * 只读方式得到的文档仍然可以保存，但因为没有更新记录，保存时会写入整个文档。
+     */
+    private final boolean readOnly;
+
+    public static class Builder {
+        // 默认值
+        private int skip = 0;
+        private int limit = -1;
+        private int batchSize = 0;
+        private boolean readOnly = false;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.spring;
+
+import com.mountsea.django.core.CachePreloader;
+import com.mountsea.django.core.DatabaseDaoFactory;
+import com.mountsea.django.core.cache.DocumentCacheProperties;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * 在所有单例bean初始化完成后 (spring context就绪之前) 按 {@link DocumentCacheProperties#getPreload()}预加载缓存。
+ * 预加载之前先完成 {@link DocumentModelWarmUpRunner} 的预热，和bean的注册顺序无关。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public class CachePreloadRunner implements SmartInitializingSingleton {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final DocumentCacheProperties properties;
+
+    public CachePreloadRunner(DocumentCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (properties.getPreload().isEmpty()) {
+            return;
+        }
+        applicationContext.getBeanProvider(DocumentModelWarmUpRunner.class).ifAvailable(DocumentModelWarmUpRunner::warmUp);
+        DjangoAnnotationInjectionProcessor processor = applicationContext.getBean(DjangoAnnotationInjectionProcessor.class);
+        try (CachePreloader preloader = new CachePreloader(properties.getPreloadParallelism())) {
+            preloader.preloadAll(properties.getPreload(), config -> {
+                DatabaseDaoFactory daoFactory = processor.getDjangoFactoryManager().getDaoFactory(config.getFactory());
+                if (daoFactory == null) {
+                    throw new BeanInitializationException("Not found daoFactory:" + config.getFactory());
+                }
+                return daoFactory.createDao();
+            }, properties.getPreloadTimeBudgetMills());
+        }
+    }
+}
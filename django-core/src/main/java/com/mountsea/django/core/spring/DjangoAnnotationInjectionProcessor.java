@@ -57,7 +57,7 @@ public class DjangoAnnotationInjectionProcessor extends AnnotationInjectionProce
         }, this::provideDjangoObject);
     }
 
-    private synchronized DjangoFactoryManager getDjangoFactoryManager() {
+    synchronized DjangoFactoryManager getDjangoFactoryManager() {
         if (!hasProcessDjangoFactoryManager) {
             DjangoProperties djangoProperties = applicationContext.getBean(DjangoProperties.class);
             MongoDataSourceConfigurer mongoDataSourceConfigurer = combine(
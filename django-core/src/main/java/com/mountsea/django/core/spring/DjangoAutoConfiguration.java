@@ -64,11 +64,27 @@ public class DjangoAutoConfiguration {
         return new DocumentCacheProperties();
     }
 
+    /**
+     * CachePreloadRunner在预加载缓存之前会先调用预热，和注册顺序无关
+     */
+    @Bean
+    public DocumentModelWarmUpRunner documentModelWarmUpRunner(DjangoProperties properties) {
+        return new DocumentModelWarmUpRunner(properties);
+    }
+
+    @Bean
+    public CachePreloadRunner cachePreloadRunner(DocumentCacheProperties properties) {
+        return new CachePreloadRunner(properties);
+    }
+
     @ConditionalOnMissingBean(CachePlugin.class)
     @ConditionalOnClass(Caffeine.class)
     public static class CaffineCaches {
         @Bean
         public CachePlugin defaultCachePlugin(DocumentCacheProperties properties) {
+            if (properties.isOffHeapTierEnable()) {
+                return new OffHeapTieredCachePlugin(properties);
+            }
             return new CaffineCachePlugin(properties);
         }
     }
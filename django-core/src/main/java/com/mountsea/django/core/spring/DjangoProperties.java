@@ -27,7 +27,9 @@ import com.mountsea.django.core.DatabaseDaoFactory;
 import com.mountsea.django.core.MongoDataSource;
 import lombok.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +54,11 @@ public class DjangoProperties {
      */
     private String defaultDatabase;
 
+    /**
+     * 启动时预热文档类的元数据
+     */
+    private WarmUpProperties warmUp = new WarmUpProperties();
+
     @Data
     public static class DaoFactoryProperties {
 
@@ -64,6 +71,24 @@ public class DjangoProperties {
 
     }
 
+    /**
+     * @since 3.4.0
+     */
+    @Data
+    public static class WarmUpProperties {
+
+        private boolean enabled = true;
+
+        /**
+         * 除了编译期生成的文档类索引，还需要扫描的包
+         */
+        private List<String> packages = new ArrayList<>();
+
+        // 小于等于0时使用CPU核数
+        private int parallelism = 0;
+
+    }
+
     @Data
     public static class MongoDataSourceProperties {
 
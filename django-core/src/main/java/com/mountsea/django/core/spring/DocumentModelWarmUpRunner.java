@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.core.spring;
+
+import com.mountsea.django.core.DatabaseDaoFactory;
+import com.mountsea.django.core.DocumentModelWarmer;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在所有单例bean初始化完成后 (spring context就绪之前) 按 {@link DjangoProperties#getWarmUp()}预热文档类的元数据，
+ * Codec从配置的每个DaoFactory默认使用的CodecRegistry中获取。
+ * <p>
+ * spring按bean的注册顺序调用 {@link SmartInitializingSingleton}，
+ * 所以 {@link CachePreloadRunner} 在预加载之前也会调用 {@link #warmUp()}，只会预热一次。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+public class DocumentModelWarmUpRunner implements SmartInitializingSingleton {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final DjangoProperties properties;
+
+    private boolean warmed;
+
+    public DocumentModelWarmUpRunner(DjangoProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+
+    /**
+     * 预热文档类，只在第一次调用时执行
+     */
+    public synchronized void warmUp() {
+        if (warmed) {
+            return;
+        }
+        warmed = true;
+        DjangoProperties.WarmUpProperties warmUp = properties.getWarmUp();
+        if (!warmUp.isEnabled()) {
+            return;
+        }
+        ClassLoader classLoader = applicationContext.getClassLoader();
+        if (classLoader == null) {
+            classLoader = Thread.currentThread().getContextClassLoader();
+        }
+        try (DocumentModelWarmer warmer = new DocumentModelWarmer(warmUp.getParallelism())) {
+            warmer.warmUpAll(classLoader, getCodecRegistries(), warmUp.getPackages().toArray(new String[0]));
+        }
+    }
+
+    private List<CodecRegistry> getCodecRegistries() {
+        DjangoAnnotationInjectionProcessor processor = applicationContext.getBean(DjangoAnnotationInjectionProcessor.class);
+        List<CodecRegistry> codecRegistries = new ArrayList<>();
+        for (String factoryName : properties.getDaoFactories().keySet()) {
+            DatabaseDaoFactory daoFactory = processor.getDjangoFactoryManager().getDaoFactory(factoryName);
+            if (daoFactory == null) {
+                continue;
+            }
+            CodecRegistry codecRegistry = daoFactory.getDefaultConfig().getCodecRegistry();
+            // 多个DaoFactory通常使用同一个CodecRegistry
+            if (codecRegistries.stream().noneMatch(r -> r == codecRegistry)) {
+                codecRegistries.add(codecRegistry);
+            }
+        }
+        return codecRegistries;
+    }
+}
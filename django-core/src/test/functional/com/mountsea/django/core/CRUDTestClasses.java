@@ -28,6 +28,8 @@ import com.mountsea.django.bson.projection.DocumentMap;
 import com.mountsea.django.bson.projection.DocumentNode;
 import com.mountsea.django.core.annotation.KeyClass;
 import com.mountsea.django.core.annotation.KeyField;
+import com.mountsea.django.core.cache.EnableDocumentCache;
+import com.mountsea.django.core.spring.BoolValue;
 import lombok.*;
 import org.bson.codecs.pojo.annotations.BsonCreator;
 import org.bson.codecs.pojo.annotations.BsonProperty;
@@ -44,7 +46,7 @@ import java.util.List;
 public class CRUDTestClasses {
     public static final List<Class<?>> allClasses = Arrays.asList(IntIdDocument.class,
             ObjectIdIdDocument.class, VectorIdDocument.class, NameKeyIntIdDocument.class,
-            NameKeyObjectIdIdDocument.class, MKeyClassDocument.class, SKeyClassDocument.class);
+            NameKeyObjectIdIdDocument.class, MKeyClassDocument.class, SKeyClassDocument.class, NKeyClassDocument.class);
 
     @Getter
     @Setter
@@ -83,6 +85,42 @@ public class CRUDTestClasses {
         private String name;
     }
 
+    @Getter
+    @Setter
+    @EnableDocumentCache(maxSize = 1, offHeapMaxBytes = 1024 * 1024)
+    public static class OffHeapCacheDocument extends Base {
+        private Integer id;
+
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    @EnableDocumentCache(maxSize = 2, writeBack = BoolValue.TRUE)
+    public static class WriteBackCacheDocument extends Base {
+        private Integer id;
+
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    @EnableDocumentCache(negativeCacheTtlMills = 60000)
+    public static class NegativeCacheDocument extends Base {
+        private Integer id;
+
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    @EnableDocumentCache(refreshAfterWriteMills = 50, expireAfterWriteMills = 60000, expireJitterPercent = 10)
+    public static class RefreshCacheDocument extends Base {
+        private Integer id;
+
+        private String name;
+    }
+
     @Getter
     @Setter
     public static class ObjectIdIdDocument extends Base {
@@ -176,4 +214,26 @@ public class CRUDTestClasses {
         private int key2;
     }
 
+    @Getter
+    @Setter
+    @KeyClass(NKey.class)
+    public static class NKeyClassDocument extends Base {
+        private ObjectId id;
+
+        private long key2;
+
+        private String name;
+    }
+
+    /**
+     * 没有实现equals，内容相同的两个对象是两个不同的key
+     */
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class NKey {
+        private long key2;
+    }
+
 }
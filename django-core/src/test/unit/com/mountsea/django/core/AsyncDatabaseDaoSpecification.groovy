@@ -0,0 +1,158 @@
+package com.mountsea.django.core
+
+import com.mongodb.MongoClientSettings
+import com.mongodb.client.model.Filters
+import com.mongodb.event.CommandListener
+import com.mongodb.event.CommandSucceededEvent
+import com.mongodb.reactivestreams.client.MongoClients
+import com.mountsea.django.bson.projection.DocumentList
+import com.mountsea.django.bson.projection.DocumentNodeHelper
+import com.mountsea.django.core.exception.ConcurrentSaveDjangoException
+import com.mountsea.django.core.model.MongoModels
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+import static com.mountsea.django.core.CRUDTestClasses.*
+
+/**
+ * @author guch
+ */
+class AsyncDatabaseDaoSpecification extends DaoOperationalSpecification {
+
+    static asyncDao = AsyncDatabaseDao.create(daoFactory, MongoClients.create(Fixture.getMongoClientSettings()))
+
+    static base = ['base' : 'base', 'setting': ['noticeOn': true, 'number': 666],
+                   'items': [1: ['itemId': 1, 'date': new Date(), 'tags': ['a', 's', 'd']]]]
+
+    def setup() {
+        dropCollection0(IntIdDocument)
+    }
+
+    def "test async save and find"() {
+        given:
+        def document = parseDocument(IntIdDocument, ['_id': 1, 'name': 'ss'] + base)
+
+        when:
+        def saveResult = asyncDao.saveByKey(document).get()
+        then:
+        saveResult.inserted
+        DocumentNodeHelper.hasEnableUpdateCollect(document)
+        documentEquals(document, findDocument0(IntIdDocument, MongoModels.idEquals(1)))
+
+        when: '只保存更新记录'
+        document.setting.note = 'hello'
+        document.items[1].tags.add('f')
+        saveResult = asyncDao.saveByKey(document).get()
+        def find = asyncDao.findByKey(IntIdDocument, 1).get()
+        then:
+        saveResult.updated
+        documentEquals(document, find)
+        DocumentNodeHelper.hasEnableUpdateCollect(find)
+
+        expect:
+        asyncDao.findByKey(IntIdDocument, 2).get() == null
+    }
+
+    def "test async getByKey insert if not exists"() {
+        when:
+        def document = asyncDao.getByKey(IntIdDocument, 3).get()
+        then:
+        document.id == 3
+        findDocument0(IntIdDocument, MongoModels.idEquals(3)) != null
+        DocumentNodeHelper.hasEnableUpdateCollect(document)
+    }
+
+    def "test async bulkSave and findAll"() {
+        given:
+        def documents = (1..5).collect { parseDocument(IntIdDocument, ['_id': it, 'name': 'n' + it] + base) }
+
+        when:
+        def bulkSaveResult = asyncDao.bulkSaveByKey(documents).get()
+        def all = asyncDao.findAll(IntIdDocument, Filters.gt('_id', 2)).get()
+        then:
+        bulkSaveResult.insertCount == 5
+        documentSetEquals(documents.findAll { it.id > 2 }, all)
+    }
+
+    def "should fail when document is saving by other thread"() {
+        given:
+        def document = parseDocument(IntIdDocument, ['_id': 1, 'name': 'ss'] + base)
+        document.getSaveLock().lock()
+
+        when:
+        def future = null
+        Thread.start { future = asyncDao.saveByKey(document) }.join()
+        future.get()
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof ConcurrentSaveDjangoException
+
+        cleanup:
+        document.getSaveLock().unlock()
+    }
+
+    def "should hold save lock until async write completes"() {
+        given: '写入命令的结果在release之前不返回'
+        def release = new CountDownLatch(1)
+        def listener = [commandStarted  : {},
+                        commandSucceeded: { CommandSucceededEvent event ->
+                            if (event.commandName in ['insert', 'update']) {
+                                release.await(10, TimeUnit.SECONDS)
+                            }
+                        },
+                        commandFailed   : {}] as CommandListener
+        def settings = MongoClientSettings.builder(Fixture.getMongoClientSettings()).addCommandListener(listener).build()
+        def blockingClient = MongoClients.create(settings)
+        def blockingDao = AsyncDatabaseDao.create(daoFactory, blockingClient)
+        def document = parseDocument(IntIdDocument, ['_id': 1, 'name': 'ss'] + base)
+
+        when:
+        def first = blockingDao.saveByKey(document)
+        document.name = 'second'
+        def second = asyncDao.saveByKey(document)
+        second.get()
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof ConcurrentSaveDjangoException
+        !first.isDone()
+        !document.getSaveLock().tryLock()
+
+        when:
+        release.countDown()
+        first.get(10, TimeUnit.SECONDS)
+        def locked = document.getSaveLock().tryLock()
+        document.getSaveLock().unlock()
+        asyncDao.saveByKey(document).get()
+        then:
+        locked
+        documentEquals(document, findDocument0(IntIdDocument, MongoModels.idEquals(1)))
+
+        cleanup:
+        release.countDown()
+        blockingClient.close()
+    }
+
+    def "should not write changes made after bulkSaveByKey returns"() {
+        given:
+        def document = parseDocument(IntIdDocument, ['_id': 1, 'name': 'ss'] + base)
+        asyncDao.saveByKey(document).get()
+
+        when: '替换列表之后立即修改，修改只在下一次保存中写入'
+        document.items[1].tags = new DocumentList<>(['a'])
+        def future = asyncDao.bulkSaveByKey([document])
+        document.items[1].tags.add('b')
+        document.name = 'changed'
+        future.get()
+        then:
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).items[1].tags == ['a']
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).name == 'ss'
+
+        when:
+        asyncDao.saveByKey(document).get()
+        then:
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).items[1].tags == ['a', 'b']
+        documentEquals(document, findDocument0(IntIdDocument, MongoModels.idEquals(1)))
+    }
+}
@@ -0,0 +1,90 @@
+package com.mountsea.django.core
+
+import com.mountsea.django.core.cache.CachePreloadConfig
+import com.mountsea.django.core.cache.CaffineCachePlugin
+import com.mountsea.django.core.cache.DocumentCacheConfigs
+import com.mountsea.django.core.cache.DocumentCacheProperties
+
+import static com.mountsea.django.core.CRUDTestClasses.*
+
+/**
+ * @author guch
+ */
+class CachePreloaderSpecification extends DaoOperationalSpecification {
+
+    def cachePlugin = new CaffineCachePlugin(new DocumentCacheProperties(
+            defaultConfig: new DocumentCacheConfigs.SingleItemCacheConfig(true, 1000, -1L, -1L, false, false)))
+
+    def cacheDao = daoFactory.createDao(daoFactory.getDefaultConfig().toBuilder()
+            .isCacheEnable(true).cachePlugin(cachePlugin).build())
+
+    def definition = CollectibleDocumentDefinitions.getDocumentDefinition(IntIdDocument)
+
+    def setup() {
+        cleanupSpec()
+        (1..10).each { parseAndInsertDocument0(IntIdDocument, ['_id': it, 'name': 'n' + it]) }
+    }
+
+    def cleanupSpec() {
+        dropCollection0(IntIdDocument)
+    }
+
+    def cached(Object key) {
+        cachePlugin.get(definition, key, { null })
+    }
+
+    def "should preload documents by filter, sort and limit"() {
+        given:
+        def preloader = new CachePreloader(2)
+        def config = new CachePreloadConfig(filter: '{"_id": {"$gt": 3}}', sort: '{"_id": 1}', limit: 5, batchSize: 2)
+
+        when:
+        def result = preloader.preload(cacheDao, IntIdDocument, config, -1)
+        then:
+        result.loadedCount == 5
+        !result.timedOut
+        result.error == null
+        (4..8).every { cached(it)?.name == 'n' + it }
+        cached(3) == null
+        cached(9) == null
+
+        cleanup:
+        preloader.close()
+    }
+
+    def "should preload hot keys without replacing cached documents"() {
+        given:
+        def preloader = new CachePreloader(2)
+        def hotKeys = File.createTempFile("hot-keys", ".txt")
+        hotKeys.text = "# hot keys\n2\n5\n\n{\"_id\": 7}\n"
+        def exists = cacheDao.findByKey(IntIdDocument, 5)
+
+        when:
+        def result = preloader.preloadAll([(IntIdDocument.name): new CachePreloadConfig(hotKeysFile: hotKeys.path)],
+                { cacheDao }, 10000)
+        then:
+        result.size() == 1
+        result[0].loadedCount == 3
+        cached(2) != null
+        cached(5).is(exists)
+        cached(7) != null
+        cached(1) == null
+
+        cleanup:
+        preloader.close()
+        hotKeys.delete()
+    }
+
+    def "should skip preload when cache is not enabled"() {
+        given:
+        def preloader = new CachePreloader(1)
+
+        when:
+        def result = preloader.preload(dao, IntIdDocument, new CachePreloadConfig(), -1)
+        then:
+        result.loadedCount == 0
+
+        cleanup:
+        preloader.close()
+    }
+}
@@ -3,9 +3,13 @@ package com.mountsea.django.core
 import com.mongodb.client.model.Filters
 import com.mongodb.client.model.Projections
 import com.mongodb.client.model.Sorts
+import com.mountsea.django.bson.projection.DocumentNodeHelper
+import com.mountsea.django.core.model.CursorOptions
 import com.mountsea.django.core.model.MultiEquals
 import org.bson.types.ObjectId
 
+import java.util.stream.Collectors
+
 import static com.mountsea.django.core.CRUDTestClasses.*;
 
 /**
@@ -112,5 +116,61 @@ class FindSpecification extends DaoOperationalSpecification {
         documentListEquals([d1], list)
     }
 
+    def "test findCursor, findStream and forEach"() {
+        given:
+        def d1 = parseDocument(IntIdDocument, base + ['_id': 1, 'setting': ['noticeOn': true, 'number': 666]])
+        def d2 = parseDocument(IntIdDocument, base + ['_id': 2, 'setting': ['noticeOn': true, 'number': 666]])
+        def d3 = parseDocument(IntIdDocument, base + ['_id': 3, 'setting': ['noticeOn': false, 'number': 666]])
+        insertDocument0(IntIdDocument, d1)
+        insertDocument0(IntIdDocument, d2)
+        insertDocument0(IntIdDocument, d3)
+        def options = CursorOptions.builder().sort(Sorts.descending("_id")).batchSize(1).build()
+
+        when:
+        def cursor = DaoOperationalSpecification.dao.findCursor(IntIdDocument, Filters.eq("setting.noticeOn", true), options)
+        def list = []
+        cursor.forEachRemaining { list.add(it) }
+        then:
+        documentListEquals([d2, d1], list)
+        !cursor.hasNext()
+        DocumentNodeHelper.hasEnableUpdateCollect(list[0])
+
+        when:
+        def stream = DaoOperationalSpecification.dao.findStream(IntIdDocument, Filters.empty(),
+                options.toBuilder().skip(1).limit(1).build())
+        list = stream.collect(Collectors.toList())
+        stream.close()
+        then:
+        documentListEquals([d2], list)
+
+        when:
+        list = []
+        DaoOperationalSpecification.dao.forEach(IntIdDocument, Filters.empty(),
+                options.toBuilder().readOnly(true).build(), { list.add(it) })
+        then:
+        documentListEquals([d3, d2, d1], list)
+        list.every { !DocumentNodeHelper.hasEnableUpdateCollect(it) }
+    }
+
+    def "test findAllByKeys"() {
+        when:
+        def parsed = documents.collect { parseDocument(clazz, it) }
+        def keys = parsed.collect { extractKey(it) }
+        insertDocument0(clazz, parsed[0])
+        insertDocument0(clazz, parsed[2])
+        def result = DaoOperationalSpecification.dao.findAllByKeys(clazz, keys.reverse())
+        then:
+        result.keySet() as List == [keys[2], keys[0]]
+        documentContains(documents[0], result[keys[0]])
+        documentContains(documents[2], result[keys[2]])
+
+        where:
+        clazz                | documents
+        IntIdDocument        | [['_id': 1, 'name': 'a'], ['_id': 2, 'name': 'b'], ['_id': 3, 'name': 'c']]
+        NameKeyIntIdDocument | [['_id': 1, 'name': 'k1'], ['_id': 2, 'name': 'k2'], ['_id': 3, 'name': 'k3']]
+        MKeyClassDocument    | [['_id': new ObjectId(), 'base': 'k1', 'key2': ['q': [1]], 'key3': ['x': 1d, 'y': 1d]],
+                                ['_id': new ObjectId(), 'base': 'k1', 'key2': ['q': [2]], 'key3': ['x': 1d, 'y': 1d]],
+                                ['_id': new ObjectId(), 'base': 'k2', 'key2': ['q': [1]], 'key3': ['x': 1d, 'y': 1d]]]
+    }
 
 }
@@ -3,6 +3,7 @@ package com.mountsea.django.core
 import com.mongodb.client.model.Projections
 import com.mountsea.django.core.exception.IllegalIdTypeDjangoException
 import com.mountsea.django.core.model.MultiEquals
+import org.bson.BsonDocument
 import org.bson.types.ObjectId
 
 import static com.mountsea.django.core.CRUDTestClasses.*
@@ -121,4 +122,62 @@ class GetSpecification extends DaoOperationalSpecification {
         a1.getId() == a2.getId()
     }
 
+    def "test getAllByKeys"() {
+        when:
+        parseAndInsertDocument0(IntIdDocument, ['_id': 2, 'name': 'exists'])
+        def result = DaoOperationalSpecification.dao.getAllByKeys(IntIdDocument, [3, 2, 1, 2])
+        then:
+        result.keySet() as List == [3, 2, 1]
+        result[2].name == 'exists'
+        result.values().every { it.id != null }
+        DaoOperationalSpecification.dao.findAllByKeys(IntIdDocument, [1, 2, 3]).size() == 3
+    }
+
+    def "should getAllByKeys auto gen id when document not exists and not get by id"() {
+        when:
+        def a1 = DaoOperationalSpecification.dao.getAllByKeys(NameKeyObjectIdIdDocument, ["aaa", "bbb"])
+        then:
+        a1.values().every { it.getId() != null }
+
+        when:
+        def a2 = DaoOperationalSpecification.dao.getAllByKeys(NameKeyObjectIdIdDocument, ["bbb", "aaa"])
+        then:
+        a1["aaa"].getId() == a2["aaa"].getId()
+        a1["bbb"].getId() == a2["bbb"].getId()
+    }
+
+    def "should getAllByKeys return document for every duplicate key"() {
+        given:
+        def k1 = new NKey(1L)
+        def k2 = new NKey(1L)
+        def k3 = new NKey(2L)
+
+        when:
+        def result = DaoOperationalSpecification.dao.getAllByKeys(NKeyClassDocument, [k1, k2, k3])
+        then:
+        result.keySet() as List == [k1, k2, k3]
+        result[k1].is(result[k2])
+        result[k1].id != null
+        result[k3].key2 == 2L
+        DaoOperationalSpecification.dao.findAllByKeys(NKeyClassDocument, [k2, new NKey(1L)]).values()*.id == [result[k1].id] * 2
+    }
+
+    def "should match key documents with different number types"() {
+        expect:
+        KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse(a)) == KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse(b))
+
+        where:
+        a                                                   | b
+        '{_id: 1}'                                          | '{_id: {$numberLong: "1"}}'
+        '{_id: 1.0}'                                        | '{_id: {$numberLong: "1"}}'
+        '{_id: {$numberDecimal: "2"}}'                      | '{_id: 2}'
+        '{k: {x: [1, 2.5]}}'                                | '{k: {x: [{$numberLong: "1"}, 2.5]}}'
+    }
+
+    def "should not match key documents with different values"() {
+        expect:
+        KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse('{_id: 1.5}')) != KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse('{_id: 1}'))
+        KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse('{_id: "1"}')) != KeyOperationalDaoImpl.toMatchKey(BsonDocument.parse('{_id: 1}'))
+    }
+
 }
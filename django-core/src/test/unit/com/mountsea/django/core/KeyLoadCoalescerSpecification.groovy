@@ -0,0 +1,163 @@
+package com.mountsea.django.core
+
+import com.mountsea.django.bson.BsonUtils
+import com.mountsea.django.bson.projection.DocumentNodeHelper
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.UnaryOperator
+
+import static com.mountsea.django.core.CRUDTestClasses.IntIdDocument
+
+/**
+ * @author guch
+ */
+class KeyLoadCoalescerSpecification extends Specification {
+
+    def coalescer = new KeyLoadCoalescer()
+
+    def executor = Executors.newFixedThreadPool(4)
+
+    UnaryOperator copier = { new ArrayList(it) } as UnaryOperator
+
+    def cleanup() {
+        executor.shutdownNow()
+    }
+
+    def "should share one load between concurrent callers of same key"() {
+        given:
+        def loads = new AtomicInteger()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def result = ['v']
+
+        when:
+        def first = executor.submit({
+            coalescer.load('k', {
+                loads.incrementAndGet()
+                started.countDown()
+                release.await()
+                result
+            }, copier)
+        } as Callable)
+        started.await()
+        def others = (1..3).collect {
+            executor.submit({ coalescer.load('k', { loads.incrementAndGet(); ['other'] }, copier) } as Callable)
+        }
+        Thread.sleep(100)
+        release.countDown()
+        def copies = others.collect { it.get(1, TimeUnit.SECONDS) }
+        then: '只有加载的线程得到结果对象，等待的线程各自得到副本'
+        first.get(1, TimeUnit.SECONDS).is(result)
+        copies.every { it == result && !it.is(result) }
+        copies.collect { System.identityHashCode(it) }.unique().size() == 3
+        loads.get() == 1
+        coalescer.getInFlightCount() == 0
+
+        when: '完成后重新加载'
+        def next = coalescer.load('k', { loads.incrementAndGet(); null }, copier)
+        then:
+        next == null
+        loads.get() == 2
+    }
+
+    def "should give coalesced callers distinct documents with equal content"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def document = BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': 1, 'name': 'n'], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                IntIdDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+        UnaryOperator documentCopier = { CacheableDocumentDao.copyLoaded(it) } as UnaryOperator
+
+        when:
+        def first = executor.submit({
+            coalescer.load('k', {
+                started.countDown()
+                release.await()
+                document
+            }, documentCopier)
+        } as Callable)
+        started.await()
+        def second = executor.submit({ coalescer.load('k', { null }, documentCopier) } as Callable)
+        Thread.sleep(100)
+        release.countDown()
+        def d1 = first.get(1, TimeUnit.SECONDS)
+        def d2 = second.get(1, TimeUnit.SECONDS)
+        then:
+        d1.is(document)
+        !d2.is(d1)
+        DocumentNodeHelper.hasEnableUpdateCollect(d1)
+        DocumentNodeHelper.hasEnableUpdateCollect(d2)
+        BsonUtils.toBsonDocument(d2, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE) ==
+                BsonUtils.toBsonDocument(d1, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+    }
+
+    def "should not join load started before invalidate"() {
+        given:
+        def loads = new AtomicInteger()
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+
+        when:
+        def first = executor.submit({
+            coalescer.load('k', {
+                loads.incrementAndGet()
+                started.countDown()
+                release.await()
+                ['old']
+            }, copier)
+        } as Callable)
+        started.await()
+        coalescer.invalidate('k')
+        def afterWrite = executor.submit({ coalescer.load('k', { loads.incrementAndGet(); ['new'] }, copier) } as Callable)
+        then: '保存之后的调用不等待保存之前开始的加载'
+        afterWrite.get(1, TimeUnit.SECONDS) == ['new']
+        loads.get() == 2
+
+        when:
+        release.countDown()
+        then:
+        first.get(1, TimeUnit.SECONDS) == ['old']
+        coalescer.getInFlightCount() == 0
+    }
+
+    def "should rethrow load failure to waiting callers"() {
+        given:
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+
+        when:
+        def first = executor.submit({
+            coalescer.load('k', {
+                started.countDown()
+                release.await()
+                throw new IllegalStateException('failed')
+            }, copier)
+        } as Callable)
+        started.await()
+        def waiting = executor.submit({ coalescer.load('k', { 'not called' }, copier) } as Callable)
+        Thread.sleep(100)
+        release.countDown()
+        def thrown = []
+        [first, waiting].each {
+            try {
+                it.get(1, TimeUnit.SECONDS)
+            } catch (Exception e) {
+                thrown << e.cause
+            }
+        }
+        then:
+        thrown.size() == 2
+        thrown.every { it instanceof IllegalStateException }
+        coalescer.getInFlightCount() == 0
+    }
+
+    def "should load directly when same key reentered in loading thread"() {
+        expect:
+        coalescer.load('k', { coalescer.load('k', { 'inner' }, copier) + '-outer' }, copier) == 'inner-outer'
+    }
+}
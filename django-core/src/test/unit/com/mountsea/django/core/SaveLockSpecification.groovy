@@ -0,0 +1,99 @@
+package com.mountsea.django.core
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * @author guch
+ */
+class SaveLockSpecification extends Specification {
+
+    def lock = new SaveLock()
+
+    def "should be reentrant"() {
+        when:
+        lock.lock()
+        def reentered = lock.tryLock()
+        lock.unlock()
+        then:
+        reentered
+        !tryLockInOtherThread()
+
+        when:
+        lock.unlock()
+        then:
+        tryLockInOtherThread()
+    }
+
+    def "should keep detached lock until released by other thread"() {
+        given:
+        lock.lock()
+        lock.lock()
+        lock.detach()
+
+        when: '转移后原线程也不能重入'
+        def reentered = lock.tryLock()
+        lock.unlock()
+        then:
+        !reentered
+        thrown(IllegalMonitorStateException)
+
+        when:
+        def acquired = new CountDownLatch(1)
+        def waiting = Thread.start {
+            lock.lock()
+            acquired.countDown()
+            lock.unlock()
+        }
+        Thread.start { lock.releaseDetached() }.join()
+        then: '重入的次数不变'
+        !acquired.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        Thread.start { lock.releaseDetached() }.join()
+        waiting.join(1000)
+        then:
+        acquired.count == 0
+        tryLockInOtherThread()
+    }
+
+    def "should detach once"() {
+        given:
+        lock.lock()
+        lock.detach()
+
+        when:
+        lock.detach()
+        lock.releaseDetached()
+        then:
+        tryLockInOtherThread()
+
+        when: '没有转移的锁不能释放'
+        lock.releaseDetached()
+        then:
+        thrown(IllegalMonitorStateException)
+    }
+
+    def "should not detach lock held by other thread"() {
+        given:
+        Thread.start { lock.lock() }.join()
+
+        when:
+        lock.detach()
+        then:
+        thrown(IllegalMonitorStateException)
+    }
+
+    private boolean tryLockInOtherThread() {
+        def result = false
+        Thread.start {
+            result = lock.tryLock()
+            if (result) {
+                lock.unlock()
+            }
+        }.join()
+        return result
+    }
+}
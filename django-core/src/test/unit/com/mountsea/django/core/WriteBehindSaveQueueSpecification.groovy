@@ -0,0 +1,169 @@
+package com.mountsea.django.core
+
+import com.mongodb.client.model.IndexOptions
+import com.mongodb.client.model.Indexes
+import com.mountsea.django.core.exception.DjangoException
+import com.mountsea.django.core.model.MongoModels
+
+import static com.mountsea.django.core.CRUDTestClasses.*
+
+/**
+ * @author guch
+ */
+class WriteBehindSaveQueueSpecification extends DaoOperationalSpecification {
+
+    static base = ['base'   : 'base', 'setting': ['noticeOn': true, 'number': 666],
+                   'items'  : [1: ['itemId': 1, 'date': new Date(), 'tags': ['a', 's', 'd']]]]
+
+    def setup() {
+        dropCollection0(IntIdDocument)
+    }
+
+    def "should merge saves of same document and flush in batches"() {
+        given:
+        def queue = dao.createWriteBehindSaveQueue(WriteBehindConfig.builder()
+                .flushIntervalMillis(60_000).maxBatchSize(2).build())
+        def documents = (1..3).collect { parseDocument(IntIdDocument, ['_id': it, 'name': 'n' + it] + base) }
+
+        when:
+        documents.each { queue.enqueue(it) }
+        documents[0].name = 'changed'
+        queue.enqueue(documents[0])
+        then:
+        queue.pendingCount == 3
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)) == null
+
+        when:
+        queue.flush()
+        def metrics = queue.metrics[CollectibleDocumentDefinitions.getDocumentDefinition(IntIdDocument).collectionName]
+        then:
+        queue.pendingCount == 0
+        documents.every { documentEquals(it, findDocument0(IntIdDocument, MongoModels.idEquals(it.id))) }
+        metrics.enqueued == 3
+        metrics.merged == 1
+        metrics.bulkWrites == 2
+        metrics.savedDocuments == 3
+
+        when: '只保存更新记录'
+        documents[1].setting.note = 'hello'
+        documents[1].items[1].tags.add('f')
+        queue.enqueue(documents[1])
+        queue.close()
+        then:
+        queue.closed
+        documentEquals(documents[1], findDocument0(IntIdDocument, MongoModels.idEquals(2)))
+
+        when:
+        queue.enqueue(documents[2])
+        then:
+        thrown(DjangoException)
+    }
+
+    def "should flush in caller thread when queue is full"() {
+        given:
+        def queue = dao.createWriteBehindSaveQueue(WriteBehindConfig.builder()
+                .flushIntervalMillis(60_000).maxPendingDocuments(2).build())
+
+        when:
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 1, 'name': 'n1'] + base))
+        then:
+        queue.pendingCount == 1
+
+        when:
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 2, 'name': 'n2'] + base))
+        then:
+        queue.pendingCount == 0
+        findDocument0(IntIdDocument, MongoModels.idEquals(2)) != null
+
+        cleanup:
+        queue.close()
+    }
+
+    def "should save replaced document object of same key"() {
+        given:
+        def queue = dao.createWriteBehindSaveQueue(WriteBehindConfig.builder().flushIntervalMillis(60_000).build())
+        def document1 = parseDocument(IntIdDocument, ['_id': 1, 'name': 'first'] + base)
+        def document2 = parseDocument(IntIdDocument, ['_id': 1, 'name': 'second'] + base)
+
+        when:
+        queue.enqueue(document1)
+        queue.enqueue(document2)
+        then:
+        queue.pendingCount == 1
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).name == 'first'
+
+        when:
+        queue.close()
+        then:
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).name == 'second'
+    }
+
+    def "should keep failed document ahead of newer object of same key"() {
+        given: 'name上的唯一索引使保存失败'
+        def collection = dao.getMongoCollection(IntIdDocument)
+        collection.createIndex(Indexes.ascending('name'), new IndexOptions().unique(true))
+        insertDocument0(IntIdDocument, parseDocument(IntIdDocument, ['_id': 99, 'name': 'dup'] + base))
+        def queue = dao.createWriteBehindSaveQueue(WriteBehindConfig.builder().flushIntervalMillis(60_000).build())
+        def failed = parseDocument(IntIdDocument, ['_id': 1, 'name': 'dup'] + base)
+        def newer = parseDocument(IntIdDocument, ['_id': 1, 'name': 'newer'] + base)
+        def metrics = { queue.metrics[CollectibleDocumentDefinitions.getDocumentDefinition(IntIdDocument).collectionName] }
+
+        when:
+        queue.enqueue(failed)
+        queue.flush()
+        then:
+        queue.pendingCount == 1
+        metrics().failedDocuments == 1
+
+        when: '失败的文档仍然在前面，新对象排在后面'
+        queue.enqueue(newer)
+        then:
+        queue.pendingCount == 2
+        metrics().replaced == 1
+        metrics().enqueued == 1
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)) == null
+
+        when:
+        collection.dropIndex(Indexes.ascending('name'))
+        queue.flush()
+        then:
+        queue.pendingCount == 0
+        metrics().savedDocuments == 2
+        metrics().bulkWrites == 2
+        findDocument0(IntIdDocument, MongoModels.idEquals(1)).name == 'newer'
+
+        cleanup:
+        queue.close()
+    }
+
+    def "should reject new document when queue still full after flush"() {
+        given:
+        def collection = dao.getMongoCollection(IntIdDocument)
+        collection.createIndex(Indexes.ascending('name'), new IndexOptions().unique(true))
+        insertDocument0(IntIdDocument, parseDocument(IntIdDocument, ['_id': 99, 'name': 'dup'] + base))
+        def queue = dao.createWriteBehindSaveQueue(WriteBehindConfig.builder()
+                .flushIntervalMillis(60_000).maxPendingDocuments(2).build())
+
+        when: '达到上限时flush失败，文档留在队列中'
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 1, 'name': 'dup'] + base))
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 2, 'name': 'dup'] + base))
+        then:
+        queue.pendingCount == 2
+
+        when:
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 3, 'name': 'n3'] + base))
+        then:
+        thrown(DjangoException)
+        queue.pendingCount == 2
+
+        when:
+        collection.dropIndex(Indexes.ascending('name'))
+        queue.enqueue(parseDocument(IntIdDocument, ['_id': 3, 'name': 'n3'] + base))
+        then:
+        queue.pendingCount == 1
+        findDocument0(IntIdDocument, MongoModels.idEquals(2)) != null
+
+        cleanup:
+        queue.close()
+    }
+}
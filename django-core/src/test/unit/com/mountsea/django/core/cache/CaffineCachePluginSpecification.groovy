@@ -0,0 +1,296 @@
+package com.mountsea.django.core.cache
+
+import com.mountsea.django.bson.BsonUtils
+import com.mountsea.django.bson.projection.DocumentNodeHelper
+import com.mountsea.django.core.AutoEnableUCCodecRegistry
+import com.mountsea.django.core.CollectibleDocumentDefinitions
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static com.mountsea.django.core.CRUDTestClasses.IntIdDocument
+import static com.mountsea.django.core.CRUDTestClasses.NegativeCacheDocument
+import static com.mountsea.django.core.CRUDTestClasses.RefreshCacheDocument
+
+/**
+ * @author guch
+ */
+class CaffineCachePluginSpecification extends Specification {
+
+    def definition = CollectibleDocumentDefinitions.getDocumentDefinition(IntIdDocument)
+
+    CaffineCachePlugin cachePlugin = new CaffineCachePlugin(new DocumentCacheProperties())
+
+    static document(int id) {
+        BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': id], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                IntIdDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+    }
+
+    static refreshDocument(int id, String name) {
+        BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': id, 'name': name], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                RefreshCacheDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+    }
+
+    def "should getAll load only misses in one call"() {
+        given:
+        def d1 = document(1)
+        def d2 = document(2)
+        cachePlugin.save(definition, 1, d1)
+        def loadCalls = []
+
+        when:
+        def result = cachePlugin.getAll(definition, [1, 2, 3], { misses ->
+            loadCalls << new ArrayList(misses)
+            [(2): d2]
+        })
+        then:
+        loadCalls == [[2, 3]]
+        result == [(1): d1, (2): d2]
+        cachePlugin.get(definition, 2, { null }).is(d2)
+        cachePlugin.get(definition, 3, { null }) == null
+
+        when:
+        result = cachePlugin.getAll(definition, [1, 2], { throw new IllegalStateException() })
+        then:
+        result == [(1): d1, (2): d2]
+    }
+
+    def "should getAll keep the instance cached while loading"() {
+        given:
+        def cached = document(1)
+
+        when:
+        def result = cachePlugin.getAll(definition, [1], { misses ->
+            cachePlugin.save(definition, 1, cached)
+            [(1): document(1)]
+        })
+        then:
+        result[1].is(cached)
+    }
+
+    def "test putAll"() {
+        given:
+        def d1 = document(1)
+        def d2 = document(2)
+
+        when:
+        cachePlugin.putAll(definition, [(1): d1, (2): d2])
+        then:
+        cachePlugin.get(definition, 1, { null }).is(d1)
+        cachePlugin.get(definition, 2, { null }).is(d2)
+    }
+
+    def "should remember absent key until document saved"() {
+        given:
+        def negativeDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(NegativeCacheDocument)
+        def loads = 0
+        def loader = { loads++; null }
+
+        when:
+        def r1 = cachePlugin.find(negativeDefinition, 1, loader)
+        def r2 = cachePlugin.find(negativeDefinition, 1, loader)
+        then:
+        r1 == null
+        r2 == null
+        loads == 1
+
+        when: '不记录没有配置的类'
+        cachePlugin.find(definition, 1, loader)
+        cachePlugin.find(definition, 1, loader)
+        then:
+        loads == 3
+
+        when:
+        def document = BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': 1], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                NegativeCacheDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+        cachePlugin.save(negativeDefinition, 1, document)
+        cachePlugin.getCache(negativeDefinition).invalidate(1)
+        def r3 = cachePlugin.find(negativeDefinition, 1, { document })
+        then:
+        r3.is(document)
+    }
+
+    def "should record hit and load stats"() {
+        given:
+        def d1 = document(1)
+
+        when:
+        cachePlugin.get(definition, 1, { d1 })
+        cachePlugin.get(definition, 1, { null })
+        cachePlugin.get(definition, 2, { null })
+        def stats = cachePlugin.getStats(definition)
+        then:
+        stats.hitCount == 1
+        stats.missCount == 2
+        stats.loadSuccessCount == 1
+        stats.loadFailureCount == 1
+        Math.abs(stats.hitRatio - 1d / 3) < 1e-9
+        stats.estimatedSize == 1
+        cachePlugin.getStats()[IntIdDocument.name].hitCount == 1
+    }
+
+    def "should refresh clean document in background"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def old = refreshDocument(1, 'old')
+        def dirty = refreshDocument(2, 'old')
+        cachePlugin.save(refreshDefinition, 1, old)
+        cachePlugin.save(refreshDefinition, 2, dirty)
+        dirty.name = 'changed'
+        cachePlugin.registerReloader(refreshDefinition, { definition, key -> refreshDocument(key, 'new') } as CacheReloader)
+
+        when:
+        Thread.sleep(100)
+        def refreshed = null
+        for (int i = 0; i < 100 && (refreshed?.name != 'new' || cachePlugin.getStats(refreshDefinition).refreshSkipCount == 0); i++) {
+            cachePlugin.get(refreshDefinition, 2, { null })
+            Thread.sleep(10)
+            refreshed = cachePlugin.get(refreshDefinition, 1, { null })
+        }
+        then:
+        refreshed.name == 'new'
+        cachePlugin.get(refreshDefinition, 2, { null }).is(dirty)
+        cachePlugin.getStats(refreshDefinition).refreshCount >= 1
+        cachePlugin.getStats(refreshDefinition).refreshSkipCount >= 1
+
+        cleanup:
+        cachePlugin.close()
+    }
+
+    def "should keep expiry unchanged when refresh skipped"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def dirty = refreshDocument(1, 'old')
+        cachePlugin.save(refreshDefinition, 1, dirty)
+        dirty.name = 'changed'
+        cachePlugin.registerReloader(refreshDefinition, { definition, key -> refreshDocument(key, 'new') } as CacheReloader)
+        def expiry = cachePlugin.getCache(refreshDefinition).policy().expireVariably().get()
+        def before = expiry.getExpiresAfter(1, TimeUnit.MILLISECONDS).asLong
+
+        when:
+        Thread.sleep(100)
+        for (int i = 0; i < 100 && cachePlugin.getStats(refreshDefinition).refreshSkipCount == 0; i++) {
+            cachePlugin.get(refreshDefinition, 1, { null })
+            Thread.sleep(10)
+        }
+        then:
+        cachePlugin.getStats(refreshDefinition).refreshSkipCount >= 1
+        cachePlugin.getStats(refreshDefinition).refreshCount == 0
+        expiry.getExpiresAfter(1, TimeUnit.MILLISECONDS).asLong <= before - 100
+
+        cleanup:
+        cachePlugin.close()
+    }
+
+    def "should not replace document modified during reload"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def old = refreshDocument(1, 'old')
+        cachePlugin.save(refreshDefinition, 1, old)
+        cachePlugin.registerReloader(refreshDefinition, { definition, key ->
+            old.name = 'changed'
+            refreshDocument(key, 'new')
+        } as CacheReloader)
+
+        when:
+        Thread.sleep(100)
+        for (int i = 0; i < 100 && cachePlugin.getStats(refreshDefinition).refreshSkipCount == 0; i++) {
+            cachePlugin.get(refreshDefinition, 1, { null })
+            Thread.sleep(10)
+        }
+        then:
+        cachePlugin.getStats(refreshDefinition).refreshSkipCount >= 1
+        cachePlugin.getStats(refreshDefinition).refreshCount == 0
+        cachePlugin.getIfPresent(refreshDefinition, 1).is(old)
+
+        cleanup:
+        cachePlugin.close()
+    }
+
+    def "should not replace document saved during reload"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def old = refreshDocument(1, 'old')
+        cachePlugin.save(refreshDefinition, 1, old)
+        cachePlugin.registerReloader(refreshDefinition, { definition, key ->
+            def stale = refreshDocument(key, 'stale')
+            // 加载之后，替换之前，同一个文档对象被修改并保存，更新记录已清空
+            old.name = 'saved'
+            DocumentNodeHelper.getUpdateRecord(old, true)
+            cachePlugin.save(refreshDefinition, key, old)
+            stale
+        } as CacheReloader)
+
+        when:
+        Thread.sleep(100)
+        for (int i = 0; i < 100 && cachePlugin.getStats(refreshDefinition).refreshSkipCount == 0; i++) {
+            cachePlugin.get(refreshDefinition, 1, { null })
+            Thread.sleep(10)
+        }
+        then:
+        cachePlugin.getStats(refreshDefinition).refreshSkipCount >= 1
+        cachePlugin.getStats(refreshDefinition).refreshCount == 0
+        cachePlugin.getIfPresent(refreshDefinition, 1).is(old)
+        old.name == 'saved'
+
+        cleanup:
+        cachePlugin.close()
+    }
+
+    def "should not replace document being saved"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def old = refreshDocument(1, 'old')
+        cachePlugin.save(refreshDefinition, 1, old)
+        cachePlugin.registerReloader(refreshDefinition, [
+                reload  : { definition, key -> refreshDocument(key, 'new') },
+                isSaving: { document -> document.is(old) }
+        ] as CacheReloader)
+
+        when:
+        Thread.sleep(100)
+        for (int i = 0; i < 100 && cachePlugin.getStats(refreshDefinition).refreshSkipCount == 0; i++) {
+            cachePlugin.get(refreshDefinition, 1, { null })
+            Thread.sleep(10)
+        }
+        then:
+        cachePlugin.getStats(refreshDefinition).refreshSkipCount >= 1
+        cachePlugin.getStats(refreshDefinition).refreshCount == 0
+        cachePlugin.getIfPresent(refreshDefinition, 1).is(old)
+
+        cleanup:
+        cachePlugin.close()
+    }
+
+    def "should not put reloaded document back when key removed during reload"() {
+        given:
+        def refreshDefinition = CollectibleDocumentDefinitions.getDocumentDefinition(RefreshCacheDocument)
+        def entered = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def reloaded = new CountDownLatch(1)
+        cachePlugin.save(refreshDefinition, 1, refreshDocument(1, 'old'))
+        cachePlugin.registerReloader(refreshDefinition, { definition, key ->
+            entered.countDown()
+            release.await()
+            reloaded.countDown()
+            refreshDocument(key, 'new')
+        } as CacheReloader)
+
+        when:
+        Thread.sleep(100)
+        cachePlugin.get(refreshDefinition, 1, { null })
+        entered.await(5, TimeUnit.SECONDS)
+        cachePlugin.remove(refreshDefinition, 1)
+        release.countDown()
+        reloaded.await(5, TimeUnit.SECONDS)
+        Thread.sleep(100)
+        then:
+        cachePlugin.getIfPresent(refreshDefinition, 1) == null
+        cachePlugin.getStats(refreshDefinition).refreshCount == 0
+
+        cleanup:
+        release.countDown()
+        cachePlugin.close()
+    }
+}
@@ -0,0 +1,97 @@
+package com.mountsea.django.core.cache
+
+import spock.lang.Specification
+
+/**
+ * @author guch
+ */
+class OffHeapDocumentStoreSpecification extends Specification {
+
+    static bytes(int length, int seed) {
+        def bytes = new byte[length]
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + seed)
+        }
+        bytes
+    }
+
+    def "should take bytes across pages and release them"() {
+        given:
+        def store = new OffHeapDocumentStore(OffHeapDocumentStore.SLAB_SIZE)
+        def data = bytes(OffHeapDocumentStore.PAGE_SIZE * 2 + 100, 7)
+
+        when:
+        store.put("a", data)
+        then:
+        store.size() == 1
+        store.getUsedBytes() == data.length
+        store.getAllocatedBytes() == OffHeapDocumentStore.PAGE_SIZE * 3
+
+        when:
+        def taken = store.take("a", 0)
+        then:
+        taken == data
+        store.size() == 0
+        store.getUsedBytes() == 0
+        store.getAllocatedBytes() == 0
+        store.take("a", 0) == null
+    }
+
+    def "should evict least recently used entries when full"() {
+        given:
+        def store = new OffHeapDocumentStore(OffHeapDocumentStore.PAGE_SIZE * 2)
+        store.put(1, bytes(10, 1))
+        store.put(2, bytes(10, 2))
+
+        when:
+        store.put(3, bytes(10, 3))
+        then:
+        store.size() == 2
+        store.getEvictionCount() == 1
+        store.take(1, 0) == null
+        store.take(2, 0) == bytes(10, 2)
+        store.take(3, 0) == bytes(10, 3)
+    }
+
+    def "should keep one page per small entry"() {
+        given:
+        def store = new OffHeapDocumentStore(64 * 1024)
+
+        when:
+        (1..100).each { store.put(it, bytes(300, it)) }
+        then:
+        store.size() == 100
+        store.getEvictionCount() == 0
+        store.getUsedBytes() == 300 * 100
+        store.getAllocatedBytes() == OffHeapDocumentStore.PAGE_SIZE * 100
+
+        when:
+        store.remove(1)
+        store.clear()
+        then:
+        store.getUsedBytes() == 0
+        store.getAllocatedBytes() == 0
+    }
+
+    def "should reject entry larger than store"() {
+        given:
+        def store = new OffHeapDocumentStore(OffHeapDocumentStore.PAGE_SIZE)
+
+        expect:
+        !store.put(1, bytes(OffHeapDocumentStore.PAGE_SIZE + 1, 0))
+        store.put(1, bytes(OffHeapDocumentStore.PAGE_SIZE, 0))
+        store.size() == 1
+    }
+
+    def "should drop expired entry on take"() {
+        given:
+        def store = new OffHeapDocumentStore(OffHeapDocumentStore.SLAB_SIZE)
+        store.put(1, bytes(10, 0))
+
+        when:
+        Thread.sleep(20)
+        then:
+        store.take(1, 5) == null
+        store.getUsedBytes() == 0
+    }
+}
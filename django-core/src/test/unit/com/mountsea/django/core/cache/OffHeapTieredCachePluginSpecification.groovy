@@ -0,0 +1,71 @@
+package com.mountsea.django.core.cache
+
+import com.mountsea.django.bson.BsonUtils
+import com.mountsea.django.core.AutoEnableUCCodecRegistry
+import com.mountsea.django.core.CollectibleDocumentDefinitions
+import spock.lang.Specification
+
+import static com.mountsea.django.core.CRUDTestClasses.OffHeapCacheDocument
+
+/**
+ * @author guch
+ */
+class OffHeapTieredCachePluginSpecification extends Specification {
+
+    def definition = CollectibleDocumentDefinitions.getDocumentDefinition(OffHeapCacheDocument)
+
+    OffHeapTieredCachePlugin cachePlugin = new OffHeapTieredCachePlugin(new DocumentCacheProperties())
+
+    static document(int id) {
+        BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': id, 'name': 'n' + id], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                OffHeapCacheDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+    }
+
+    def "should demote evicted document and promote it on get"() {
+        when:
+        cachePlugin.save(definition, 1, document(1))
+        cachePlugin.save(definition, 2, document(2))
+        cachePlugin.getCache(definition).cleanUp()
+        then:
+        cachePlugin.getCache(definition).estimatedSize() == 1
+        cachePlugin.getOffHeapSize(definition) == 1
+
+        when:
+        def d1 = cachePlugin.get(definition, 1, { null }) as OffHeapCacheDocument
+        def d2 = cachePlugin.get(definition, 2, { null }) as OffHeapCacheDocument
+        then:
+        d1.name == 'n1'
+        d2.name == 'n2'
+    }
+
+    def "should not demote document with pending updates"() {
+        given:
+        def d1 = document(1)
+        def d2 = document(2)
+        d1.name = 'changed1'
+        d2.name = 'changed2'
+
+        when:
+        cachePlugin.save(definition, 1, d1)
+        cachePlugin.save(definition, 2, d2)
+        cachePlugin.getCache(definition).cleanUp()
+        then:
+        cachePlugin.getCache(definition).estimatedSize() == 1
+        cachePlugin.getOffHeapSize(definition) == 0
+    }
+
+    def "should remove off-heap copy on remove"() {
+        given:
+        cachePlugin.save(definition, 1, document(1))
+        cachePlugin.save(definition, 2, document(2))
+        cachePlugin.getCache(definition).cleanUp()
+
+        when:
+        cachePlugin.remove(definition, 1)
+        cachePlugin.remove(definition, 2)
+        then:
+        cachePlugin.getOffHeapSize(definition) == 0
+        cachePlugin.get(definition, 1, { null }) == null
+        cachePlugin.get(definition, 2, { null }) == null
+    }
+}
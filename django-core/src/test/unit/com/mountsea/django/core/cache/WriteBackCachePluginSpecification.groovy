@@ -0,0 +1,215 @@
+package com.mountsea.django.core.cache
+
+import com.github.benmanes.caffeine.cache.RemovalCause
+import com.mountsea.django.bson.BsonUtils
+import com.mountsea.django.core.AutoEnableUCCodecRegistry
+import com.mountsea.django.core.CollectibleDocumentDefinitions
+import com.mountsea.django.core.exception.DjangoException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static com.mountsea.django.core.CRUDTestClasses.WriteBackCacheDocument
+
+/**
+ * @author guch
+ */
+class WriteBackCachePluginSpecification extends Specification {
+
+    def definition = CollectibleDocumentDefinitions.getDocumentDefinition(WriteBackCacheDocument)
+
+    CaffineCachePlugin cachePlugin = new CaffineCachePlugin(new DocumentCacheProperties())
+
+    def flushed = []
+
+    def skipNext = []
+
+    def failNext = false
+
+    /**
+     * 为true时，下一次保存通知entered后等待release
+     */
+    def blockNext = false
+
+    def entered = new CountDownLatch(1)
+
+    def release = new CountDownLatch(1)
+
+    CacheFlusher flusher = { documents ->
+        if (blockNext) {
+            blockNext = false
+            entered.countDown()
+            release.await()
+        }
+        if (failNext) {
+            failNext = false
+            throw new IllegalStateException()
+        }
+        def skipped = documents.findAll { d -> skipNext.any { it.is(d) } }
+        skipNext = []
+        flushed << documents.findAll { d -> !skipped.any { it.is(d) } }
+        skipped
+    } as CacheFlusher
+
+    static document(int id) {
+        BsonUtils.fromBsonDocument(BsonUtils.toBsonDocument(['_id': id], AutoEnableUCCodecRegistry.DEFAULT_INSTANCE),
+                WriteBackCacheDocument, AutoEnableUCCodecRegistry.DEFAULT_INSTANCE)
+    }
+
+    def markDirty(int id) {
+        def document = document(id)
+        cachePlugin.save(definition, id, document)
+        cachePlugin.markDirty(definition, id, document, flusher)
+        document
+    }
+
+    def cleanup() {
+        release.countDown()
+        cachePlugin.close()
+    }
+
+    def "should flush marked documents once in one batch"() {
+        given:
+        def d1 = markDirty(1)
+        def d2 = markDirty(2)
+        cachePlugin.markDirty(definition, 1, d1, flusher)
+
+        when:
+        cachePlugin.flushDirty()
+        then:
+        flushed == [[d1, d2]]
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should flush evicted document before it leaves the cache"() {
+        given:
+        markDirty(1)
+        markDirty(2)
+        markDirty(3)
+
+        when:
+        cachePlugin.getCache(definition).cleanUp()
+        then:
+        flushed.size() == 1
+        flushed[0].size() == 1
+        cachePlugin.getDirtyCount() == 2
+    }
+
+    def "should drop mark when document removed manually"() {
+        given:
+        markDirty(1)
+
+        when:
+        cachePlugin.remove(definition, 1)
+        cachePlugin.flushDirty()
+        then:
+        flushed.isEmpty()
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should requeue documents on failure or when save lock is held"() {
+        given:
+        def d1 = markDirty(1)
+        def d2 = markDirty(2)
+
+        when:
+        failNext = true
+        cachePlugin.flushDirty()
+        then:
+        flushed.isEmpty()
+        cachePlugin.getDirtyCount() == 2
+
+        when:
+        skipNext = [d2]
+        cachePlugin.flushDirty()
+        then:
+        flushed == [[d1]]
+        cachePlugin.getDirtyCount() == 1
+
+        when:
+        cachePlugin.flushDirty()
+        then:
+        flushed == [[d1], [d2]]
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should save superseded document before newer one even after failure"() {
+        given:
+        def d1 = markDirty(1)
+        failNext = true
+        cachePlugin.flushDirty()
+        def d2 = markDirty(1)
+
+        when:
+        cachePlugin.flushDirty()
+        then:
+        flushed == [[d1], [d2]]
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should wait for in-flight save and save the failed one when evicted during flush"() {
+        given:
+        def d1 = markDirty(1)
+        blockNext = true
+        failNext = true
+        def flushThread = Thread.start { cachePlugin.flushDirty() }
+        entered.await(5, TimeUnit.SECONDS)
+
+        when:
+        def evictThread = Thread.start { cachePlugin.onDelete(definition, 1, d1, RemovalCause.SIZE) }
+        evictThread.join(200)
+        then:
+        evictThread.isAlive()
+        cachePlugin.getDirtyCount() == 1
+
+        when:
+        release.countDown()
+        evictThread.join(5000)
+        flushThread.join(5000)
+        then:
+        !evictThread.isAlive()
+        flushed == [[d1]]
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should cancel in-flight save and wait for it when removed during flush"() {
+        given:
+        markDirty(1)
+        blockNext = true
+        failNext = true
+        def flushThread = Thread.start { cachePlugin.flushDirty() }
+        entered.await(5, TimeUnit.SECONDS)
+
+        when:
+        def removeThread = Thread.start { cachePlugin.remove(definition, 1) }
+        removeThread.join(200)
+        then:
+        removeThread.isAlive()
+
+        when:
+        release.countDown()
+        removeThread.join(5000)
+        flushThread.join(5000)
+        cachePlugin.flushDirty()
+        then:
+        !removeThread.isAlive()
+        flushed.isEmpty()
+        cachePlugin.getDirtyCount() == 0
+    }
+
+    def "should flush on close"() {
+        given:
+        def d1 = markDirty(1)
+
+        when:
+        cachePlugin.close()
+        then:
+        flushed == [[d1]]
+
+        when:
+        cachePlugin.markDirty(definition, 1, d1, flusher)
+        then:
+        thrown(DjangoException)
+    }
+}
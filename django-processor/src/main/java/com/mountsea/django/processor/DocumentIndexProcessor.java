@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2021 the original author or authors.
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.mountsea.django.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期收集所有DocumentNode的子类，生成文档类索引 {@value #INDEX_RESOURCE}，每行一个二进制类名。
+ * <p>
+ * 只收集可以创建实例的类: 非抽象、非private、顶层类或静态内部类。运行时由 DocumentClassIndex 读取索引，
+ * 不需要扫描classpath就能在启动时预热所有文档类。
+ * <p>
+ * 文档类不需要额外的注解，所以处理所有类型。只编译部分源文件时 (增量编译) 索引只包含本次编译的类，需要完整编译生成索引。
+ *
+ * @author guch
+ * @since 3.4.0
+ */
+@SupportedAnnotationTypes("*")
+public class DocumentIndexProcessor extends AbstractProcessor {
+
+    /**
+     * 需要和 DocumentClassIndex.INDEX_RESOURCE 一致
+     */
+    public static final String INDEX_RESOURCE = "META-INF/django/document-classes";
+
+    private static final String DOCUMENT_NODE_CLASS = "com.mountsea.django.bson.projection.DocumentNode";
+
+    private final Set<String> documentClasses = new TreeSet<>();
+
+    private TypeMirror documentNodeType;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!documentClasses.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        if (documentNodeType == null) {
+            TypeElement documentNode = processingEnv.getElementUtils().getTypeElement(DOCUMENT_NODE_CLASS);
+            if (documentNode == null) {
+                // 编译的模块不依赖django-bson
+                return false;
+            }
+            documentNodeType = processingEnv.getTypeUtils().erasure(documentNode.asType());
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+        TypeElement typeElement = (TypeElement) element;
+        Set<Modifier> modifiers = typeElement.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return;
+        }
+        if (typeElement.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC)) {
+            return;
+        }
+        if (typeElement.getKind() == ElementKind.CLASS && !modifiers.contains(Modifier.ABSTRACT)
+                && processingEnv.getTypeUtils().isSubtype(processingEnv.getTypeUtils().erasure(typeElement.asType()), documentNodeType)) {
+            documentClasses.add(processingEnv.getElementUtils().getBinaryName(typeElement).toString());
+        }
+        for (Element enclosed : typeElement.getEnclosedElements()) {
+            collect(enclosed);
+        }
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by " + DocumentIndexProcessor.class.getName() + "\n");
+                for (String documentClass : documentClasses) {
+                    writer.write(documentClass);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Write document class index failed: " + e);
+        }
+    }
+}